@@ -0,0 +1,90 @@
+package org.uichuimi.vcf.utils.annotation.consumer;
+
+import org.openjdk.jmh.annotations.*;
+import org.uichuimi.vcf.utils.benchmark.Fixtures;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the frequency engine alone: allele matching, frequency assembly and formatting, in ns
+ * per record. Run with <em>-prof gc</em> to get the allocated bytes per record
+ * (gc.alloc.rate.norm).
+ * <p>
+ * Inputs are the records of each frequency fixture, annotated with a parsed copy of themselves, so
+ * every record is a hit and reading the resource is not measured.
+ * <p>
+ * It is in the package of the annotators to call {@link FrequencyAnnotator#annotate(Variant,
+ * Collection)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrequencyBenchmark {
+
+	@Param({"1000G", "gnomadGenomes", "gnomadExomes", "ExAC"})
+	public String source;
+
+	private List<Variant> variants;
+	private List<Collection<Variant>> annotations;
+	private FrequencyAnnotator annotator;
+
+	@Setup(Level.Invocation)
+	public void invocation() throws IOException {
+		final File file = Fixtures.file(getFileName());
+		final Fixtures.Input input = Fixtures.read(file);
+		variants = input.variants;
+		annotations = new ArrayList<>(Fixtures.RECORDS);
+		for (Variant record : Fixtures.read(file).variants) annotations.add(List.of(record));
+		annotator = create(file);
+		annotator.start(input.header);
+	}
+
+	private String getFileName() {
+		switch (source) {
+			case "1000G":
+				return "kgnomes.vcf";
+			case "gnomadGenomes":
+				return "gnomad_genomes.vcf";
+			case "gnomadExomes":
+				return "gnomad_exomes.vcf";
+			case "ExAC":
+				return "ExAC.vcf";
+			default:
+				throw new IllegalArgumentException("Unknown source " + source);
+		}
+	}
+
+	private FrequencyAnnotator create(File file) {
+		switch (source) {
+			case "1000G":
+				return new KGenomesAnnotator(file);
+			case "gnomadGenomes":
+				return new GnomadGenomeAnnotator(file);
+			case "gnomadExomes":
+				return new GnomadExomeAnnotator(file);
+			default:
+				return new ExACAnnotator(file);
+		}
+	}
+
+	@TearDown(Level.Invocation)
+	public void close() {
+		annotator.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(Fixtures.RECORDS)
+	public List<Variant> annotate() {
+		for (int i = 0; i < variants.size(); i++) annotator.annotate(variants.get(i), annotations.get(i));
+		return variants;
+	}
+}
@@ -0,0 +1,68 @@
+package org.uichuimi.vcf.utils.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.uichuimi.vcf.utils.annotation.VariantAnnotator;
+import org.uichuimi.vcf.variant.Chromosome;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end benchmark of the annotate command, in ns per input record: reads the first {@link
+ * Fixtures#RECORDS} records of hcf.vcf, annotates them with every frequency resource, dbSNP, VEP
+ * and stats, and writes the VCF to a null stream. Opening the resources is part of the
+ * measurement, as it is in real runs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnnotateBenchmark {
+
+	@Param({"1", "4"})
+	public int threads;
+
+	private File input;
+	private File genes;
+	private File vep;
+	private PrintStream out;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		input = Fixtures.head(Fixtures.file("hcf.vcf"));
+		genes = Fixtures.genes();
+		vep = Fixtures.vepDirectory();
+		// Progress is printed to standard output
+		out = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		System.setOut(out);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(Fixtures.RECORDS)
+	public void annotate() throws Exception {
+		new VariantAnnotator(List.of(input), null)
+				.setNamespace(Chromosome.Namespace.GRCH)
+				.setkGenomes(Fixtures.file("kgnomes.vcf"))
+				.setGnomadGenomes(Fixtures.file("gnomad_genomes.vcf"))
+				.setGnomadExomes(Fixtures.file("gnomad_exomes.vcf"))
+				.setExac(Fixtures.file("ExAC.vcf"))
+				.setDbsnp(Fixtures.file("dbSNP.vcf"))
+				.setGenes(genes)
+				.setVep(vep)
+				.setCompute(true)
+				.setThreads(threads)
+				.setOutputStream(OutputStream.nullOutputStream())
+				.call();
+	}
+}
@@ -0,0 +1,143 @@
+package org.uichuimi.vcf.utils.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.uichuimi.vcf.utils.annotation.ColumnSpec;
+import org.uichuimi.vcf.utils.annotation.VcfAnnotator;
+import org.uichuimi.vcf.utils.annotation.consumer.*;
+import org.uichuimi.vcf.utils.annotation.consumer.dbsnp.DbsnpAnnotator;
+import org.uichuimi.vcf.utils.annotation.consumer.neo4j.Neo4jTablesWriter;
+import org.uichuimi.vcf.utils.annotation.consumer.snpeff.SnpEffExtractor;
+import org.uichuimi.vcf.utils.annotation.consumer.vep.VepAnnotator;
+import org.uichuimi.vcf.utils.annotation.gff.GeneMap;
+import org.uichuimi.vcf.utils.exception.VcfException;
+import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of each consumer, in ns per record. Run with <em>-prof gc</em> to get the
+ * allocated bytes per record (gc.alloc.rate.norm).
+ * <p>
+ * Every invocation annotates {@link Fixtures#RECORDS} freshly parsed variants with new consumers,
+ * so resources are read from the beginning. Consumers that read a resource get input.vcf, which
+ * overlaps the test resources, and a new consumer for every pass over it, so every pass finds the
+ * same records. Creating the consumers and parsing the input are not measured.
+ * <p>
+ * Resource readers run with <em>vcf.readAhead=false</em>, so decompression and parsing of the
+ * resources happen in the measured thread and are part of the time and allocations per record.
+ * Opening the next chromosome of per-chromosome directories, such as the VEP one, still happens in
+ * background, but it only reads the header of the file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dvcf.readAhead=false")
+public class ConsumerBenchmark {
+
+	private static final Set<String> RESOURCES = Set.of("1000G", "gnomadGenomes", "gnomadExomes", "ExAC", "frequencies", "dbSNP", "VEP", "vcf");
+
+	@Param({"1000G", "gnomadGenomes", "gnomadExomes", "ExAC", "frequencies", "dbSNP", "VEP", "snpEff", "stats", "vcf", "neo4j", "writer"})
+	public String consumer;
+
+	private GeneMap geneMap;
+	private File vep;
+	private File neo4j;
+	private List<Variant> variants;
+	/**
+	 * Consumer of each pass over the input file, or only one for all the records.
+	 */
+	private final List<VariantConsumer> instances = new ArrayList<>();
+	private int pass;
+
+	@Setup(Level.Trial)
+	public void trial() throws IOException {
+		geneMap = new GeneMap(Fixtures.genes());
+		vep = Fixtures.vepDirectory();
+		neo4j = Files.createTempDirectory("neo4j").toFile();
+	}
+
+	@Setup(Level.Invocation)
+	public void invocation() throws IOException, VcfException {
+		// The vcf consumer reads hcf.vcf itself, the other resources only overlap the test input,
+		// and SnpEff needs the ANN field of the test input
+		final boolean resource = RESOURCES.contains(consumer);
+		final String file = consumer.equals("vcf") ? "hcf.vcf" : resource || consumer.equals("snpEff") ? "input.vcf" : "hcf.vcf";
+		final Fixtures.Input input = Fixtures.read(Fixtures.file(file));
+		variants = input.variants;
+		pass = resource ? input.pass : variants.size();
+		instances.clear();
+		for (int i = 0; i < variants.size(); i += pass) {
+			final VariantConsumer instance = create();
+			instance.start(input.header);
+			instances.add(instance);
+		}
+	}
+
+	private VariantConsumer create() throws IOException {
+		switch (consumer) {
+			case "1000G":
+				return new KGenomesAnnotator(Fixtures.file("kgnomes.vcf"));
+			case "gnomadGenomes":
+				return new GnomadGenomeAnnotator(Fixtures.file("gnomad_genomes.vcf"));
+			case "gnomadExomes":
+				return new GnomadExomeAnnotator(Fixtures.file("gnomad_exomes.vcf"));
+			case "ExAC":
+				return new ExACAnnotator(Fixtures.file("ExAC.vcf"));
+			case "frequencies":
+				return new MultipleFrequencyAnnotator(List.of(
+						new KGenomesAnnotator(Fixtures.file("kgnomes.vcf")),
+						new GnomadGenomeAnnotator(Fixtures.file("gnomad_genomes.vcf")),
+						new GnomadExomeAnnotator(Fixtures.file("gnomad_exomes.vcf")),
+						new ExACAnnotator(Fixtures.file("ExAC.vcf"))));
+			case "dbSNP":
+				return new DbsnpAnnotator(Fixtures.file("dbSNP.vcf"));
+			case "VEP":
+				return new VepAnnotator(vep, geneMap);
+			case "snpEff":
+				return new SnpEffExtractor(geneMap);
+			case "stats":
+				return new StatsCalculator();
+			case "vcf":
+				// hcf.vcf is already annotated, so every record is found
+				return new VcfAnnotator(Fixtures.file("hcf.vcf"), List.of(
+						new ColumnSpec("CONS", "HCF_CONS"),
+						new ColumnSpec("GG_AF", "HCF_GG_AF")));
+			case "neo4j":
+				return new Neo4jTablesWriter(neo4j);
+			case "writer":
+				return new VcfWriter(OutputStream.nullOutputStream(), Chromosome.Namespace.GRCH);
+			default:
+				throw new IllegalArgumentException("Unknown consumer " + consumer);
+		}
+	}
+
+	@TearDown(Level.Invocation)
+	public void close() {
+		instances.forEach(VariantConsumer::close);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(Fixtures.RECORDS)
+	public List<Variant> accept() {
+		for (int i = 0; i < variants.size(); i++) instances.get(i / pass).accept(variants.get(i));
+		return variants;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(Fixtures.RECORDS)
+	public List<Variant> acceptBatch() {
+		for (int i = 0; i < variants.size(); i += pass)
+			instances.get(i / pass).acceptBatch(variants.subList(i, Math.min(variants.size(), i + pass)));
+		return variants;
+	}
+}
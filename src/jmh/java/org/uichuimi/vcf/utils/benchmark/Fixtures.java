@@ -0,0 +1,134 @@
+package org.uichuimi.vcf.utils.benchmark;
+
+import org.uichuimi.vcf.header.VcfHeader;
+import org.uichuimi.vcf.io.VariantReader;
+import org.uichuimi.vcf.utils.common.FileUtils;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Locates the files used by benchmarks. By default, they are taken from the test fixtures in
+ * <em>src/test/resources/files</em> and <em>hcf.vcf</em>, relative to the working directory. Both
+ * locations can be changed with the system properties <em>vcf.files</em> and <em>vcf.hcf</em>.
+ */
+public final class Fixtures {
+
+	/**
+	 * Number of records processed in every benchmark invocation, so results are per record.
+	 */
+	public static final int RECORDS = 512;
+
+	private static final File FILES = new File(System.getProperty("vcf.files", "src/test/resources/files"));
+	private static final File HCF = new File(System.getProperty("vcf.hcf", "hcf.vcf"));
+
+	private Fixtures() {
+	}
+
+	public static File file(String name) {
+		if (name.equals("hcf.vcf")) return HCF;
+		final File file = new File(FILES, name);
+		if (!file.exists()) throw new IllegalStateException(file.getAbsolutePath() + " not found, set -Dvcf.files");
+		return file;
+	}
+
+	/**
+	 * GFF file with genes. When not present, an empty one is used, so consumers depending on genes
+	 * can still run.
+	 */
+	public static File genes() throws IOException {
+		final File gff = new File(System.getProperty("vcf.gff", new File(FILES, "Homo_sapiens.GRCh38.95.gff3.gz").getPath()));
+		if (gff.exists()) return gff;
+		final File empty = File.createTempFile("genes", ".gff3");
+		empty.deleteOnExit();
+		return empty;
+	}
+
+	/**
+	 * Creates a directory with the VEP fixture split in one file per chromosome, as expected by
+	 * VepAnnotator.
+	 */
+	public static File vepDirectory() throws IOException {
+		final File dir = Files.createTempDirectory("vep").toFile();
+		dir.deleteOnExit();
+		final List<String> lines = Files.readAllLines(file("vep.vcf").toPath());
+		final List<String> header = new ArrayList<>();
+		for (String line : lines) if (line.startsWith("#")) header.add(line);
+		for (String line : lines) {
+			if (line.startsWith("#")) continue;
+			final String chrom = line.substring(0, line.indexOf('\t'));
+			final File target = new File(dir, "homo_sapiens_incl_consequences-chr" + chrom + ".vcf");
+			if (!target.exists()) {
+				target.deleteOnExit();
+				Files.write(target.toPath(), header);
+			}
+			Files.writeString(target.toPath(), line + System.lineSeparator(), StandardOpenOption.APPEND);
+		}
+		for (File file : dir.listFiles()) {
+			final File gz = new File(dir, file.getName() + ".gz");
+			gz.deleteOnExit();
+			try (OutputStream out = new GZIPOutputStream(new FileOutputStream(gz))) {
+				Files.copy(file.toPath(), out);
+			}
+			file.delete();
+		}
+		return dir;
+	}
+
+	/**
+	 * Reads exactly {@link #RECORDS} variants. If the file has less variants, it is read again
+	 * from the beginning, so consumers that depend on coordinate order will only match the first
+	 * pass, unless each pass of {@link Input#pass} variants is given to a new consumer.
+	 */
+	public static Input read(File file) throws IOException {
+		final Input input = new Input();
+		while (input.variants.size() < RECORDS) {
+			try (VariantReader reader = new VariantReader(FileUtils.getInputStream(file))) {
+				if (input.header == null) input.header = reader.getHeader();
+				if (!reader.hasNext()) throw new IllegalStateException(file + " has no variants");
+				while (reader.hasNext() && input.variants.size() < RECORDS) input.variants.add(reader.next());
+			}
+			if (input.pass == 0) input.pass = input.variants.size();
+		}
+		return input;
+	}
+
+	/**
+	 * Copies the header and the first {@link #RECORDS} lines of a VCF file into a temporary
+	 * file.
+	 */
+	public static File head(File file) throws IOException {
+		final File head = File.createTempFile("head", ".vcf");
+		head.deleteOnExit();
+		try (BufferedReader reader = FileUtils.getBufferedReader(file);
+		     BufferedWriter writer = new BufferedWriter(new FileWriter(head))) {
+			int records = 0;
+			String line;
+			while ((line = reader.readLine()) != null && records < RECORDS) {
+				if (!line.startsWith("#")) records++;
+				writer.write(line);
+				writer.newLine();
+			}
+			if (records < RECORDS)
+				throw new IllegalStateException(String.format("%s has only %d records, %d needed", file, records, RECORDS));
+		}
+		return head;
+	}
+
+	/**
+	 * Header and variants of an input file. Variants refer to this header.
+	 */
+	public static class Input {
+		public VcfHeader header;
+		public final List<Variant> variants = new ArrayList<>(RECORDS);
+		/**
+		 * Number of variants in the file.
+		 */
+		public int pass;
+	}
+}
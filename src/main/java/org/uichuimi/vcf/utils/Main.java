@@ -1,8 +1,11 @@
 package org.uichuimi.vcf.utils;
 
 import org.uichuimi.vcf.utils.annotation.VariantAnnotator;
+import org.uichuimi.vcf.utils.annotation.consumer.vep.VepIndexCommand;
 import org.uichuimi.vcf.utils.dbsnp.DbnsfpCommand;
+import org.uichuimi.vcf.utils.dbsnp.DbsnpIndexCommand;
 import org.uichuimi.vcf.utils.filter.VariantFilter;
+import org.uichuimi.vcf.utils.freqdb.FrequencyDatabaseCommand;
 import picocli.CommandLine;
 
 import java.util.Locale;
@@ -14,7 +17,7 @@ import static picocli.CommandLine.usage;
 @Command(name = "vcf-utils",
 		version = "vcf-utils version 1.0",
 		description = "umpteenth package with tools to work with vcf files",
-		subcommands = {VariantAnnotator.class, VariantFilter.class, DbnsfpCommand.class})
+		subcommands = {VariantAnnotator.class, VariantFilter.class, DbnsfpCommand.class, FrequencyDatabaseCommand.class, DbsnpIndexCommand.class, VepIndexCommand.class})
 public class Main implements Callable<Void> {
 
 	public static void main(String[] args) {
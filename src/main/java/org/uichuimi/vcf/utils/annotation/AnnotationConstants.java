@@ -1,7 +1,5 @@
 package org.uichuimi.vcf.utils.annotation;
 
-import java.util.List;
-
 public class AnnotationConstants {
 	/**
 	 * ID for Sift prediction INFO field.
@@ -84,22 +82,6 @@ public class AnnotationConstants {
 	public static String dbNSFP_SIFT = "dbNSFP_SIFT_score";
 	public static String dbNSFP_POLYPHEN = "dbNSFP_Polyphen2_HVAR_score";
 	public static String dbNSFP_HGVSp = "dbNSFP_HGVSp_VEP";
-	/**
-	 * Order of consequences by severity (most severe to least severe)
-	 */
-	public static final List<String> CONS_SEVERITY = List.of(
-			"transcript_ablation", "splice_acceptor_variant", "splice_donor_variant", "stop_gained",
-			"frameshift_variant", "stop_lost", "start_lost", "transcript_amplification",
-			"inframe_insertion", "inframe_deletion", "missense_variant", "protein_altering_variant",
-			"splice_region_variant", "incomplete_terminal_codon_variant", "start_retained_variant",
-			"stop_retained_variant", "synonymous_variant", "coding_sequence_variant",
-			"mature_miRNA_variant", "5_prime_UTR_variant", "3_prime_UTR_variant",
-			"non_coding_transcript_exon_variant", "intron_variant", "NMD_transcript_variant",
-			"non_coding_transcript_variant", "upstream_gene_variant", "downstream_gene_variant",
-			"TFBS_ablation", "TFBS_amplification", "TF_binding_site_variant",
-			"regulatory_region_ablation", "regulatory_region_amplification", "feature_elongation",
-			"regulatory_region_variant", "feature_truncation", "intergenic_variant"
-	);
 
 	private AnnotationConstants() {
 	}
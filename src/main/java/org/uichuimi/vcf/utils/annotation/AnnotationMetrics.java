@@ -0,0 +1,153 @@
+package org.uichuimi.vcf.utils.annotation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.uichuimi.vcf.utils.annotation.consumer.VariantConsumer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the metrics of every consumer and writes them as a JSON report. Consumers with the same
+ * name and position in the chain share counters, so metrics of several threads or shards are
+ * added together.
+ */
+class AnnotationMetrics {
+
+	private final File file;
+	private final long start = System.nanoTime();
+	private final Map<String, Counters> counters = new LinkedHashMap<>();
+	private final LongAdder records = new LongAdder();
+	private final ObjectMapper mapper = new ObjectMapper();
+	private Timer timer;
+
+	/**
+	 * @param file
+	 * 		where the report is written
+	 */
+	AnnotationMetrics(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Wraps every consumer with a {@link ProfiledConsumer}.
+	 *
+	 * @param consumers
+	 * 		consumers in the order they are applied
+	 * @return a new list with the wrapped consumers, in the same order
+	 */
+	List<VariantConsumer> wrap(List<VariantConsumer> consumers) {
+		final List<VariantConsumer> wrapped = new ArrayList<>(consumers.size());
+		final Map<String, Integer> names = new HashMap<>();
+		for (VariantConsumer consumer : consumers) {
+			final String simpleName = consumer.getClass().isAnonymousClass()
+					? consumer.getClass().getName()
+					: consumer.getClass().getSimpleName();
+			final int n = names.merge(simpleName, 1, Integer::sum);
+			final String name = n == 1 ? simpleName : simpleName + "#" + n;
+			wrapped.add(new ProfiledConsumer(consumer, getCounters(name)));
+		}
+		return wrapped;
+	}
+
+	private synchronized Counters getCounters(String name) {
+		return counters.computeIfAbsent(name, Counters::new);
+	}
+
+	/**
+	 * Adds input records.
+	 */
+	void records(long n) {
+		records.add(n);
+	}
+
+	/**
+	 * Writes the report every <em>seconds</em> seconds, until {@link #finish()} is called.
+	 */
+	void schedule(int seconds) {
+		if (seconds <= 0) return;
+		timer = new Timer("metrics", true);
+		final long period = TimeUnit.SECONDS.toMillis(seconds);
+		timer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				write(false);
+			}
+		}, period, period);
+	}
+
+	/**
+	 * Stops periodic reports and writes the final report.
+	 */
+	void finish() {
+		if (timer != null) timer.cancel();
+		write(true);
+	}
+
+	private synchronized void write(boolean finished) {
+		final Map<String, Object> report = new LinkedHashMap<>();
+		final long elapsed = System.nanoTime() - start;
+		report.put("finished", finished);
+		report.put("elapsed_ms", TimeUnit.NANOSECONDS.toMillis(elapsed));
+		report.put("records", records.sum());
+		final List<Map<String, Object>> list = new ArrayList<>();
+		for (Counters counter : counters.values()) list.add(counter.toMap());
+		report.put("consumers", list);
+		// Write and move, so the report is never read half written
+		try {
+			final File tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+			mapper.writerWithDefaultPrettyPrinter().writeValue(tmp, report);
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	static class Counters {
+
+		private final String name;
+		private final LongAdder records = new LongAdder();
+		private final LongAdder hits = new LongAdder();
+		private final LongAdder wall = new LongAdder();
+		private final LongAdder cpu = new LongAdder();
+		private volatile List<String> keys = List.of();
+
+		private Counters(String name) {
+			this.name = name;
+		}
+
+		void time(long wallNanos, long cpuNanos) {
+			wall.add(wallNanos);
+			cpu.add(cpuNanos);
+		}
+
+		void records(long records, long hits) {
+			this.records.add(records);
+			this.hits.add(hits);
+		}
+
+		void setKeys(List<String> keys) {
+			this.keys = List.copyOf(keys);
+		}
+
+		private Map<String, Object> toMap() {
+			final Map<String, Object> map = new LinkedHashMap<>();
+			final long records = this.records.sum();
+			final long hits = this.hits.sum();
+			final long wall = this.wall.sum();
+			map.put("name", name);
+			map.put("keys", keys);
+			map.put("records", records);
+			map.put("hits", hits);
+			map.put("hit_rate", records == 0 ? 0.0 : (double) hits / records);
+			map.put("wall_ms", TimeUnit.NANOSECONDS.toMillis(wall));
+			map.put("cpu_ms", TimeUnit.NANOSECONDS.toMillis(cpu.sum()));
+			map.put("wall_ns_per_record", records == 0 ? 0 : wall / records);
+			return map;
+		}
+	}
+}
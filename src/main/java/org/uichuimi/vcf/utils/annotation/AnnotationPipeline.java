@@ -0,0 +1,162 @@
+package org.uichuimi.vcf.utils.annotation;
+
+import org.uichuimi.vcf.utils.annotation.consumer.VariantConsumer;
+import org.uichuimi.vcf.utils.annotation.consumer.VcfWriter;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a chain of {@link VariantConsumer}s as a staged pipeline. The calling thread reads and
+ * parses the input and hands batches of variants to {@link #accept(List)}. Consumers are grouped
+ * in stages, each one running on its own worker thread. Batches travel from stage to stage through
+ * bounded queues, so every consumer still receives the variants in input order and the output is
+ * identical to the single threaded run.
+ */
+class AnnotationPipeline {
+
+	private static final int QUEUE_CAPACITY = 4;
+	/**
+	 * Marks the end of the stream. Compared by identity.
+	 */
+	private static final List<Variant> END = new ArrayList<>(0);
+
+	private final List<Stage> stages = new ArrayList<>();
+	private final ExecutorService executor;
+	private final List<Future<?>> futures = new ArrayList<>();
+	private volatile Exception error;
+
+	/**
+	 * @param consumers
+	 * 		consumers, in the order they must be applied
+	 * @param workers
+	 * 		maximum number of worker threads. Each worker runs one stage.
+	 */
+	AnnotationPipeline(List<VariantConsumer> consumers, int workers) {
+		final List<List<VariantConsumer>> groups = partition(consumers, workers);
+		BlockingQueue<List<Variant>> input = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		for (int i = 0; i < groups.size(); i++) {
+			final BlockingQueue<List<Variant>> output = i == groups.size() - 1
+					? null
+					: new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+			stages.add(new Stage(groups.get(i), input, output));
+			input = output;
+		}
+		final AtomicInteger counter = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(stages.size(), runnable -> {
+			final Thread thread = new Thread(runnable, "annotate-stage-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		for (Stage stage : stages) futures.add(executor.submit(stage));
+	}
+
+	/**
+	 * Splits consumers in at most <em>workers</em> contiguous groups of similar size. When there
+	 * are at least 2 workers, the VCF writer gets its own stage.
+	 */
+	private static List<List<VariantConsumer>> partition(List<VariantConsumer> consumers, int workers) {
+		final List<List<VariantConsumer>> groups = new ArrayList<>();
+		if (consumers.isEmpty()) {
+			groups.add(List.of());
+			return groups;
+		}
+		List<VariantConsumer> rest = consumers;
+		VariantConsumer writer = null;
+		if (workers > 1 && consumers.size() > 1 && consumers.get(consumers.size() - 1) instanceof VcfWriter) {
+			writer = consumers.get(consumers.size() - 1);
+			rest = consumers.subList(0, consumers.size() - 1);
+			workers -= 1;
+		}
+		final int n = Math.max(1, Math.min(workers, rest.size()));
+		for (int i = 0; i < n; i++) {
+			final int from = i * rest.size() / n;
+			final int to = (i + 1) * rest.size() / n;
+			groups.add(new ArrayList<>(rest.subList(from, to)));
+		}
+		if (writer != null) groups.add(List.of(writer));
+		return groups;
+	}
+
+	/**
+	 * Sends a batch of variants through the pipeline. The batch must not be modified afterwards.
+	 *
+	 * @throws Exception
+	 * 		if any stage has failed
+	 */
+	void accept(List<Variant> batch) throws Exception {
+		checkError();
+		if (!batch.isEmpty()) stages.get(0).input.put(batch);
+	}
+
+	/**
+	 * Waits for every stage to process the pending batches.
+	 *
+	 * @throws Exception
+	 * 		if any stage has failed
+	 */
+	void finish() throws Exception {
+		try {
+			checkError();
+			stages.get(0).input.put(END);
+			for (Future<?> future : futures) future.get();
+			checkError();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Stops every stage, discarding the variants in the queues, and waits until workers are done,
+	 * so consumers can be safely closed.
+	 */
+	void cancel() {
+		executor.shutdownNow();
+		try {
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void checkError() throws Exception {
+		if (error != null) throw error;
+	}
+
+	private class Stage implements Callable<Void> {
+
+		private final List<VariantConsumer> consumers;
+		private final BlockingQueue<List<Variant>> input;
+		private final BlockingQueue<List<Variant>> output;
+
+		private Stage(List<VariantConsumer> consumers, BlockingQueue<List<Variant>> input, BlockingQueue<List<Variant>> output) {
+			this.consumers = consumers;
+			this.input = input;
+			this.output = output;
+		}
+
+		@Override
+		public Void call() throws InterruptedException {
+			while (true) {
+				final List<Variant> variants = input.take();
+				if (variants == END) {
+					if (output != null) output.put(END);
+					return null;
+				}
+				// After a failure, keep draining so upstream stages never block
+				if (error != null) continue;
+				try {
+					for (VariantConsumer consumer : consumers) consumer.acceptBatch(variants);
+				} catch (Throwable e) {
+					if (error == null) error = new Exception(String.format("In batch from %s to %s",
+							variants.get(0), variants.get(variants.size() - 1)), e);
+					continue;
+				}
+				if (output != null) output.put(variants);
+			}
+		}
+	}
+}
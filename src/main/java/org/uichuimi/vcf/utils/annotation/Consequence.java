@@ -0,0 +1,129 @@
+package org.uichuimi.vcf.utils.annotation;
+
+/**
+ * Sequence Ontology consequences, from most severe to least severe, so the ordinal is the severity
+ * rank. Terms are parsed with a perfect hash built when the class is loaded, so parsing is a hash,
+ * a table lookup and one equals.
+ */
+public enum Consequence {
+
+	TRANSCRIPT_ABLATION("transcript_ablation"),
+	SPLICE_ACCEPTOR_VARIANT("splice_acceptor_variant"),
+	SPLICE_DONOR_VARIANT("splice_donor_variant"),
+	STOP_GAINED("stop_gained"),
+	FRAMESHIFT_VARIANT("frameshift_variant"),
+	STOP_LOST("stop_lost"),
+	START_LOST("start_lost"),
+	TRANSCRIPT_AMPLIFICATION("transcript_amplification"),
+	INFRAME_INSERTION("inframe_insertion"),
+	INFRAME_DELETION("inframe_deletion"),
+	MISSENSE_VARIANT("missense_variant"),
+	PROTEIN_ALTERING_VARIANT("protein_altering_variant"),
+	SPLICE_REGION_VARIANT("splice_region_variant"),
+	INCOMPLETE_TERMINAL_CODON_VARIANT("incomplete_terminal_codon_variant"),
+	START_RETAINED_VARIANT("start_retained_variant"),
+	STOP_RETAINED_VARIANT("stop_retained_variant"),
+	SYNONYMOUS_VARIANT("synonymous_variant"),
+	CODING_SEQUENCE_VARIANT("coding_sequence_variant"),
+	MATURE_MIRNA_VARIANT("mature_miRNA_variant"),
+	FIVE_PRIME_UTR_VARIANT("5_prime_UTR_variant"),
+	THREE_PRIME_UTR_VARIANT("3_prime_UTR_variant"),
+	NON_CODING_TRANSCRIPT_EXON_VARIANT("non_coding_transcript_exon_variant"),
+	INTRON_VARIANT("intron_variant"),
+	NMD_TRANSCRIPT_VARIANT("NMD_transcript_variant"),
+	NON_CODING_TRANSCRIPT_VARIANT("non_coding_transcript_variant"),
+	UPSTREAM_GENE_VARIANT("upstream_gene_variant"),
+	DOWNSTREAM_GENE_VARIANT("downstream_gene_variant"),
+	TFBS_ABLATION("TFBS_ablation"),
+	TFBS_AMPLIFICATION("TFBS_amplification"),
+	TF_BINDING_SITE_VARIANT("TF_binding_site_variant"),
+	REGULATORY_REGION_ABLATION("regulatory_region_ablation"),
+	REGULATORY_REGION_AMPLIFICATION("regulatory_region_amplification"),
+	FEATURE_ELONGATION("feature_elongation"),
+	REGULATORY_REGION_VARIANT("regulatory_region_variant"),
+	FEATURE_TRUNCATION("feature_truncation"),
+	INTERGENIC_VARIANT("intergenic_variant");
+
+	private static final Consequence[] VALUES = values();
+	/**
+	 * Consequences by {@link #slot(String, int, int)}, with no collisions for the terms.
+	 */
+	private static final Consequence[] TABLE;
+	private static final int SEED;
+	private static final int SHIFT;
+
+	static {
+		// Smallest table, and first seed, without collisions
+		Consequence[] table = null;
+		int seed = 1;
+		int shift = 32 - 6;
+		while (table == null) {
+			table = fill(new Consequence[1 << 32 - shift], seed, shift);
+			if (table == null && (seed += 2) >= 1 << 16) {
+				seed = 1;
+				shift--;
+			}
+		}
+		TABLE = table;
+		SEED = seed;
+		SHIFT = shift;
+	}
+
+	private final String term;
+
+	Consequence(String term) {
+		this.term = term;
+	}
+
+	private static Consequence[] fill(Consequence[] table, int seed, int shift) {
+		for (Consequence consequence : VALUES) {
+			final int slot = slot(consequence.term, seed, shift);
+			if (table[slot] != null) return null;
+			table[slot] = consequence;
+		}
+		return table;
+	}
+
+	private static int slot(String term, int seed, int shift) {
+		return (term.hashCode() * seed * 0x9E3779B9) >>> shift;
+	}
+
+	/**
+	 * @return the consequence of term, or null if term is not a known consequence
+	 */
+	public static Consequence parse(String term) {
+		if (term == null) return null;
+		final Consequence consequence = TABLE[slot(term, SEED, SHIFT)];
+		return consequence != null && consequence.term.equals(term) ? consequence : null;
+	}
+
+	/**
+	 * Severity rank of term, lower is more severe. Unknown terms rank before any known
+	 * consequence, so they are never hidden by a known one.
+	 *
+	 * @return the ordinal of the consequence of term, or -1 if term is not known
+	 */
+	public static int severity(String term) {
+		final Consequence consequence = parse(term);
+		return consequence == null ? -1 : consequence.ordinal();
+	}
+
+	/**
+	 * @return the Sequence Ontology term, as written in VCF files
+	 */
+	public String getTerm() {
+		return term;
+	}
+
+	/**
+	 * @return true if this is as severe as other, or more
+	 */
+	public boolean isAtLeast(Consequence other) {
+		return ordinal() <= other.ordinal();
+	}
+
+	@Override
+	public String toString() {
+		return term;
+	}
+}
@@ -0,0 +1,115 @@
+package org.uichuimi.vcf.utils.annotation;
+
+import org.uichuimi.vcf.header.ComplexHeaderLine;
+import org.uichuimi.vcf.header.VcfHeader;
+import org.uichuimi.vcf.utils.annotation.consumer.VariantConsumer;
+import org.uichuimi.vcf.utils.exception.VcfException;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+
+/**
+ * Wraps a consumer to measure wall time, CPU time, number of records and number of hits. A
+ * variant is a hit when the consumer sets any of the INFO fields it declares in the header in
+ * {@link #start(VcfHeader)}, or when it changes the identifiers if it declares no INFO fields.
+ */
+class ProfiledConsumer implements VariantConsumer {
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final VariantConsumer consumer;
+	private final AnnotationMetrics.Counters counters;
+	private final boolean cpu = THREADS.isCurrentThreadCpuTimeSupported();
+	private String[] keys = new String[0];
+
+	ProfiledConsumer(VariantConsumer consumer, AnnotationMetrics.Counters counters) {
+		this.consumer = consumer;
+		this.counters = counters;
+	}
+
+	@Override
+	public void start(VcfHeader header) throws VcfException {
+		final Map<String, ComplexHeaderLine> before = new HashMap<>(getInfoLines(header));
+		final long wall = System.nanoTime();
+		final long cpu = cpuTime();
+		try {
+			consumer.start(header);
+		} finally {
+			counters.time(System.nanoTime() - wall, cpuTime() - cpu);
+		}
+		// Keys added or replaced by the consumer
+		final List<String> added = new ArrayList<>();
+		getInfoLines(header).forEach((id, line) -> {
+			if (before.get(id) != line) added.add(id);
+		});
+		keys = added.toArray(new String[0]);
+		counters.setKeys(added);
+	}
+
+	private static Map<String, ComplexHeaderLine> getInfoLines(VcfHeader header) {
+		final Map<String, ComplexHeaderLine> lines = header.getComplexLines().get("INFO");
+		return lines == null ? Collections.emptyMap() : lines;
+	}
+
+	@Override
+	public void accept(Variant variant) {
+		final Object[] snapshot = snapshot(variant);
+		final long wall = System.nanoTime();
+		final long cpu = cpuTime();
+		consumer.accept(variant);
+		counters.time(System.nanoTime() - wall, cpuTime() - cpu);
+		counters.records(1, isHit(variant, snapshot) ? 1 : 0);
+	}
+
+	@Override
+	public void acceptBatch(List<Variant> variants) {
+		final Object[][] snapshots = new Object[variants.size()][];
+		for (int i = 0; i < variants.size(); i++) snapshots[i] = snapshot(variants.get(i));
+		final long wall = System.nanoTime();
+		final long cpu = cpuTime();
+		consumer.acceptBatch(variants);
+		counters.time(System.nanoTime() - wall, cpuTime() - cpu);
+		int hits = 0;
+		for (int i = 0; i < variants.size(); i++)
+			if (isHit(variants.get(i), snapshots[i])) hits++;
+		counters.records(variants.size(), hits);
+	}
+
+	/**
+	 * Copies the values before the consumer runs. Lists are copied, since some consumers set the
+	 * value of an allele into the existing list.
+	 */
+	private Object[] snapshot(Variant variant) {
+		if (keys.length == 0) return new Object[]{new ArrayList<>(variant.getIdentifiers())};
+		final Object[] values = new Object[keys.length];
+		for (int i = 0; i < keys.length; i++) values[i] = copy(variant.getInfo(keys[i]));
+		return values;
+	}
+
+	private static Object copy(Object value) {
+		if (value instanceof List) return new ArrayList<>((List<?>) value);
+		if (value instanceof Object[]) return ((Object[]) value).clone();
+		return value;
+	}
+
+	private boolean isHit(Variant variant, Object[] snapshot) {
+		if (keys.length == 0) return !snapshot[0].equals(variant.getIdentifiers());
+		for (int i = 0; i < keys.length; i++)
+			if (!Objects.deepEquals(variant.getInfo(keys[i]), snapshot[i])) return true;
+		return false;
+	}
+
+	private long cpuTime() {
+		return cpu ? THREADS.getCurrentThreadCpuTime() : 0;
+	}
+
+	@Override
+	public void close() {
+		final long wall = System.nanoTime();
+		final long cpu = cpuTime();
+		consumer.close();
+		counters.time(System.nanoTime() - wall, cpuTime() - cpu);
+	}
+}
@@ -0,0 +1,371 @@
+package org.uichuimi.vcf.utils.annotation;
+
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import org.uichuimi.vcf.header.VcfHeader;
+import org.uichuimi.vcf.io.MultipleVariantReader;
+import org.uichuimi.vcf.utils.annotation.consumer.VariantConsumer;
+import org.uichuimi.vcf.utils.annotation.consumer.VcfWriter;
+import org.uichuimi.vcf.utils.common.ContigTable;
+import org.uichuimi.vcf.utils.common.FileUtils;
+import org.uichuimi.vcf.utils.common.ProgressBar;
+import org.uichuimi.vcf.utils.exception.VcfException;
+import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Annotates the input split in shards. A shard is a chromosome or, for large chromosomes, a region
+ * of <em>chunkSize</em> bases. Every shard is annotated by its own worker, with its own consumers
+ * and readers, into a temporary BGZF file. Finally, shards are concatenated in karyotype order into
+ * the output file, which is a valid BGZF file with the same content as the single threaded run.
+ * <p>
+ * Every shard opens its own readers, so resources must be able to start reading at the shard:
+ * tabix/CSI indexed files, databases or in-memory slices. A single VCF resource read as a stream
+ * would be read from the start by every shard, and per-chromosome files from the start of the
+ * chromosome by every chunk, so they can only be used with whole chromosomes.
+ */
+class ShardedAnnotation {
+
+	private static final PrintStream NO_LOG = new PrintStream(OutputStream.nullOutputStream());
+	private static final byte[] EOF = BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK;
+	/**
+	 * Pieces of the input are temporary, so they favour speed over size.
+	 */
+	private static final int PIECE_COMPRESSION_LEVEL = 1;
+
+	private final List<File> inputs;
+	private final File output;
+	private final Chromosome.Namespace namespace;
+	private final int threads;
+	private final long chunkSize;
+	private final int batchSize;
+	private final int compressionLevel;
+	private final AnnotatorFactory factory;
+	private final Consumer<VcfHeader> headerDecorator;
+	private final AnnotationMetrics metrics;
+
+	/**
+	 * @param inputs
+	 * 		input VCF files
+	 * @param output
+	 * 		output file, must be a BGZF file (.vcf.gz)
+	 * @param namespace
+	 * 		namespace of input contigs
+	 * @param threads
+	 * 		number of shards annotated at the same time
+	 * @param chunkSize
+	 * 		maximum number of bases in a shard, 0 to use whole chromosomes
+	 * @param batchSize
+	 * 		number of variants sent together to consumers
+	 * @param compressionLevel
+	 * 		compression level of the output
+	 * @param factory
+	 * 		creates a new set of annotators for each shard
+	 * @param headerDecorator
+	 * 		applied to the header of each shard before starting consumers
+	 * @param metrics
+	 * 		if not null, consumers of every shard are profiled into it
+	 */
+	ShardedAnnotation(List<File> inputs, File output, Chromosome.Namespace namespace, int threads, long chunkSize, int batchSize, int compressionLevel, AnnotatorFactory factory, Consumer<VcfHeader> headerDecorator, AnnotationMetrics metrics) {
+		this.inputs = inputs;
+		this.output = output;
+		this.namespace = namespace;
+		this.threads = threads;
+		this.chunkSize = chunkSize;
+		this.batchSize = batchSize;
+		this.compressionLevel = compressionLevel;
+		this.factory = factory;
+		this.headerDecorator = headerDecorator;
+		this.metrics = metrics;
+	}
+
+	void run(PrintStream log, boolean showProgress) throws Exception {
+		final File parent = output.getAbsoluteFile().getParentFile();
+		final File workDir = Files.createTempDirectory(parent.toPath(), ".shards-").toFile();
+		try {
+			log.println("Splitting input into shards");
+			final List<Shard> shards = split(workDir);
+			log.printf("Annotating %d shards with %d threads%n", shards.size(), threads);
+			annotate(shards, log, showProgress);
+			log.println("Concatenating shards into " + output);
+			concatenate(shards);
+		} finally {
+			delete(workDir);
+		}
+	}
+
+	/**
+	 * Copies every data line of the inputs into the file of its shard. Each shard gets one file per
+	 * input, with the complete header of the input, so merging the files of a shard produces the
+	 * same header and samples as merging the inputs. Files are BGZF compressed, so the copy of the
+	 * input takes about its compressed size.
+	 */
+	private List<Shard> split(File workDir) throws IOException {
+		final Map<String, Shard> shards = new LinkedHashMap<>();
+		final List<List<String>> headers = new ArrayList<>();
+		for (int i = 0; i < inputs.size(); i++) {
+			final List<String> header = new ArrayList<>();
+			headers.add(header);
+			try (BufferedReader reader = FileUtils.getBufferedReader(inputs.get(i))) {
+				Shard current = null;
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.startsWith("#")) {
+						header.add(line);
+						continue;
+					}
+					final int tab = line.indexOf('\t');
+					final String chrom = line.substring(0, tab);
+					final long chunk = chunkSize > 0 ? (getPosition(line, tab) - 1) / chunkSize : 0;
+					if (current == null || current.chunk != chunk || !current.chrom.equals(chrom)) {
+						// Keep only one file open, sorted inputs never come back to a shard
+						if (current != null) current.closeWriter();
+						current = shards.computeIfAbsent(chrom + ":" + chunk, key -> new Shard(chrom, chunk, shards.size(), workDir));
+						current.open(i, header);
+					}
+					current.write(line);
+				}
+			} finally {
+				for (Shard shard : shards.values()) shard.closeWriter();
+			}
+		}
+		// Inputs without variants in a shard still contribute their samples
+		for (Shard shard : shards.values())
+			for (int i = 0; i < inputs.size(); i++)
+				if (shard.pieces[i] == null) {
+					shard.open(i, headers.get(i));
+					shard.closeWriter();
+				}
+		final List<Shard> sorted = new ArrayList<>(shards.values());
+		sorted.sort(Comparator.comparingInt((Shard shard) -> shard.rank).thenComparingInt(shard -> shard.appearance));
+		return sorted;
+	}
+
+	private static long getPosition(String line, int tab) {
+		int end = line.indexOf('\t', tab + 1);
+		if (end < 0) end = line.length();
+		return Long.parseLong(line.substring(tab + 1, end));
+	}
+
+	private void annotate(List<Shard> shards, PrintStream log, boolean showProgress) throws Exception {
+		final AtomicInteger counter = new AtomicInteger();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			final Thread thread = new Thread(runnable, "annotate-shard-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		final ProgressBar bar = new ProgressBar(log);
+		try {
+			final CompletionService<Shard> service = new ExecutorCompletionService<>(executor);
+			for (int i = 0; i < shards.size(); i++) {
+				final Shard shard = shards.get(i);
+				final boolean first = i == 0;
+				service.submit(() -> {
+					annotate(shard, first, first ? log : NO_LOG);
+					return shard;
+				});
+			}
+			if (showProgress) {
+				bar.start();
+				bar.update(0.0, "Annotating shards...");
+			}
+			for (int i = 0; i < shards.size(); i++) {
+				final Shard shard = service.take().get();
+				if (showProgress) bar.update((i + 1) / (double) shards.size(), String.format("%d/%d shards (%s)", i + 1, shards.size(), shard));
+			}
+			if (showProgress) bar.stop();
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		} finally {
+			executor.shutdownNow();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+	private void annotate(Shard shard, boolean first, PrintStream log) throws Exception {
+		List<VariantConsumer> consumers = new ArrayList<>();
+		Variant variant = null;
+		try (MultipleVariantReader reader = MultipleVariantReader.getInstance(Arrays.asList(shard.pieces), namespace)) {
+			consumers.addAll(factory.create(log));
+			final OutputStream out = FileUtils.getOutputStream(shard.output, compressionLevel);
+			consumers.add(new VcfWriter(first ? out : new HeaderlessOutputStream(out), namespace));
+			if (metrics != null) consumers = metrics.wrap(consumers);
+			headerDecorator.accept(reader.getHeader());
+			for (VariantConsumer consumer : consumers) consumer.start(reader.getHeader());
+			final List<Variant> batch = new ArrayList<>(batchSize);
+			while (reader.hasNext()) {
+				if (Thread.interrupted()) throw new InterruptedException();
+				variant = reader.nextMerged();
+				batch.add(variant);
+				if (batch.size() >= batchSize) {
+					apply(batch, consumers);
+					batch.clear();
+				}
+			}
+			apply(batch, consumers);
+		} catch (VcfException e) {
+			throw new Exception(e.getMessage(), e);
+		} catch (Exception e) {
+			throw new Exception(String.format("At shard %s, variant %s", shard, variant), e);
+		} finally {
+			consumers.forEach(VariantConsumer::close);
+		}
+	}
+
+	private void apply(List<Variant> batch, List<VariantConsumer> consumers) {
+		if (metrics != null) metrics.records(batch.size());
+		for (VariantConsumer consumer : consumers) consumer.acceptBatch(batch);
+	}
+
+	/**
+	 * BGZF files can be concatenated as they are, but only the last empty block (EOF marker) must
+	 * be kept.
+	 */
+	private void concatenate(List<Shard> shards) throws IOException {
+		final byte[] buffer = new byte[1 << 16];
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output), 1 << 16)) {
+			for (Shard shard : shards) {
+				final long length = endsWithEof(shard.output)
+						? shard.output.length() - EOF.length
+						: shard.output.length();
+				try (InputStream in = new FileInputStream(shard.output)) {
+					long remaining = length;
+					while (remaining > 0) {
+						final int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+						if (read < 0) throw new EOFException("Unexpected end of " + shard.output);
+						out.write(buffer, 0, read);
+						remaining -= read;
+					}
+				}
+			}
+			out.write(EOF);
+		}
+	}
+
+	private static boolean endsWithEof(File file) throws IOException {
+		if (file.length() < EOF.length) return false;
+		final byte[] tail = new byte[EOF.length];
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			raf.seek(file.length() - EOF.length);
+			raf.readFully(tail);
+		}
+		return Arrays.equals(tail, EOF);
+	}
+
+	private static void delete(File file) {
+		final File[] files = file.listFiles();
+		if (files != null) for (File child : files) delete(child);
+		if (!file.delete()) file.deleteOnExit();
+	}
+
+	private static int rank(String chrom) {
+		final int index = ContigTable.indexOf(chrom);
+		return ContigTable.isKnown(index) ? index : Integer.MAX_VALUE;
+	}
+
+	@FunctionalInterface
+	interface AnnotatorFactory {
+		List<VariantConsumer> create(PrintStream log) throws IOException;
+	}
+
+	private class Shard {
+
+		private final String chrom;
+		private final long chunk;
+		private final int appearance;
+		private final int rank;
+		private final File[] pieces;
+		private final File output;
+		private BufferedWriter writer;
+
+		private Shard(String chrom, long chunk, int appearance, File workDir) {
+			this.chrom = chrom;
+			this.chunk = chunk;
+			this.appearance = appearance;
+			this.rank = rank(chrom);
+			this.pieces = new File[inputs.size()];
+			this.output = new File(workDir, String.format("shard-%d.vcf.gz", appearance));
+		}
+
+		/**
+		 * Opens the file of this shard for the given input. Header is written when the file is
+		 * created.
+		 */
+		private void open(int input, List<String> header) throws IOException {
+			if (pieces[input] != null) {
+				writer = createWriter(pieces[input], true);
+				return;
+			}
+			pieces[input] = new File(output.getParentFile(), String.format("shard-%d-%d.vcf.gz", appearance, input));
+			writer = createWriter(pieces[input], false);
+			for (String line : header) {
+				writer.write(line);
+				writer.newLine();
+			}
+		}
+
+		private BufferedWriter createWriter(File file, boolean append) throws IOException {
+			return new BufferedWriter(new OutputStreamWriter(FileUtils.getOutputStream(file, PIECE_COMPRESSION_LEVEL, append)), 1 << 16);
+		}
+
+		private void write(String line) throws IOException {
+			writer.write(line);
+			writer.newLine();
+		}
+
+		private void closeWriter() throws IOException {
+			if (writer != null) {
+				writer.close();
+				writer = null;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return chunkSize > 0
+					? String.format("%s:%d-%d", chrom, chunk * chunkSize + 1, (chunk + 1) * chunkSize)
+					: chrom;
+		}
+	}
+
+	/**
+	 * Discards the header lines (starting with #) at the beginning of the stream.
+	 */
+	private static class HeaderlessOutputStream extends FilterOutputStream {
+
+		private boolean header = true;
+		private boolean lineStart = true;
+
+		private HeaderlessOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (!header) {
+				out.write(b);
+				return;
+			}
+			if (lineStart && b != '#') {
+				header = false;
+				out.write(b);
+				return;
+			}
+			lineStart = b == '\n';
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			int i = off;
+			final int end = off + len;
+			while (header && i < end) write(b[i++]);
+			if (i < end) out.write(b, i, end - i);
+		}
+	}
+}
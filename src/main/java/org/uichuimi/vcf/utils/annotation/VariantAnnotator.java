@@ -8,11 +8,18 @@ import org.uichuimi.vcf.utils.annotation.consumer.*;
 import org.uichuimi.vcf.utils.annotation.consumer.dbsnp.DbsnpAnnotator;
 import org.uichuimi.vcf.utils.annotation.consumer.neo4j.Neo4jTablesWriter;
 import org.uichuimi.vcf.utils.annotation.consumer.snpeff.SnpEffExtractor;
+import org.uichuimi.vcf.utils.annotation.consumer.vep.CsqExtractor;
 import org.uichuimi.vcf.utils.annotation.consumer.vep.VepAnnotator;
 import org.uichuimi.vcf.utils.annotation.gff.GeneMap;
+import org.uichuimi.vcf.utils.common.BgzfIndex;
+import org.uichuimi.vcf.utils.common.FileUtils;
 import org.uichuimi.vcf.utils.common.GenomeProgress;
 import org.uichuimi.vcf.utils.common.GenomicProgressBar;
+import org.uichuimi.vcf.utils.common.RegionSlice;
+import org.uichuimi.vcf.utils.common.Regions;
+import org.uichuimi.vcf.utils.dbsnp.DbsnpIndex;
 import org.uichuimi.vcf.utils.exception.VcfException;
+import org.uichuimi.vcf.utils.freqdb.FrequencyDatabase;
 import org.uichuimi.vcf.variant.Chromosome;
 import org.uichuimi.vcf.variant.Coordinate;
 import org.uichuimi.vcf.variant.Variant;
@@ -21,10 +28,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Locale;
+import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -40,6 +48,9 @@ import static picocli.CommandLine.Option;
 public
 class VariantAnnotator implements Callable<Void> {
 
+	private static final String VEP_SLICE = "VEP";
+	private static final String DBSNP_SLICE = "dbSNP";
+
 	@Option(names = {"--input", "-i"},
 			arity = "1..*",
 			description = "Input VCF files (can be compressed with gz or zip)",
@@ -52,7 +63,7 @@ class VariantAnnotator implements Callable<Void> {
 	private Chromosome.Namespace namespace;
 
 	@Option(names = {"--vep"},
-			description = "VEP directory with homo_sapiens_incl_consequences-chr*.vcf.gz files")
+			description = "VEP directory with homo_sapiens_incl_consequences-chr*.vcf.gz files, or a store created with build-vep-index")
 	private File vep;
 
 	@Option(names = {"--1000G", "--1kG"},
@@ -83,20 +94,73 @@ class VariantAnnotator implements Callable<Void> {
 			description = "File with ExAC frequencies (AC_[AFR|AMR|EAS|FIN|NFE|OTH|SAS] + AN_Adj) from Ensembl (ExAC.0.3.GRCh38.vcf.gz)")
 	private File exac;
 
+	@Option(names = {"--freqdb"},
+			description = "Directory with a frequency database created with build-freqdb. Sources found in the database are read from it, unless they are also given as VCF.")
+	private File freqdb;
+
+	@Option(names = {"--typed-frequencies"},
+			description = "Write frequencies as a Float field per population (GG_AF_afr, GG_AF_amr...) instead of a String field per source with all the populations (GG_AF).")
+	private boolean typedFrequencies;
+
+	@Option(names = {"--regions"},
+			description = "BED file with the target regions of the input (exome, panel...), with contigs in --namespace. Records of 1000G, gnomAD, ExAC, dbSNP and VEP inside the regions are loaded in memory at startup, and variants are annotated by lookup instead of reading the whole resources. Variants outside the regions are not annotated with them.")
+	private File regions;
+
 	@Option(names = {"--compute-stats"}, description = "Whether to compute DP, AN, AC and AF again.")
 	private boolean compute;
 
 	@Option(names = {"--snpeff"}, description = "Whether the input file or stream contains snpeff ANN. In this case extract consequence info from this INFO.")
 	private Boolean snpeff;
 
-	@Option(names = {"--dbsnp"}, description = "Dbsnp file from NCBI (ftp://ftp.ncbi.nih.gov/snp/latest_release/VCF/GCF_000001405.38.gz)")
+	@Option(names = {"--csq"}, description = "Whether the input file or stream contains Ensembl VEP CSQ. In this case extract consequence info from this INFO, without reading --vep.")
+	private Boolean csq;
+
+	@Option(names = {"--dbsnp"}, description = "Dbsnp file from NCBI (ftp://ftp.ncbi.nih.gov/snp/latest_release/VCF/GCF_000001405.38.gz), or an index created with build-dbsnp-index, which also matches alleles")
 	private File dbsnp;
 
 	@Option(names = {"-a", "--annotations"}, description = "VCF file with annotations to add FORMAT -> filename=COL1,COL2 or filename=COL1:ALIAS,COL2")
 	private List<String> annotations;
 
+	@Option(names = {"--threads"},
+			description = "Number of threads. With more than 1, reading, annotation and writing run as a pipeline on separate threads. Output is identical to the single threaded run.",
+			defaultValue = "1")
+	private int threads = 1;
+
+	@Option(names = {"--batch-size"},
+			description = "Number of variants sent together to each annotator.",
+			defaultValue = "4096")
+	private int batchSize = 4096;
+
+	@Option(names = {"--shard"},
+			description = "Split the input by chromosome and annotate each chromosome with its own readers, using --threads workers. Output must be a .vcf.gz file. Every shard opens its own readers, so resources must be tabix/CSI indexed files, build-freqdb, build-dbsnp-index or build-vep-index databases, or be loaded with --regions. Per-chromosome directories, --vep included, need --chunk-size 0. --annotations is not supported.")
+	private boolean shard;
+
+	@Option(names = {"--chunk-size"},
+			description = "With --shard, maximum number of bases of each shard, so large chromosomes are split in several regions. 0 to use whole chromosomes.",
+			defaultValue = "100000000")
+	private long chunkSize = 100_000_000;
+
+	@Option(names = {"--compression-level"},
+			description = "Compression level (0-9) of gzipped outputs. Use 1 for intermediate files and higher levels for final ones.",
+			defaultValue = "" + FileUtils.DEFAULT_COMPRESSION_LEVEL)
+	private int compressionLevel = FileUtils.DEFAULT_COMPRESSION_LEVEL;
+
+	@Option(names = {"--metrics"},
+			description = "Write a JSON report with wall time, CPU time, records and hits of each consumer into this file.")
+	private File metrics;
+
+	@Option(names = {"--metrics-interval"},
+			description = "With --metrics, also write the report every this number of seconds while running.",
+			defaultValue = "0")
+	private int metricsInterval;
+
 	private GeneMap geneMap;
 	private OutputStream outputStream;
+	private AnnotationMetrics profiler;
+	/**
+	 * Resources loaded with --regions, by key. Shared by all the annotators.
+	 */
+	private Map<String, RegionSlice> slices = Map.of();
 
 	public VariantAnnotator() {
 	}
@@ -142,6 +206,21 @@ class VariantAnnotator implements Callable<Void> {
 		return this;
 	}
 
+	public VariantAnnotator setFreqdb(File freqdb) {
+		this.freqdb = freqdb;
+		return this;
+	}
+
+	public VariantAnnotator setTypedFrequencies(boolean typedFrequencies) {
+		this.typedFrequencies = typedFrequencies;
+		return this;
+	}
+
+	public VariantAnnotator setRegions(File regions) {
+		this.regions = regions;
+		return this;
+	}
+
 	public VariantAnnotator setCompute(boolean compute) {
 		this.compute = compute;
 		return this;
@@ -162,11 +241,51 @@ class VariantAnnotator implements Callable<Void> {
 		return this;
 	}
 
+	public VariantAnnotator setCsq(Boolean csq) {
+		this.csq = csq;
+		return this;
+	}
+
 	public VariantAnnotator setOutputStream(OutputStream outputStream) {
 		this.outputStream = outputStream;
 		return this;
 	}
 
+	public VariantAnnotator setThreads(int threads) {
+		this.threads = threads;
+		return this;
+	}
+
+	public VariantAnnotator setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	public VariantAnnotator setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+		return this;
+	}
+
+	public VariantAnnotator setMetrics(File metrics) {
+		this.metrics = metrics;
+		return this;
+	}
+
+	public VariantAnnotator setMetricsInterval(int metricsInterval) {
+		this.metricsInterval = metricsInterval;
+		return this;
+	}
+
+	public VariantAnnotator setShard(boolean shard) {
+		this.shard = shard;
+		return this;
+	}
+
+	public VariantAnnotator setChunkSize(long chunkSize) {
+		this.chunkSize = chunkSize;
+		return this;
+	}
+
 	@Override
 	public Void call() throws Exception {
 		Locale.setDefault(Locale.ENGLISH);
@@ -182,69 +301,65 @@ class VariantAnnotator implements Callable<Void> {
 			log = System.err;
 			showProgress = false;
 		}
+		if (compressionLevel < 0 || compressionLevel > 9) {
+			log.println("ERROR: --compression-level must be between 0 and 9");
+			return null;
+		}
+		if (freqdb != null && !freqdb.isDirectory()) {
+			log.println("ERROR: --freqdb must be a directory created with build-freqdb");
+			return null;
+		}
+		if (regions != null) {
+			if (!regions.isFile()) {
+				log.println("ERROR: --regions must be a BED file");
+				return null;
+			}
+			slices = loadSlices(log);
+		}
+		if (metrics != null) {
+			profiler = new AnnotationMetrics(metrics);
+			profiler.schedule(metricsInterval);
+		}
+		if (shard) {
+			if (output == null || !output.getName().endsWith(".vcf.gz") || neo4j != null) {
+				log.println("ERROR: --shard requires an --output file ending in .vcf.gz and is not compatible with --neo4j");
+				return null;
+			}
+			final List<String> streamed = getStreamedResources();
+			if (!streamed.isEmpty()) {
+				log.printf("ERROR: --shard would read %s from the start in every shard. Use tabix/CSI indexed files, build-freqdb, build-dbsnp-index, build-vep-index or --regions, or per-chromosome directories with --chunk-size 0%n", String.join(", ", streamed));
+				return null;
+			}
+			try {
+				new ShardedAnnotation(inputs, output, namespace, Math.max(1, threads), chunkSize, Math.max(1, batchSize), compressionLevel, this::createAnnotators, this::writeCommandLine, profiler)
+						.run(log, showProgress);
+			} finally {
+				if (profiler != null) profiler.finish();
+			}
+			return null;
+		}
 		final List<VariantConsumer> consumers = new ArrayList<>();
 		final GenomicProgressBar bar = new GenomicProgressBar(log);
 		int line = 0;
 		Variant variant = null;
+		AnnotationPipeline pipeline = null;
+		final int batchSize = Math.max(1, this.batchSize);
+		List<Variant> batch = new ArrayList<>(batchSize);
 		try (final MultipleVariantReader reader = MultipleVariantReader.getInstance(inputs, namespace)) {
 			final List<String> samples = reader.getHeader().getSamples().stream().sorted().distinct().collect(Collectors.toList());
 			log.printf("Found %d samples (%s)%n", samples.size(), String.join(", ", samples));
 			// Create consumers depending on the options
 			log.println("Adding consumers:");
 			writeCommandLine(reader.getHeader());
-			// 1. Additive consumers
-			if (kGenomes != null) {
-				log.println(" - 1000G frequencies from " + kGenomes);
-				consumers.add(new KGenomesAnnotator(kGenomes));
-			}
-			if (genes != null) {
-				log.println(" - Reading genes from " + genes);
-				geneMap = new GeneMap(genes);
-			}
-			if (vep != null && genes != null) {
-				log.println(" - Variant effect predictions from " + vep);
-				consumers.add(new VepAnnotator(vep, geneMap));
-			}
-			if (snpeff != null && snpeff) {
-				log.println(" - Extracting consequences from ANN tag");
-				consumers.add(new SnpEffExtractor(geneMap));
-			}
-			if (gnomadGenomes != null) {
-				log.println(" - Adding gnomAD genomes frequencies from " + gnomadGenomes);
-				consumers.add(new GnomadGenomeAnnotator(gnomadGenomes));
-			}
-			if (gnomadExomes != null) {
-				log.println(" - Adding gnomAD exomes frequencies from " + gnomadExomes);
-				consumers.add(new GnomadExomeAnnotator(gnomadExomes));
-			}
-			if (exac != null) {
-				log.println(" - Adding ExAC frequencies from " + exac);
-				consumers.add(new ExACAnnotator(exac));
-			}
-			if (dbsnp != null) {
-				log.printf(" - Adding rs identifier from dbSNP (%s)%n", dbsnp);
-				consumers.add(new DbsnpAnnotator(dbsnp));
-			}
-			if (annotations != null) {
-				for (String annotation : annotations) {
-					final VcfAnnotator vcfAnnotator = createVcfAnnotator(log, annotation);
-					consumers.add(vcfAnnotator);
-				}
-
-			}
-			// 2. Modifier consumers
-			if (compute) {
-				log.println(" - DP and AN (global) and AF and AC (per allele) will be recomputed");
-				consumers.add(new StatsCalculator());
-			}
+			consumers.addAll(createAnnotators(log));
 			// 3. Output consumers
 			if (neo4j != null) {
 				log.println(" - Tables for neo4j into " + neo4j);
-				consumers.add(new Neo4jTablesWriter(neo4j));
+				consumers.add(new Neo4jTablesWriter(neo4j, compressionLevel));
 			}
 			if (output != null) {
 				log.println(" - Export VCF into " + output);
-				consumers.add(new VcfWriter(output, namespace));
+				consumers.add(new VcfWriter(output, namespace, compressionLevel));
 			} else if (outputStream != null) {
 				log.println(" - Export VCF to custom output stream");
 				consumers.add(new VcfWriter(outputStream, namespace));
@@ -256,6 +371,12 @@ class VariantAnnotator implements Callable<Void> {
 				}
 			}
 
+			if (profiler != null) {
+				final List<VariantConsumer> profiled = profiler.wrap(consumers);
+				consumers.clear();
+				consumers.addAll(profiled);
+			}
+
 			// Initialize consumers
 			if (showProgress) {
 				bar.start();
@@ -269,14 +390,19 @@ class VariantAnnotator implements Callable<Void> {
 				}
 			});
 
+			if (threads > 1) {
+				log.printf("Using %d threads%n", threads);
+				pipeline = new AnnotationPipeline(consumers, threads - 1);
+			}
+
 			// Iterate over input
 			while (reader.hasNext()) {
 				variant = reader.nextMerged();
 				final Coordinate coordinate = variant.getCoordinate();
 
 				// Apply every consumer
-				for (VariantConsumer consumer : consumers)
-					consumer.accept(variant);
+				batch.add(variant);
+				if (batch.size() >= batchSize) batch = apply(batch, consumers, pipeline);
 
 				if (++line % 1000 == 0 && showProgress) {
 					final double progress = GenomeProgress.getProgress(variant.getCoordinate());
@@ -286,16 +412,23 @@ class VariantAnnotator implements Callable<Void> {
 					bar.update(progress, message);
 				}
 			}
+			apply(batch, consumers, pipeline);
+			if (pipeline != null) {
+				pipeline.finish();
+				pipeline = null;
+			}
 		} catch (InterruptedException e) {
 			log.println("User canceled");
 			Thread.currentThread().interrupt();
 		} catch (Exception e) {
 			throw new Exception(String.format("At line %d, variant %s", line, variant), e);
 		} finally {
+			// Stop workers before closing consumers
+			if (pipeline != null) pipeline.cancel();
 			// Close consumers
 			if (showProgress) bar.update(0.99, "Closing consumers...");
 			consumers.forEach(VariantConsumer::close);
-
+			if (profiler != null) profiler.finish();
 		}
 		if (showProgress) {
 			bar.update(1.0, "Completed");
@@ -307,22 +440,223 @@ class VariantAnnotator implements Callable<Void> {
 		return null;
 	}
 
+	/**
+	 * Sends a batch to every consumer, or to the pipeline if present.
+	 *
+	 * @return an empty list for the next batch
+	 */
+	private List<Variant> apply(List<Variant> batch, List<VariantConsumer> consumers, AnnotationPipeline pipeline) throws Exception {
+		if (profiler != null) profiler.records(batch.size());
+		if (pipeline != null) {
+			// The pipeline owns the batch now
+			pipeline.accept(batch);
+			return new ArrayList<>(batch.size());
+		}
+		for (VariantConsumer consumer : consumers) consumer.acceptBatch(batch);
+		batch.clear();
+		return batch;
+	}
+
+	/**
+	 * Creates a new instance of every additive and modifier consumer, in the order they must be
+	 * applied. Each call opens its own readers, so the returned consumers can be used by a single
+	 * thread.
+	 */
+	private List<VariantConsumer> createAnnotators(PrintStream log) throws IOException {
+		final List<VariantConsumer> annotators = new ArrayList<>();
+		// 1. Additive consumers
+		// 1000G is logged and declared first, and the rest of frequencies after consequences, so
+		// headers and log lines keep the same order as with one consumer per source
+		final FrequencyAnnotator kGenomesAnnotator = createKGenomesAnnotator(log);
+		if (genes != null) {
+			log.println(" - Reading genes from " + genes);
+			loadGeneMap();
+		}
+		if (vep != null && genes != null) {
+			log.println(" - Variant effect predictions from " + vep);
+			annotators.add(slices.containsKey(VEP_SLICE) ? new VepAnnotator(slices.get(VEP_SLICE), geneMap) : new VepAnnotator(vep, geneMap));
+		}
+		if (snpeff != null && snpeff) {
+			log.println(" - Extracting consequences from ANN tag");
+			annotators.add(new SnpEffExtractor(geneMap));
+		}
+		if (csq != null && csq) {
+			log.println(" - Extracting consequences from CSQ tag");
+			annotators.add(new CsqExtractor());
+		}
+		final List<FrequencyAnnotator> frequencies = new ArrayList<>();
+		if (kGenomesAnnotator != null) frequencies.add(kGenomesAnnotator);
+		frequencies.addAll(createFrequencyAnnotators(log));
+		for (FrequencyAnnotator annotator : frequencies) annotator.setTyped(typedFrequencies);
+		// All the sources are read together, instead of one consumer each
+		if (frequencies.size() == 1) {
+			if (kGenomesAnnotator != null) annotators.add(0, kGenomesAnnotator);
+			else annotators.add(frequencies.get(0));
+		} else if (frequencies.size() > 1) {
+			final MultipleFrequencyAnnotator merged = new MultipleFrequencyAnnotator(frequencies);
+			if (kGenomesAnnotator != null) annotators.add(0, merged.declare(kGenomesAnnotator));
+			annotators.add(merged);
+		}
+		if (dbsnp != null) {
+			log.printf(" - Adding rs identifier from dbSNP (%s)%n", dbsnp);
+			annotators.add(createDbsnpAnnotator());
+		}
+		// All the files are read by the same consumer
+		if (annotations != null) annotators.add(createVcfAnnotator(log));
+		// 2. Modifier consumers
+		if (compute) {
+			log.println(" - DP and AN (global) and AF and AC (per allele) will be recomputed");
+			annotators.add(new StatsCalculator());
+		}
+		return annotators;
+	}
+
+	private FrequencyAnnotator createKGenomesAnnotator(PrintStream log) {
+		if (kGenomes != null) {
+			log.println(" - 1000G frequencies from " + kGenomes);
+			return slices.containsKey(KGenomesAnnotator.KEY) ? new KGenomesAnnotator(slices.get(KGenomesAnnotator.KEY)) : new KGenomesAnnotator(kGenomes);
+		} else if (hasFrequencyDatabase(KGenomesAnnotator.KEY)) {
+			log.println(" - 1000G frequencies from " + freqdb);
+			return new KGenomesAnnotator(openFrequencyDatabase(KGenomesAnnotator.KEY, KGenomesAnnotator.POPULATIONS));
+		}
+		return null;
+	}
+
+	/**
+	 * @return the frequency annotators of gnomAD and ExAC, in this order
+	 */
+	private List<FrequencyAnnotator> createFrequencyAnnotators(PrintStream log) {
+		final List<FrequencyAnnotator> frequencies = new ArrayList<>();
+		if (gnomadGenomes != null) {
+			log.println(" - Adding gnomAD genomes frequencies from " + gnomadGenomes);
+			frequencies.add(slices.containsKey(GnomadGenomeAnnotator.KEY) ? new GnomadGenomeAnnotator(slices.get(GnomadGenomeAnnotator.KEY)) : new GnomadGenomeAnnotator(gnomadGenomes));
+		} else if (hasFrequencyDatabase(GnomadGenomeAnnotator.KEY)) {
+			log.println(" - Adding gnomAD genomes frequencies from " + freqdb);
+			frequencies.add(new GnomadGenomeAnnotator(openFrequencyDatabase(GnomadGenomeAnnotator.KEY, GnomadGenomeAnnotator.POPULATIONS)));
+		}
+		if (gnomadExomes != null) {
+			log.println(" - Adding gnomAD exomes frequencies from " + gnomadExomes);
+			frequencies.add(slices.containsKey(GnomadExomeAnnotator.KEY) ? new GnomadExomeAnnotator(slices.get(GnomadExomeAnnotator.KEY)) : new GnomadExomeAnnotator(gnomadExomes));
+		} else if (hasFrequencyDatabase(GnomadExomeAnnotator.KEY)) {
+			log.println(" - Adding gnomAD exomes frequencies from " + freqdb);
+			frequencies.add(new GnomadExomeAnnotator(openFrequencyDatabase(GnomadExomeAnnotator.KEY, GnomadExomeAnnotator.POPULATIONS)));
+		}
+		if (exac != null) {
+			log.println(" - Adding ExAC frequencies from " + exac);
+			frequencies.add(slices.containsKey(ExACAnnotator.KEY) ? new ExACAnnotator(slices.get(ExACAnnotator.KEY)) : new ExACAnnotator(exac));
+		} else if (hasFrequencyDatabase(ExACAnnotator.KEY)) {
+			log.println(" - Adding ExAC frequencies from " + freqdb);
+			frequencies.add(new ExACAnnotator(openFrequencyDatabase(ExACAnnotator.KEY, ExACAnnotator.POPULATIONS)));
+		}
+		return frequencies;
+	}
+
+	/**
+	 * Loads the records of every VCF resource inside --regions, each resource on its own thread.
+	 */
+	private Map<String, RegionSlice> loadSlices(PrintStream log) throws Exception {
+		final Regions bed = Regions.read(regions, namespace);
+		log.printf("Loading resources in %,d regions from %s%n", bed.size(), regions);
+		final Map<String, Callable<RegionSlice>> tasks = new LinkedHashMap<>();
+		if (kGenomes != null) tasks.put(KGenomesAnnotator.KEY, () -> slice(new KGenomesAnnotator(kGenomes), bed));
+		if (gnomadGenomes != null) tasks.put(GnomadGenomeAnnotator.KEY, () -> slice(new GnomadGenomeAnnotator(gnomadGenomes), bed));
+		if (gnomadExomes != null) tasks.put(GnomadExomeAnnotator.KEY, () -> slice(new GnomadExomeAnnotator(gnomadExomes), bed));
+		if (exac != null) tasks.put(ExACAnnotator.KEY, () -> slice(new ExACAnnotator(exac), bed));
+		// Indexes are already mapped lookups
+		if (vep != null && genes != null && !VepAnnotator.isStore(vep)) tasks.put(VEP_SLICE, () -> VepAnnotator.slice(vep, bed));
+		if (dbsnp != null && !DbsnpIndex.isIndex(dbsnp)) tasks.put(DBSNP_SLICE, () -> DbsnpAnnotator.slice(dbsnp, bed));
+		if (tasks.isEmpty()) return Map.of();
+		final ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+		try {
+			final Map<String, Future<RegionSlice>> futures = new LinkedHashMap<>();
+			tasks.forEach((key, task) -> futures.put(key, executor.submit(task)));
+			final Map<String, RegionSlice> slices = new HashMap<>();
+			for (Map.Entry<String, Future<RegionSlice>> entry : futures.entrySet()) {
+				final RegionSlice slice = entry.getValue().get();
+				log.printf(" - %s: %,d positions%n", entry.getKey(), slice.size());
+				slices.put(entry.getKey(), slice);
+			}
+			return slices;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Resources that cannot start reading at a given position are read from the beginning, once
+	 * per shard. Single files are read from the start of the file, and per-chromosome files from
+	 * the start of the chromosome, so they can only be used when shards are whole chromosomes.
+	 *
+	 * @return the options of these resources
+	 */
+	private List<String> getStreamedResources() throws IOException {
+		final List<String> streamed = new ArrayList<>();
+		if (isStreamed(kGenomes, KGenomesAnnotator.KEY)) streamed.add("--1000G");
+		if (isStreamed(gnomadGenomes, GnomadGenomeAnnotator.KEY)) streamed.add("--gnomadGenomes");
+		if (isStreamed(gnomadExomes, GnomadExomeAnnotator.KEY)) streamed.add("--gnomadExomes");
+		if (isStreamed(exac, ExACAnnotator.KEY)) streamed.add("--exac");
+		if (vep != null && genes != null && chunkSize > 0 && !slices.containsKey(VEP_SLICE) && !VepAnnotator.isStore(vep))
+			streamed.add("--vep");
+		if (dbsnp != null && !slices.containsKey(DBSNP_SLICE) && !DbsnpIndex.isIndex(dbsnp)) streamed.add("--dbsnp");
+		if (annotations != null) streamed.add("--annotations");
+		return streamed;
+	}
+
+	private boolean isStreamed(File resource, String key) throws IOException {
+		if (resource == null || slices.containsKey(key)) return false;
+		if (resource.isDirectory()) return chunkSize > 0;
+		return BgzfIndex.open(resource) == null;
+	}
+
+	private static RegionSlice slice(FrequencyAnnotator annotator, Regions regions) throws IOException {
+		try {
+			return annotator.slice(regions);
+		} finally {
+			annotator.close();
+		}
+	}
+
+	private DbsnpAnnotator createDbsnpAnnotator() throws IOException {
+		if (slices.containsKey(DBSNP_SLICE)) return new DbsnpAnnotator(slices.get(DBSNP_SLICE));
+		if (DbsnpIndex.isIndex(dbsnp)) return new DbsnpAnnotator(DbsnpIndex.open(dbsnp));
+		return new DbsnpAnnotator(dbsnp);
+	}
+
+	private boolean hasFrequencyDatabase(String key) {
+		return freqdb != null && FrequencyDatabase.getDirectory(freqdb, key).isDirectory();
+	}
+
+	private FrequencyDatabase openFrequencyDatabase(String key, List<String> populations) {
+		return new FrequencyDatabase(FrequencyDatabase.getDirectory(freqdb, key), populations.size());
+	}
+
+	/**
+	 * Genes are read only once and shared by every thread, since {@link GeneMap} is not modified
+	 * after being read.
+	 */
+	private synchronized void loadGeneMap() {
+		if (geneMap == null) geneMap = new GeneMap(genes);
+	}
+
 	@NotNull
-	private VcfAnnotator createVcfAnnotator(PrintStream log, String annotation) throws IOException {
-		final String[] split = annotation.split("=");
-		final String filename = split[0];
-		final String columnSpec = split[1];
-		final File file = new File(filename);
-		final List<ColumnSpec> columnSpecs = new ArrayList<>();
-		for (String colSpec : columnSpec.split(",")) {
-			final String[] split1 = colSpec.split(":");
-			final String srcCol = split1[0];
-			final String tgtCol = split1.length > 1 ? split1[1] : srcCol;
-			columnSpecs.add(new ColumnSpec(srcCol, tgtCol));
+	private VcfAnnotator createVcfAnnotator(PrintStream log) throws IOException {
+		final VcfAnnotator vcfAnnotator = new VcfAnnotator();
+		for (String annotation : annotations) {
+			final String[] split = annotation.split("=");
+			final String filename = split[0];
+			final String columnSpec = split[1];
+			final File file = new File(filename);
+			final List<ColumnSpec> columnSpecs = new ArrayList<>();
+			for (String colSpec : columnSpec.split(",")) {
+				final String[] split1 = colSpec.split(":");
+				final String srcCol = split1[0];
+				final String tgtCol = split1.length > 1 ? split1[1] : srcCol;
+				columnSpecs.add(new ColumnSpec(srcCol, tgtCol));
+			}
+			vcfAnnotator.addSource(file, columnSpecs);
+			final String cols = columnSpecs.stream().map(ColumnSpec::getSourceColumn).collect(Collectors.joining(", "));
+			log.println(" - Add annotations [" + cols + "] from " + filename);
 		}
-		final VcfAnnotator vcfAnnotator = new VcfAnnotator(file, columnSpecs);
-		final String cols = vcfAnnotator.getColumnSpecs().stream().map(ColumnSpec::getSourceColumn).collect(Collectors.joining(", "));
-		log.println(" - Add annotations [" + cols + "] from " + filename);
 		return vcfAnnotator;
 	}
 
@@ -341,12 +675,23 @@ class VariantAnnotator implements Callable<Void> {
 		if (gnomadExomes != null) builder.append(" --gnomadExomes ").append(gnomadExomes);
 		if (gnomadGenomes != null) builder.append(" --gnomadGenomes ").append(gnomadGenomes);
 		if (exac != null) builder.append(" --exac ").append(exac);
+		if (freqdb != null) builder.append(" --freqdb ").append(freqdb);
+		if (typedFrequencies) builder.append(" --typed-frequencies");
+		if (regions != null) builder.append(" --regions ").append(regions);
 		if (compute) builder.append(" --compute-stats");
 		if (snpeff != null) builder.append(" --snpeff");
+		if (csq != null) builder.append(" --csq");
 		if (dbsnp != null) builder.append(" --dbsnp ").append(dbsnp);
 		if (annotations != null)
 			for (String annotation : annotations)
 			builder.append(" --annotations ").append(annotation);
+		if (threads > 1) builder.append(" --threads ").append(threads);
+		if (batchSize != 4096) builder.append(" --batch-size ").append(batchSize);
+		if (shard) builder.append(" --shard --chunk-size ").append(chunkSize);
+		if (compressionLevel != FileUtils.DEFAULT_COMPRESSION_LEVEL)
+			builder.append(" --compression-level ").append(compressionLevel);
+		if (metrics != null) builder.append(" --metrics ").append(metrics);
+		if (metricsInterval > 0) builder.append(" --metrics-interval ").append(metricsInterval);
 
 		return builder.toString();
 	}
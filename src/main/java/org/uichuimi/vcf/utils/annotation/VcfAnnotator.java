@@ -1,115 +1,258 @@
 package org.uichuimi.vcf.utils.annotation;
 
-import org.jetbrains.annotations.NotNull;
 import org.uichuimi.vcf.header.InfoHeaderLine;
 import org.uichuimi.vcf.header.VcfHeader;
-import org.uichuimi.vcf.io.VariantReader;
 import org.uichuimi.vcf.utils.annotation.consumer.VariantConsumer;
 import org.uichuimi.vcf.utils.common.FileUtils;
+import org.uichuimi.vcf.utils.common.Projection;
+import org.uichuimi.vcf.utils.common.ReadAheadVariantReader;
+import org.uichuimi.vcf.utils.common.VariantKey;
+import org.uichuimi.vcf.variant.Coordinate;
 import org.uichuimi.vcf.variant.Variant;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 
+/**
+ * Copies INFO fields from one or more VCF files. The {@link ColumnSpec}s of each file are compiled
+ * in {@link #start(VcfHeader)} into a plan, where each column knows from the source header whether
+ * it is copied per allele (Number=A) or per site (Number=0 or 1), so headers are not looked up per
+ * record.
+ * <p>
+ * All the files are advanced together, as in a k-way merge: the next record of every file is kept
+ * as its head, and variants before the smallest head are skipped without touching any file.
+ */
 public class VcfAnnotator implements VariantConsumer {
 
-	private final VariantReader reader;
-	private final List<ColumnSpec> columnSpecs;
+	private final List<Source> sources = new ArrayList<>();
+	/**
+	 * Allele columns with values in the current source record. They are written in the order of
+	 * their first allele with a value, and then in the order of the specs, so INFO keys are added in
+	 * the same order as setting the values one by one.
+	 */
+	private final List<Column> pending = new ArrayList<>();
+	/**
+	 * Smallest head of the sources, null if all of them are finished or before the first variant.
+	 */
+	private Coordinate next;
+	private long[] alleleKeys;
+	private Variant hashed;
+	private int[] alleleMap = new int[4];
+
+	/**
+	 * Creates an annotator without sources, to be added with {@link #addSource(File, List)}.
+	 */
+	public VcfAnnotator() {
+	}
 
 	public VcfAnnotator(File file, List<ColumnSpec> columnSpecs) throws IOException {
-		this(FileUtils.getInputStream(file), columnSpecs);
+		addSource(file, columnSpecs);
 	}
 
-	public VcfAnnotator(InputStream inputStream, List<ColumnSpec> columnSpecs) throws IOException {
-		reader = new VariantReader(inputStream);
-		this.columnSpecs = columnSpecs;
+	public VcfAnnotator(InputStream inputStream, List<ColumnSpec> columnSpecs) {
+		addSource(inputStream, columnSpecs, "annotations");
 	}
 
+	public VcfAnnotator addSource(File file, List<ColumnSpec> columnSpecs) throws IOException {
+		return addSource(FileUtils.getInputStream(file), columnSpecs, file.getName());
+	}
+
+	private VcfAnnotator addSource(InputStream inputStream, List<ColumnSpec> columnSpecs, String name) {
+		final List<String> keys = new ArrayList<>();
+		for (ColumnSpec spec : columnSpecs) keys.add(spec.getSourceColumn());
+		sources.add(new Source(ReadAheadVariantReader.open(inputStream, new Projection(keys, false, false), null, name), columnSpecs));
+		return this;
+	}
 
 	@Override
 	public void start(VcfHeader header) {
-		// Clone header lines
-		for (ColumnSpec spec : columnSpecs) {
-			final InfoHeaderLine infoHeader = reader.getHeader().getInfoHeader(spec.getSourceColumn());
-			if (infoHeader != null) {
-				// Copy header lines changing target name
-				final InfoHeaderLine targetInfo = new InfoHeaderLine(spec.getTargetColumn(),
-						infoHeader.getNumber(), infoHeader.getTypeName(), infoHeader.getDescription());
-				header.addHeaderLine(targetInfo);
+		for (Source source : sources) {
+			final List<Column> site = new ArrayList<>();
+			final List<Column> allele = new ArrayList<>();
+			for (ColumnSpec spec : source.columnSpecs) {
+				final InfoHeaderLine infoHeader = source.reader.getHeader().getInfoHeader(spec.getSourceColumn());
+				if (infoHeader != null) {
+					// Copy header lines changing target name
+					final InfoHeaderLine targetInfo = new InfoHeaderLine(spec.getTargetColumn(),
+							infoHeader.getNumber(), infoHeader.getTypeName(), infoHeader.getDescription());
+					header.addHeaderLine(targetInfo);
+				}
+				// Other numbers (R, G, .) are not copied
+				if (infoHeader == null || infoHeader.getNumber().equals("0") || infoHeader.getNumber().equals("1"))
+					site.add(new Column(spec));
+				else if (infoHeader.getNumber().equals("A")) allele.add(new Column(spec));
 			}
+			source.site = site.toArray(new Column[0]);
+			source.allele = allele.toArray(new Column[0]);
 		}
 	}
 
 	@Override
 	public void accept(Variant variant) {
+		final Coordinate coordinate = variant.getCoordinate();
+		if (next != null && next.compareTo(coordinate) > 0) return;
+		Coordinate min = null;
+		for (Source source : sources) {
+			if (source.finished) continue;
+			if (source.head == null || source.head.compareTo(coordinate) <= 0) {
+				annotate(variant, source);
+				source.head = source.reader.peekCoordinate();
+				if (source.head == null) {
+					source.finished = true;
+					continue;
+				}
+			}
+			if (min == null || source.head.compareTo(min) < 0) min = source.head;
+		}
+		next = min;
+	}
+
+	private void annotate(Variant variant, Source source) {
 		// We expect more than one line per coordinate
 		Variant sourceVariant;
-		while ((sourceVariant = reader.next(variant.getCoordinate())) != null) {
+		while ((sourceVariant = source.reader.next(variant.getCoordinate())) != null) {
 			// REF should only contain one allele
 			if (!sourceVariant.getReferences().get(0).equals(variant.getReferences().get(0))) continue;
-			// Check alternative alleles match
-			for (int a = 0; a < sourceVariant.getAlternatives().size(); a++) {
-				final String allele = sourceVariant.getAlternatives().get(a);
-				final int index = variant.getAlternatives().indexOf(allele);
-				if (index >= 0) {
-					for (ColumnSpec spec : columnSpecs) {
-						final InfoHeaderLine info = sourceVariant.getHeader().getInfoHeader(spec.getSourceColumn());
-						if (info.getNumber().equals("A")) {
-							final Object val = sourceVariant.getInfo(spec.getSourceColumn());
-							if (val != null) {
-								// Val must be an array or list
-								final List<?> valList = (List<?>) val;
-								setAlleleInfo(variant, index, spec.getTargetColumn(), valList.get(a));
-							}
-						}
-					}
+			if (source.allele.length > 0) {
+				final int[] map = getAlleleMap(variant, sourceVariant);
+				if (map != null) {
+					for (Column column : source.allele) collect(variant, sourceVariant, column, map);
+					write(variant);
 				}
 			}
-			for (ColumnSpec spec : columnSpecs) {
-				final InfoHeaderLine info = sourceVariant.getHeader().getInfoHeader(spec.getSourceColumn());
-				if (info == null || info.getNumber().equals("0") || info.getNumber().equals("1")) {
-					final Object val = sourceVariant.getInfo(spec.getSourceColumn());
-					if (val != null) variant.setInfo(spec.getTargetColumn(), val);
-				}
+			for (Column column : source.site) {
+				final Object val = sourceVariant.getInfo(column.source);
+				if (val != null) variant.setInfo(column.target, val);
 			}
 		}
 	}
 
-	private <T> void setAlleleInfo(Variant variant, int i, String key, T value) {
-		if (value == null) return;
-		// variant.getInfo returns unmodifiable list, must create new one
-		final List<T> target = repeat(null, variant.getAlternatives().size());
-		final List<T> field = variant.getInfo(key);
-		if (field != null) {
-			for (int j = 0; j < field.size(); j++) {
-				target.set(j, field.get(j));
-			}
+	/**
+	 * @return for each alternative allele of sourceVariant, the index of the same allele in variant
+	 * or -1, or null if no allele matches. The array is reused in the next call.
+	 */
+	private int[] getAlleleMap(Variant variant, Variant sourceVariant) {
+		if (variant != hashed) {
+			alleleKeys = VariantKey.alternatives(variant, alleleKeys);
+			hashed = variant;
 		}
-		target.set(i, value);
-		variant.setInfo(key, target);
+		final List<String> alternatives = sourceVariant.getAlternatives();
+		if (alleleMap.length < alternatives.size()) alleleMap = new int[alternatives.size()];
+		boolean matches = false;
+		for (int a = 0; a < alternatives.size(); a++) {
+			alleleMap[a] = VariantKey.indexOf(alleleKeys, variant.getAlternatives(), alternatives.get(a));
+			if (alleleMap[a] >= 0) matches = true;
+		}
+		return matches ? alleleMap : null;
 	}
 
-	@NotNull
-	private <T> List<T> repeat(T value, int n) {
-		final List<T> list = new ArrayList<>(n);
-		for (int i = 0; i < n; i++) list.add(value);
-		return list;
+	private void collect(Variant variant, Variant sourceVariant, Column column, int[] map) {
+		// Val must be an array or list
+		final List<?> values = sourceVariant.getInfo(column.source);
+		if (values == null) return;
+		for (int a = 0; a < sourceVariant.getAlternatives().size() && a < values.size(); a++) {
+			if (map[a] < 0 || values.get(a) == null) continue;
+			if (!column.pending) {
+				column.reset(variant.getAlternatives().size(), a);
+				pending.add(column);
+			}
+			column.values[map[a]] = values.get(a);
+		}
 	}
 
+	private void write(Variant variant) {
+		// Stable, so columns with the same first allele keep the order of the specs
+		if (pending.size() > 1) pending.sort(Comparator.comparingInt(column -> column.first));
+		for (Column column : pending) column.write(variant);
+		pending.clear();
+	}
 
 	@Override
 	public void close() {
-		try {
-			reader.close();
-		} catch (IOException e) {
-			e.printStackTrace();
+		for (Source source : sources) {
+			try {
+				source.reader.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
 		}
 	}
 
+	/**
+	 * @return the column specs of all the sources
+	 */
 	public List<ColumnSpec> getColumnSpecs() {
+		final List<ColumnSpec> columnSpecs = new ArrayList<>();
+		for (Source source : sources) columnSpecs.addAll(source.columnSpecs);
 		return columnSpecs;
 	}
+
+	private static class Source {
+
+		private final ReadAheadVariantReader reader;
+		private final List<ColumnSpec> columnSpecs;
+		private Column[] site = new Column[0];
+		private Column[] allele = new Column[0];
+		/**
+		 * Coordinate of the next record, null if unknown.
+		 */
+		private Coordinate head;
+		private boolean finished;
+
+		private Source(ReadAheadVariantReader reader, List<ColumnSpec> columnSpecs) {
+			this.reader = reader;
+			this.columnSpecs = columnSpecs;
+		}
+	}
+
+	private static class Column {
+
+		private final String source;
+		private final String target;
+		/**
+		 * Values of an allele column for the current variant, by allele.
+		 */
+		private Object[] values = new Object[4];
+		private int size;
+		/**
+		 * First allele of the source record with a value.
+		 */
+		private int first;
+		private boolean pending;
+
+		private Column(ColumnSpec spec) {
+			this.source = spec.getSourceColumn();
+			this.target = spec.getTargetColumn();
+		}
+
+		private void reset(int alleles, int first) {
+			if (values.length < alleles) values = new Object[alleles];
+			else Arrays.fill(values, 0, alleles, null);
+			size = alleles;
+			this.first = first;
+			pending = true;
+		}
+
+		/**
+		 * Writes the collected values, keeping the values already in the variant for the other
+		 * alleles.
+		 */
+		private void write(Variant variant) {
+			// variant.getInfo returns unmodifiable list, must create new one
+			final List<Object> list = new ArrayList<>(size);
+			final List<?> field = variant.getInfo(target);
+			for (int i = 0; i < size; i++) {
+				Object value = values[i];
+				if (value == null && field != null && i < field.size()) value = field.get(i);
+				list.add(value);
+			}
+			variant.setInfo(target, list);
+			pending = false;
+		}
+	}
 }
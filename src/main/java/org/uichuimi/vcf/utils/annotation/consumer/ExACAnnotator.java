@@ -1,11 +1,14 @@
 package org.uichuimi.vcf.utils.annotation.consumer;
 
 import org.jetbrains.annotations.NonNls;
+import org.uichuimi.vcf.utils.common.Projection;
+import org.uichuimi.vcf.utils.common.ResourceReader;
+import org.uichuimi.vcf.utils.freqdb.FrequencyDatabase;
 import org.uichuimi.vcf.variant.Chromosome;
 import org.uichuimi.vcf.variant.Variant;
 
 import java.io.File;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -16,7 +19,7 @@ public class ExACAnnotator extends FrequencyAnnotator {
 
 	private static final List<String> PREFIXED = POPULATIONS.stream().map(pop -> "AC_" + pop).collect(Collectors.toList());
 
-	private static final String KEY = "EX_AF";
+	public static final String KEY = "EX_AF";
 	private static final String DATABASE_NAME = "ExAC";
 	@NonNls
 	private static final String AN_ADJ = "AN_Adj";
@@ -25,8 +28,16 @@ public class ExACAnnotator extends FrequencyAnnotator {
 		super(file);
 	}
 
+	public ExACAnnotator(FrequencyDatabase database) {
+		super(database);
+	}
+
+	public ExACAnnotator(ResourceReader reader) {
+		super(reader);
+	}
+
 	@Override
-	String getKey() {
+	public String getKey() {
 		return KEY;
 	}
 
@@ -36,7 +47,7 @@ public class ExACAnnotator extends FrequencyAnnotator {
 	}
 
 	@Override
-	List<String> getPopulations() {
+	public List<String> getPopulations() {
 		return POPULATIONS;
 	}
 
@@ -45,13 +56,20 @@ public class ExACAnnotator extends FrequencyAnnotator {
 		return null;
 	}
 
+	@Override
+	public Projection getProjection() {
+		final List<String> keys = new ArrayList<>(PREFIXED);
+		keys.add(AN_ADJ);
+		return new Projection(keys, false, false);
+	}
+
 	@Override
 	protected String getFileName(Chromosome chrom) {
 		return null;
 	}
 
 	@Override
-	double[][] createFrequencies(Variant variant, Collection<Variant> annotations) {
+	void fillFrequencies(Variant variant, Collection<Variant> annotations, FrequencyMatrix fr) {
 		// AC_AFR=0
 		// AC_AMR=0
 		// AC_EAS=0
@@ -69,22 +87,16 @@ public class ExACAnnotator extends FrequencyAnnotator {
 		// AN_OTH=90
 		// AN_SAS=5052
 		// AN_Adj=8432
-		final double[][] freqs = new double[variant.getAlternatives().size()][POPULATIONS.size()];
-		for (double[] freq : freqs) Arrays.fill(freq, -1);
+		final int alleles = fr.getAlleles();
 		for (Variant exac : annotations) {
+			final int[] map = getAlleleMap(variant, exac);
+			if (map == null) continue;
 			final int total = exac.getInfo(AN_ADJ);
-			List<String> alternatives = exac.getAlternatives();
-			for (int a = 0; a < alternatives.size(); a++) {
-				final String alternative = alternatives.get(a);
-				final int va = variant.getAlternatives().indexOf(alternative);
-				if (va < 0) continue;
-				for (int p = 0; p < PREFIXED.size(); p++) {
-					final Integer ac = exac.<List<Integer>>getInfo(PREFIXED.get(p)).get(a);
-					final double freq = (double) ac / total;
-					freqs[va][p] = freq;
-				}
+			for (int p = 0; p < PREFIXED.size(); p++) {
+				final List<Integer> ac = exac.getInfo(PREFIXED.get(p));
+				for (int v = 0; v < alleles; v++)
+					if (map[v] >= 0) fr.set(v, p, (double) ac.get(map[v]) / total);
 			}
 		}
-		return freqs;
 	}
 }
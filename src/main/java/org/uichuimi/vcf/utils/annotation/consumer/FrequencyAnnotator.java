@@ -1,57 +1,146 @@
 package org.uichuimi.vcf.utils.annotation.consumer;
 
-import org.jetbrains.annotations.NotNull;
 import org.uichuimi.vcf.header.InfoHeaderLine;
 import org.uichuimi.vcf.header.VcfHeader;
-import org.uichuimi.vcf.io.VariantReader;
 import org.uichuimi.vcf.utils.annotation.AnnotationConstants;
-import org.uichuimi.vcf.utils.common.FileUtils;
+import org.uichuimi.vcf.utils.common.ContigPrefetcher;
+import org.uichuimi.vcf.utils.common.Projection;
+import org.uichuimi.vcf.utils.common.RegionSlice;
+import org.uichuimi.vcf.utils.common.Regions;
+import org.uichuimi.vcf.utils.common.ResourceReader;
+import org.uichuimi.vcf.utils.common.VariantKey;
+import org.uichuimi.vcf.utils.freqdb.FrequencyDatabase;
 import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.Coordinate;
 import org.uichuimi.vcf.variant.Variant;
 import org.uichuimi.vcf.variant.VcfConstants;
 import org.uichuimi.vcf.variant.VcfType;
 
 import java.io.File;
 import java.io.IOException;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 public abstract class FrequencyAnnotator implements VariantConsumer {
 
-	private static final NumberFormat DECIMAL = new DecimalFormat("#.####");
+	/**
+	 * Buffers reused for every variant. Not thread safe, so every annotator keeps its own.
+	 */
+	private final FrequencyMatrix matrix = new FrequencyMatrix();
+	private final FrequencyFormat format = new FrequencyFormat();
+	private final StringBuilder builder = new StringBuilder();
+	private int[] alleleMap = new int[4];
+	/**
+	 * Hashes of the alternative alleles of {@link #hashed}, computed once per variant, or given by
+	 * {@link #collect(Variant, long[], FrequencyMatrix)}.
+	 */
+	private long[] alleleKeys;
+	private long[] buffer;
+	private Variant hashed;
 
 	private File path;
-	private VariantReader reader;
+	/**
+	 * Single file source, opened at the first variant.
+	 */
+	private File file;
+	private ResourceReader reader;
 	private Chromosome openChromosome;
+	private FrequencyDatabase database;
+	private ContigPrefetcher prefetcher;
+	private boolean typed;
+	private List<String> typedKeys;
 
 	FrequencyAnnotator(File file) {
 		if (!file.exists()) throw new IllegalArgumentException(file + " does not exist");
 		if (file.isFile()) {
-			try {
-				reader = new VariantReader(FileUtils.getInputStream(file));
-			} catch (IOException e) {
-				throw new IllegalArgumentException("Cannot open file", e);
-			}
+			this.file = file;
 		} else {
 			this.path = file;
+			this.prefetcher = new ContigPrefetcher(chrom -> new File(path, getFileName(chrom)), getProjection());
 		}
 	}
 
-	abstract String getKey();
+	/**
+	 * Reads the frequencies from an already open resource, such as a {@link RegionSlice}.
+	 */
+	FrequencyAnnotator(ResourceReader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Reads the frequencies from a database created with build-freqdb, instead of a VCF.
+	 */
+	FrequencyAnnotator(FrequencyDatabase database) {
+		this.database = database;
+	}
+
+	/**
+	 * Writes a Float field per population, named as in {@link FrequencyFields#getTypedKey(String,
+	 * String)}, instead of a single String field with all the populations.
+	 */
+	public FrequencyAnnotator setTyped(boolean typed) {
+		this.typed = typed;
+		this.typedKeys = typed ? FrequencyFields.getTypedKeys(getKey(), getPopulations()) : null;
+		return this;
+	}
+
+	/**
+	 * @return the INFO key where frequencies are written
+	 */
+	public abstract String getKey();
 
 	abstract String getDatabaseName();
 
-	abstract List<String> getPopulations();
+	public abstract List<String> getPopulations();
 
 	abstract List<String> getKeys();
 
+	/**
+	 * @return the fields of the resource records read by {@link #fillFrequencies(Variant,
+	 * Collection, FrequencyMatrix)}
+	 */
+	public Projection getProjection() {
+		return new Projection(getKeys(), false, false);
+	}
+
+	/**
+	 * Loads the records of the source inside regions. The slice can be shared by several
+	 * annotators, created with it as resource.
+	 *
+	 * @param regions
+	 * 		regions to load
+	 * @return the records of the source in regions
+	 * @throws IOException
+	 * 		if the source cannot be read
+	 */
+	public RegionSlice slice(Regions regions) throws IOException {
+		final List<File> files = new ArrayList<>();
+		if (file != null) files.add(file);
+		else if (path != null) {
+			for (Chromosome chromosome : regions.getChromosomes()) {
+				final File chromosomeFile = new File(path, getFileName(chromosome));
+				if (chromosomeFile.exists()) files.add(chromosomeFile);
+			}
+		} else throw new IllegalStateException("Only VCF sources can be sliced");
+		return RegionSlice.load(files, getProjection(), null, regions);
+	}
+
 	@Override
 	public void start(VcfHeader header) {
+		if (prefetcher != null) prefetcher.setOrder(header);
 		injectHeaderLines(header);
 	}
 
 	private void injectHeaderLines(VcfHeader header) {
+		if (typed) {
+			for (String population : getPopulations()) {
+				final String description = String.format("Allele frequency for %s (%s)", getDatabaseName(), population);
+				header.addHeaderLine(new InfoHeaderLine(FrequencyFields.getTypedKey(getKey(), population), VcfConstants.NUMBER_A, VcfType.FLOAT, description));
+			}
+			return;
+		}
 		final String description = String.format("Allele frequency for %s (%s)", getDatabaseName(), String.join(AnnotationConstants.DELIMITER, getPopulations()));
 		header.addHeaderLine(new InfoHeaderLine(getKey(), VcfConstants.NUMBER_A, VcfType.STRING, description));
 	}
@@ -59,100 +148,244 @@ public abstract class FrequencyAnnotator implements VariantConsumer {
 	@Override
 	public void accept(Variant variant) {
 		openReader(variant.getCoordinate().getChromosome());
-		if (reader == null) return;
+		if (reader == null && database == null) return;
+		annotate(variant);
+	}
+
+	@Override
+	public void acceptBatch(List<Variant> variants) {
+		// Check the chromosome only when it changes
+		Chromosome chromosome = null;
+		for (Variant variant : variants) {
+			final Chromosome chrom = variant.getCoordinate().getChromosome();
+			if (chrom != chromosome) {
+				openReader(chrom);
+				chromosome = chrom;
+			}
+			if (reader != null || database != null) annotate(variant);
+		}
+	}
+
+	private void annotate(Variant variant) {
+		matrix.reset(variant.getAlternatives().size(), getPopulations().size());
+		if (collect(variant, matrix)) writeFrequencies(variant, matrix);
+	}
+
+	/**
+	 * Opens the resource of chrom, if it is not already open.
+	 *
+	 * @return false if there is no resource for chrom
+	 */
+	boolean setChromosome(Chromosome chrom) {
+		openReader(chrom);
+		return reader != null || database != null;
+	}
+
+	/**
+	 * @return the coordinate of the next record of the resource, or null if it is unknown or there
+	 * are no more records
+	 */
+	Coordinate getNextCoordinate() {
+		return reader == null ? null : reader.peekCoordinate();
+	}
+
+	/**
+	 * Reads the records of the resource at the coordinate of variant and fills fr with their
+	 * frequencies. The resource must be open for the chromosome of variant.
+	 *
+	 * @param fr
+	 * 		matrix reset to the alternative alleles of variant and the populations of this source
+	 * @return false if the resource has no data for variant
+	 */
+	boolean collect(Variant variant, FrequencyMatrix fr) {
+		if (database != null) return database.getFrequencies(variant, getAlleleKeys(variant), fr);
 		final Collection<Variant> annotations = reader.nextCollected(variant.getCoordinate());
+		if (annotations.isEmpty()) return false;
+		fillFrequencies(variant, annotations, fr);
+		return true;
+	}
+
+	/**
+	 * Same as {@link #collect(Variant, FrequencyMatrix)}, with the hashes of the alternative
+	 * alleles of variant already computed, so several sources can share them.
+	 *
+	 * @param alleleKeys
+	 * 		hashes of the alternative alleles of variant, as in {@link VariantKey#alternatives(Variant,
+	 * 		long[])}. They are not modified.
+	 */
+	boolean collect(Variant variant, long[] alleleKeys, FrequencyMatrix fr) {
+		this.alleleKeys = alleleKeys;
+		this.hashed = variant;
+		return collect(variant, fr);
+	}
+
+	/**
+	 * Annotates variant with the frequencies of the given resource records, without reading from
+	 * the resource.
+	 *
+	 * @param variant
+	 * 		variant to be annotated
+	 * @param annotations
+	 * 		records of the resource at the position of variant
+	 */
+	void annotate(Variant variant, Collection<Variant> annotations) {
 		if (annotations.isEmpty()) return;
-		final double[][] fr = createFrequencies(variant, annotations);
-		if (fr == null) return;
-		writeFrequencies(variant, fr, getKey());
+		matrix.reset(variant.getAlternatives().size(), getPopulations().size());
+		fillFrequencies(variant, annotations, matrix);
+		writeFrequencies(variant, matrix);
 	}
 
 	/**
-	 * Create a matrix with dimensions (a,p), where <em>a</em> is the number of alternatives alleles
-	 * and <em>p</em> the number of populations with all the given frequencies. Result can be null
-	 * if no data is available.
+	 * Fills a matrix with dimensions (a,p), where <em>a</em> is the number of alternatives alleles
+	 * and <em>p</em> the number of populations, with all the given frequencies. The matrix is
+	 * already reset to these dimensions.
 	 *
 	 * @param variant
 	 * 		variant to be annotated
 	 * @param annotations
 	 * 		source variant with frequency values
-	 * @return a matrix with the frequencies indexed by allele and population
+	 * @param fr
+	 * 		the matrix with the frequencies indexed by allele and population
 	 */
-	double[][] createFrequencies(Variant variant, Collection<Variant> annotations) {
-		final List<String> populations = getPopulations();
+	void fillFrequencies(Variant variant, Collection<Variant> annotations, FrequencyMatrix fr) {
 		final List<String> keys = getKeys();
-		final double[][] fr = new double[variant.getAlternatives().size()][populations.size()];
-		for (double[] doubles : fr) Arrays.fill(doubles, -1);
+		final int alleles = fr.getAlleles();
 		for (Variant annotation : annotations) {
-			final Map<Integer, Integer> map = getAlleleMap(variant, annotation);
-			if (map.isEmpty()) continue;
+			final int[] map = getAlleleMap(variant, annotation);
+			if (map == null) continue;
 			for (int p = 0; p < keys.size(); p++) {
 				final List<Float> af = annotation.getInfo(keys.get(p));
 				if (af == null) continue;
-				int finalP = p;
-				map.forEach((v, a) -> fr[v][finalP] = af.get(a));
+				for (int v = 0; v < alleles; v++) if (map[v] >= 0) fr.set(v, p, af.get(map[v]));
+			}
+		}
+	}
+
+	/**
+	 * Extracts the frequencies of a record of the source, rounded as they are written in the
+	 * output, so a database built with them produces the same annotations.
+	 *
+	 * @param record
+	 * 		a record of the source
+	 * @return a matrix with the frequencies indexed by allele and population, NaN for missing values
+	 */
+	public float[][] getFrequencies(Variant record) {
+		matrix.reset(record.getAlternatives().size(), getPopulations().size());
+		fillFrequencies(record, List.of(record), matrix);
+		final float[][] rounded = new float[matrix.getAlleles()][matrix.getPopulations()];
+		for (int a = 0; a < rounded.length; a++) {
+			for (int p = 0; p < rounded[a].length; p++) {
+				final double v = matrix.get(a, p);
+				rounded[a][p] = v >= 0 && !Double.isInfinite(v) ? format.round(v) : Float.NaN;
 			}
 		}
-		return fr;
+		return rounded;
 	}
 
-	private void writeFrequencies(Variant variant, double[][] fr, String key) {
-		final List<String> ex_af = new ArrayList<>(variant.getAlternatives().size());
-		for (double[] freq : fr) {
+	void writeFrequencies(Variant variant, FrequencyMatrix fr) {
+		if (!fr.hasValues()) return;
+		if (typed) {
+			writeTypedFrequencies(variant, fr);
+			return;
+		}
+		final List<String> ex_af = new ArrayList<>(fr.getAlleles());
+		for (int a = 0; a < fr.getAlleles(); a++) {
 			// Check that there is at least one value that is not null (>=0)
-			if (Arrays.stream(freq).noneMatch(v -> v >= 0)) ex_af.add(VcfConstants.EMPTY_VALUE);
+			if (!fr.hasValues(a)) ex_af.add(VcfConstants.EMPTY_VALUE);
 			else {
-				final StringJoiner joiner = new StringJoiner(AnnotationConstants.DELIMITER);
-				for (double v : freq) {
-					if (v >= 0) joiner.add(DECIMAL.format(v));
-					else joiner.add(VcfConstants.EMPTY_VALUE);
+				builder.setLength(0);
+				for (int p = 0; p < fr.getPopulations(); p++) {
+					if (p > 0) builder.append(AnnotationConstants.DELIMITER);
+					final double v = fr.get(a, p);
+					if (v >= 0) format.append(builder, v);
+					else builder.append(VcfConstants.EMPTY_VALUE);
 				}
-				ex_af.add(joiner.toString());
+				ex_af.add(builder.toString());
 			}
 		}
-		if (ex_af.stream().anyMatch(s -> !s.equals(VcfConstants.EMPTY_VALUE)))
-			variant.setInfo(key, ex_af);
+		variant.setInfo(getKey(), ex_af);
 	}
 
 	/**
-	 * Computes the index relation between variant and annotation alternative alleles.
+	 * Writes a Float list per population with values, null for the alleles without value. Values
+	 * are rounded by {@link FrequencyFormat#round(double)}, so they are the same numbers written
+	 * in the String field.
+	 */
+	private void writeTypedFrequencies(Variant variant, FrequencyMatrix fr) {
+		final List<String> populations = getPopulations();
+		for (int p = 0; p < fr.getPopulations(); p++) {
+			List<Float> values = null;
+			for (int a = 0; a < fr.getAlleles(); a++) {
+				final double v = fr.get(a, p);
+				if (!(v >= 0)) continue;
+				if (values == null) {
+					values = new ArrayList<>(fr.getAlleles());
+					for (int i = 0; i < fr.getAlleles(); i++) values.add(null);
+				}
+				values.set(a, format.round(v));
+			}
+			if (values != null) variant.setInfo(typedKeys.get(p), values);
+		}
+	}
+
+	/**
+	 * Computes the index relation between variant and annotation alternative alleles. The returned
+	 * array is reused in the next call.
 	 *
 	 * @param variant
 	 * 		variant to be annotated
 	 * @param annotated
 	 * 		variant containing the annotations
-	 * @return a map of indices between variant and annotation alternative alleles
-	 */
-	@NotNull
-	private Map<Integer, Integer> getAlleleMap(Variant variant, Variant annotated) {
-		final Map<Integer, Integer> index = new HashMap<>();
-		final List<String> alternatives = variant.getAlternatives();
-		for (int v = 0; v < alternatives.size(); v++) {
-			final String alternative = alternatives.get(v);
-			final int a = annotated.getAlternatives().indexOf(alternative);
-			if (a >= 0) index.put(v, a);
+	 * @return for each alternative allele of variant, the index of the same allele in annotated or
+	 * -1, or null if no allele matches
+	 */
+	int[] getAlleleMap(Variant variant, Variant annotated) {
+		final int alternatives = variant.getAlternatives().size();
+		final long[] alleleKeys = getAlleleKeys(variant);
+		if (alleleMap.length < alternatives) alleleMap = new int[alternatives];
+		Arrays.fill(alleleMap, 0, alternatives, -1);
+		boolean matches = false;
+		final List<String> annotatedAlternatives = annotated.getAlternatives();
+		for (int a = 0; a < annotatedAlternatives.size(); a++) {
+			final int v = VariantKey.indexOf(alleleKeys, variant.getAlternatives(), annotatedAlternatives.get(a));
+			if (v >= 0 && alleleMap[v] < 0) {
+				alleleMap[v] = a;
+				matches = true;
+			}
 		}
-		return index;
+		return matches ? alleleMap : null;
+	}
+
+	private long[] getAlleleKeys(Variant variant) {
+		if (variant != hashed) {
+			// Keys given by the caller are never overwritten
+			alleleKeys = buffer = VariantKey.alternatives(variant, buffer);
+			hashed = variant;
+		}
+		return alleleKeys;
 	}
 
 	private void openReader(Chromosome chrom) {
-		// It's a file, no need to open readers
-		if (path == null) return;
+		// It's a file, it is opened only once
+		if (path == null) {
+			if (file != null && reader == null) {
+				try {
+					reader = ResourceReader.open(file, getProjection());
+				} catch (IOException e) {
+					throw new IllegalArgumentException("Cannot open file", e);
+				}
+			}
+			return;
+		}
 
 		// Open only if chromosome changes
 		if (openChromosome == null || !openChromosome.equals(chrom)) {
-			reader = null;
+			closeReader();
 			// Even if opening the file fails, we keep a reference to the chromosome
 			openChromosome = chrom;
-			final String filename = getFileName(chrom);
-			final File file = new File(path, filename);
-			if (!file.exists()) {
-				// this can generate lots of warnings
-//				Logger.getLogger("variant-utils").warning("No gnomad file for chromosome " + coordinate.getChrom());
-				return;
-			}
 			try {
-				reader = new VariantReader(FileUtils.getInputStream(file));
+				// this can be null, there is not a file for every chromosome
+				reader = prefetcher.open(chrom);
 			} catch (IOException e) {
 				//
 				throw new RuntimeException(e);
@@ -160,12 +393,21 @@ public abstract class FrequencyAnnotator implements VariantConsumer {
 		}
 	}
 
-	@Override
-	public void close() {
+	private void closeReader() {
+		if (reader == null) return;
 		try {
-			if (reader != null) reader.close();
+			reader.close();
 		} catch (IOException ignored) {
 		}
+		reader = null;
+	}
+
+	@Override
+	public void close() {
+		// Each one is closed even if the previous fails
+		closeReader();
+		if (database != null) database.close();
+		if (prefetcher != null) prefetcher.close();
 	}
 
 	protected abstract String getFileName(Chromosome chrom);
@@ -0,0 +1,49 @@
+package org.uichuimi.vcf.utils.annotation.consumer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * INFO keys written by the frequency annotators. By default, each source writes one String field
+ * with the frequencies of all its populations joined by a pipe (GG_AF=0.4063|0.1841|...). With
+ * typed frequencies, each population has its own Float field, named after the key of the source
+ * and the population in lower case (GG_AF_afr=0.4063).
+ */
+public final class FrequencyFields {
+
+	/**
+	 * Populations of each source, by the INFO key of the source.
+	 */
+	public static final Map<String, List<String>> POPULATIONS;
+
+	static {
+		final Map<String, List<String>> populations = new LinkedHashMap<>();
+		populations.put(KGenomesAnnotator.KEY, KGenomesAnnotator.POPULATIONS);
+		populations.put(GnomadGenomeAnnotator.KEY, GnomadGenomeAnnotator.POPULATIONS);
+		populations.put(GnomadExomeAnnotator.KEY, GnomadExomeAnnotator.POPULATIONS);
+		populations.put(ExACAnnotator.KEY, ExACAnnotator.POPULATIONS);
+		POPULATIONS = Collections.unmodifiableMap(populations);
+	}
+
+	private FrequencyFields() {
+	}
+
+	/**
+	 * @return the INFO key of the typed field of a population
+	 */
+	public static String getTypedKey(String key, String population) {
+		return key + "_" + population.toLowerCase();
+	}
+
+	/**
+	 * @return the INFO keys of the typed fields of every population of a source
+	 */
+	public static List<String> getTypedKeys(String key, List<String> populations) {
+		final List<String> keys = new ArrayList<>(populations.size());
+		for (String population : populations) keys.add(getTypedKey(key, population));
+		return keys;
+	}
+}
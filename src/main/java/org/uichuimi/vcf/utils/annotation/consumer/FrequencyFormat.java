@@ -0,0 +1,67 @@
+package org.uichuimi.vcf.utils.annotation.consumer;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.ParseException;
+
+/**
+ * Writes frequencies with the pattern <em>#.####</em> directly into a {@link StringBuilder}. The
+ * value is scaled to an integer number of ten-thousandths and printed digit by digit, so no
+ * intermediate objects are created. Values too close to a rounding tie, where the result depends
+ * on the HALF_EVEN rules of {@link DecimalFormat}, and values too large to be scaled exactly, are
+ * delegated to a DecimalFormat, so output is always identical to it.
+ * <p>
+ * Not thread safe.
+ */
+class FrequencyFormat {
+
+	private static final double SCALE = 10_000;
+	/**
+	 * Largest scaled value, keeps the rounding error of the scaling far below {@link #TIE}.
+	 */
+	private static final double LIMIT = 1e8;
+	private static final double TIE = 1e-6;
+
+	private final DecimalFormat decimal = new DecimalFormat("#.####");
+	private final char separator = DecimalFormatSymbols.getInstance().getDecimalSeparator();
+	private final StringBuilder buffer = new StringBuilder();
+
+	/**
+	 * Appends value formatted as <em>#.####</em>. Value must not be negative.
+	 */
+	void append(StringBuilder builder, double value) {
+		final double scaled = value * SCALE;
+		if (!(scaled < LIMIT)) {
+			builder.append(decimal.format(value));
+			return;
+		}
+		final double floor = Math.floor(scaled);
+		final double fraction = scaled - floor;
+		if (Math.abs(fraction - 0.5) < TIE) {
+			builder.append(decimal.format(value));
+			return;
+		}
+		final long rounded = (long) floor + (fraction > 0.5 ? 1 : 0);
+		builder.append(rounded / 10_000);
+		int decimals = (int) (rounded % 10_000);
+		if (decimals == 0) return;
+		builder.append(separator);
+		for (int divisor = 1000; decimals != 0; divisor /= 10) {
+			builder.append((char) ('0' + decimals / divisor));
+			decimals %= divisor;
+		}
+	}
+
+	/**
+	 * @return value rounded as it would be written
+	 */
+	float round(double value) {
+		buffer.setLength(0);
+		append(buffer, value);
+		try {
+			return decimal.parse(buffer.toString()).floatValue();
+		} catch (ParseException e) {
+			return (float) value;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package org.uichuimi.vcf.utils.annotation.consumer;
+
+import java.util.Arrays;
+
+/**
+ * Frequencies of a variant indexed by alternative allele and population, stored in a single array
+ * that is reused between variants. Missing values are negative.
+ */
+public class FrequencyMatrix {
+
+	private double[] values = new double[16];
+	private int alleles;
+	private int populations;
+
+	/**
+	 * Resizes the matrix to (alleles, populations) and marks every value as missing.
+	 */
+	public void reset(int alleles, int populations) {
+		this.alleles = alleles;
+		this.populations = populations;
+		final int size = alleles * populations;
+		if (size > values.length) values = new double[Math.max(size, values.length * 2)];
+		Arrays.fill(values, 0, size, -1);
+	}
+
+	public int getAlleles() {
+		return alleles;
+	}
+
+	public int getPopulations() {
+		return populations;
+	}
+
+	public double get(int allele, int population) {
+		return values[allele * populations + population];
+	}
+
+	public void set(int allele, int population, double value) {
+		values[allele * populations + population] = value;
+	}
+
+	/**
+	 * @return true if allele has at least one value (NaN is considered missing)
+	 */
+	public boolean hasValues(int allele) {
+		final int end = (allele + 1) * populations;
+		for (int i = allele * populations; i < end; i++) if (values[i] >= 0) return true;
+		return false;
+	}
+
+	/**
+	 * @return true if any allele has at least one value
+	 */
+	public boolean hasValues() {
+		final int size = alleles * populations;
+		for (int i = 0; i < size; i++) if (values[i] >= 0) return true;
+		return false;
+	}
+}
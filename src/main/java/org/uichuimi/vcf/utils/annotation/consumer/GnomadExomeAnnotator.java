@@ -1,5 +1,7 @@
 package org.uichuimi.vcf.utils.annotation.consumer;
 
+import org.uichuimi.vcf.utils.common.ResourceReader;
+import org.uichuimi.vcf.utils.freqdb.FrequencyDatabase;
 import org.uichuimi.vcf.variant.Chromosome;
 
 import java.io.File;
@@ -9,7 +11,7 @@ public class GnomadExomeAnnotator extends FrequencyAnnotator {
 
 	private final static String fileName = "gnomad.exomes.chr%s.vcf.gz";
 	private static final String DATABASE_NAME = "gnomAD exomes";
-	private static final String KEY = "GE_AF";
+	public static final String KEY = "GE_AF";
 	public static final List<String> POPULATIONS = List.of("AFR", "AMR", "ASJ", "EAS", "FIN", "NFE", "OTH", "SAS");
 	private static final List<String> KEYS = List.of("AF_afr", "AF_amr", "AF_asj", "AF_eas", "AF_fin", "AF_nfe", "AF_oth", "AF_sas");
 
@@ -21,8 +23,16 @@ public class GnomadExomeAnnotator extends FrequencyAnnotator {
 		super(gnomad);
 	}
 
+	public GnomadExomeAnnotator(FrequencyDatabase database) {
+		super(database);
+	}
+
+	public GnomadExomeAnnotator(ResourceReader reader) {
+		super(reader);
+	}
+
 	@Override
-	String getKey() {
+	public String getKey() {
 		return KEY;
 	}
 
@@ -32,7 +42,7 @@ public class GnomadExomeAnnotator extends FrequencyAnnotator {
 	}
 
 	@Override
-	List<String> getPopulations() {
+	public List<String> getPopulations() {
 		return POPULATIONS;
 	}
 
@@ -1,5 +1,7 @@
 package org.uichuimi.vcf.utils.annotation.consumer;
 
+import org.uichuimi.vcf.utils.common.ResourceReader;
+import org.uichuimi.vcf.utils.freqdb.FrequencyDatabase;
 import org.uichuimi.vcf.variant.Chromosome;
 
 import java.io.File;
@@ -12,7 +14,7 @@ public class GnomadGenomeAnnotator extends FrequencyAnnotator {
 	private final static String fileName = "gnomad.genomes.chr%s.vcf.gz";
 	private static final List<String> KEYS = List.of("AF_afr", "AF_amr", "AF_eas", "AF_nfe", "AF_fin", "AF_asj", "AF_oth");
 	private static final String DATABASE_NAME = "genomAD genomes";
-	private static final String KEY = "GG_AF";
+	public static final String KEY = "GG_AF";
 
 	/**
 	 * @param source
@@ -22,8 +24,16 @@ public class GnomadGenomeAnnotator extends FrequencyAnnotator {
 		super(source);
 	}
 
+	public GnomadGenomeAnnotator(FrequencyDatabase database) {
+		super(database);
+	}
+
+	public GnomadGenomeAnnotator(ResourceReader reader) {
+		super(reader);
+	}
+
 	@Override
-	String getKey() {
+	public String getKey() {
 		return KEY;
 	}
 
@@ -33,7 +43,7 @@ public class GnomadGenomeAnnotator extends FrequencyAnnotator {
 	}
 
 	@Override
-	List<String> getPopulations() {
+	public List<String> getPopulations() {
 		return POPULATIONS;
 	}
 
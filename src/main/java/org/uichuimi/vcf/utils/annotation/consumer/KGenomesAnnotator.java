@@ -1,5 +1,7 @@
 package org.uichuimi.vcf.utils.annotation.consumer;
 
+import org.uichuimi.vcf.utils.common.ResourceReader;
+import org.uichuimi.vcf.utils.freqdb.FrequencyDatabase;
 import org.uichuimi.vcf.variant.Chromosome;
 
 import java.io.File;
@@ -7,7 +9,7 @@ import java.util.List;
 
 public class KGenomesAnnotator extends FrequencyAnnotator {
 
-	private static final String KEY = "KG_AF";
+	public static final String KEY = "KG_AF";
 	private static final String DATABASE_NAME = "1000 genomes phase 3";
 	public static final List<String> POPULATIONS = List.of("AFR", "AMR", "EAS", "EUR", "SAS");
 	private static final List<String> KEYS = List.of("AFR_AF", "AMR_AF", "EAS_AF", "EUR_AF", "SAS_AF");
@@ -16,8 +18,16 @@ public class KGenomesAnnotator extends FrequencyAnnotator {
 		super(file);
 	}
 
+	public KGenomesAnnotator(FrequencyDatabase database) {
+		super(database);
+	}
+
+	public KGenomesAnnotator(ResourceReader reader) {
+		super(reader);
+	}
+
 	@Override
-	String getKey() {
+	public String getKey() {
 		return KEY;
 	}
 
@@ -27,7 +37,7 @@ public class KGenomesAnnotator extends FrequencyAnnotator {
 	}
 
 	@Override
-	List<String> getPopulations() {
+	public List<String> getPopulations() {
 		return POPULATIONS;
 	}
 
@@ -0,0 +1,161 @@
+package org.uichuimi.vcf.utils.annotation.consumer;
+
+import org.uichuimi.vcf.header.VcfHeader;
+import org.uichuimi.vcf.utils.common.VariantKey;
+import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.Coordinate;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Annotates frequencies from several sources at once. Sources are advanced together, as in a
+ * k-way merge: the chromosome is checked once per variant for all of them, and the next record of
+ * every source is kept as its head. Variants before the smallest head are skipped without touching
+ * any source, and a source is only read when its head is at or before the variant. The hashes of
+ * the alleles of the variant are computed once and shared by every source.
+ * <p>
+ * Each source writes its own INFO key, so the output is the same as using one {@link
+ * FrequencyAnnotator} per source. Use {@link #declare(FrequencyAnnotator)} to keep the header
+ * lines of a source where they would be with separate annotators.
+ */
+public class MultipleFrequencyAnnotator implements VariantConsumer {
+
+	private final FrequencyAnnotator[] sources;
+	private final int[] populations;
+	private final FrequencyMatrix[] matrices;
+	private final boolean[] available;
+	/**
+	 * Sources whose header lines are added by a {@link #declare(FrequencyAnnotator)} consumer.
+	 */
+	private final boolean[] declared;
+	/**
+	 * Coordinate of the next record of each source, null if unknown.
+	 */
+	private final Coordinate[] heads;
+	/**
+	 * Smallest head, null if any head is unknown.
+	 */
+	private Coordinate next;
+	private Chromosome chromosome;
+	private long[] alleleKeys;
+
+	/**
+	 * @param sources
+	 * 		frequency annotators, their keys are written in this order
+	 */
+	public MultipleFrequencyAnnotator(List<FrequencyAnnotator> sources) {
+		this.sources = sources.toArray(new FrequencyAnnotator[0]);
+		this.populations = new int[this.sources.length];
+		this.matrices = new FrequencyMatrix[this.sources.length];
+		this.available = new boolean[this.sources.length];
+		this.declared = new boolean[this.sources.length];
+		this.heads = new Coordinate[this.sources.length];
+		for (int i = 0; i < this.sources.length; i++) {
+			populations[i] = this.sources[i].getPopulations().size();
+			matrices[i] = new FrequencyMatrix();
+		}
+	}
+
+	/**
+	 * Creates a consumer that only starts source, adding its header lines, and does nothing with
+	 * the variants, which are annotated by this consumer. It must be placed before this consumer.
+	 *
+	 * @param source
+	 * 		one of the sources of this consumer
+	 * @return a consumer to place where source would be with separate annotators
+	 */
+	public VariantConsumer declare(FrequencyAnnotator source) {
+		final int index = Arrays.asList(sources).indexOf(source);
+		if (index < 0) throw new IllegalArgumentException("Not a source of this annotator");
+		declared[index] = true;
+		return new Declaration(source);
+	}
+
+	@Override
+	public void start(VcfHeader header) {
+		for (int i = 0; i < sources.length; i++) if (!declared[i]) sources[i].start(header);
+	}
+
+	@Override
+	public void accept(Variant variant) {
+		setChromosome(variant.getCoordinate().getChromosome());
+		annotate(variant);
+	}
+
+	@Override
+	public void acceptBatch(List<Variant> variants) {
+		for (Variant variant : variants) {
+			final Chromosome chrom = variant.getCoordinate().getChromosome();
+			if (chrom != chromosome) setChromosome(chrom);
+			annotate(variant);
+		}
+	}
+
+	private void setChromosome(Chromosome chrom) {
+		if (chrom.equals(chromosome)) return;
+		chromosome = chrom;
+		for (int i = 0; i < sources.length; i++) {
+			available[i] = sources[i].setChromosome(chrom);
+			heads[i] = null;
+		}
+		next = null;
+	}
+
+	private void annotate(Variant variant) {
+		final Coordinate coordinate = variant.getCoordinate();
+		if (next != null && next.compareTo(coordinate) > 0) return;
+		final int alleles = variant.getAlternatives().size();
+		boolean hashed = false;
+		boolean known = true;
+		Coordinate min = null;
+		for (int i = 0; i < sources.length; i++) {
+			if (!available[i]) continue;
+			if (heads[i] == null || heads[i].compareTo(coordinate) <= 0) {
+				if (!hashed) {
+					alleleKeys = VariantKey.alternatives(variant, alleleKeys);
+					hashed = true;
+				}
+				final FrequencyMatrix matrix = matrices[i];
+				matrix.reset(alleles, populations[i]);
+				if (sources[i].collect(variant, alleleKeys, matrix)) sources[i].writeFrequencies(variant, matrix);
+				heads[i] = sources[i].getNextCoordinate();
+			}
+			if (heads[i] == null) known = false;
+			else if (min == null || heads[i].compareTo(min) < 0) min = heads[i];
+		}
+		next = known ? min : null;
+	}
+
+	@Override
+	public void close() {
+		for (FrequencyAnnotator source : sources) source.close();
+	}
+
+	private static class Declaration implements VariantConsumer {
+
+		private final FrequencyAnnotator source;
+
+		private Declaration(FrequencyAnnotator source) {
+			this.source = source;
+		}
+
+		@Override
+		public void start(VcfHeader header) {
+			source.start(header);
+		}
+
+		@Override
+		public void accept(Variant variant) {
+		}
+
+		@Override
+		public void acceptBatch(List<Variant> variants) {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -4,11 +4,25 @@ import org.uichuimi.vcf.header.VcfHeader;
 import org.uichuimi.vcf.utils.exception.VcfException;
 import org.uichuimi.vcf.variant.Variant;
 
+import java.util.List;
+
 public interface VariantConsumer {
 
 	void start(VcfHeader header) throws VcfException;
 
 	void accept(Variant variant);
 
+	/**
+	 * Processes a block of consecutive variants, in input order. By default, calls {@link
+	 * #accept(Variant)} for each variant. Consumers can override it to share per record work, such
+	 * as chromosome checks, across the whole block.
+	 *
+	 * @param variants
+	 * 		variants in input order
+	 */
+	default void acceptBatch(List<Variant> variants) {
+		for (Variant variant : variants) accept(variant);
+	}
+
 	void close();
 }
@@ -20,7 +20,16 @@ public class VcfWriter implements VariantConsumer {
 	 * @param namespace
 	 */
 	public VcfWriter(final File file, Chromosome.Namespace namespace) throws IOException {
-		writer = new VariantWriter(FileUtils.getOutputStream(file), namespace);
+		this(file, namespace, FileUtils.DEFAULT_COMPRESSION_LEVEL);
+	}
+
+	/**
+	 * @param file             output file
+	 * @param namespace
+	 * @param compressionLevel compression level, from 0 to 9, if file is compressed
+	 */
+	public VcfWriter(final File file, Chromosome.Namespace namespace, int compressionLevel) throws IOException {
+		writer = new VariantWriter(FileUtils.getOutputStream(file, compressionLevel), namespace);
 	}
 
 	public VcfWriter(OutputStream out, Chromosome.Namespace namespace) {
@@ -1,21 +1,58 @@
 package org.uichuimi.vcf.utils.annotation.consumer.dbsnp;
 
 import org.uichuimi.vcf.header.VcfHeader;
-import org.uichuimi.vcf.io.VariantReader;
-import org.uichuimi.vcf.utils.FileUtils;
 import org.uichuimi.vcf.utils.annotation.consumer.VariantConsumer;
+import org.uichuimi.vcf.utils.common.Projection;
+import org.uichuimi.vcf.utils.common.RegionSlice;
+import org.uichuimi.vcf.utils.common.Regions;
+import org.uichuimi.vcf.utils.common.ResourceReader;
+import org.uichuimi.vcf.utils.common.VariantKey;
+import org.uichuimi.vcf.utils.dbsnp.DbsnpIndex;
 import org.uichuimi.vcf.variant.Chromosome;
 import org.uichuimi.vcf.variant.Variant;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class DbsnpAnnotator implements VariantConsumer {
 
-	private final VariantReader reader;
+	/**
+	 * Only the rs identifier is read
+	 */
+	private static final Projection PROJECTION = new Projection(List.of(), true, false);
+
+	private final ResourceReader reader;
+	private final DbsnpIndex index;
 
 	public DbsnpAnnotator(File dbsnp) throws IOException {
-		reader = new VariantReader(FileUtils.getInputStream(dbsnp), Chromosome.Namespace.REFSEQ);
+		reader = ResourceReader.open(dbsnp, PROJECTION, Chromosome.Namespace.REFSEQ);
+		index = null;
+	}
+
+	/**
+	 * Reads the identifiers from an already open resource, such as a {@link RegionSlice}.
+	 */
+	public DbsnpAnnotator(ResourceReader reader) {
+		this.reader = reader;
+		this.index = null;
+	}
+
+	/**
+	 * Looks up the identifiers in an index created with build-dbsnp-index. Unlike VCF sources,
+	 * identifiers are only taken from the records with the same reference and alternative alleles.
+	 */
+	public DbsnpAnnotator(DbsnpIndex index) {
+		this.reader = null;
+		this.index = index;
+	}
+
+	/**
+	 * Loads the identifiers of dbsnp inside regions.
+	 */
+	public static RegionSlice slice(File dbsnp, Regions regions) throws IOException {
+		return RegionSlice.load(List.of(dbsnp), PROJECTION, Chromosome.Namespace.REFSEQ, regions);
 	}
 
 	@Override
@@ -25,14 +62,49 @@ public class DbsnpAnnotator implements VariantConsumer {
 
 	@Override
 	public void accept(Variant variant) {
+		annotate(variant);
+	}
+
+	@Override
+	public void acceptBatch(List<Variant> variants) {
+		for (Variant variant : variants) {
+			// Once dbSNP is exhausted, no more variants can be annotated
+			if (index == null && !reader.hasNext()) return;
+			annotate(variant);
+		}
+	}
+
+	private void annotate(Variant variant) {
+		if (index != null) {
+			annotateFromIndex(variant);
+			return;
+		}
 		final Variant dbsnp = reader.next(variant.getCoordinate());
 		if (dbsnp == null) return;
 		variant.getIdentifiers().clear();
 		variant.getIdentifiers().add(dbsnp.getIdentifiers().get(0));
 	}
 
+	private void annotateFromIndex(Variant variant) {
+		final long position = VariantKey.position(variant.getCoordinate());
+		final String reference = variant.getReferences().get(0);
+		List<String> identifiers = null;
+		for (String alternative : variant.getAlternatives()) {
+			final long rs = index.find(position, VariantKey.allele(reference, alternative));
+			if (rs == 0) continue;
+			if (identifiers == null) identifiers = new ArrayList<>(1);
+			final String id = "rs" + rs;
+			if (!identifiers.contains(id)) identifiers.add(id);
+		}
+		if (identifiers == null) return;
+		variant.getIdentifiers().clear();
+		variant.getIdentifiers().addAll(identifiers);
+	}
+
 	@Override
 	public void close() {
+		// Mapped buffers are released by the garbage collector
+		if (reader == null) return;
 		try {
 			reader.close();
 		} catch (IOException e) {
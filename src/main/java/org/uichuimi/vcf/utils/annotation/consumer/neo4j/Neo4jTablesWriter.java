@@ -4,15 +4,15 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.uichuimi.vcf.header.VcfHeader;
 import org.uichuimi.vcf.utils.annotation.AnnotationConstants;
+import org.uichuimi.vcf.utils.annotation.Consequence;
 import org.uichuimi.vcf.utils.annotation.Genotype;
-import org.uichuimi.vcf.utils.annotation.consumer.VariantConsumer;
+import org.uichuimi.vcf.utils.annotation.consumer.*;
+import org.uichuimi.vcf.utils.common.FileUtils;
 import org.uichuimi.vcf.variant.*;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -57,13 +57,28 @@ public class Neo4jTablesWriter implements VariantConsumer {
 	private final TableWriter chromosomes;
 
 	private VcfHeader header;
+	private Chromosome indexedChromosome;
+	private int chromosomeIndex;
 
 	private final AtomicLong frequencyId = new AtomicLong();
 	private final List<TableWriter> tables;
+	/**
+	 * Frequency sources annotated with --typed-frequencies.
+	 */
+	private final List<String> typedFrequencies = new ArrayList<>();
 
 	private static final List<String> DATABASES = List.of("gnomAD genomes", "gnomAD exomes");
 	private static final List<String> DB_PREFIXES = List.of("GG", "GE");
 	private static final List<String> POP_PREFIXES = List.of("afr", "ami", "oth", "sas", "asj", "fin", "nfe", "eas");
+	/**
+	 * Source of the typed frequencies (GG_AF_afr...), by the key of the annotator, with the same
+	 * names as the frequencies read from AC and AN.
+	 */
+	private static final Map<String, String> TYPED_SOURCES = Map.of(
+			GnomadGenomeAnnotator.KEY, DATABASES.get(0),
+			GnomadExomeAnnotator.KEY, DATABASES.get(1),
+			KGenomesAnnotator.KEY, "1000 genomes phase 3",
+			ExACAnnotator.KEY, "ExAC");
 
 //	private static final List<String> KEYS = List.of("KG_AF", "GG_AF", "GE_AF", "EX_AF");
 //	private static final List<List<String>> POPULATIONS = List.of(
@@ -73,40 +88,51 @@ public class Neo4jTablesWriter implements VariantConsumer {
 //			ExACAnnotator.POPULATIONS);
 
 	public Neo4jTablesWriter(File path) throws IOException {
+		this(path, FileUtils.DEFAULT_COMPRESSION_LEVEL);
+	}
 
-		samples = new TableWriter(new File(path, "Persons.tsv.gz"), Collections.singletonList("identifier:ID(sample)"));
+	/**
+	 * @param path             output folder
+	 * @param compressionLevel compression level of the tables, from 0 to 9
+	 */
+	public Neo4jTablesWriter(File path, int compressionLevel) throws IOException {
+
+		samples = new TableWriter(new File(path, "Persons.tsv.gz"), Collections.singletonList("identifier:ID(sample)"), compressionLevel);
 		samples.createIndex(0);
 
 		// (:Sample)-[:genotype]->(:Variant)
 		final List<String> GT_COLS = List.of(":TYPE", ":START_ID(sample)", ":END_ID(variant)", "REF_COUNT", "ALT_COUNT");
-		genotypes = new TableWriter(new File(path, "genotypes.tsv.gz"), GT_COLS);
+		genotypes = new TableWriter(new File(path, "genotypes.tsv.gz"), GT_COLS, compressionLevel);
 
 		// (:Variant)-[:CHROMOSOME]->(:Chromosome)
-		var2chrom = new TableWriter(new File(path, "variant2chromosome.tsv.gz"), List.of(":START_ID(variant)", ":END_ID(chromosome)"));
+		var2chrom = new TableWriter(new File(path, "variant2chromosome.tsv.gz"), List.of(":START_ID(variant)", ":END_ID(chromosome)"), compressionLevel);
 
 		// (:Chromosome)
-		chromosomes = new TableWriter(new File(path, "Chromosomes.tsv.gz"), List.of("name:ID(chromosome)", "index:int"));
+		chromosomes = new TableWriter(new File(path, "Chromosomes.tsv.gz"), List.of("name:ID(chromosome)", "index:int"), compressionLevel);
 
 		// (:Variant)
 		final List<String> cols = new ArrayList<>(List.of(":ID(variant)", "chrom:string",
 				"chromIndex:int", "pos:int", "ref:string", "alt:string", "identifier:string",
 				"sift:string", "polyphen:string", "amino:string", "hgvsp:string", "gmaf:double"));
-		variants = new TableWriter(new File(path, "Variants.tsv.gz"), cols);
+		variants = new TableWriter(new File(path, "Variants.tsv.gz"), cols, compressionLevel);
 
-		var2effect = new TableWriter(new File(path, "var2effect.tsv.gz"), List.of(":START_ID(variant)", ":END_ID(effect)"));
+		var2effect = new TableWriter(new File(path, "var2effect.tsv.gz"), List.of(":START_ID(variant)", ":END_ID(effect)"), compressionLevel);
 
 		// (:Variant)-[:gene]->(:Gene)
-		var2gene = new TableWriter(new File(path, "var2gene.tsv.gz"), List.of(":START_ID(variant)", ":END_ID(gene)"));
+		var2gene = new TableWriter(new File(path, "var2gene.tsv.gz"), List.of(":START_ID(variant)", ":END_ID(gene)"), compressionLevel);
 
 		// (:Variant)-[:FREQUENCY]->(:Frequency)
-		frequencies = new TableWriter(new File(path, "Frequencies.tsv.gz"), List.of(":ID(freq)", "source", "population", "an:int", "ac:int", "af:double"));
-		var2freq = new TableWriter(new File(path, "var2freq.tsv.gz"), List.of(":START_ID(variant)", ":END_ID(freq)"));
+		frequencies = new TableWriter(new File(path, "Frequencies.tsv.gz"), List.of(":ID(freq)", "source", "population", "an:int", "ac:int", "af:double"), compressionLevel);
+		var2freq = new TableWriter(new File(path, "var2freq.tsv.gz"), List.of(":START_ID(variant)", ":END_ID(freq)"), compressionLevel);
 		tables = List.of(this.samples, var2gene, variants, frequencies, var2freq, var2effect, genotypes);
 	}
 
 	@Override
 	public void start(VcfHeader header) {
 		this.header = header;
+		for (String key : FrequencyFields.POPULATIONS.keySet())
+			if (header.hasComplexHeader("INFO", FrequencyFields.getTypedKey(key, FrequencyFields.POPULATIONS.get(key).get(0))))
+				typedFrequencies.add(key);
 		try {
 			writeSamples(header);
 			writeChromosomes(header);
@@ -141,14 +167,27 @@ public class Neo4jTablesWriter implements VariantConsumer {
 	@Override
 	public void accept(Variant variant) {
 		try {
-			for (int r = 0; r < variant.getReferences().size(); r++)
-				for (int a = 0; a < variant.getAlternatives().size(); a++)
-					addSimplifiedVariant(variant, r, a);
+			write(variant);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void acceptBatch(List<Variant> variants) {
+		try {
+			for (Variant variant : variants) write(variant);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 
+	private void write(Variant variant) throws IOException {
+		for (int r = 0; r < variant.getReferences().size(); r++)
+			for (int a = 0; a < variant.getAlternatives().size(); a++)
+				addSimplifiedVariant(variant, r, a);
+	}
+
 	/**
 	 * Adds a variant to the variants table. Since third normal form requires only 1 reference
 	 * allele and 1 alternative allele, this method should be called <em>r * a</em> times, to export
@@ -170,15 +209,22 @@ public class Neo4jTablesWriter implements VariantConsumer {
 		final String variantId = String.format("%s:%s:%s:%s", chrom, position, ref, alt);
 
 		Double gmaf = null;
+		// source and population of the frequencies already written
+		final Set<String> written = new HashSet<>();
 		for (int i = 0; i < DATABASES.size(); i++) {
 			for (String popPrefix : POP_PREFIXES) {
 				final Double f = writeFrequency(variant, variantId, a, DATABASES.get(i), DB_PREFIXES.get(i), popPrefix);
 				if (f != null) {
+					written.add(DATABASES.get(i) + ":" + popPrefix);
 					if (gmaf == null) gmaf = f;
 					else gmaf = Double.max(gmaf, f);
 				}
 			}
 		}
+		for (String key : typedFrequencies) {
+			final Double f = writeFrequencies(variant, variantId, a, key, written);
+			if (f != null) gmaf = gmaf == null ? f : Double.max(gmaf, f);
+		}
 		writeVariant(variantId, variant, a, r, gmaf);
 
 		writeConsequence(variant, variantId, a);
@@ -219,7 +265,7 @@ public class Neo4jTablesWriter implements VariantConsumer {
 
 	private boolean filter(Variant variant, int r, int a) {
 		final List<String> cons = variant.getInfo("CONS");
-		if (cons == null || cons.size() < a || cons.get(a) == null || cons.get(a).equals("intergenic_variant"))
+		if (cons == null || cons.size() <= a || cons.get(a) == null || Consequence.parse(cons.get(a)) == Consequence.INTERGENIC_VARIANT)
 			return false;
 		if (variant.getAlternatives().get(a).equals("*")) return false;
 		// variant passes if there is at least
@@ -255,7 +301,7 @@ public class Neo4jTablesWriter implements VariantConsumer {
 		final String identifier = variant.getIdentifiers().isEmpty()
 				? "n" + NEXT_ID.incrementAndGet()
 				: variant.getIdentifiers().get(0);
-		final Integer chromIndex = chrs.indexOf(variant.getCoordinate().getChromosome());
+		final Integer chromIndex = getChromosomeIndex(variant.getCoordinate().getChromosome());
 		// ":ID(variant)", "chrom:string", "chromIndex:int", "pos:int", "ref:string", "alt:string",
 		// "identifier:string", "sift:string", "polyphen:string", "amino:string", "hgvsp:string", "gmaf:double"
 		variants.write(variantId, chrom, chromIndex, position, ref, alt,
@@ -284,6 +330,17 @@ public class Neo4jTablesWriter implements VariantConsumer {
 		return variantId;
 	}
 
+	/**
+	 * Index of chromosome in the chromosome list. Variants come sorted, so only the last one is kept.
+	 */
+	private int getChromosomeIndex(Chromosome chromosome) {
+		if (indexedChromosome != chromosome) {
+			indexedChromosome = chromosome;
+			chromosomeIndex = chrs.indexOf(chromosome);
+		}
+		return chromosomeIndex;
+	}
+
 	private void writeGene(Variant variant, String variantId, int a) throws IOException {
 		final List<String> genes = variant.getInfo(AnnotationConstants.ENSG);
 		if (genes == null) return;
@@ -314,22 +371,30 @@ public class Neo4jTablesWriter implements VariantConsumer {
 		}
 	}
 
-	private Double writeFrequencies(Variant variant, String variantId, int a, String database, String key, List<String> populations) throws IOException {
-		// Frequencies are Number=A, so a must be position in alternatives
-		final List<String> freqs = variant.getInfo(key);
-		if (freqs == null) return null;
-		if (freqs.size() <= a) return null;
-		final String fr = freqs.get(a);
-		if (fr == null || fr.equals(VcfConstants.EMPTY_VALUE)) return null;
-		final String[] values = fr.split(AnnotationConstants.ESCAPED_DELIMITER);
+	/**
+	 * Writes the typed frequencies of a source (KG_AF_afr, KG_AF_amr...), which are read as Float
+	 * values, with no allele counts. Populations already written from AC and AN are skipped.
+	 *
+	 * @param written
+	 * 		source and population of the frequencies already written
+	 */
+	private Double writeFrequencies(Variant variant, String variantId, int a, String key, Set<String> written) throws IOException {
 		Double max = null;
-		for (int p = 0; p < populations.size(); p++) {
-			final String value = values[p];
-			if (value.equals(VcfConstants.EMPTY_VALUE)) continue;
+		final String source = TYPED_SOURCES.get(key);
+		final List<String> populations = FrequencyFields.POPULATIONS.get(key);
+		for (String population : populations) {
+			final String pop = population.toLowerCase();
+			if (written.contains(source + ":" + pop)) continue;
+			// Frequencies are Number=A, so a must be position in alternatives
+			final List<Float> values = variant.getInfo(FrequencyFields.getTypedKey(key, population));
+			if (values == null || values.size() <= a) continue;
+			final Float value = values.get(a);
+			if (value == null) continue;
 			final long id = frequencyId.incrementAndGet();
 			var2freq.write(variantId, id);
-			frequencies.write(id, database, populations.get(p), value);
-			max = Double.max(max == null ? 0 : max, Double.parseDouble(value));
+			// ":ID(freq)", "source", "population", "an:int", "ac:int", "af:double"
+			frequencies.write(id, source, pop, null, null, value);
+			max = Double.max(max == null ? 0 : max, value);
 		}
 		return max;
 	}
@@ -31,9 +31,9 @@ class TableWriter implements AutoCloseable {
 		Runtime.getRuntime().addShutdownHook(new Thread(() -> writers.forEach(TableWriter::close)));
 	}
 
-	TableWriter(File file, List<String> columns) throws IOException {
+	TableWriter(File file, List<String> columns, int compressionLevel) throws IOException {
 		this.delimiter = DEFAULT_DELIMITER;
-		this.writer = FileUtils.getBufferedWriter(file);
+		this.writer = FileUtils.getBufferedWriter(file, compressionLevel);
 		this.columns = columns;
 		write(columns);
 		writers.add(this);
@@ -1,14 +1,29 @@
 package org.uichuimi.vcf.utils.annotation.consumer.snpeff;
 
-import org.uichuimi.vcf.utils.annotation.consumer.snpeff.grammar.AllelesToken;
-
-import java.util.Collection;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 import java.util.stream.Collectors;
 
 public class ProteinChange {
 
+	/**
+	 * Maximum number of parsed changes kept by {@link #getInstance(String)}.
+	 */
+	private static final int CACHE_SIZE = 4096;
+	/**
+	 * Marks values that are not a protein change in the cache.
+	 */
+	private static final ProteinChange INVALID = new ProteinChange();
+	/**
+	 * Most recently used changes by HGVS.p string, as the same changes repeat across variants.
+	 */
+	private static final Map<String, ProteinChange> CACHE = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, ProteinChange> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+	private static final ThreadLocal<ProteinChangeParser> PARSER = ThreadLocal.withInitial(ProteinChangeParser::new);
+
 	private boolean predicted;
 	private Range reference;
 	private Collection<Amino> alternative;
@@ -19,10 +34,28 @@ public class ProteinChange {
 	private Type type;
 	private Integer copies;
 
+	/**
+	 * Parses a HGVS protein change. Instances are shared between calls with the same value, so they
+	 * cannot be modified outside this package. The cache is locked only to look up and store
+	 * values, so threads parse at the same time.
+	 *
+	 * @return the first change in value, or null if value is not a protein change
+	 */
 	static ProteinChange getInstance(String value) {
-		final AllelesToken token = new AllelesToken();
-		if (!token.consume(value)) return null;
-		return token.getValue().getChanges().get(0);
+		ProteinChange change;
+		synchronized (CACHE) {
+			change = CACHE.get(value);
+		}
+		if (change == null) {
+			change = PARSER.get().parse(value);
+			if (change == null) change = INVALID;
+			synchronized (CACHE) {
+				// Another thread may have parsed the same value
+				final ProteinChange previous = CACHE.putIfAbsent(value, change);
+				if (previous != null) change = previous;
+			}
+		}
+		return change == INVALID ? null : change;
 		// http://varnomen.hgvs.org/recommendations/protein/
 		// substitution
 		// (amino)(position)(amino)
@@ -111,19 +144,19 @@ public class ProteinChange {
 		//  “Ter_position”“new_amino_acid”“ext”“position_new_termination_site”
 	}
 
-	public void setPredicted(boolean predicted) {
+	void setPredicted(boolean predicted) {
 		this.predicted = predicted;
 	}
 
-	public void setReference(Range reference) {
+	void setReference(Range reference) {
 		this.reference = reference;
 	}
 
-	public void setMosaic(boolean mosaic) {
+	void setMosaic(boolean mosaic) {
 		this.mosaic = mosaic;
 	}
 
-	public void setChimeric(boolean chimeric) {
+	void setChimeric(boolean chimeric) {
 		this.chimeric = chimeric;
 	}
 
@@ -131,7 +164,7 @@ public class ProteinChange {
 		return chimeric;
 	}
 
-	public void setSecondaryAlternative(Amino secondaryAlternative) {
+	void setSecondaryAlternative(Amino secondaryAlternative) {
 		this.secondaryAlternative = secondaryAlternative;
 	}
 
@@ -139,7 +172,7 @@ public class ProteinChange {
 		return secondaryAlternative;
 	}
 
-	public void setPosition(Integer position) {
+	void setPosition(Integer position) {
 		this.position = position;
 	}
 
@@ -147,7 +180,7 @@ public class ProteinChange {
 		return position;
 	}
 
-	public void setType(Type type) {
+	void setType(Type type) {
 		this.type = type;
 	}
 
@@ -155,8 +188,11 @@ public class ProteinChange {
 		return type;
 	}
 
-	public void setAlternative(Collection<Amino> alternative) {
-		this.alternative = alternative;
+	void setAlternative(Collection<Amino> alternative) {
+		// Lists and sets are written differently
+		this.alternative = alternative == null ? null : alternative instanceof Set
+				? Collections.unmodifiableSet((Set<Amino>) alternative)
+				: List.copyOf(alternative);
 	}
 
 	public boolean isPredicted() {
@@ -179,7 +215,7 @@ public class ProteinChange {
 		return chimeric;
 	}
 
-	public void setCopies(Integer copies) {
+	void setCopies(Integer copies) {
 		this.copies = copies;
 	}
 
@@ -0,0 +1,263 @@
+package org.uichuimi.vcf.utils.annotation.consumer.snpeff;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recursive descent parser of HGVS protein changes (without the p. prefix). It reads the string
+ * once, keeping an index instead of creating substrings, and tries the alternatives of each rule in
+ * a fixed order, backtracking to the start of the rule when one fails:
+ * <pre>
+ * alleles      = variant | "[" variant ";" variant "]"
+ * variant      = "(" change ")" | change
+ * change       = "0" | "?" | range alternative
+ * range        = amino position ["_" amino position]
+ * alternative  = "delins" sequence | "del" | frameshift | substitution | "ins" (sequence | copies)
+ *              | "dup" | "[" copies "]"
+ * frameshift   = "fs" | amino "fs" [("*" | "Ter") ("?" | position)]
+ * substitution = set | sequence ["/" ("del" | ["/"] amino)]
+ * </pre>
+ * Text after a complete variant is ignored. Instances are not thread safe.
+ */
+class ProteinChangeParser {
+
+	private static final Amino[] AMINOS = Amino.values();
+
+	private String text;
+	private int position;
+	/**
+	 * End of the text for the rules after a set, which ignores trailing ^.
+	 */
+	private int end;
+
+	/**
+	 * @return the first change in value, or null if value is not a protein change
+	 */
+	ProteinChange parse(String value) {
+		text = value;
+		position = 0;
+		end = value.length();
+		final ProteinChange variant = variant();
+		if (variant != null) return variant;
+		// [VARIANT;VARIANT]
+		position = 0;
+		end = value.length();
+		if (!value.startsWith("[") || !value.endsWith("]")) return null;
+		position = 1;
+		final ProteinChange first = variant();
+		if (first == null || !consume(";")) return null;
+		return variant() == null ? null : first;
+	}
+
+	private ProteinChange variant() {
+		final int start = position;
+		final int end = this.end;
+		if (consume("(")) {
+			final ProteinChange change = change();
+			if (change != null && consume(")")) {
+				change.setPredicted(true);
+				return change;
+			}
+			position = start;
+			this.end = end;
+		}
+		return change();
+	}
+
+	private ProteinChange change() {
+		if (consume("0")) return create(ProteinChange.Type.NO_PROTEIN);
+		if (consume("?")) return create(ProteinChange.Type.UNKNOWN);
+		final Range range = range();
+		if (range == null) return null;
+		final ProteinChange change = alternative();
+		if (change != null) change.setReference(range);
+		return change;
+	}
+
+	private Range range() {
+		final Amino startAmino = amino();
+		if (startAmino == null) return null;
+		final Integer startPosition = digits();
+		if (startPosition == null) return null;
+		final Range range = new Range();
+		range.setStartAmino(startAmino);
+		range.setStartPosition(startPosition);
+		if (!consume("_")) return range;
+		final Amino endAmino = amino();
+		if (endAmino == null) return null;
+		final Integer endPosition = digits();
+		if (endPosition == null) return null;
+		range.setEndAmino(endAmino);
+		range.setEndPosition(endPosition);
+		return range;
+	}
+
+	private ProteinChange alternative() {
+		final int start = position;
+		if (consume("delins")) {
+			final List<Amino> sequence = sequence();
+			if (sequence != null) return create(ProteinChange.Type.DELINS, sequence);
+			position = start;
+		}
+		if (consume("del")) return create(ProteinChange.Type.DELETION);
+		ProteinChange change = frameshift();
+		if (change != null) return change;
+		position = start;
+		change = substitution();
+		if (change != null) return change;
+		position = start;
+		if (consume("ins")) {
+			final List<Amino> sequence = sequence();
+			if (sequence != null) return create(ProteinChange.Type.INSERTION, sequence);
+			final Integer copies = digits();
+			if (copies != null) {
+				change = create(ProteinChange.Type.INSERTION);
+				change.setCopies(copies);
+				return change;
+			}
+			position = start;
+		}
+		if (consume("dup")) return create(ProteinChange.Type.DUPLICATION);
+		if (consume("[")) {
+			final Integer copies = digits();
+			if (copies != null && consume("]")) {
+				change = create(ProteinChange.Type.REPEATED);
+				change.setCopies(copies);
+				return change;
+			}
+			position = start;
+		}
+		return null;
+	}
+
+	private ProteinChange frameshift() {
+		if (consume("fs")) return create(ProteinChange.Type.FRAMESHIFT);
+		// Long version, the new amino acid plus the position of the termination
+		final Amino amino = amino();
+		if (amino == null || !consume("fs")) return null;
+		final ProteinChange change = create(ProteinChange.Type.FRAMESHIFT, List.of(amino));
+		final int afterShift = position;
+		// Do we have the position of the termination codon?
+		if (!consume(Amino.TERMINATION.getSymbol()) && !consume(Amino.TERMINATION.getShortName())) {
+			position = afterShift;
+			return change;
+		}
+		// position of the termination codon is unknown
+		if (consume("?")) return change;
+		final Integer termination = digits();
+		if (termination == null) return null;
+		change.setPosition(termination);
+		return change;
+	}
+
+	private ProteinChange substitution() {
+		final ProteinChange set = set();
+		if (set != null) return set;
+		final List<Amino> sequence = sequence();
+		if (sequence == null) return null;
+		final ProteinChange change = create(ProteinChange.Type.SUBSTITUTION, sequence);
+		final int afterSequence = position;
+		if (!consume("/")) return change;
+		if (end - position == 3 && text.startsWith("del", position)) {
+			change.setSecondaryAlternative(null);
+			position = end;
+			return change;
+		}
+		final boolean chimeric = consume("/");
+		final Amino secondary = amino();
+		if (secondary == null) {
+			position = afterSequence;
+			return change;
+		}
+		change.setSecondaryAlternative(secondary);
+		change.setMosaic(!chimeric);
+		change.setChimeric(chimeric);
+		return change;
+	}
+
+	/**
+	 * A set of alternatives, like Ala^Ser^Cys. All the rest of the text is split by ^, only the last
+	 * element may be followed by more text, and the other elements must be exactly amino acid short
+	 * names (unknown names are added as null).
+	 */
+	private ProteinChange set() {
+		if (text.lastIndexOf('^', end - 1) < position) return null;
+		// Trailing separators are ignored
+		int trimmed = end;
+		while (trimmed > position && text.charAt(trimmed - 1) == '^') trimmed--;
+		if (trimmed == position) return null;
+		final int start = position;
+		final int savedEnd = end;
+		final int last = Math.max(text.lastIndexOf('^', trimmed - 1), start - 1);
+		position = last + 1;
+		end = trimmed;
+		final Amino lastAmino = amino();
+		if (lastAmino == null) {
+			position = start;
+			end = savedEnd;
+			return null;
+		}
+		final Set<Amino> aminos = new LinkedHashSet<>();
+		for (int from = start; from <= last; ) {
+			final int to = text.indexOf('^', from);
+			aminos.add(Amino.fromShort(text.substring(from, to)));
+			from = to + 1;
+		}
+		aminos.add(lastAmino);
+		final ProteinChange change = create(ProteinChange.Type.SUBSTITUTION);
+		change.setAlternative(aminos);
+		return change;
+	}
+
+	private List<Amino> sequence() {
+		Amino amino = amino();
+		if (amino == null) return null;
+		final List<Amino> sequence = new ArrayList<>();
+		while (amino != null) {
+			sequence.add(amino);
+			amino = amino();
+		}
+		return sequence;
+	}
+
+	private Amino amino() {
+		for (Amino amino : AMINOS) if (consume(amino.getShortName())) return amino;
+		if (consume(Amino.TERMINATION.getSymbol())) return Amino.TERMINATION;
+		if (consume(Amino.IDENTICAL.getSymbol())) return Amino.IDENTICAL;
+		if (consume("?")) return Amino.UNKNOWN;
+		return null;
+	}
+
+	private Integer digits() {
+		int i = position;
+		while (i < end && Character.isDigit(text.charAt(i))) i++;
+		if (i == position) return null;
+		final int value = Integer.parseInt(text, position, i, 10);
+		position = i;
+		return value;
+	}
+
+	/**
+	 * Advances over token if the text continues with it.
+	 */
+	private boolean consume(String token) {
+		if (end - position < token.length() || !text.startsWith(token, position)) return false;
+		position += token.length();
+		return true;
+	}
+
+	private static ProteinChange create(ProteinChange.Type type) {
+		final ProteinChange change = new ProteinChange();
+		change.setType(type);
+		return change;
+	}
+
+	private static ProteinChange create(ProteinChange.Type type, Collection<Amino> alternative) {
+		final ProteinChange change = create(type);
+		change.setAlternative(alternative);
+		return change;
+	}
+}
@@ -12,7 +12,7 @@ public class Range {
 		return startAmino;
 	}
 
-	public void setStartAmino(Amino startAmino) {
+	void setStartAmino(Amino startAmino) {
 		this.startAmino = startAmino;
 	}
 
@@ -20,7 +20,7 @@ public class Range {
 		return startPosition;
 	}
 
-	public void setStartPosition(Integer startPosition) {
+	void setStartPosition(Integer startPosition) {
 		this.startPosition = startPosition;
 	}
 
@@ -28,7 +28,7 @@ public class Range {
 		return endAmino;
 	}
 
-	public void setEndAmino(Amino endAmino) {
+	void setEndAmino(Amino endAmino) {
 		this.endAmino = endAmino;
 	}
 
@@ -36,7 +36,7 @@ public class Range {
 		return endPosition;
 	}
 
-	public void setEndPosition(Integer endPosition) {
+	void setEndPosition(Integer endPosition) {
 		this.endPosition = endPosition;
 	}
 
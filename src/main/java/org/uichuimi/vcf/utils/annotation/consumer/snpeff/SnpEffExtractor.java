@@ -4,6 +4,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.uichuimi.vcf.header.InfoHeaderLine;
 import org.uichuimi.vcf.header.VcfHeader;
+import org.uichuimi.vcf.utils.annotation.Consequence;
 import org.uichuimi.vcf.utils.annotation.consumer.VariantConsumer;
 import org.uichuimi.vcf.utils.annotation.gff.Gene;
 import org.uichuimi.vcf.utils.annotation.gff.GeneMap;
@@ -18,6 +19,9 @@ public class SnpEffExtractor implements VariantConsumer {
 
 	private static final String ANN = "ANN";
 	private static final String INTERGENIC_VARIANT = "intergenic_variant";
+	private static final Map<String, String> CONSEQUENCE_REPLACEMENTS = Map.of(
+			"intergenic_region", INTERGENIC_VARIANT
+	);
 	private final GeneMap geneMap;
 
 	public SnpEffExtractor(GeneMap geneMap) {
@@ -52,14 +56,10 @@ public class SnpEffExtractor implements VariantConsumer {
 		// 2. Effect type: Effects assumed to be more deleterious effects first.
 		// 3. Canonical transcript before non-canonical.
 		// 4. Marker genomic coordinates (e.g. genes starting before first).
+		final String[] winners = selectMostSevere(variant.getAlternatives(), ann);
 		for (int i = 0; i < variant.getAlternatives().size(); i++) {
-			final String allele = variant.getAlternatives().get(i);
-			final Annotation annotation = ann.stream()
-					.map(this::toAnnotation)
-					.filter(it -> it.allele.equals(allele))
-					.min(Comparator.comparingInt(s -> CONS_SEVERITY.indexOf(s.effects.get(0))))
-					.orElse(null);
-			if (annotation == null) return;
+			if (winners[i] == null) return;
+			final Annotation annotation = toAnnotation(winners[i]);
 			setAlleleInfo(variant, i, ENSG, annotation.geneId);
 			setAlleleInfo(variant, i, ENST, annotation.featureId);
 			setAlleleInfo(variant, i, BIO, annotation.transcriptBiotype);
@@ -77,6 +77,54 @@ public class SnpEffExtractor implements VariantConsumer {
 
 	}
 
+	/**
+	 * Buckets the ANN entries by allele in one pass, reading only the allele and the first effect of
+	 * each entry. At the same severity, the first entry is kept.
+	 *
+	 * @return for each alternative allele, the entry with the most severe effect, or null if there
+	 * is none
+	 */
+	private static String[] selectMostSevere(List<String> alternatives, List<String> ann) {
+		final String[] winners = new String[alternatives.size()];
+		final int[] severities = new int[alternatives.size()];
+		for (String entry : ann) {
+			final int alleleEnd = entry.indexOf(DELIMITER);
+			if (alleleEnd < 0) continue;
+			final int allele = indexOf(alternatives, entry, alleleEnd);
+			if (allele < 0) continue;
+			final int severity = severity(entry, alleleEnd + 1);
+			if (winners[allele] == null || severity < severities[allele]) {
+				winners[allele] = entry;
+				severities[allele] = severity;
+			}
+		}
+		return winners;
+	}
+
+	/**
+	 * @return the index of the alternative allele equal to the first length characters of entry, or
+	 * -1
+	 */
+	private static int indexOf(List<String> alternatives, String entry, int length) {
+		for (int i = 0; i < alternatives.size(); i++) {
+			final String alternative = alternatives.get(i);
+			if (alternative.length() == length && entry.startsWith(alternative)) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the {@link Consequence#severity(String)} of the first effect of the entry, which
+	 * starts at from, or {@link Integer#MAX_VALUE} if there are no effects
+	 */
+	private static int severity(String entry, int from) {
+		int end = from;
+		while (end < entry.length() && entry.charAt(end) != '|' && entry.charAt(end) != '&') end++;
+		final String effect = entry.substring(from, end);
+		if (effect.isBlank()) return Integer.MAX_VALUE;
+		return Consequence.severity(CONSEQUENCE_REPLACEMENTS.getOrDefault(effect, effect));
+	}
+
 	private <T> void setAlleleInfo(Variant variant, int i, String key, T value) {
 		if (value == null) return;
 		List<T> field = variant.getInfo(key);
@@ -128,10 +176,6 @@ public class SnpEffExtractor implements VariantConsumer {
 
 	private class Annotation {
 
-		private final Map<String, String> CONSEQUENCE_REPLACEMENTS = Map.of(
-				"intergenic_region", INTERGENIC_VARIANT
-		);
-
 		static final String SECONDARY_SEPARATOR = "&";
 		static final String TERTIARY_SEPARATOR = "/";
 		private final String allele;
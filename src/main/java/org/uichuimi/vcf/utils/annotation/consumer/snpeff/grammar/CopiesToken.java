@@ -1,4 +0,0 @@
-package org.uichuimi.vcf.utils.annotation.consumer.snpeff.grammar;
-
-public class CopiesToken extends DigitsToken {
-}
@@ -0,0 +1,295 @@
+package org.uichuimi.vcf.utils.annotation.consumer.vep;
+
+import org.uichuimi.vcf.header.InfoHeaderLine;
+import org.uichuimi.vcf.header.VcfHeader;
+import org.uichuimi.vcf.utils.annotation.Consequence;
+import org.uichuimi.vcf.utils.annotation.consumer.VariantConsumer;
+import org.uichuimi.vcf.variant.Variant;
+import org.uichuimi.vcf.variant.VcfType;
+
+import java.util.*;
+
+import static org.uichuimi.vcf.utils.annotation.AnnotationConstants.*;
+import static org.uichuimi.vcf.variant.VcfConstants.NUMBER_A;
+
+/**
+ * Extracts consequences from the CSQ field written by Ensembl VEP into the input file, filling the
+ * same fields as {@link VepAnnotator} without reading any VEP resource. The order of the CSQ fields
+ * is taken from the header when the extractor starts, and each CSQ entry is read in one pass: only
+ * the allele, consequence and prediction fields are read from every entry, and the rest of the
+ * fields are only decoded from the most severe entry of each allele.
+ */
+public class CsqExtractor implements VariantConsumer {
+
+	private static final String CSQ = "CSQ";
+	private static final String FORMAT = "Format: ";
+
+	/**
+	 * Index of each field in a CSQ entry, -1 if it is not in the header.
+	 */
+	private int allele = -1;
+	private int alleleNumber = -1;
+	private int consequence = -1;
+	private int symbol = -1;
+	private int gene = -1;
+	private int featureType = -1;
+	private int feature = -1;
+	private int biotype = -1;
+	private int aminoAcids = -1;
+	private int existingVariation = -1;
+	private int sift = -1;
+	private int polyphen = -1;
+	/**
+	 * Positions of the field separators of the current entry, fields[i] is the end of field i.
+	 */
+	private int[] fields;
+	private boolean enabled;
+
+	@Override
+	public void start(VcfHeader header) {
+		final InfoHeaderLine csq = header.getInfoHeader(CSQ);
+		final String description = csq == null ? null : csq.getDescription();
+		final int format = description == null ? -1 : description.indexOf(FORMAT);
+		if (format < 0) {
+			System.err.println(" - WARNING: No CSQ header line with Format found");
+			return;
+		}
+		final List<String> names = Arrays.asList(description.substring(format + FORMAT.length()).trim().split(ESCAPED_DELIMITER));
+		allele = names.indexOf("Allele");
+		alleleNumber = names.indexOf("ALLELE_NUM");
+		consequence = names.indexOf("Consequence");
+		symbol = names.indexOf("SYMBOL");
+		gene = names.indexOf("Gene");
+		featureType = names.indexOf("Feature_type");
+		feature = names.indexOf("Feature");
+		biotype = names.indexOf("BIOTYPE");
+		aminoAcids = names.indexOf("Amino_acids");
+		existingVariation = names.indexOf("Existing_variation");
+		sift = names.indexOf("SIFT");
+		polyphen = names.indexOf("PolyPhen");
+		if (consequence < 0 || allele < 0 && alleleNumber < 0) {
+			System.err.println(" - WARNING: CSQ header has no Allele or Consequence");
+			return;
+		}
+		fields = new int[names.size()];
+		enabled = true;
+		header.addHeaderLine(new InfoHeaderLine(SIFT, NUMBER_A, VcfType.STRING, "Sift prediction"), true);
+		header.addHeaderLine(new InfoHeaderLine(POLYPHEN, NUMBER_A, VcfType.STRING, "Polyphen prediction"), true);
+		header.addHeaderLine(new InfoHeaderLine(CONS, NUMBER_A, VcfType.STRING, "Ensembl VEP consequence"), true);
+		header.addHeaderLine(new InfoHeaderLine(BIO, NUMBER_A, VcfType.STRING, "Gene biotype"), true);
+		header.addHeaderLine(new InfoHeaderLine(SYMBOL, NUMBER_A, VcfType.STRING, "Gene symbol"), true);
+		header.addHeaderLine(new InfoHeaderLine(FT, NUMBER_A, VcfType.STRING, "Feature type"), true);
+		header.addHeaderLine(new InfoHeaderLine(ENSG, NUMBER_A, VcfType.STRING, "Ensembl gene id"), true);
+		header.addHeaderLine(new InfoHeaderLine(ENST, NUMBER_A, VcfType.STRING, "Ensembl transcript id"), true);
+		header.addHeaderLine(new InfoHeaderLine(AMINO, NUMBER_A, VcfType.STRING, "Amino acid change (ref/alt)"), true);
+	}
+
+	@Override
+	public void accept(Variant variant) {
+		if (!enabled) return;
+		final List<String> csq = variant.getInfo(CSQ);
+		if (csq == null) return;
+		// remove value from variant
+		variant.setInfo(CSQ, null);
+		final int alternatives = variant.getAlternatives().size();
+		final String[] alleles = alleleNumber < 0 ? getVepAlleles(variant) : null;
+		final String[] winners = new String[alternatives];
+		final int[] severities = new int[alternatives];
+		final boolean[] transcripts = new boolean[alternatives];
+		final String[] siftValues = new String[alternatives];
+		final double[] siftScores = new double[alternatives];
+		final String[] polyphenValues = new String[alternatives];
+		final double[] polyphenScores = new double[alternatives];
+		for (String entry : csq) {
+			if (!split(entry)) continue;
+			final int a = alleleNumber < 0 ? indexOf(alleles, entry) : getAlleleNumber(entry);
+			if (a < 0 || a >= alternatives) continue;
+			final int severity = severity(entry);
+			final boolean transcript = feature >= 0 && entry.startsWith(ENST, start(feature));
+			// Ensembl transcripts are preferred over other features with the same severity
+			if (winners[a] == null || severity < severities[a]
+					|| severity == severities[a] && !transcripts[a] && transcript) {
+				winners[a] = entry;
+				severities[a] = severity;
+				transcripts[a] = transcript;
+			}
+			// The most deleterious prediction among all the transcripts, as in VepAnnotator
+			if (sift >= 0) {
+				final double score = score(entry, sift);
+				if (!Double.isNaN(score) && (siftValues[a] == null || score < siftScores[a])) {
+					siftValues[a] = siftLabel(label(entry, sift));
+					siftScores[a] = score;
+				}
+			}
+			if (polyphen >= 0) {
+				final double score = score(entry, polyphen);
+				if (!Double.isNaN(score) && (polyphenValues[a] == null || score > polyphenScores[a])) {
+					polyphenValues[a] = label(entry, polyphen);
+					polyphenScores[a] = score;
+				}
+			}
+		}
+		final String[] cons = new String[alternatives];
+		final String[] feat = new String[alternatives];
+		final String[] enst = new String[alternatives];
+		final String[] ensg = new String[alternatives];
+		final String[] bio = new String[alternatives];
+		final String[] symbols = new String[alternatives];
+		final String[] aminos = new String[alternatives];
+		for (int a = 0; a < alternatives; a++) {
+			final String entry = winners[a];
+			if (entry == null) continue;
+			split(entry);
+			final String effect = field(entry, consequence);
+			if (effect != null) {
+				final int end = effect.indexOf('&');
+				cons[a] = end < 0 ? effect : effect.substring(0, end);
+			}
+			feat[a] = field(entry, featureType);
+			enst[a] = field(entry, feature);
+			ensg[a] = field(entry, gene);
+			bio[a] = field(entry, biotype);
+			symbols[a] = field(entry, symbol);
+			final String amino = field(entry, aminoAcids);
+			// Synonymous changes only have one amino acid
+			if (amino != null) aminos[a] = amino.indexOf('/') < 0 ? amino + "/" + amino : amino;
+			final String ids = field(entry, existingVariation);
+			if (ids != null) for (String id : ids.split("&"))
+				if (!variant.getIdentifiers().contains(id)) variant.getIdentifiers().add(id);
+		}
+		setIfAnyNotNull(variant, cons, CONS);
+		setIfAnyNotNull(variant, feat, FT);
+		setIfAnyNotNull(variant, enst, ENST);
+		setIfAnyNotNull(variant, ensg, ENSG);
+		setIfAnyNotNull(variant, bio, BIO);
+		setIfAnyNotNull(variant, symbols, SYMBOL);
+		setIfAnyNotNull(variant, siftValues, SIFT);
+		setIfAnyNotNull(variant, polyphenValues, POLYPHEN);
+		setIfAnyNotNull(variant, aminos, AMINO);
+	}
+
+	/**
+	 * VEP writes the alleles without the first base when it is shared by the reference and all the
+	 * alternatives (indels), and empty alleles as -.
+	 *
+	 * @return the alternative alleles as written by VEP in the Allele field
+	 */
+	static String[] getVepAlleles(Variant variant) {
+		final String reference = variant.getReferences().get(0);
+		final List<String> alternatives = variant.getAlternatives();
+		boolean trim = !reference.isEmpty();
+		for (String alternative : alternatives)
+			if (alternative.isEmpty() || alternative.charAt(0) != reference.charAt(0)) trim = false;
+		final String[] alleles = new String[alternatives.size()];
+		for (int i = 0; i < alleles.length; i++) {
+			final String alternative = alternatives.get(i);
+			alleles[i] = !trim ? alternative : alternative.length() == 1 ? "-" : alternative.substring(1);
+		}
+		return alleles;
+	}
+
+	/**
+	 * Finds the separators of entry in one pass.
+	 *
+	 * @return false if entry has less fields than the header
+	 */
+	private boolean split(String entry) {
+		int field = 0;
+		for (int i = 0; i < entry.length() && field < fields.length - 1; i++)
+			if (entry.charAt(i) == '|') fields[field++] = i;
+		if (field < fields.length - 1) return false;
+		fields[fields.length - 1] = entry.indexOf('|', fields.length > 1 ? fields[fields.length - 2] + 1 : 0);
+		if (fields[fields.length - 1] < 0) fields[fields.length - 1] = entry.length();
+		return true;
+	}
+
+	private int start(int field) {
+		return field == 0 ? 0 : fields[field - 1] + 1;
+	}
+
+	/**
+	 * @return the value of field in entry, or null if it is empty or not in the header
+	 */
+	private String field(String entry, int field) {
+		if (field < 0 || start(field) == fields[field]) return null;
+		return entry.substring(start(field), fields[field]);
+	}
+
+	private int indexOf(String[] alleles, String entry) {
+		final int start = start(allele);
+		final int length = fields[allele] - start;
+		for (int i = 0; i < alleles.length; i++)
+			if (alleles[i].length() == length && entry.startsWith(alleles[i], start)) return i;
+		return -1;
+	}
+
+	/**
+	 * @return the 0-based index of the ALLELE_NUM field, -1 if it is not a number
+	 */
+	private int getAlleleNumber(String entry) {
+		int number = 0;
+		final int end = fields[alleleNumber];
+		for (int i = start(alleleNumber); i < end; i++) {
+			final char c = entry.charAt(i);
+			if (c < '0' || c > '9') return -1;
+			number = 10 * number + c - '0';
+		}
+		return number - 1;
+	}
+
+	/**
+	 * @return the {@link Consequence#severity(String)} of the first consequence of entry, the most
+	 * severe one
+	 */
+	private int severity(String entry) {
+		final int start = start(consequence);
+		int end = start;
+		while (end < fields[consequence] && entry.charAt(end) != '&') end++;
+		if (end == start) return Integer.MAX_VALUE;
+		return Consequence.severity(entry.substring(start, end));
+	}
+
+	/**
+	 * @return the number between parentheses of a prediction like tolerated(0.12), or NaN
+	 */
+	private double score(String entry, int field) {
+		final int open = entry.indexOf('(', start(field));
+		if (open < 0 || open >= fields[field]) return Double.NaN;
+		final int close = entry.indexOf(')', open);
+		if (close < 0 || close > fields[field]) return Double.NaN;
+		try {
+			return Double.parseDouble(entry.substring(open + 1, close));
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * @return the label of a prediction like tolerated(0.12)
+	 */
+	private String label(String entry, int field) {
+		final int open = entry.indexOf('(', start(field));
+		return entry.substring(start(field), open);
+	}
+
+	/**
+	 * @return label without the low confidence mark, written as _low_confidence by VEP and as
+	 * _-_low_confidence in the Ensembl VCF files read by {@link VepAnnotator}
+	 */
+	private static String siftLabel(String label) {
+		return label.replace("_-_low_confidence", "").replace("_low_confidence", "");
+	}
+
+	private static void setIfAnyNotNull(Variant variant, String[] values, String tag) {
+		for (String value : values) {
+			if (value != null) {
+				variant.setInfo(tag, Arrays.asList(values));
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -7,42 +7,122 @@ import org.uichuimi.vcf.utils.annotation.consumer.VariantConsumer;
 import org.uichuimi.vcf.utils.annotation.gff.Gene;
 import org.uichuimi.vcf.utils.annotation.gff.GeneMap;
 import org.uichuimi.vcf.utils.annotation.gff.Transcript;
+import org.uichuimi.vcf.utils.common.RegionSlice;
+import org.uichuimi.vcf.utils.common.Regions;
+import org.uichuimi.vcf.utils.common.ResourceReader;
+import org.uichuimi.vcf.utils.common.VariantKey;
+import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.Coordinate;
 import org.uichuimi.vcf.variant.Variant;
 import org.uichuimi.vcf.variant.VcfType;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.IntToLongFunction;
 
 import static org.uichuimi.vcf.utils.annotation.AnnotationConstants.*;
 import static org.uichuimi.vcf.variant.VcfConstants.NUMBER_A;
 
 /**
  * Takes VEP files as source and annotates variants using VEP data. Variants should be provided in
- * coordinate order.
+ * coordinate order. The source can also be a store built with build-vep-index, where records are
+ * already resolved per allele.
  */
 public class VepAnnotator implements VariantConsumer {
 
 
 	private final GeneMap geneMap;
 	private final VepReader vepReader;
+	private final VepStore store;
+	/**
+	 * Hashes of the alternative alleles of {@link #hashed}, computed once per variant.
+	 */
+	private long[] alleleKeys;
+	private Variant hashed;
+	private int[] alleleMap = new int[4];
 
+	/**
+	 * @param vep
+	 * 		directory with VEP files or a store built with build-vep-index
+	 */
 	public VepAnnotator(File vep, GeneMap geneMap) {
+		this.geneMap = geneMap;
+		if (VepStore.isStore(vep)) {
+			store = new VepStore(vep);
+			vepReader = null;
+		} else {
+			store = null;
+			vepReader = new VepReader(vep);
+		}
+	}
+
+	/**
+	 * Reads the annotations from an already open resource, such as a {@link RegionSlice}.
+	 */
+	public VepAnnotator(ResourceReader vep, GeneMap geneMap) {
 		this.geneMap = geneMap;
 		vepReader = new VepReader(vep);
+		store = null;
+	}
+
+	/**
+	 * @return true if vep is a store built with build-vep-index
+	 */
+	public static boolean isStore(File vep) {
+		return VepStore.isStore(vep);
+	}
+
+	/**
+	 * Loads the annotations of the VEP directory inside regions.
+	 */
+	public static RegionSlice slice(File vep, Regions regions) throws IOException {
+		return VepReader.slice(vep, regions);
 	}
 
 	@Override
 	public void start(VcfHeader header) {
+		if (vepReader != null) vepReader.setOrder(header);
 		addAnnotationHeaders(header);
 	}
 
 	@Override
 	public void accept(Variant variant) {
+		if (store != null) {
+			annotateFromStore(variant);
+			return;
+		}
 		final Collection<Variant> vepAnnotations = vepReader.getAnnotationList(variant.getCoordinate());
 		for (Variant vepAnnotation : vepAnnotations) annotateVep(variant, vepAnnotation, geneMap);
 	}
 
+	@Override
+	public void acceptBatch(List<Variant> variants) {
+		if (store != null) {
+			for (Variant variant : variants) annotateFromStore(variant);
+			return;
+		}
+		// Open files only when chromosome changes, and skip chromosomes without annotations
+		Chromosome chromosome = null;
+		boolean available = false;
+		for (Variant variant : variants) {
+			final Chromosome chrom = variant.getCoordinate().getChromosome();
+			if (chrom != chromosome) {
+				available = vepReader.openReader(chrom);
+				chromosome = chrom;
+			}
+			if (!available) continue;
+			for (Variant vepAnnotation : vepReader.nextAnnotations(variant.getCoordinate()))
+				annotateVep(variant, vepAnnotation, geneMap);
+		}
+	}
+
+	private void annotateFromStore(Variant variant) {
+		final Coordinate coordinate = variant.getCoordinate();
+		for (VepRecord record : store.getRecords(coordinate.getChromosome(), coordinate.getPosition()))
+			annotateVep(variant, record, geneMap);
+	}
+
 	private void addAnnotationHeaders(VcfHeader header) {
 		header.addHeaderLine(new InfoHeaderLine(SIFT, NUMBER_A, VcfType.STRING, "Sift prediction"), true);
 		header.addHeaderLine(new InfoHeaderLine(POLYPHEN, NUMBER_A, VcfType.STRING, "Polyphen prediction"), true);
@@ -57,125 +137,65 @@ public class VepAnnotator implements VariantConsumer {
 
 	private void annotateVep(Variant variant, Variant vepAnnotation, GeneMap geneMap) {
 		// vepAnnotation has alleles, variant has alleles, we need to find those in both to collect the annotations
-		final List<String> alleles = vepAnnotation.getAlternatives().stream()
-				.filter(variant.getAlternatives()::contains)
-				.collect(Collectors.toList());
-		if (alleles.isEmpty()) return;
-
-		// ID
-		for (String id : vepAnnotation.getIdentifiers())
-			if (!variant.getIdentifiers().contains(id))
-				variant.getIdentifiers().add(id);
-
+		final int[] map = getAlleleMap(variant, vepAnnotation.getAlternatives().size(), a -> VariantKey.allele(vepAnnotation.getAlternatives().get(a)));
+		if (map == null) return;
 		// VE and RefPep/VarPep can be found inside CSQ
-		parseVariantEffect(variant, vepAnnotation);
-		parseSift(variant, vepAnnotation);
-		parsePolyphen(variant, vepAnnotation);
-		parseAmino(variant, vepAnnotation);
-	}
-
-	private void parseAmino(Variant variant, Variant annotation) {
-		if (!annotation.getInfo().contains("RefPep")
-				|| !annotation.getInfo().contains("VarPep")) return;
-		final String reference = getReferencePeptide(annotation);
-		// VarPep is indexed by allele
-		final Map<String, List<String[]>> alternativePeptides = collectAlternativePeptides(annotation);
-		List<String> alternatives = variant.getAlternatives();
-		final String[] aminos = new String[variant.getAlternatives().size()];
-		for (int i = 0; i < alternatives.size(); i++) {
-			String allele = alternatives.get(i);
-			final List<String[]> list = alternativePeptides.get(allele);
-			if (list != null) {
-				final String alt = list.get(0)[1];
-				aminos[i] = String.format("%s/%s", reference, alt);
-			}
-		}
-		variant.setInfo(AMINO, Arrays.asList(aminos));
+		apply(variant, VepRecord.of(vepAnnotation), map, geneMap);
 	}
 
-	private String getReferencePeptide(Variant annotation) {
-		// RefPep is always a single String
-		return annotation.getInfo().<List<String>>get("RefPep").get(0);
+	private void annotateVep(Variant variant, VepRecord record, GeneMap geneMap) {
+		final int[] map = getAlleleMap(variant, record.alleles.length, a -> record.alleles[a]);
+		if (map != null) apply(variant, record, map, geneMap);
 	}
 
 	/**
-	 * Indexes the VarPep array by allele. It interprets the the first value of each element as an
-	 * integer, which should be the allele index, then extracts the allele, and adds the element to
-	 * the list in the index corresponding to the allele. I.e, transforms this
-	 * <pre>
-	 * VarPep=
-	 *     0|G|LRG_780t2,
-	 *     0|G|ENST00000374627,
-	 *     1|G|ENST00000374627,
-	 *     0|G|ENST00000374630,
-	 *     1|G|ENST00000374630,
-	 *     0|G|ENST00000400191,
-	 *     1|G|ENST00000400191,
-	 *     0|G|LRG_780t1,
-	 *     0|G|ENST00000374632,
-	 *     1|G|ENST00000374632
-	 * </pre>
-	 * into this
-	 * <pre>
-	 * A : [
-	 *     0|G|LRG_780t2,
-	 *     0|G|ENST00000374627,
-	 *     0|G|ENST00000374630,
-	 *     0|G|ENST00000400191,
-	 *     0|G|LRG_780t1,
-	 *     0|G|ENST00000374632],
-	 * C : [
-	 *     1|G|ENST00000374627,
-	 *     1|G|ENST00000374630,
-	 *     1|G|ENST00000400191,
-	 *     1|G|ENST00000374632]
-	 * </pre>
-	 * being <em>A</em> and <em>C</em> the alternative alleles.
+	 * Allele hashes of variant are computed only once, as it can have several VEP annotations.
 	 *
-	 * @param annotation
-	 * 		the variant as read from VEP file
-	 * @return a map which contains the elements of VarPep indexed
+	 * @param alleles
+	 * 		hash of each alternative allele of the annotation
+	 * @return for each alternative allele of annotation, the index of the same allele in variant or
+	 * -1, or null if no allele matches. The array is reused in the next call.
 	 */
-	private Map<String, List<String[]>> collectAlternativePeptides(Variant annotation) {
-		final List<String> varPeps = annotation.getInfo().get("VarPep");
-		final Map<String, List<String[]>> alternativePeptides = new HashMap<>();
-		for (String element : varPeps) {
-			final String[] values = element.split(ESCAPED_DELIMITER);
-			// some RefPep miss the index
-			if (values.length != 3) continue;
-			final int index = Integer.parseInt(values[0]);
-			final String allele = annotation.getAlternatives().get(index);
-			alternativePeptides.computeIfAbsent(allele, a -> new ArrayList<>()).add(values);
+	private int[] getAlleleMap(Variant variant, int size, IntToLongFunction alleles) {
+		if (variant != hashed) {
+			alleleKeys = VariantKey.alternatives(variant, alleleKeys);
+			hashed = variant;
+		}
+		if (alleleMap.length < size) alleleMap = new int[size];
+		boolean matches = false;
+		for (int a = 0; a < size; a++) {
+			alleleMap[a] = VariantKey.indexOf(alleleKeys, variant.getAlternatives().size(), alleles.applyAsLong(a));
+			if (alleleMap[a] >= 0) matches = true;
 		}
-		return alternativePeptides;
+		return matches ? alleleMap : null;
 	}
 
-	private void parseVariantEffect(Variant variant, Variant vepAnnotation) {
-		// VE:
-		//  Variant effect of a variant overlapping a sequence feature as computed by the ensembl variant effect pipeline.
-		//   Format=Consequence|Index|Feature_type|Feature_id.
-		//   Index identifies for which variant sequence the effect is described for.
-		// VE=
-		// missense_variant|0|mRNA|ENST00000618828,
-		// splice_region_variant|0|primary_transcript|ENST00000618828,
-		// missense_variant|0|mRNA|ENST00000374866,
-		// splice_region_variant|0|primary_transcript|ENST00000374866,
-		// missense_variant|0|mRNA|ENST00000649066,
-		// splice_region_variant|0|primary_transcript|ENST00000649066
+	private void apply(Variant variant, VepRecord record, int[] map, GeneMap geneMap) {
+		// ID
+		for (String id : record.identifiers)
+			if (!variant.getIdentifiers().contains(id))
+				variant.getIdentifiers().add(id);
+		final int alternatives = variant.getAlternatives().size();
+		if (record.has(VepRecord.HAS_EFFECTS)) setVariantEffect(variant, record, map, geneMap);
+		if (record.has(VepRecord.HAS_SIFT)) variant.setInfo(SIFT, Arrays.asList(project(record.sift, map, alternatives)));
+		if (record.has(VepRecord.HAS_POLYPHEN))
+			variant.setInfo(POLYPHEN, Arrays.asList(project(record.polyphen, map, alternatives)));
+		if (record.has(VepRecord.HAS_AMINO)) variant.setInfo(AMINO, Arrays.asList(project(record.aminos, map, alternatives)));
+	}
 
-		final List<String> ve = vepAnnotation.getInfo().get("VE");
-		if (ve == null) return;
-		// Collect all consequences by allele
-		final Map<String, List<String[]>> alleles = new HashMap<>();
-		for (String field : ve) {
-			if (field.equals("intergenic_variant")) {
-				final List<String> list = repeat("intergenic_variant", variant.getAlternatives().size());
-				variant.getInfo().set(CONS, list);
-				return;
-			}
-			final String[] value = field.split(ESCAPED_DELIMITER);
-			final String allele = value[1];
-			alleles.computeIfAbsent(allele, a -> new ArrayList<>()).add(value);
+	/**
+	 * @return values, indexed by the alleles of the variant
+	 */
+	private static String[] project(String[] values, int[] map, int alternatives) {
+		final String[] projected = new String[alternatives];
+		for (int a = 0; a < values.length; a++) if (map[a] >= 0 && values[a] != null) projected[map[a]] = values[a];
+		return projected;
+	}
+
+	private void setVariantEffect(Variant variant, VepRecord record, int[] map, GeneMap geneMap) {
+		if (record.has(VepRecord.INTERGENIC)) {
+			variant.getInfo().set(CONS, repeat("intergenic_variant", variant.getAlternatives().size()));
+			return;
 		}
 		String[] cons = new String[variant.getAlternatives().size()];
 		String[] feat = new String[variant.getAlternatives().size()];
@@ -183,28 +203,20 @@ public class VepAnnotator implements VariantConsumer {
 		String[] ensg = new String[variant.getAlternatives().size()];
 		String[] bio = new String[variant.getAlternatives().size()];
 		String[] symbol = new String[variant.getAlternatives().size()];
-		alleles.forEach((index, values) -> {
-			final int i = Integer.parseInt(index);
-			final String allele = vepAnnotation.getAlternatives().get(i);
-			final int pos = variant.getAlternatives().indexOf(allele);
-			if (pos >= 0) {
-				final String[] effect = mostSevereVariantEffect(values);
-				// [0] = Consequence
-				// [1] = Index
-				// [2] = Feature_type
-				// [3] = Feature_id
-				cons[pos] = effect[0];
-				final Transcript transcript = geneMap.getTranscript(effect[3]);
-				if (transcript != null) {
-					enst[pos] = transcript.getId();
-					feat[pos] = transcript.getType();
-					bio[pos] = transcript.getBiotype();
-					final Gene gene = transcript.getGene();
-					ensg[pos] = gene.getId();
-					symbol[pos] = gene.getName();
-				}
+		for (int a = 0; a < record.alleles.length; a++) {
+			final int pos = map[a];
+			if (pos < 0 || record.consequences[a] == null) continue;
+			cons[pos] = record.consequences[a];
+			final Transcript transcript = geneMap.getTranscript(record.transcripts[a]);
+			if (transcript != null) {
+				enst[pos] = transcript.getId();
+				feat[pos] = transcript.getType();
+				bio[pos] = transcript.getBiotype();
+				final Gene gene = transcript.getGene();
+				ensg[pos] = gene.getId();
+				symbol[pos] = gene.getName();
 			}
-		});
+		}
 		setIfAnyNotNull(variant, cons, CONS);
 		setIfAnyNotNull(variant, feat, FT);
 		setIfAnyNotNull(variant, enst, ENST);
@@ -225,98 +237,11 @@ public class VepAnnotator implements VariantConsumer {
 		return list;
 	}
 
-	private String[] mostSevereVariantEffect(List<String[]> values) {
-		return values.stream().min(Comparator
-				// Sort by severity
-				.comparingInt((String[] x) -> CONS_SEVERITY.indexOf(x[0]))
-				// At the same severity, prefer the Ensembl identifier
-				.thenComparingInt(x -> x[3].startsWith(ENST) ? -1 : 1))
-				.orElse(null);
-	}
-
-	private void parseSift(Variant variant, Variant vepAnnotation) {
-		// Prediction for effect of missense variant on protein function as computed by Sift.
-
-		// ID=Sift,Number=.,Type=String
-		// Format=Index|Sift_qualitative_prediction|Sift_numerical_value|Feature_id.
-		// [0] = The index identifies the missense variant.
-		// [1] = Qualitative prediction is tolerated or deleterious.
-		// [2] = The numerical value is the normalized probability that the amino acid change is tolerated, so scores nearer 0 are more likely to be deleterious.
-		// [3] = transcript
-
-		// Sift=0|deleterious_-_low_confidence|0.02|ENST00000379268,0|deleterious_-_low_confidence|0.01|ENST00000328596,0|deleterious_-_low_confidence|0.02|ENST00000379265;AA=A;RefPep=M;VE=start_lost|0|mRNA|ENST00000379268,start_lost|0|mRNA|ENST00000328596,start_lost|0|mRNA|ENST00000379265;CSQ=G|start_lost|mRNA|ENST00000379265|M/T|deleterious_-_low_confidence(0.02),G|start_lost|mRNA|ENST00000379268|M/T|deleterious_-_low_confidence(0.02),G|start_lost|mRNA|ENST00000328596|M/T|deleterious_-_low_confidence(0.01)
-		// Sift=1|tolerated|0.12|ENST00000378567,1|tolerated|0.17|ENST00000468310,1|tolerated|0.13|ENST00000503297
-		final List<String> siftInfo = vepAnnotation.getInfo().get(SIFT);
-		if (siftInfo == null) return;
-		final Map<String, List<String[]>> indexes = collectPredictions(siftInfo);
-
-		final String[] sift = new String[variant.getAlternatives().size()];
-		indexes.forEach((index, values) -> {
-			final int i = Integer.parseInt(index);
-			final String allele = vepAnnotation.getAlternatives().get(i);
-			final int pos = variant.getAlternatives().indexOf(allele);
-			if (pos >= 0) {
-				final String[] value = mostSevereSift(values);
-				sift[pos] = value[1].replace("_-_low_confidence", "");
-			}
-		});
-		variant.setInfo(SIFT, Arrays.asList(sift));
-	}
-
-	private Map<String, List<String[]>> collectPredictions(List<String> siftInfo) {
-		// Collect all consequences by index
-		final Map<String, List<String[]>> indexes = new HashMap<>();
-		for (String field : siftInfo) {
-			final String[] value = field.split(ESCAPED_DELIMITER);
-			if (value.length < 4) continue;
-			final String index = value[0];
-			indexes.computeIfAbsent(index, a -> new ArrayList<>()).add(value);
-		}
-		return indexes;
-	}
-
-	private String[] mostSevereSift(List<String[]> values) {
-		return values.stream().min(Comparator.comparingDouble(x -> Double.parseDouble(x[2]))).orElse(null);
-	}
-
-	private void parsePolyphen(Variant variant, Variant vepAnnotation) {
-		// Prediction for effect of missense variant on protein function as computed by Polyphen (human only).
-
-		// ID=Polyphen,Number=.,Type=String
-		// Format=Index|Polyphen_qualitative_prediction|Polyphen_numerical_value|Feature_id.
-		// [0] = The index identifies the missense variant.
-		// [1] = Qualitative prediction (one of probably damaging, possibly damaging, benign or unknown).
-		// [2] = Numerical value which is the probability that a substitution is damaging, so values nearer 1 are more confidently predicted to be deleterious.
-		// [3] = transcript
-
-		// Polyphen=0|benign|0.017|ENST00000379268,0|benign|0.027|ENST00000328596,0|benign|0.017|ENST00000379265
-		// Polyphen=1|benign|0.04|ENST00000378567,1|benign|0.081|ENST00000468310,1|benign|0.04|ENST0000050329
-
-		final List<String> polyphen = vepAnnotation.getInfo().get(POLYPHEN);
-		if (polyphen == null) return;
-		// Collect all predictions by index
-		final Map<String, List<String[]>> indexes = collectPredictions(polyphen);
-
-		final String[] ppn = new String[variant.getAlternatives().size()];
-		indexes.forEach((index, values) -> {
-			final int i = Integer.parseInt(index);
-			final String allele = vepAnnotation.getAlternatives().get(i);
-			final int pos = variant.getAlternatives().indexOf(allele);
-			if (pos >= 0) {
-				final String[] value = mostSeverePolyphen(values);
-				ppn[pos] = value[1];
-			}
-		});
-		variant.setInfo(POLYPHEN, Arrays.asList(ppn));
-	}
-
-	private String[] mostSeverePolyphen(List<String[]> values) {
-		return values.stream().max(Comparator.comparingDouble(x -> Double.parseDouble(x[2]))).orElse(null);
-	}
 	@Override
 	public void close() {
+		if (store != null) store.close();
 		try {
-			vepReader.close();
+			if (vepReader != null) vepReader.close();
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
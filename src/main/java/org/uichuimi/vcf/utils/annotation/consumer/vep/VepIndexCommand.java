@@ -0,0 +1,101 @@
+package org.uichuimi.vcf.utils.annotation.consumer.vep;
+
+import org.uichuimi.vcf.io.VariantReader;
+import org.uichuimi.vcf.utils.common.FileUtils;
+import org.uichuimi.vcf.variant.Variant;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+@Command(name = "build-vep-index",
+		description = "Converts the VEP files into a binary store of consequences and predictions, to be used with annotate --vep")
+public class VepIndexCommand implements Callable<Void> {
+
+	@Option(names = {"-i", "--vep"},
+			description = "VEP directory with homo_sapiens_incl_consequences-chr*.vcf.gz files",
+			required = true)
+	private File vep;
+
+	@Option(names = {"-o", "--output"}, description = "Output directory", required = true)
+	private File output;
+
+	public VepIndexCommand() {
+	}
+
+	public VepIndexCommand(File vep, File output) {
+		this.vep = vep;
+		this.output = output;
+	}
+
+	@Override
+	public Void call() throws Exception {
+		final String prefix = VepReader.FORMAT.substring(0, VepReader.FORMAT.indexOf("%s"));
+		final File[] files = vep.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(".vcf.gz"));
+		if (files == null || files.length == 0) {
+			System.err.println("ERROR: no VEP files in " + vep);
+			return null;
+		}
+		final File parent = output.getAbsoluteFile().getParentFile();
+		if (!parent.exists() && !parent.mkdirs() || output.exists() && !output.isDirectory()) {
+			System.err.println("ERROR: cannot create " + output);
+			return null;
+		}
+		Arrays.sort(files);
+		// Stores are built in a temporary directory and moved to output only when all of them are
+		// complete, so a failure never leaves truncated stores that look valid
+		final File temp = Files.createTempDirectory(parent.toPath(), output.getName() + ".").toFile();
+		try {
+			build(files, temp);
+			if (!output.exists() && !output.mkdirs()) throw new IOException("cannot create " + output);
+			final File[] stores = temp.listFiles();
+			if (stores != null)
+				for (File store : stores)
+					Files.move(store.toPath(), new File(output, store.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			org.apache.commons.io.FileUtils.deleteDirectory(temp);
+		}
+		return null;
+	}
+
+	private void build(File[] files, File directory) throws Exception {
+		final Set<String> written = new HashSet<>();
+		for (File file : files) {
+			System.out.println(" - Indexing " + file);
+			VepStoreWriter writer = null;
+			String chromosome = null;
+			try (VariantReader reader = new VariantReader(VepReader.PROJECTION.apply(FileUtils.getInputStream(file)))) {
+				while (reader.hasNext()) {
+					final Variant variant = reader.next();
+					final String chrom = variant.getCoordinate().getChromosome().getName();
+					if (!chrom.equals(chromosome)) {
+						if (writer != null) close(writer, chromosome);
+						writer = null;
+						if (!written.add(chrom))
+							throw new IOException(String.format("chromosome %s is not contiguous in %s", chrom, vep));
+						chromosome = chrom;
+						writer = new VepStoreWriter(VepStore.getFile(directory, chrom));
+					}
+					writer.add(variant.getCoordinate().getPosition(), VepRecord.of(variant));
+				}
+				if (writer != null) close(writer, chromosome);
+			} catch (Exception e) {
+				if (writer != null) writer.discard();
+				throw e;
+			}
+		}
+	}
+
+	private static void close(VepStoreWriter writer, String chromosome) throws IOException {
+		final int size = writer.size();
+		writer.close();
+		System.out.printf("   %s: %,d records%n", chromosome, size);
+	}
+}
@@ -1,26 +1,40 @@
 package org.uichuimi.vcf.utils.annotation.consumer.vep;
 
-import org.uichuimi.vcf.io.VariantReader;
-import org.uichuimi.vcf.utils.common.FileUtils;
+import org.uichuimi.vcf.header.VcfHeader;
+import org.uichuimi.vcf.utils.common.ContigPrefetcher;
+import org.uichuimi.vcf.utils.common.Projection;
+import org.uichuimi.vcf.utils.common.RegionSlice;
+import org.uichuimi.vcf.utils.common.Regions;
+import org.uichuimi.vcf.utils.common.ResourceReader;
 import org.uichuimi.vcf.variant.Chromosome;
 import org.uichuimi.vcf.variant.Coordinate;
 import org.uichuimi.vcf.variant.Variant;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+
+import static org.uichuimi.vcf.utils.annotation.AnnotationConstants.POLYPHEN;
+import static org.uichuimi.vcf.utils.annotation.AnnotationConstants.SIFT;
 
 /**
  * Reader for annotation VEP files (homo_sapiens_incl_consequences-chr%s.vcf.gz)
  */
 class VepReader implements AutoCloseable {
 
-	private final File path;
-	private VariantReader reader;
+	private final ContigPrefetcher prefetcher;
+	private ResourceReader reader;
 
 	private Chromosome chromosome = null;
 
-	private static final String FORMAT = "homo_sapiens_incl_consequences-chr%s.vcf.gz";
+	static final String FORMAT = "homo_sapiens_incl_consequences-chr%s.vcf.gz";
+	/**
+	 * Fields read by {@link VepAnnotator}
+	 */
+	static final Projection PROJECTION = new Projection(List.of("VE", "RefPep", "VarPep", SIFT, POLYPHEN), true, false);
 
 	/**
 	 * Creates an instance of VepReader associated to path.
@@ -28,34 +42,87 @@ class VepReader implements AutoCloseable {
 	 * @param path path to VEP files (homo_sapiens_incl_consequences-chr*.vcf.gz)
 	 */
 	VepReader(File path) {
-		this.path = path;
+		this.prefetcher = new ContigPrefetcher(chrom -> new File(path, String.format(FORMAT, chrom.getName())), PROJECTION);
+	}
+
+	/**
+	 * Creates a VepReader that reads every chromosome from reader.
+	 */
+	VepReader(ResourceReader reader) {
+		this.prefetcher = null;
+		this.reader = reader;
+	}
+
+	/**
+	 * Loads the annotations of the VEP files in path inside regions.
+	 */
+	static RegionSlice slice(File path, Regions regions) throws IOException {
+		final List<File> files = new ArrayList<>();
+		for (Chromosome chromosome : regions.getChromosomes()) {
+			final File file = new File(path, String.format(FORMAT, chromosome.getName()));
+			if (file.exists()) files.add(file);
+		}
+		return RegionSlice.load(files, PROJECTION, null, regions);
+	}
+
+	/**
+	 * Takes the order of the chromosomes from the input header, to open the next file in
+	 * background.
+	 */
+	void setOrder(VcfHeader header) {
+		if (prefetcher != null) prefetcher.setOrder(header);
 	}
 
 	Collection<Variant> getAnnotationList(Coordinate coordinate) {
 		openReader(coordinate.getChromosome());
+		return nextAnnotations(coordinate);
+	}
+
+	/**
+	 * Same as {@link #getAnnotationList(Coordinate)}, but does not check the chromosome, which must
+	 * have been selected with {@link #openReader(Chromosome)}.
+	 */
+	Collection<Variant> nextAnnotations(Coordinate coordinate) {
 		if (reader == null) return Collections.emptyList();
 		if (reader.hasNext()) return reader.nextCollected(coordinate);
 		return Collections.emptyList();
 	}
 
-	private void openReader(Chromosome chrom) {
-		if (chromosome != null && chromosome.equals(chrom)) return;
+	/**
+	 * Opens the file of chrom, if it is not already open.
+	 *
+	 * @return true if there is a file for chrom with pending annotations
+	 */
+	boolean openReader(Chromosome chrom) {
+		if (prefetcher == null) return true;
+		if (chromosome == null || !chromosome.equals(chrom)) open(chrom);
+		return reader != null && reader.hasNext();
+	}
+
+	private void open(Chromosome chrom) {
 		try {
-			close();
-			final File file = new File(path, String.format(FORMAT, chrom.getName()));
-			if (!file.exists()) return;
-			this.reader = new VariantReader(FileUtils.getInputStream(file));
+			closeReader();
+			// Even if there is no file, so it is not searched again for every variant
 			chromosome = chrom;
+			reader = prefetcher.open(chrom);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
 
-	@Override
-	public void close() throws Exception {
+	private void closeReader() throws IOException {
 		if (reader != null) {
 			reader.close();
 			reader = null;
 		}
 	}
+
+	@Override
+	public void close() throws Exception {
+		try {
+			closeReader();
+		} finally {
+			if (prefetcher != null) prefetcher.close();
+		}
+	}
 }
@@ -0,0 +1,245 @@
+package org.uichuimi.vcf.utils.annotation.consumer.vep;
+
+import org.uichuimi.vcf.utils.annotation.Consequence;
+import org.uichuimi.vcf.utils.common.VariantKey;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.util.*;
+
+import static org.uichuimi.vcf.utils.annotation.AnnotationConstants.*;
+
+/**
+ * What {@link VepAnnotator} takes from a record of a VEP file, already resolved per alternative
+ * allele: the most severe consequence and its transcript, the sift and polyphen predictions and
+ * the amino acid change. It is computed once from the VEP record, so it can be stored by {@link
+ * VepStoreWriter} and applied to variants without any text processing.
+ */
+class VepRecord {
+
+	static final int HAS_EFFECTS = 1;
+	static final int INTERGENIC = 1 << 1;
+	static final int HAS_SIFT = 1 << 2;
+	static final int HAS_POLYPHEN = 1 << 3;
+	static final int HAS_AMINO = 1 << 4;
+
+	/**
+	 * Which fields were present in the VEP record, as they are written even if no allele has a
+	 * value.
+	 */
+	final int flags;
+	final String[] identifiers;
+	/**
+	 * {@link VariantKey#allele(String)} of each alternative allele.
+	 */
+	final long[] alleles;
+	final String[] consequences;
+	final String[] transcripts;
+	final String[] sift;
+	final String[] polyphen;
+	final String[] aminos;
+
+	VepRecord(int flags, String[] identifiers, long[] alleles, String[] consequences, String[] transcripts, String[] sift, String[] polyphen, String[] aminos) {
+		this.flags = flags;
+		this.identifiers = identifiers;
+		this.alleles = alleles;
+		this.consequences = consequences;
+		this.transcripts = transcripts;
+		this.sift = sift;
+		this.polyphen = polyphen;
+		this.aminos = aminos;
+	}
+
+	boolean has(int flag) {
+		return (flags & flag) != 0;
+	}
+
+	static VepRecord of(Variant vepAnnotation) {
+		final int n = vepAnnotation.getAlternatives().size();
+		int flags = 0;
+		final long[] alleles = new long[n];
+		for (int i = 0; i < n; i++) alleles[i] = VariantKey.allele(vepAnnotation.getAlternatives().get(i));
+		final String[] consequences = new String[n];
+		final String[] transcripts = new String[n];
+		final String[] sift = new String[n];
+		final String[] polyphen = new String[n];
+		final String[] aminos = new String[n];
+		final List<String> ve = vepAnnotation.getInfo().get("VE");
+		if (ve != null) {
+			flags |= HAS_EFFECTS;
+			if (parseVariantEffect(ve, consequences, transcripts)) flags |= INTERGENIC;
+		}
+		final List<String> siftInfo = vepAnnotation.getInfo().get(SIFT);
+		if (siftInfo != null) {
+			flags |= HAS_SIFT;
+			collectPredictions(siftInfo).forEach((index, values) ->
+					sift[Integer.parseInt(index)] = mostSevereSift(values)[1].replace("_-_low_confidence", ""));
+		}
+		final List<String> polyphenInfo = vepAnnotation.getInfo().get(POLYPHEN);
+		if (polyphenInfo != null) {
+			flags |= HAS_POLYPHEN;
+			collectPredictions(polyphenInfo).forEach((index, values) ->
+					polyphen[Integer.parseInt(index)] = mostSeverePolyphen(values)[1]);
+		}
+		if (vepAnnotation.getInfo().contains("RefPep") && vepAnnotation.getInfo().contains("VarPep")) {
+			flags |= HAS_AMINO;
+			final String reference = getReferencePeptide(vepAnnotation);
+			final Map<String, List<String[]>> alternativePeptides = collectAlternativePeptides(vepAnnotation);
+			for (int i = 0; i < n; i++) {
+				final List<String[]> list = alternativePeptides.get(vepAnnotation.getAlternatives().get(i));
+				if (list != null) aminos[i] = String.format("%s/%s", reference, list.get(0)[1]);
+			}
+		}
+		final String[] identifiers = vepAnnotation.getIdentifiers().toArray(new String[0]);
+		return new VepRecord(flags, identifiers, alleles, consequences, transcripts, sift, polyphen, aminos);
+	}
+
+	/**
+	 * Fills the most severe consequence of each allele, and its transcript.
+	 *
+	 * @return true if the variant is intergenic, in which case nothing is filled
+	 */
+	private static boolean parseVariantEffect(List<String> ve, String[] consequences, String[] transcripts) {
+		// VE:
+		//  Variant effect of a variant overlapping a sequence feature as computed by the ensembl variant effect pipeline.
+		//   Format=Consequence|Index|Feature_type|Feature_id.
+		//   Index identifies for which variant sequence the effect is described for.
+		// VE=
+		// missense_variant|0|mRNA|ENST00000618828,
+		// splice_region_variant|0|primary_transcript|ENST00000618828,
+		// missense_variant|0|mRNA|ENST00000374866,
+		// splice_region_variant|0|primary_transcript|ENST00000374866,
+		// missense_variant|0|mRNA|ENST00000649066,
+		// splice_region_variant|0|primary_transcript|ENST00000649066
+
+		// Collect all consequences by allele
+		final Map<String, List<String[]>> alleles = new HashMap<>();
+		for (String field : ve) {
+			if (field.equals("intergenic_variant")) return true;
+			final String[] value = field.split(ESCAPED_DELIMITER);
+			final String allele = value[1];
+			alleles.computeIfAbsent(allele, a -> new ArrayList<>()).add(value);
+		}
+		alleles.forEach((index, values) -> {
+			final int i = Integer.parseInt(index);
+			final String[] effect = mostSevereVariantEffect(values);
+			// [0] = Consequence
+			// [1] = Index
+			// [2] = Feature_type
+			// [3] = Feature_id
+			consequences[i] = effect[0];
+			transcripts[i] = effect[3];
+		});
+		return false;
+	}
+
+	/**
+	 * @return the effect with the most severe consequence, preferring Ensembl transcripts at the
+	 * same severity
+	 */
+	private static String[] mostSevereVariantEffect(List<String[]> values) {
+		String[] best = null;
+		int bestSeverity = 0;
+		for (String[] value : values) {
+			final int severity = Consequence.severity(value[0]);
+			if (best == null || severity < bestSeverity
+					|| severity == bestSeverity && !best[3].startsWith(ENST) && value[3].startsWith(ENST)) {
+				best = value;
+				bestSeverity = severity;
+			}
+		}
+		return best;
+	}
+
+	// Sift: Prediction for effect of missense variant on protein function as computed by Sift.
+	// ID=Sift,Number=.,Type=String
+	// Format=Index|Sift_qualitative_prediction|Sift_numerical_value|Feature_id.
+	// [0] = The index identifies the missense variant.
+	// [1] = Qualitative prediction is tolerated or deleterious.
+	// [2] = The numerical value is the normalized probability that the amino acid change is tolerated, so scores nearer 0 are more likely to be deleterious.
+	// [3] = transcript
+	// Sift=1|tolerated|0.12|ENST00000378567,1|tolerated|0.17|ENST00000468310,1|tolerated|0.13|ENST00000503297
+
+	// Polyphen: Prediction for effect of missense variant on protein function as computed by Polyphen (human only).
+	// ID=Polyphen,Number=.,Type=String
+	// Format=Index|Polyphen_qualitative_prediction|Polyphen_numerical_value|Feature_id.
+	// [1] = Qualitative prediction (one of probably damaging, possibly damaging, benign or unknown).
+	// [2] = Numerical value which is the probability that a substitution is damaging, so values nearer 1 are more confidently predicted to be deleterious.
+	// Polyphen=0|benign|0.017|ENST00000379268,0|benign|0.027|ENST00000328596,0|benign|0.017|ENST00000379265
+
+	private static Map<String, List<String[]>> collectPredictions(List<String> siftInfo) {
+		// Collect all consequences by index
+		final Map<String, List<String[]>> indexes = new HashMap<>();
+		for (String field : siftInfo) {
+			final String[] value = field.split(ESCAPED_DELIMITER);
+			if (value.length < 4) continue;
+			final String index = value[0];
+			indexes.computeIfAbsent(index, a -> new ArrayList<>()).add(value);
+		}
+		return indexes;
+	}
+
+	private static String[] mostSevereSift(List<String[]> values) {
+		return values.stream().min(Comparator.comparingDouble(x -> Double.parseDouble(x[2]))).orElse(null);
+	}
+
+	private static String[] mostSeverePolyphen(List<String[]> values) {
+		return values.stream().max(Comparator.comparingDouble(x -> Double.parseDouble(x[2]))).orElse(null);
+	}
+
+	private static String getReferencePeptide(Variant annotation) {
+		// RefPep is always a single String
+		return annotation.getInfo().<List<String>>get("RefPep").get(0);
+	}
+
+	/**
+	 * Indexes the VarPep array by allele. It interprets the the first value of each element as an
+	 * integer, which should be the allele index, then extracts the allele, and adds the element to
+	 * the list in the index corresponding to the allele. I.e, transforms this
+	 * <pre>
+	 * VarPep=
+	 *     0|G|LRG_780t2,
+	 *     0|G|ENST00000374627,
+	 *     1|G|ENST00000374627,
+	 *     0|G|ENST00000374630,
+	 *     1|G|ENST00000374630,
+	 *     0|G|ENST00000400191,
+	 *     1|G|ENST00000400191,
+	 *     0|G|LRG_780t1,
+	 *     0|G|ENST00000374632,
+	 *     1|G|ENST00000374632
+	 * </pre>
+	 * into this
+	 * <pre>
+	 * A : [
+	 *     0|G|LRG_780t2,
+	 *     0|G|ENST00000374627,
+	 *     0|G|ENST00000374630,
+	 *     0|G|ENST00000400191,
+	 *     0|G|LRG_780t1,
+	 *     0|G|ENST00000374632],
+	 * C : [
+	 *     1|G|ENST00000374627,
+	 *     1|G|ENST00000374630,
+	 *     1|G|ENST00000400191,
+	 *     1|G|ENST00000374632]
+	 * </pre>
+	 * being <em>A</em> and <em>C</em> the alternative alleles.
+	 *
+	 * @param annotation
+	 * 		the variant as read from VEP file
+	 * @return a map which contains the elements of VarPep indexed
+	 */
+	private static Map<String, List<String[]>> collectAlternativePeptides(Variant annotation) {
+		final List<String> varPeps = annotation.getInfo().get("VarPep");
+		final Map<String, List<String[]>> alternativePeptides = new HashMap<>();
+		for (String element : varPeps) {
+			final String[] values = element.split(ESCAPED_DELIMITER);
+			// some RefPep miss the index
+			if (values.length != 3) continue;
+			final int index = Integer.parseInt(values[0]);
+			final String allele = annotation.getAlternatives().get(index);
+			alternativePeptides.computeIfAbsent(allele, a -> new ArrayList<>()).add(values);
+		}
+		return alternativePeptides;
+	}
+}
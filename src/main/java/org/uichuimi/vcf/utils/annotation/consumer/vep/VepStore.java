@@ -0,0 +1,201 @@
+package org.uichuimi.vcf.utils.annotation.consumer.vep;
+
+import org.uichuimi.vcf.utils.common.SortedColumn;
+import org.uichuimi.vcf.variant.Chromosome;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * VEP annotations converted by the build-vep-index command. The store is a directory with one file
+ * per chromosome, each one with a header (magic, version, number of records and size of the string
+ * pool), the string pool, and the columns of positions, record offsets and record bodies. Strings
+ * (consequences, transcripts, predictions...) are stored once in the pool and referenced by index,
+ * so records are decoded into {@link VepRecord}s without any text processing. Identifiers are
+ * stored in the records: rs identifiers as their number, and any other as its bytes.
+ * <p>
+ * Lookups are faster when positions are requested in order within a chromosome.
+ */
+class VepStore implements AutoCloseable {
+
+	static final int MAGIC = 0x56455053; // VEPS
+	/**
+	 * Version 2 stores identifiers in the records instead of the pool.
+	 */
+	static final int VERSION = 2;
+	static final String EXTENSION = ".vdb";
+	/**
+	 * Mapped segments of the bodies overlap by this size, so every record is inside one segment.
+	 */
+	static final int MAX_RECORD_SIZE = 1 << 20;
+	private static final int HEADER_SIZE = 4 * Integer.BYTES;
+	private static final int SEGMENT_SHIFT = 30;
+
+	private final File directory;
+	private Chromosome chromosome;
+	private Table table;
+
+	VepStore(File directory) {
+		if (!directory.isDirectory()) throw new IllegalArgumentException(directory + " is not a directory");
+		this.directory = directory;
+	}
+
+	/**
+	 * @return true if directory contains store files
+	 */
+	static boolean isStore(File directory) {
+		final String[] names = directory.list((dir, name) -> name.endsWith(EXTENSION));
+		return names != null && names.length > 0;
+	}
+
+	static File getFile(File directory, String chromosome) {
+		return new File(directory, chromosome + EXTENSION);
+	}
+
+	/**
+	 * @return the records at position in chromosome, which may be empty
+	 */
+	List<VepRecord> getRecords(Chromosome chromosome, long position) {
+		if (!chromosome.equals(this.chromosome)) {
+			this.chromosome = chromosome;
+			table = open(chromosome);
+		}
+		if (table == null) return Collections.emptyList();
+		return table.getRecords(position);
+	}
+
+	private Table open(Chromosome chrom) {
+		final File file = getFile(directory, chrom.getName());
+		if (!file.exists()) return null;
+		try {
+			return Table.open(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		// Mapped buffers are released by the garbage collector
+		table = null;
+		chromosome = null;
+	}
+
+	/**
+	 * The file of one chromosome.
+	 */
+	private static class Table {
+
+		private final int size;
+		private final String[] pool;
+		private final IntBuffer positions;
+		private final LongBuffer offsets;
+		private final ByteBuffer[] bodies;
+		private final SortedColumn column;
+
+		private Table(int size, String[] pool, IntBuffer positions, LongBuffer offsets, ByteBuffer[] bodies) {
+			this.size = size;
+			this.pool = pool;
+			this.positions = positions;
+			this.offsets = offsets;
+			this.bodies = bodies;
+			this.column = new SortedColumn(size, i -> positions.get((int) i));
+		}
+
+		private static Table open(File file) throws IOException {
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+				if (header.getInt() != MAGIC) throw new IOException(file + " is not a VEP store file");
+				final int version = header.getInt();
+				if (version != VERSION) throw new IOException(file + " has version " + version + ", expected " + VERSION);
+				final int size = header.getInt();
+				final int poolSize = header.getInt();
+				final String[] pool = readPool(channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, poolSize));
+				long start = HEADER_SIZE + poolSize;
+				final IntBuffer positions = channel.map(FileChannel.MapMode.READ_ONLY, start, (long) size * Integer.BYTES).asIntBuffer();
+				start += (long) size * Integer.BYTES;
+				final LongBuffer offsets = channel.map(FileChannel.MapMode.READ_ONLY, start, (long) size * Long.BYTES).asLongBuffer();
+				start += (long) size * Long.BYTES;
+				final long length = channel.size() - start;
+				final ByteBuffer[] bodies = new ByteBuffer[(int) ((length >>> SEGMENT_SHIFT) + 1)];
+				for (int s = 0; s < bodies.length; s++) {
+					final long first = (long) s << SEGMENT_SHIFT;
+					final long bytes = Math.min(length - first, (1L << SEGMENT_SHIFT) + MAX_RECORD_SIZE);
+					bodies[s] = channel.map(FileChannel.MapMode.READ_ONLY, start + first, bytes);
+				}
+				return new Table(size, pool, positions, offsets, bodies);
+			}
+		}
+
+		private static String[] readPool(ByteBuffer buffer) throws IOException {
+			final byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+				final String[] pool = new String[input.readInt()];
+				for (int i = 0; i < pool.length; i++) pool[i] = input.readUTF().intern();
+				return pool;
+			}
+		}
+
+		private List<VepRecord> getRecords(long position) {
+			int index = (int) column.first(position);
+			if (index >= size || positions.get(index) != position) return Collections.emptyList();
+			final List<VepRecord> records = new ArrayList<>(1);
+			for (; index < size && positions.get(index) == position; index++) records.add(read(offsets.get(index)));
+			return records;
+		}
+
+		private VepRecord read(long offset) {
+			final ByteBuffer body = bodies[(int) (offset >>> SEGMENT_SHIFT)];
+			int i = (int) (offset & ((1L << SEGMENT_SHIFT) - 1));
+			final int flags = body.get(i);
+			i += Byte.BYTES;
+			final String[] identifiers = new String[body.getShort(i) & 0xffff];
+			i += Short.BYTES;
+			for (int k = 0; k < identifiers.length; k++) {
+				final int length = body.getShort(i) & 0xffff;
+				i += Short.BYTES;
+				if (length == 0) {
+					identifiers[k] = "rs" + body.getLong(i);
+					i += Long.BYTES;
+				} else {
+					final byte[] bytes = new byte[length];
+					body.get(i, bytes);
+					identifiers[k] = new String(bytes, StandardCharsets.UTF_8);
+					i += length;
+				}
+			}
+			final int alts = body.getShort(i) & 0xffff;
+			i += Short.BYTES;
+			final long[] alleles = new long[alts];
+			final String[] consequences = new String[alts];
+			final String[] transcripts = new String[alts];
+			final String[] sift = new String[alts];
+			final String[] polyphen = new String[alts];
+			final String[] aminos = new String[alts];
+			for (int a = 0; a < alts; a++) {
+				alleles[a] = body.getLong(i);
+				i += Long.BYTES;
+				consequences[a] = get(body.getInt(i));
+				transcripts[a] = get(body.getInt(i + Integer.BYTES));
+				sift[a] = get(body.getInt(i + 2 * Integer.BYTES));
+				polyphen[a] = get(body.getInt(i + 3 * Integer.BYTES));
+				aminos[a] = get(body.getInt(i + 4 * Integer.BYTES));
+				i += 5 * Integer.BYTES;
+			}
+			return new VepRecord(flags, identifiers, alleles, consequences, transcripts, sift, polyphen, aminos);
+		}
+
+		private String get(int id) {
+			return id < 0 ? null : pool[id];
+		}
+	}
+}
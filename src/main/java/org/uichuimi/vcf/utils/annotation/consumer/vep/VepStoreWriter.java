@@ -0,0 +1,160 @@
+package org.uichuimi.vcf.utils.annotation.consumer.vep;
+
+import org.uichuimi.vcf.utils.common.ColumnFileWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the {@link VepStore} file of one chromosome. Records must be added in position order.
+ * Positions, offsets and record bodies are the columns of a {@link ColumnFileWriter}, and are
+ * concatenated after the string pool when the writer is closed.
+ */
+class VepStoreWriter implements Closeable {
+
+	private final File file;
+	/**
+	 * Consequences, transcripts, predictions and amino changes by id. Identifiers are not pooled,
+	 * as almost every one is unique.
+	 */
+	private final Map<String, Integer> pool = new HashMap<>();
+	private final List<String> strings = new ArrayList<>();
+	private final ColumnFileWriter columns;
+	private final DataOutputStream positions;
+	private final DataOutputStream offsets;
+	private final DataOutputStream bodies;
+	private long position = -1;
+	private long offset;
+	private int size;
+
+	VepStoreWriter(File file) throws IOException {
+		this.file = file;
+		this.columns = new ColumnFileWriter(file);
+		try {
+			positions = columns.createColumn(0);
+			offsets = columns.createColumn(1);
+			bodies = columns.createColumn(2);
+		} catch (IOException e) {
+			columns.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @param position
+	 * 		position of the VEP record, not lower than the previous one
+	 * @throws IOException
+	 * 		if position is lower than the previous one, or the writer fails
+	 */
+	void add(long position, VepRecord record) throws IOException {
+		if (position < this.position)
+			throw new IOException(String.format("%s: position %d after %d, file is not sorted", file.getName(), position, this.position));
+		if (position > Integer.MAX_VALUE) throw new IOException("Position out of range: " + position);
+		this.position = position;
+		positions.writeInt((int) position);
+		offsets.writeLong(offset);
+		final byte[][] names = new byte[record.identifiers.length][];
+		final long[] rs = new long[record.identifiers.length];
+		long length = 2 * Short.BYTES + Byte.BYTES + record.alleles.length * (Long.BYTES + 5 * Integer.BYTES);
+		for (int i = 0; i < names.length; i++) {
+			rs[i] = rsNumber(record.identifiers[i]);
+			if (rs[i] > 0) length += Short.BYTES + Long.BYTES;
+			else {
+				names[i] = record.identifiers[i].getBytes(StandardCharsets.UTF_8);
+				if (names[i].length == 0 || names[i].length > 0xffff)
+					throw new IOException("Invalid identifier at position " + position);
+				length += Short.BYTES + names[i].length;
+			}
+		}
+		if (length > VepStore.MAX_RECORD_SIZE || names.length > 0xffff || record.alleles.length > 0xffff)
+			throw new IOException("Record too large at position " + position);
+		bodies.writeByte(record.flags);
+		bodies.writeShort(names.length);
+		for (int i = 0; i < names.length; i++) {
+			if (names[i] == null) {
+				bodies.writeShort(0);
+				bodies.writeLong(rs[i]);
+			} else {
+				bodies.writeShort(names[i].length);
+				bodies.write(names[i]);
+			}
+		}
+		bodies.writeShort(record.alleles.length);
+		for (int i = 0; i < record.alleles.length; i++) {
+			bodies.writeLong(record.alleles[i]);
+			bodies.writeInt(id(record.consequences[i]));
+			bodies.writeInt(id(record.transcripts[i]));
+			bodies.writeInt(id(record.sift[i]));
+			bodies.writeInt(id(record.polyphen[i]));
+			bodies.writeInt(id(record.aminos[i]));
+		}
+		offset += length;
+		size++;
+	}
+
+	/**
+	 * @return the number of an rs identifier, or 0 if identifier is not one or would not be written
+	 * back the same, like rs012
+	 */
+	static long rsNumber(String identifier) {
+		if (identifier.length() < 3 || identifier.length() > 20 || !identifier.startsWith("rs") || identifier.charAt(2) == '0')
+			return 0;
+		long number = 0;
+		for (int i = 2; i < identifier.length(); i++) {
+			final char c = identifier.charAt(i);
+			if (c < '0' || c > '9') return 0;
+			if (number > (Long.MAX_VALUE - (c - '0')) / 10) return 0;
+			number = 10 * number + c - '0';
+		}
+		return number;
+	}
+
+	/**
+	 * @return the id of value in the pool, -1 for null
+	 */
+	private int id(String value) {
+		if (value == null) return -1;
+		return pool.computeIfAbsent(value, v -> {
+			strings.add(v);
+			return strings.size() - 1;
+		});
+	}
+
+	/**
+	 * @return number of records written so far
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Deletes the temporary files without writing the store, when the input fails.
+	 */
+	void discard() {
+		columns.close();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+			try (DataOutputStream out = new DataOutputStream(poolBytes)) {
+				out.writeInt(strings.size());
+				for (String string : strings) out.writeUTF(string);
+			}
+			columns.write(out -> {
+				out.writeInt(VepStore.MAGIC);
+				out.writeInt(VepStore.VERSION);
+				out.writeInt(size);
+				out.writeInt(poolBytes.size());
+				out.write(poolBytes.toByteArray());
+			});
+		} finally {
+			columns.close();
+		}
+	}
+}
@@ -0,0 +1,253 @@
+package org.uichuimi.vcf.utils.common;
+
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import org.uichuimi.vcf.variant.Chromosome;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal reader of tabix (.tbi) and CSI (.csi) indexes. It only answers one question: from which
+ * virtual offset of the BGZF file should we start reading to find every record at or after a given
+ * position.
+ */
+public class BgzfIndex {
+
+	private static final int TBI_MAGIC = 0x01494254; // TBI\1
+	private static final int CSI_MAGIC = 0x01495343; // CSI\1
+	private static final int TBI_MIN_SHIFT = 14;
+	private static final int TBI_DEPTH = 5;
+
+	private final Map<String, String> contigs = new HashMap<>();
+	private final Map<String, Reference> references = new HashMap<>();
+	private int minShift;
+	private int depth;
+
+	private BgzfIndex() {
+	}
+
+	/**
+	 * Reads the index of a BGZF file, looking for a file with the same name and the .tbi or .csi
+	 * extension.
+	 *
+	 * @param file
+	 * 		a BGZF compressed file
+	 * @return the index, or null if there is no index or it has no contig names
+	 * @throws IOException
+	 * 		if the index cannot be read
+	 */
+	public static BgzfIndex open(File file) throws IOException {
+		final File tbi = new File(file.getPath() + ".tbi");
+		if (tbi.exists()) return read(tbi);
+		final File csi = new File(file.getPath() + ".csi");
+		if (csi.exists()) return read(csi);
+		return null;
+	}
+
+	private static BgzfIndex read(File file) throws IOException {
+		final byte[] bytes;
+		try (BlockCompressedInputStream in = new BlockCompressedInputStream(file)) {
+			bytes = in.readAllBytes();
+		}
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		final int magic = buffer.getInt();
+		final BgzfIndex index = new BgzfIndex();
+		if (magic == TBI_MAGIC) index.readTbi(buffer);
+		else if (magic == CSI_MAGIC) index.readCsi(buffer);
+		else throw new IOException(file + " is not a tabix or CSI index");
+		return index.contigs.isEmpty() ? null : index;
+	}
+
+	private void readTbi(ByteBuffer buffer) {
+		minShift = TBI_MIN_SHIFT;
+		depth = TBI_DEPTH;
+		final int n = buffer.getInt();
+		final String[] names = readNames(buffer);
+		final int pseudoBin = pseudoBin();
+		for (int i = 0; i < n; i++) {
+			final Reference reference = new Reference();
+			final int bins = buffer.getInt();
+			for (int b = 0; b < bins; b++) {
+				final int bin = buffer.getInt();
+				final int chunks = buffer.getInt();
+				readChunks(buffer, chunks, bin == pseudoBin ? null : reference);
+			}
+			final int intervals = buffer.getInt();
+			reference.linear = new long[intervals];
+			for (int j = 0; j < intervals; j++) reference.linear[j] = buffer.getLong();
+			add(names[i], reference);
+		}
+	}
+
+	private void readCsi(ByteBuffer buffer) {
+		minShift = buffer.getInt();
+		depth = buffer.getInt();
+		final int auxLength = buffer.getInt();
+		final int auxEnd = buffer.position() + auxLength;
+		// Contig names are only present in tabix style auxiliary data
+		final String[] names = auxLength >= 28 ? readNames(buffer) : null;
+		buffer.position(auxEnd);
+		final int n = buffer.getInt();
+		final int pseudoBin = pseudoBin();
+		for (int i = 0; i < n; i++) {
+			final Reference reference = new Reference();
+			final int bins = buffer.getInt();
+			final int[] binIds = new int[bins];
+			final long[] offsets = new long[bins];
+			int size = 0;
+			for (int b = 0; b < bins; b++) {
+				final int bin = buffer.getInt();
+				final long loffset = buffer.getLong();
+				final int chunks = buffer.getInt();
+				if (bin == pseudoBin) {
+					readChunks(buffer, chunks, null);
+					continue;
+				}
+				readChunks(buffer, chunks, reference);
+				binIds[size] = bin;
+				offsets[size++] = loffset;
+			}
+			reference.setBins(Arrays.copyOf(binIds, size), Arrays.copyOf(offsets, size));
+			if (names != null) add(names[i], reference);
+		}
+	}
+
+	/**
+	 * Reads the tabix header (format, col_seq, col_beg, col_end, meta, skip) and the list of
+	 * names.
+	 */
+	private static String[] readNames(ByteBuffer buffer) {
+		buffer.position(buffer.position() + 6 * Integer.BYTES);
+		final int length = buffer.getInt();
+		final byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		final String names = new String(bytes, StandardCharsets.US_ASCII);
+		return names.isEmpty() ? new String[0] : names.split("\0");
+	}
+
+	private static void readChunks(ByteBuffer buffer, int chunks, Reference reference) {
+		for (int c = 0; c < chunks; c++) {
+			final long begin = buffer.getLong();
+			buffer.getLong(); // end
+			if (reference != null && begin < reference.min) reference.min = begin;
+		}
+	}
+
+	private int pseudoBin() {
+		return firstBin(depth + 1) + 1;
+	}
+
+	private static int firstBin(int level) {
+		return ((1 << 3 * level) - 1) / 7;
+	}
+
+	private void add(String name, Reference reference) {
+		references.put(name, reference);
+		contigs.put(normalize(name), name);
+	}
+
+	private static String normalize(String name) {
+		String normalized = name.length() > 3 && name.regionMatches(true, 0, "chr", 0, 3)
+				? name.substring(3)
+				: name;
+		if (normalized.equals("M")) normalized = "MT";
+		return normalized;
+	}
+
+	/**
+	 * Finds the name of a chromosome as written in the indexed file, tolerating the chr prefix and
+	 * M/MT for the mitochondrial chromosome.
+	 *
+	 * @param chromosome
+	 * 		name of the chromosome
+	 * @return the name in the index, or null if chromosome is not in the index
+	 */
+	public String getContig(String chromosome) {
+		final String name = contigs.get(normalize(chromosome));
+		return name == null || !references.get(name).hasData() ? null : name;
+	}
+
+	/**
+	 * Finds the name of a chromosome as written in the indexed file, trying first its name in the
+	 * namespace of the file and then its default name.
+	 *
+	 * @param chromosome
+	 * 		the chromosome
+	 * @param namespace
+	 * 		namespace of the chromosome names of the file, null for the default
+	 * @return the name in the index, or null if chromosome is not in the index
+	 */
+	public String getContig(Chromosome chromosome, Chromosome.Namespace namespace) {
+		if (namespace != null) {
+			final String contig = getContig(chromosome.getName(namespace));
+			if (contig != null) return contig;
+		}
+		return getContig(chromosome.getName());
+	}
+
+	/**
+	 * Computes a virtual offset from which every record of contig at or after position can be
+	 * read. Records before position may also be read.
+	 *
+	 * @param contig
+	 * 		contig name, as returned by {@link #getContig(String)}
+	 * @param position
+	 * 		1-based position
+	 * @return a BGZF virtual offset
+	 */
+	public long getOffset(String contig, long position) {
+		final Reference reference = references.get(contig);
+		final long begin = Math.max(0, position - 1);
+		if (reference.linear != null) {
+			if (reference.linear.length == 0) return reference.min;
+			int window = (int) Math.min(begin >> minShift, reference.linear.length - 1);
+			// Empty windows may have a 0 offset
+			while (window > 0 && reference.linear[window] == 0) window--;
+			final long offset = reference.linear[window];
+			return offset == 0 ? reference.min : Math.max(offset, reference.min);
+		}
+		// CSI: the smallest bin containing position with data
+		for (int level = depth; level >= 0; level--) {
+			final int bin = firstBin(level) + (int) (begin >> minShift + 3 * (depth - level));
+			final long offset = reference.getBinOffset(bin);
+			if (offset >= 0) return Math.max(offset, reference.min);
+		}
+		return reference.min;
+	}
+
+	private static class Reference {
+
+		private long[] linear;
+		private int[] bins;
+		private long[] offsets;
+		private long min = Long.MAX_VALUE;
+
+		private void setBins(int[] bins, long[] offsets) {
+			// Bins are usually sorted, but the specification does not require it
+			final Integer[] order = new Integer[bins.length];
+			for (int i = 0; i < order.length; i++) order[i] = i;
+			Arrays.sort(order, (a, b) -> Integer.compareUnsigned(bins[a], bins[b]));
+			this.bins = new int[bins.length];
+			this.offsets = new long[bins.length];
+			for (int i = 0; i < order.length; i++) {
+				this.bins[i] = bins[order[i]];
+				this.offsets[i] = offsets[order[i]];
+			}
+		}
+
+		private long getBinOffset(int bin) {
+			final int i = Arrays.binarySearch(bins, bin);
+			return i < 0 ? -1 : offsets[i];
+		}
+
+		private boolean hasData() {
+			return min != Long.MAX_VALUE;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package org.uichuimi.vcf.utils.common;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes a file made of a header followed by columns. Each column is written to a temporary file
+ * next to the output, and columns are concatenated after the header in index order by {@link
+ * #write(Header)}, so they can be written in any order and memory usage does not depend on their
+ * size. Temporary files are deleted on {@link #close()}, whether the file was written or not.
+ */
+public class ColumnFileWriter implements Closeable {
+
+	private final File file;
+	/**
+	 * Temporary file of each column, by index.
+	 */
+	private final Map<Integer, File> columns = new TreeMap<>();
+	/**
+	 * Columns not closed yet, by index.
+	 */
+	private final Map<Integer, DataOutputStream> outputs = new TreeMap<>();
+
+	public ColumnFileWriter(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * @param index
+	 * 		position of the column in the file
+	 * @return a buffered stream to write the column
+	 * @throws IOException
+	 * 		if the column already exists, or its temporary file cannot be created
+	 */
+	public DataOutputStream createColumn(int index) throws IOException {
+		if (columns.containsKey(index)) throw new IOException("column " + index + " already exists");
+		final File temp = File.createTempFile(file.getName() + ".", ".col", file.getAbsoluteFile().getParentFile());
+		columns.put(index, temp);
+		final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+		outputs.put(index, output);
+		return output;
+	}
+
+	public boolean hasColumn(int index) {
+		return columns.containsKey(index);
+	}
+
+	/**
+	 * Closes a column before the file is written, to release its buffer when it is complete.
+	 */
+	public void closeColumn(int index) throws IOException {
+		final DataOutputStream output = outputs.remove(index);
+		if (output != null) output.close();
+	}
+
+	/**
+	 * Closes the columns and writes the file: the header, then the columns in index order.
+	 */
+	public void write(Header header) throws IOException {
+		for (DataOutputStream output : outputs.values()) output.close();
+		outputs.clear();
+		try (FileOutputStream stream = new FileOutputStream(file)) {
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+			header.write(out);
+			out.flush();
+			final FileChannel target = stream.getChannel();
+			for (File column : columns.values()) {
+				try (FileChannel source = FileChannel.open(column.toPath(), StandardOpenOption.READ)) {
+					long transferred = 0;
+					while (transferred < source.size())
+						transferred += source.transferTo(transferred, source.size() - transferred, target);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Closes the columns and deletes their temporary files.
+	 */
+	@Override
+	public void close() {
+		for (DataOutputStream output : outputs.values()) {
+			try {
+				output.close();
+			} catch (IOException ignored) {
+			}
+		}
+		outputs.clear();
+		for (File column : columns.values()) column.delete();
+		columns.clear();
+	}
+
+	@FunctionalInterface
+	public interface Header {
+		void write(DataOutput out) throws IOException;
+	}
+}
@@ -0,0 +1,135 @@
+package org.uichuimi.vcf.utils.common;
+
+import org.uichuimi.vcf.header.ComplexHeaderLine;
+import org.uichuimi.vcf.header.VcfHeader;
+import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.ChromosomeFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Opens the resources of a directory with a file per chromosome. When a chromosome is opened, the
+ * file of the next chromosome, as listed in the ##contig lines of the input, is opened in
+ * background, so its header and first records are already read when the input reaches it. The
+ * next file is opened from the first chromosome, so no chromosome change blocks on opening a file
+ * if the order is right. When the input goes to another chromosome, the prefetched file is closed
+ * in background.
+ */
+public class ContigPrefetcher implements AutoCloseable {
+
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+		final Thread thread = new Thread(runnable, "contig-prefetch");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final Function<Chromosome, File> files;
+	private final Projection projection;
+	private List<Chromosome> order = ChromosomeFactory.getChromosomeList();
+	private Chromosome next;
+	private Future<ResourceReader> prefetched;
+
+	/**
+	 * @param files
+	 * 		file of each chromosome, which may not exist
+	 * @param projection
+	 * 		fields of the records that are read
+	 */
+	public ContigPrefetcher(Function<Chromosome, File> files, Projection projection) {
+		this.files = files;
+		this.projection = projection;
+	}
+
+	/**
+	 * Takes the order of the chromosomes from the ##contig lines of header, which can use the names
+	 * of any namespace. If header has no contig lines of known chromosomes, the default order of
+	 * chromosomes is used.
+	 */
+	public void setOrder(VcfHeader header) {
+		final Map<String, ComplexHeaderLine> contigs = header.getComplexLines().get("contig");
+		if (contigs == null || contigs.isEmpty()) return;
+		final List<Chromosome> chromosomes = new ArrayList<>(contigs.size());
+		for (ComplexHeaderLine line : contigs.values()) {
+			// Unknown contigs cannot be predicted
+			final Chromosome chromosome = ContigTable.getChromosome(line.getValue("ID"));
+			if (chromosome != null) chromosomes.add(chromosome);
+		}
+		if (!chromosomes.isEmpty()) order = chromosomes;
+	}
+
+	/**
+	 * Opens the file of chrom, taking it from the background if it was predicted, and starts
+	 * opening the next one.
+	 *
+	 * @return a reader for chrom, or null if chrom has no file
+	 * @throws IOException
+	 * 		if the file of chrom cannot be read
+	 */
+	public ResourceReader open(Chromosome chrom) throws IOException {
+		final ResourceReader reader;
+		if (prefetched != null && chrom.equals(next)) reader = take();
+		else {
+			discard();
+			reader = open(files.apply(chrom), projection);
+		}
+		prefetch(chrom);
+		return reader;
+	}
+
+	private void prefetch(Chromosome chrom) {
+		final int index = order.indexOf(chrom);
+		if (index < 0 || index + 1 >= order.size()) return;
+		next = order.get(index + 1);
+		final File file = files.apply(next);
+		prefetched = EXECUTOR.submit(() -> open(file, projection));
+	}
+
+	private static ResourceReader open(File file, Projection projection) throws IOException {
+		return file.exists() ? ResourceReader.open(file, projection) : null;
+	}
+
+	private ResourceReader take() throws IOException {
+		final Future<ResourceReader> future = prefetched;
+		prefetched = null;
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while opening " + next, e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * The prediction failed, so the prefetched reader is closed as soon as it is opened.
+	 */
+	private void discard() {
+		if (prefetched == null) return;
+		final Future<ResourceReader> future = prefetched;
+		prefetched = null;
+		EXECUTOR.execute(() -> {
+			try {
+				final ResourceReader reader = future.get();
+				if (reader != null) reader.close();
+			} catch (Exception ignored) {
+			}
+		});
+	}
+
+	@Override
+	public void close() {
+		discard();
+	}
+}
@@ -0,0 +1,130 @@
+package org.uichuimi.vcf.utils.common;
+
+import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.ChromosomeFactory;
+import org.uichuimi.vcf.variant.Coordinate;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns a stable index to every contig, and translates contig names between namespaces. The known
+ * chromosomes get their index in the chromosome list, and all their names (GRCh, UCSC, RefSeq and
+ * GenBank) are resolved to it, so "1", "chr1" and "NC_000001.11" have the same index. Tables are
+ * built once, when the class is loaded. Unknown contigs are indexed after the known ones, in the
+ * order they are first seen, so their indexes are only valid within the same run.
+ */
+public final class ContigTable {
+
+	private static final List<Chromosome> CHROMOSOMES = ChromosomeFactory.getChromosomeList();
+	private static final Map<Chromosome, Integer> INDEXES = new HashMap<>();
+	private static final Map<String, Integer> NAMES = new ConcurrentHashMap<>();
+	/**
+	 * Names of the known chromosomes, indexed by namespace ordinal and chromosome index.
+	 */
+	private static final String[][] TRANSLATIONS = new String[Chromosome.Namespace.values().length][CHROMOSOMES.size()];
+	/**
+	 * True if the chromosome list is in coordinate order, so indexes of known chromosomes sort as
+	 * their coordinates.
+	 */
+	private static final boolean SORTED;
+	private static int unknown;
+
+	static {
+		for (int i = 0; i < CHROMOSOMES.size(); i++) {
+			final Chromosome chromosome = CHROMOSOMES.get(i);
+			INDEXES.put(chromosome, i);
+			for (Chromosome.Namespace namespace : Chromosome.Namespace.values()) {
+				final String name = chromosome.getName(namespace);
+				TRANSLATIONS[namespace.ordinal()][i] = name;
+				if (name != null) NAMES.putIfAbsent(name, i);
+			}
+		}
+		boolean sorted = true;
+		for (int i = 1; i < CHROMOSOMES.size() && sorted; i++)
+			sorted = new Coordinate(CHROMOSOMES.get(i - 1), 1).compareTo(new Coordinate(CHROMOSOMES.get(i), 1)) < 0;
+		SORTED = sorted;
+	}
+
+	private ContigTable() {
+	}
+
+	/**
+	 * @return the index of chromosome, registering it if it is not a known chromosome
+	 */
+	public static int indexOf(Chromosome chromosome) {
+		final Integer index = INDEXES.get(chromosome);
+		return index != null ? index : indexOf(chromosome.getName());
+	}
+
+	/**
+	 * @param name
+	 * 		name of the contig in any namespace
+	 * @return the index of the contig, registering it if it is not a known chromosome
+	 */
+	public static int indexOf(String name) {
+		final Integer index = NAMES.get(name);
+		return index != null ? index : register(name);
+	}
+
+	private static synchronized int register(String name) {
+		Integer index = NAMES.get(name);
+		if (index == null) {
+			// Unknown contigs start after the known ones
+			index = CHROMOSOMES.size() + unknown++;
+			NAMES.put(name, index);
+		}
+		return index;
+	}
+
+	/**
+	 * @param name
+	 * 		name of the contig in any namespace
+	 * @return the chromosome of the chromosome list with name, or null if it is not a known
+	 * chromosome
+	 */
+	public static Chromosome getChromosome(String name) {
+		final Integer index = NAMES.get(name);
+		return index == null || !isKnown(index) ? null : CHROMOSOMES.get(index);
+	}
+
+	/**
+	 * @return true if index belongs to a chromosome of the chromosome list
+	 */
+	public static boolean isKnown(int index) {
+		return index < CHROMOSOMES.size();
+	}
+
+	/**
+	 * Position keys of different contigs can only be compared as longs if their indexes sort as
+	 * {@link Coordinate#compareTo(Coordinate)} does, which is checked when the class is loaded.
+	 *
+	 * @return true if positions of contigs a and b compare as their indexes: they are the same
+	 * contig, or two known chromosomes and the chromosome list is in coordinate order
+	 */
+	public static boolean isComparable(int a, int b) {
+		return a == b || SORTED && isKnown(a) && isKnown(b);
+	}
+
+	/**
+	 * Identifies the chromosome list, so files that store contig indexes can check they are read
+	 * with the same indexes they were written with.
+	 */
+	public static int fingerprint() {
+		return Arrays.asList(TRANSLATIONS[Chromosome.Namespace.GRCH.ordinal()]).hashCode();
+	}
+
+	/**
+	 * @return the name of the contig in namespace, or name itself if it is unknown or has no name in
+	 * namespace
+	 */
+	public static String translate(String name, Chromosome.Namespace namespace) {
+		final Integer index = NAMES.get(name);
+		if (index == null || !isKnown(index)) return name;
+		final String translated = TRANSLATIONS[namespace.ordinal()][index];
+		return translated == null ? name : translated;
+	}
+}
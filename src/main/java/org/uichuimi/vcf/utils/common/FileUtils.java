@@ -1,12 +1,15 @@
 package org.uichuimi.vcf.utils.common;
 
-import htsjdk.samtools.util.BlockCompressedOutputStream;
-
 import java.io.*;
 import java.util.zip.*;
 
 public class FileUtils {
 
+	/**
+	 * Same default as htsjdk.
+	 */
+	public static final int DEFAULT_COMPRESSION_LEVEL = 5;
+
 	/**
 	 * Interprets the file type by its extension and generates the proper BufferedInputStream.
 	 * Currently, it can open text files and gzipped and zipped text files.
@@ -19,12 +22,16 @@ public class FileUtils {
 	}
 
 	public static BufferedWriter getBufferedWriter(File file) throws IOException {
-		return new BufferedWriter(new OutputStreamWriter(getOutputStream(file)));
+		return getBufferedWriter(file, DEFAULT_COMPRESSION_LEVEL);
+	}
+
+	public static BufferedWriter getBufferedWriter(File file, int compressionLevel) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(getOutputStream(file, compressionLevel)));
 	}
 
 	/**
 	 * Interprets the file type by its extension and generates the proper InputStream. Currently,
-	 * it can open text files and gzipped and zipped text files.
+	 * it can open text files and gzipped and zipped text files. BGZF files are inflated in parallel.
 	 *
 	 * @param file file to read
 	 * @throws IOException if file does not exist or is not readable
@@ -35,7 +42,10 @@ public class FileUtils {
 			final ZipEntry zipEntry = zipFile.entries().nextElement();
 			return zipFile.getInputStream(zipEntry);
 		} else if (file.getName().endsWith(".gz") || file.getName().endsWith(".bgz")) {
-			return new GZIPInputStream(new FileInputStream(file));
+			final InputStream input = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+			if (ParallelBlockCompressedInputStream.isBlockCompressed(input))
+				return new ParallelBlockCompressedInputStream(input);
+			return new GZIPInputStream(input);
 		} else return new FileInputStream(file);
 	}
 
@@ -56,12 +66,37 @@ public class FileUtils {
 	 * @throws IOException if file does not exist or is not writable
 	 */
 	public static OutputStream getOutputStream(File file) throws IOException {
+		return getOutputStream(file, DEFAULT_COMPRESSION_LEVEL);
+	}
+
+	/**
+	 * Same as {@link #getOutputStream(File)}, with a compression level for gzipped files. Gzipped
+	 * files are written in BGZF format, deflating blocks in parallel, which can be read by any gzip
+	 * reader.
+	 *
+	 * @param file             file to write
+	 * @param compressionLevel compression level for .gz and .bgz files, from 0 to 9
+	 * @throws IOException if file does not exist or is not writable
+	 */
+	public static OutputStream getOutputStream(File file, int compressionLevel) throws IOException {
+		return getOutputStream(file, compressionLevel, false);
+	}
+
+	/**
+	 * Same as {@link #getOutputStream(File, int)}, appending to file if it exists. Appended BGZF
+	 * blocks, and their end of file markers, are read as a single file.
+	 *
+	 * @param file             file to write
+	 * @param compressionLevel compression level for .gz and .bgz files, from 0 to 9
+	 * @param append           whether to write at the end of file instead of replacing it
+	 * @throws IOException if file does not exist or is not writable
+	 */
+	public static OutputStream getOutputStream(File file, int compressionLevel, boolean append) throws IOException {
 		if (file.getName().endsWith(".zip")) {
+			if (append) throw new IOException("Cannot append to zip file " + file);
 			return new ZipOutputStream(new FileOutputStream(file));
-		} else if (file.getName().endsWith(".vcf.gz")) {
-			return new BlockCompressedOutputStream(file);
-		} else if (file.getName().endsWith(".gz")) {
-			return new GZIPOutputStream(new FileOutputStream(file));
-		} else return new FileOutputStream(file);
+		} else if (file.getName().endsWith(".gz") || file.getName().endsWith(".bgz")) {
+			return new ParallelBlockCompressedOutputStream(new BufferedOutputStream(new FileOutputStream(file, append), 1 << 16), compressionLevel);
+		} else return new FileOutputStream(file, append);
 	}
 }
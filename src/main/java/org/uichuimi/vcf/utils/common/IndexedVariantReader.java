@@ -0,0 +1,154 @@
+package org.uichuimi.vcf.utils.common;
+
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.uichuimi.vcf.header.VcfHeader;
+import org.uichuimi.vcf.io.VariantReader;
+import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.Coordinate;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.io.*;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Reads a BGZF compressed VCF with a tabix or CSI index. When the next requested position is far
+ * from the current one, the reader jumps to the first block that may contain it. When it is close,
+ * it keeps reading forward, as decompressing a few blocks is cheaper than seeking and refilling
+ * the buffers. So sparse inputs only touch the blocks they need, and dense inputs are read as a
+ * stream.
+ */
+public class IndexedVariantReader implements ResourceReader {
+
+	/**
+	 * Compressed distance, in bytes, from which seeking is preferred to reading forward.
+	 */
+	static final long SEEK_DISTANCE = 4 * 1024 * 1024;
+
+	private final BgzfIndex index;
+	private final Projection projection;
+	private final Chromosome.Namespace namespace;
+	private final long seekDistance;
+	private final byte[] headerBytes;
+	private final VcfHeader header;
+	private final BlockCompressedInputStream stream;
+	private VariantReader reader;
+	private Chromosome chromosome;
+	/**
+	 * Name of the current chromosome in the index, null if the index has no records for it.
+	 */
+	private String contig;
+
+	/**
+	 * @param file
+	 * 		a BGZF compressed VCF file
+	 * @param index
+	 * 		the index of file
+	 * @param projection
+	 * 		fields of the records that are read
+	 * @param namespace
+	 * 		namespace of the chromosome names of file, null for the default
+	 * @throws IOException
+	 * 		if file cannot be read
+	 */
+	public IndexedVariantReader(File file, BgzfIndex index, Projection projection, Chromosome.Namespace namespace) throws IOException {
+		this(file, index, projection, namespace, SEEK_DISTANCE);
+	}
+
+	IndexedVariantReader(File file, BgzfIndex index, Projection projection, Chromosome.Namespace namespace, long seekDistance) throws IOException {
+		this.index = index;
+		this.projection = projection;
+		this.namespace = namespace;
+		this.seekDistance = seekDistance;
+		this.headerBytes = readHeader(file);
+		try (VariantReader headerReader = open(new ByteArrayInputStream(headerBytes))) {
+			this.header = headerReader.getHeader();
+		}
+		this.stream = new BlockCompressedInputStream(file);
+	}
+
+	/**
+	 * Every time the reader seeks, a new {@link VariantReader} is created, so we keep the header
+	 * lines to feed them before the records.
+	 */
+	static byte[] readHeader(File file) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (InputStream in = new BufferedInputStream(new BlockCompressedInputStream(file))) {
+			boolean lineStart = true;
+			int b;
+			while ((b = in.read()) >= 0) {
+				if (lineStart && b != '#') break;
+				out.write(b);
+				lineStart = b == '\n';
+			}
+		}
+		return out.toByteArray();
+	}
+
+	@Override
+	public VcfHeader getHeader() {
+		return header;
+	}
+
+	/**
+	 * Records of other chromosomes can be reached by seeking, so this is always true.
+	 */
+	@Override
+	public boolean hasNext() {
+		return true;
+	}
+
+	@Override
+	public Variant next(Coordinate coordinate) {
+		return moveTo(coordinate) ? reader.next(coordinate) : null;
+	}
+
+	@Override
+	public Collection<Variant> nextCollected(Coordinate coordinate) {
+		return moveTo(coordinate) ? reader.nextCollected(coordinate) : Collections.emptyList();
+	}
+
+	/**
+	 * Places the reader before coordinate, seeking only if chromosome changes or coordinate is far
+	 * ahead.
+	 *
+	 * @return false if the index has no records for the chromosome of coordinate
+	 */
+	private boolean moveTo(Coordinate coordinate) {
+		try {
+			final Chromosome chrom = coordinate.getChromosome();
+			if (!chrom.equals(chromosome)) {
+				chromosome = chrom;
+				contig = index.getContig(chrom, namespace);
+				if (contig == null) return false;
+				seek(index.getOffset(contig, coordinate.getPosition()));
+				return true;
+			}
+			if (contig == null) return false;
+			final long target = index.getOffset(contig, coordinate.getPosition());
+			// Virtual offsets: the upper 48 bits are the position of the block in the file
+			if ((target >>> 16) - (stream.getFilePointer() >>> 16) > seekDistance) seek(target);
+			return true;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void seek(long offset) throws IOException {
+		stream.seek(offset);
+		// The shield keeps the stream open when the previous reader is discarded
+		final InputStream records = new SequenceInputStream(new ByteArrayInputStream(headerBytes), new CloseShieldInputStream(stream));
+		reader = open(records);
+	}
+
+	private VariantReader open(InputStream input) {
+		final InputStream projected = projection.apply(input);
+		return namespace == null ? new VariantReader(projected) : new VariantReader(projected, namespace);
+	}
+
+	@Override
+	public void close() throws IOException {
+		stream.close();
+	}
+}
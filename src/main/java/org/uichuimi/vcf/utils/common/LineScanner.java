@@ -0,0 +1,74 @@
+package org.uichuimi.vcf.utils.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads the lines of a stream into a reusable byte array. Nothing is decoded, so callers can look
+ * at the fields of a line without creating Strings.
+ */
+class LineScanner {
+
+	private final InputStream input;
+	private final byte[] buffer = new byte[1 << 16];
+	private int bufferPosition;
+	private int bufferLimit;
+	private boolean endOfInput;
+
+	private byte[] line = new byte[1 << 12];
+	private int length;
+
+	LineScanner(InputStream input) {
+		this.input = input;
+	}
+
+	/**
+	 * Reads the next line into {@link #line()}, including the line break if present.
+	 *
+	 * @return false if there are no more lines
+	 */
+	boolean next() throws IOException {
+		length = 0;
+		while (true) {
+			if (bufferPosition >= bufferLimit) {
+				if (endOfInput) return length > 0;
+				final int n = input.read(buffer);
+				if (n < 0) {
+					endOfInput = true;
+					return length > 0;
+				}
+				bufferPosition = 0;
+				bufferLimit = n;
+			}
+			int end = bufferPosition;
+			while (end < bufferLimit && buffer[end] != '\n') end++;
+			final boolean found = end < bufferLimit;
+			if (found) end++;
+			final int n = end - bufferPosition;
+			if (length + n > line.length) line = Arrays.copyOf(line, Math.max(line.length * 2, length + n));
+			System.arraycopy(buffer, bufferPosition, line, length, n);
+			length += n;
+			bufferPosition = end;
+			if (found) return true;
+		}
+	}
+
+	/**
+	 * @return the bytes of the current line, valid until next line is read
+	 */
+	byte[] line() {
+		return line;
+	}
+
+	/**
+	 * @return the length of the current line
+	 */
+	int length() {
+		return length;
+	}
+
+	void close() throws IOException {
+		input.close();
+	}
+}
@@ -0,0 +1,64 @@
+package org.uichuimi.vcf.utils.common;
+
+/**
+ * Open addressing hash map with primitive long keys, so keys are neither boxed when stored nor
+ * when looked up. Key 0 is reserved to mark empty slots, which is never a valid {@link
+ * VariantKey}, as positions start at 1.
+ *
+ * @param <V>
+ * 		type of the values
+ */
+class LongObjectMap<V> {
+
+	private long[] keys = new long[16];
+	private Object[] values = new Object[16];
+	private int size;
+
+	@SuppressWarnings("unchecked")
+	V get(long key) {
+		final int mask = keys.length - 1;
+		for (int i = slot(key, mask); keys[i] != 0; i = (i + 1) & mask)
+			if (keys[i] == key) return (V) values[i];
+		return null;
+	}
+
+	void put(long key, V value) {
+		if (key == 0) throw new IllegalArgumentException("0 is not a valid key");
+		if (2 * (size + 1) > keys.length) resize();
+		final int mask = keys.length - 1;
+		int i = slot(key, mask);
+		while (keys[i] != 0 && keys[i] != key) i = (i + 1) & mask;
+		if (keys[i] == 0) size++;
+		keys[i] = key;
+		values[i] = value;
+	}
+
+	int size() {
+		return size;
+	}
+
+	private void resize() {
+		final long[] oldKeys = keys;
+		final Object[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new Object[oldKeys.length * 2];
+		final int mask = keys.length - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[j] == 0) continue;
+			int i = slot(oldKeys[j], mask);
+			while (keys[i] != 0) i = (i + 1) & mask;
+			keys[i] = oldKeys[j];
+			values[i] = oldValues[j];
+		}
+	}
+
+	/**
+	 * Positions are consecutive, so keys are mixed (murmur3 finalizer) before masking.
+	 */
+	private static int slot(long key, int mask) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key & mask;
+	}
+}
@@ -0,0 +1,190 @@
+package org.uichuimi.vcf.utils.common;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a BGZF file inflating its blocks on a shared thread pool. BGZF blocks are independent gzip
+ * members of at most 64KB, so the calling thread only reads the compressed blocks and submits them,
+ * keeping up to {@link #READ_AHEAD} blocks in flight, while bytes are delivered in file order.
+ */
+class ParallelBlockCompressedInputStream extends InputStream {
+
+	private static final int THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+	private static final int READ_AHEAD = 4 * THREADS;
+	private static final ExecutorService POOL = Executors.newFixedThreadPool(THREADS, runnable -> {
+		final Thread thread = new Thread(runnable, "bgzf-inflater");
+		thread.setDaemon(true);
+		return thread;
+	});
+	/**
+	 * Fixed part of the header, up to XLEN.
+	 */
+	private static final int HEADER_SIZE = 12;
+	/**
+	 * CRC32 and ISIZE.
+	 */
+	private static final int FOOTER_SIZE = 8;
+
+	private final DataInputStream input;
+	private final Deque<Future<byte[]>> blocks = new ArrayDeque<>();
+	private final byte[] header = new byte[HEADER_SIZE];
+	private boolean endOfFile;
+	private byte[] buffer = new byte[0];
+	private int position;
+
+	ParallelBlockCompressedInputStream(InputStream input) {
+		this.input = new DataInputStream(input);
+	}
+
+	/**
+	 * @param input
+	 * 		a stream that supports mark, positioned at the beginning of the file. It is reset before
+	 * 		returning.
+	 * @return true if input starts with a BGZF block
+	 */
+	static boolean isBlockCompressed(InputStream input) throws IOException {
+		input.mark(HEADER_SIZE + 6);
+		try {
+			final byte[] bytes = new byte[HEADER_SIZE + 6];
+			final int length = input.readNBytes(bytes, 0, bytes.length);
+			// gzip magic, deflate, FEXTRA, XLEN >= 6 and a BC subfield first
+			return length == bytes.length
+					&& (bytes[0] & 0xff) == 31 && (bytes[1] & 0xff) == 139 && bytes[2] == 8 && (bytes[3] & 4) != 0
+					&& unsignedShort(bytes, 10) >= 6
+					&& bytes[12] == 'B' && bytes[13] == 'C' && unsignedShort(bytes, 14) == 2;
+		} finally {
+			input.reset();
+		}
+	}
+
+	private static int unsignedShort(byte[] bytes, int offset) {
+		return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!fill()) return -1;
+		return buffer[position++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0) return 0;
+		if (!fill()) return -1;
+		final int n = Math.min(length, buffer.length - position);
+		System.arraycopy(buffer, position, bytes, offset, n);
+		position += n;
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return buffer.length - position;
+	}
+
+	/**
+	 * Makes sure there are bytes in the buffer.
+	 *
+	 * @return false if there are no more bytes
+	 */
+	private boolean fill() throws IOException {
+		while (position >= buffer.length) {
+			submit();
+			final Future<byte[]> next = blocks.poll();
+			if (next == null) return false;
+			try {
+				buffer = next.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while inflating");
+			} catch (ExecutionException e) {
+				throw new IOException("Corrupted BGZF block", e.getCause());
+			}
+			position = 0;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads compressed blocks and submits them until there are {@link #READ_AHEAD} blocks in
+	 * flight.
+	 */
+	private void submit() throws IOException {
+		while (!endOfFile && blocks.size() < READ_AHEAD) {
+			final byte[] block = readBlock();
+			if (block == null) endOfFile = true;
+			else blocks.add(POOL.submit(() -> inflate(block)));
+		}
+	}
+
+	/**
+	 * @return the compressed data followed by the footer, or null at the end of the file
+	 */
+	private byte[] readBlock() throws IOException {
+		final int first = input.read();
+		if (first < 0) return null;
+		header[0] = (byte) first;
+		input.readFully(header, 1, HEADER_SIZE - 1);
+		if ((header[0] & 0xff) != 31 || (header[1] & 0xff) != 139 || (header[3] & 4) == 0)
+			throw new IOException("Not a BGZF block");
+		final int extraLength = unsignedShort(header, 10);
+		final byte[] extra = new byte[extraLength];
+		input.readFully(extra);
+		int blockSize = -1;
+		// Look for the BC subfield
+		for (int i = 0; i + 4 <= extraLength; ) {
+			final int length = unsignedShort(extra, i + 2);
+			if (extra[i] == 'B' && extra[i + 1] == 'C' && length == 2) blockSize = unsignedShort(extra, i + 4) + 1;
+			i += 4 + length;
+		}
+		if (blockSize < 0) throw new IOException("BGZF block without size");
+		final byte[] data = new byte[blockSize - HEADER_SIZE - extraLength];
+		input.readFully(data);
+		return data;
+	}
+
+	private static byte[] inflate(byte[] block) throws IOException {
+		final int dataLength = block.length - FOOTER_SIZE;
+		final int crc = readInt(block, dataLength);
+		final int size = readInt(block, dataLength + 4);
+		final byte[] bytes = new byte[size];
+		if (size == 0) return bytes;
+		final Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(block, 0, dataLength);
+			int inflated = 0;
+			while (inflated < size) {
+				final int n = inflater.inflate(bytes, inflated, size - inflated);
+				if (n == 0 && (inflater.finished() || inflater.needsInput()))
+					throw new IOException("BGZF block is shorter than declared");
+				inflated += n;
+			}
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			inflater.end();
+		}
+		final CRC32 crc32 = new CRC32();
+		crc32.update(bytes);
+		if ((int) crc32.getValue() != crc) throw new IOException("BGZF block CRC does not match");
+		return bytes;
+	}
+
+	private static int readInt(byte[] bytes, int offset) {
+		return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8
+				| (bytes[offset + 2] & 0xff) << 16 | (bytes[offset + 3] & 0xff) << 24;
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Future<byte[]> block : blocks) block.cancel(false);
+		blocks.clear();
+		input.close();
+	}
+}
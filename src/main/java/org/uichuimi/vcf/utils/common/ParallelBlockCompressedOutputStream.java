@@ -0,0 +1,172 @@
+package org.uichuimi.vcf.utils.common;
+
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a BGZF file deflating its blocks on a shared thread pool. The calling thread only fills
+ * blocks and writes the compressed ones in order, keeping up to {@link #WINDOW} blocks in flight.
+ * The output is a standard BGZF file, terminated with the empty EOF block, so it can be read by
+ * htsjdk, tabix or any gzip reader.
+ */
+class ParallelBlockCompressedOutputStream extends OutputStream {
+
+	private static final int THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+	private static final int WINDOW = 4 * THREADS;
+	private static final ExecutorService POOL = Executors.newFixedThreadPool(THREADS, runnable -> {
+		final Thread thread = new Thread(runnable, "bgzf-deflater");
+		thread.setDaemon(true);
+		return thread;
+	});
+	/**
+	 * Same as bgzip, so compressed blocks fit in 64KB even when data does not compress.
+	 */
+	private static final int BLOCK_SIZE = 0xff00;
+	private static final int HEADER_SIZE = 18;
+	private static final int FOOTER_SIZE = 8;
+	private static final int MAX_BLOCK_SIZE = 1 << 16;
+
+	private final OutputStream output;
+	private final int level;
+	private final Deque<Future<byte[]>> blocks = new ArrayDeque<>();
+	private byte[] buffer = new byte[BLOCK_SIZE];
+	private int size;
+	private boolean closed;
+
+	/**
+	 * @param output
+	 * 		where compressed blocks are written, it is closed with this stream
+	 * @param level
+	 * 		compression level, from 0 to 9
+	 */
+	ParallelBlockCompressedOutputStream(OutputStream output, int level) {
+		if (level < 0 || level > 9) throw new IllegalArgumentException("Compression level must be between 0 and 9: " + level);
+		this.output = output;
+		this.level = level;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		buffer[size++] = (byte) b;
+		if (size == BLOCK_SIZE) submit();
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		while (length > 0) {
+			final int n = Math.min(length, BLOCK_SIZE - size);
+			System.arraycopy(bytes, offset, buffer, size, n);
+			size += n;
+			offset += n;
+			length -= n;
+			if (size == BLOCK_SIZE) submit();
+		}
+	}
+
+	private void submit() throws IOException {
+		final byte[] block = buffer;
+		final int length = size;
+		blocks.add(POOL.submit(() -> deflate(block, length, level)));
+		buffer = new byte[BLOCK_SIZE];
+		size = 0;
+		while (blocks.size() > WINDOW) writeNext();
+	}
+
+	private void writeNext() throws IOException {
+		try {
+			output.write(blocks.poll().get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while deflating");
+		} catch (ExecutionException e) {
+			throw new IOException("Cannot compress block", e.getCause());
+		}
+	}
+
+	private static byte[] deflate(byte[] data, int length, int level) {
+		final byte[] compressed = new byte[MAX_BLOCK_SIZE];
+		int size = deflate(data, length, level, compressed);
+		// Incompressible data may not fit, stored blocks always fit
+		if (size < 0) size = deflate(data, length, Deflater.NO_COMPRESSION, compressed);
+		final int blockSize = HEADER_SIZE + size + FOOTER_SIZE;
+		final CRC32 crc = new CRC32();
+		crc.update(data, 0, length);
+		final byte[] block = new byte[blockSize];
+		// gzip header with the BC extra subfield
+		block[0] = 31;
+		block[1] = (byte) 139;
+		block[2] = 8;
+		block[3] = 4;
+		block[9] = (byte) 255;
+		block[10] = 6;
+		block[12] = 'B';
+		block[13] = 'C';
+		block[14] = 2;
+		writeShort(block, 16, blockSize - 1);
+		System.arraycopy(compressed, 0, block, HEADER_SIZE, size);
+		writeInt(block, HEADER_SIZE + size, (int) crc.getValue());
+		writeInt(block, HEADER_SIZE + size + 4, length);
+		return block;
+	}
+
+	/**
+	 * @return the compressed size, or -1 if it does not fit in a block
+	 */
+	private static int deflate(byte[] data, int length, int level, byte[] compressed) {
+		final Deflater deflater = new Deflater(level, true);
+		try {
+			deflater.setInput(data, 0, length);
+			deflater.finish();
+			final int limit = MAX_BLOCK_SIZE - HEADER_SIZE - FOOTER_SIZE;
+			final int size = deflater.deflate(compressed, 0, limit);
+			return deflater.finished() ? size : -1;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static void writeShort(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte) value;
+		bytes[offset + 1] = (byte) (value >>> 8);
+	}
+
+	private static void writeInt(byte[] bytes, int offset, int value) {
+		writeShort(bytes, offset, value);
+		writeShort(bytes, offset + 2, value >>> 16);
+	}
+
+	/**
+	 * Compresses the current block, even if it is not full, and waits until every block is
+	 * written.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (size > 0) submit();
+		while (!blocks.isEmpty()) writeNext();
+		output.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) return;
+		closed = true;
+		try {
+			flush();
+			output.write(BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK);
+		} finally {
+			for (Future<byte[]> block : blocks) block.cancel(false);
+			output.close();
+		}
+	}
+}
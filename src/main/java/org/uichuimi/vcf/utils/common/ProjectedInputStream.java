@@ -0,0 +1,131 @@
+package org.uichuimi.vcf.utils.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Rewrites the lines of a VCF stream according to a {@link Projection}. Meta lines are copied, the
+ * #CHROM line loses the sample columns if samples are not kept, and each record keeps only the
+ * projected INFO entries. Fields are found by scanning bytes, nothing is decoded.
+ */
+class ProjectedInputStream extends InputStream {
+
+	private static final int INFO = 7;
+
+	private final LineScanner scanner;
+	private final Projection projection;
+
+	private byte[] line;
+	private int lineLength;
+	private byte[] output = new byte[1 << 12];
+	private int outputPosition;
+	private int outputLength;
+
+	ProjectedInputStream(InputStream input, Projection projection) {
+		this.scanner = new LineScanner(input);
+		this.projection = projection;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (outputPosition >= outputLength && !nextLine()) return -1;
+		return output[outputPosition++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0) return 0;
+		int read = 0;
+		while (read < length) {
+			if (outputPosition >= outputLength && !nextLine()) break;
+			final int n = Math.min(length - read, outputLength - outputPosition);
+			System.arraycopy(output, outputPosition, bytes, offset + read, n);
+			outputPosition += n;
+			read += n;
+		}
+		return read == 0 ? -1 : read;
+	}
+
+	/**
+	 * Reads and projects the next line.
+	 *
+	 * @return false if there are no more lines
+	 */
+	private boolean nextLine() throws IOException {
+		if (!scanner.next()) return false;
+		line = scanner.line();
+		lineLength = scanner.length();
+		outputPosition = 0;
+		outputLength = 0;
+		if (lineLength > 1 && line[0] == '#' && line[1] == '#') append(line, 0, lineLength);
+		else if (line[0] == '#') {
+			if (projection.keepsSamples()) append(line, 0, lineLength);
+			else projectColumns(false);
+		} else projectColumns(true);
+		return true;
+	}
+
+	/**
+	 * @param record
+	 * 		true for variant lines, false for the #CHROM line
+	 */
+	private void projectColumns(boolean record) {
+		int end = lineLength;
+		if (end > 0 && line[end - 1] == '\n') end--;
+		if (end > 0 && line[end - 1] == '\r') end--;
+		int start = 0;
+		int column = 0;
+		while (start <= end) {
+			int stop = start;
+			while (stop < end && line[stop] != '\t') stop++;
+			if (column > INFO && !projection.keepsSamples()) break;
+			if (column > 0) append((byte) '\t');
+			if (record && column == 2 && !projection.keepsIdentifiers()) append((byte) '.');
+			else if (record && column == INFO && !projection.keepsAllKeys()) projectInfo(start, stop);
+			else append(line, start, stop);
+			column++;
+			start = stop + 1;
+		}
+		append((byte) '\n');
+	}
+
+	private void projectInfo(int from, int to) {
+		final int start = outputLength;
+		int entry = from;
+		while (entry < to) {
+			int stop = entry;
+			int keyEnd = -1;
+			while (stop < to && line[stop] != ';') {
+				if (keyEnd < 0 && line[stop] == '=') keyEnd = stop;
+				stop++;
+			}
+			if (projection.isKept(line, entry, keyEnd < 0 ? stop : keyEnd)) {
+				if (outputLength > start) append((byte) ';');
+				append(line, entry, stop);
+			}
+			entry = stop + 1;
+		}
+		if (outputLength == start) append((byte) '.');
+	}
+
+	private void append(byte value) {
+		ensure(1);
+		output[outputLength++] = value;
+	}
+
+	private void append(byte[] bytes, int from, int to) {
+		ensure(to - from);
+		System.arraycopy(bytes, from, output, outputLength, to - from);
+		outputLength += to - from;
+	}
+
+	private void ensure(int n) {
+		if (outputLength + n > output.length) output = Arrays.copyOf(output, Math.max(output.length * 2, outputLength + n));
+	}
+
+	@Override
+	public void close() throws IOException {
+		scanner.close();
+	}
+}
@@ -0,0 +1,88 @@
+package org.uichuimi.vcf.utils.common;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The part of a VCF record that an annotator reads from a resource: a set of INFO keys, and whether
+ * it needs the ID column and the samples. Positions, alleles, QUAL and FILTER are always kept.
+ * <p>
+ * Resources are projected before they are parsed: lines are trimmed at byte level so the
+ * VariantReader only decodes the kept fields.
+ */
+public class Projection {
+
+	/**
+	 * Keeps the whole record.
+	 */
+	public static final Projection ALL = new Projection(null, true, true);
+
+	private final byte[][] keys;
+	private final boolean identifiers;
+	private final boolean samples;
+
+	/**
+	 * @param keys
+	 * 		INFO keys to keep, null to keep all of them
+	 * @param identifiers
+	 * 		whether the ID column is kept
+	 * @param samples
+	 * 		whether FORMAT and samples are kept
+	 */
+	public Projection(Collection<String> keys, boolean identifiers, boolean samples) {
+		this.identifiers = identifiers;
+		this.samples = samples;
+		if (keys == null) this.keys = null;
+		else {
+			final Set<String> unique = new LinkedHashSet<>(keys);
+			this.keys = new byte[unique.size()][];
+			int i = 0;
+			for (String key : unique) this.keys[i++] = key.getBytes(StandardCharsets.US_ASCII);
+		}
+	}
+
+	/**
+	 * Keeps only these INFO keys, no identifiers and no samples.
+	 */
+	public static Projection info(String... keys) {
+		return new Projection(List.of(keys), false, false);
+	}
+
+	/**
+	 * @param input
+	 * 		a VCF stream
+	 * @return a VCF stream with only the projected fields
+	 */
+	public InputStream apply(InputStream input) {
+		if (keys == null && identifiers && samples) return input;
+		return new ProjectedInputStream(input, this);
+	}
+
+	boolean isKept(byte[] line, int from, int to) {
+		if (keys == null) return true;
+		final int length = to - from;
+		for (byte[] key : keys) {
+			if (key.length != length) continue;
+			int i = 0;
+			while (i < length && key[i] == line[from + i]) i++;
+			if (i == length) return true;
+		}
+		return false;
+	}
+
+	boolean keepsAllKeys() {
+		return keys == null;
+	}
+
+	boolean keepsIdentifiers() {
+		return identifiers;
+	}
+
+	boolean keepsSamples() {
+		return samples;
+	}
+}
@@ -0,0 +1,278 @@
+package org.uichuimi.vcf.utils.common;
+
+import org.uichuimi.vcf.header.VcfHeader;
+import org.uichuimi.vcf.io.VariantReader;
+import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.Coordinate;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps a {@link VariantReader} so decompression and parsing happen on a background thread. The
+ * producer thread reads variants ahead into a bounded buffer, while the calling thread only takes
+ * already parsed variants. Navigation methods have the same behaviour as the ones in {@link
+ * VariantReader}: variants must be requested in coordinate order.
+ * <p>
+ * The producer also computes the {@link VariantKey} of each variant, so skipping and matching
+ * records of the same contig compare longs instead of coordinates. Readers created with {@link
+ * #open(InputStream, Projection, Chromosome.Namespace, String)} also drop the records before the
+ * last requested coordinate at byte level, before they are decoded, which is most of the file when
+ * the input is sparse.
+ * <p>
+ * With the system property <em>vcf.readAhead=false</em>, variants are read by the calling thread
+ * when they are needed, so profilers see all the work in one thread, as benchmarks need.
+ */
+public class ReadAheadVariantReader implements ResourceReader {
+
+	private static final int CHUNK_SIZE = 512;
+	private static final int CAPACITY = 8;
+	private static final boolean READ_AHEAD = Boolean.parseBoolean(System.getProperty("vcf.readAhead", "true"));
+	/**
+	 * Marks the end of the file. Compared by identity.
+	 */
+	private static final Chunk END = new Chunk();
+
+	private final VariantReader reader;
+	private final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(CAPACITY);
+	/**
+	 * Null if variants are read by the calling thread.
+	 */
+	private final Thread producer;
+	/**
+	 * Position key of the last requested coordinate, read by the {@link SkippingInputStream}.
+	 */
+	private final AtomicLong target;
+	private volatile Throwable error;
+	private volatile boolean closed;
+
+	private Chunk chunk = new Chunk();
+	private int index;
+	private boolean finished;
+
+	/**
+	 * Starts reading variants from reader in background.
+	 *
+	 * @param reader
+	 * 		a reader, it is closed with this
+	 * @param name
+	 * 		name of the reading thread, for debugging purposes
+	 */
+	public ReadAheadVariantReader(VariantReader reader, String name) {
+		this(reader, name, null);
+	}
+
+	private ReadAheadVariantReader(VariantReader reader, String name, AtomicLong target) {
+		this.reader = reader;
+		this.target = target;
+		if (READ_AHEAD) {
+			this.producer = new Thread(this::produce, "read-ahead-" + name);
+			producer.setDaemon(true);
+			producer.start();
+		} else this.producer = null;
+	}
+
+	/**
+	 * Starts reading variants from input in background, dropping the records before the requested
+	 * coordinates without decoding them.
+	 *
+	 * @param input
+	 * 		a VCF stream, it is closed with this
+	 * @param projection
+	 * 		fields of the records that are read
+	 * @param namespace
+	 * 		namespace of the contigs in input, null for the default one
+	 * @param name
+	 * 		name of the reading thread, for debugging purposes
+	 */
+	public static ReadAheadVariantReader open(InputStream input, Projection projection, Chromosome.Namespace namespace, String name) {
+		final AtomicLong target = new AtomicLong();
+		final InputStream records = projection.apply(new SkippingInputStream(input, target));
+		final VariantReader reader = namespace == null ? new VariantReader(records) : new VariantReader(records, namespace);
+		return new ReadAheadVariantReader(reader, name, target);
+	}
+
+	private void produce() {
+		try {
+			Chunk variants = new Chunk();
+			while (!closed && reader.hasNext()) {
+				variants.add(reader.next());
+				if (variants.size() >= CHUNK_SIZE) {
+					queue.put(variants);
+					variants = new Chunk();
+				}
+			}
+			if (variants.size() > 0) queue.put(variants);
+		} catch (InterruptedException ignored) {
+			// closed
+			return;
+		} catch (Throwable e) {
+			error = e;
+		}
+		try {
+			queue.put(END);
+		} catch (InterruptedException ignored) {
+		}
+	}
+
+	@Override
+	public VcfHeader getHeader() {
+		return reader.getHeader();
+	}
+
+	/**
+	 * @return true if there are more variants to read
+	 */
+	@Override
+	public boolean hasNext() {
+		return peek() != null;
+	}
+
+	/**
+	 * @return the next variant, or null if there are no more variants
+	 */
+	public Variant next() {
+		final Variant variant = peek();
+		if (variant != null) index++;
+		return variant;
+	}
+
+	/**
+	 * Skips all the variants before coordinate, and returns the next variant only if it is at
+	 * coordinate.
+	 *
+	 * @param coordinate
+	 * 		target coordinate
+	 * @return the next variant at coordinate, or null if there is none
+	 */
+	@Override
+	public Variant next(Coordinate coordinate) {
+		final long key = request(coordinate);
+		skipBefore(key, coordinate);
+		final Variant variant = peek();
+		if (variant == null || compare(key, coordinate) != 0) return null;
+		index++;
+		return variant;
+	}
+
+	/**
+	 * Skips all the variants before coordinate, and returns all the variants at coordinate.
+	 *
+	 * @param coordinate
+	 * 		target coordinate
+	 * @return a list with all the variants at coordinate, empty if there is none
+	 */
+	@Override
+	public Collection<Variant> nextCollected(Coordinate coordinate) {
+		final long key = request(coordinate);
+		skipBefore(key, coordinate);
+		List<Variant> variants = null;
+		Variant variant;
+		while ((variant = peek()) != null && compare(key, coordinate) == 0) {
+			if (variants == null) variants = new ArrayList<>(1);
+			variants.add(variant);
+			index++;
+		}
+		return variants == null ? Collections.emptyList() : variants;
+	}
+
+	@Override
+	public Coordinate peekCoordinate() {
+		final Variant variant = peek();
+		return variant == null ? null : variant.getCoordinate();
+	}
+
+	/**
+	 * @return the position key of coordinate, which is published to the producer
+	 */
+	private long request(Coordinate coordinate) {
+		final long key = VariantKey.position(coordinate);
+		if (target != null) target.lazySet(key);
+		return key;
+	}
+
+	private void skipBefore(long key, Coordinate coordinate) {
+		while (peek() != null && compare(key, coordinate) < 0) index++;
+	}
+
+	/**
+	 * Compares the current variant, which must exist, with coordinate. Keys are only comparable in
+	 * the same contig, so the coordinates are compared when contig changes.
+	 */
+	private int compare(long key, Coordinate coordinate) {
+		final long current = chunk.keys[index];
+		if (VariantKey.sameContig(current, key)) return Long.compare(current, key);
+		return chunk.variants.get(index).getCoordinate().compareTo(coordinate);
+	}
+
+	private Variant peek() {
+		if (index < chunk.size()) return chunk.variants.get(index);
+		if (finished) return null;
+		try {
+			chunk = producer == null ? read() : queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while reading variants", e);
+		}
+		index = 0;
+		if (chunk == END) {
+			finished = true;
+			chunk = new Chunk();
+			if (error != null) throw new RuntimeException("Error reading variants", error);
+			return null;
+		}
+		return chunk.variants.get(0);
+	}
+
+	/**
+	 * Reads the next chunk in the calling thread.
+	 */
+	private Chunk read() {
+		final Chunk variants = new Chunk();
+		while (variants.size() < CHUNK_SIZE && reader.hasNext()) variants.add(reader.next());
+		return variants.size() == 0 ? END : variants;
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		if (producer != null) {
+			producer.interrupt();
+			try {
+				producer.join(TimeUnit.SECONDS.toMillis(10));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		reader.close();
+	}
+
+	/**
+	 * Variants read in a row, along with their position keys.
+	 */
+	private static class Chunk {
+
+		private final List<Variant> variants = new ArrayList<>(CHUNK_SIZE);
+		private long[] keys = new long[CHUNK_SIZE];
+
+		void add(Variant variant) {
+			if (variants.size() == keys.length) keys = Arrays.copyOf(keys, 2 * keys.length);
+			keys[variants.size()] = VariantKey.position(variant.getCoordinate());
+			variants.add(variant);
+		}
+
+		int size() {
+			return variants.size();
+		}
+	}
+}
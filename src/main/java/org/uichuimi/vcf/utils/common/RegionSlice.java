@@ -0,0 +1,151 @@
+package org.uichuimi.vcf.utils.common;
+
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.uichuimi.vcf.header.VcfHeader;
+import org.uichuimi.vcf.io.VariantReader;
+import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.Coordinate;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The records of a resource inside a set of {@link Regions}, loaded in memory and indexed by
+ * {@link VariantKey} in a primitive hash map. Every lookup is a hash access, so variants can be requested in any order,
+ * and the same slice can be shared by several threads once loaded.
+ * <p>
+ * BGZF files with a tabix or CSI index are read only at the regions. Other files are read
+ * completely, keeping only the records inside the regions.
+ */
+public class RegionSlice implements ResourceReader {
+
+	private final VcfHeader header;
+	private final LongObjectMap<List<Variant>> records;
+
+	private RegionSlice(VcfHeader header, LongObjectMap<List<Variant>> records) {
+		this.header = header;
+		this.records = records;
+	}
+
+	/**
+	 * Loads the records of files inside regions.
+	 *
+	 * @param files
+	 * 		VCF files of the same resource, such as one file per chromosome
+	 * @param projection
+	 * 		fields of the records that are kept
+	 * @param namespace
+	 * 		namespace of the chromosome names of the files, null for the default
+	 * @param regions
+	 * 		regions to load
+	 * @return a slice with the records of all the files
+	 * @throws IOException
+	 * 		if any file cannot be read
+	 */
+	public static RegionSlice load(List<File> files, Projection projection, Chromosome.Namespace namespace, Regions regions) throws IOException {
+		final LongObjectMap<List<Variant>> records = new LongObjectMap<>();
+		VcfHeader header = null;
+		for (File file : files) {
+			final BgzfIndex index = BgzfIndex.open(file);
+			final VcfHeader fileHeader = index == null
+					? scan(file, projection, namespace, regions, records)
+					: seek(file, index, projection, namespace, regions, records);
+			if (header == null) header = fileHeader;
+		}
+		return new RegionSlice(header, records);
+	}
+
+	private static VcfHeader scan(File file, Projection projection, Chromosome.Namespace namespace, Regions regions, LongObjectMap<List<Variant>> records) throws IOException {
+		try (VariantReader reader = open(projection.apply(FileUtils.getInputStream(file)), namespace)) {
+			while (reader.hasNext()) {
+				final Variant variant = reader.next();
+				final Coordinate coordinate = variant.getCoordinate();
+				if (regions.contains(coordinate.getChromosome(), coordinate.getPosition())) add(records, variant);
+			}
+			return reader.getHeader();
+		}
+	}
+
+	private static VcfHeader seek(File file, BgzfIndex index, Projection projection, Chromosome.Namespace namespace, Regions regions, LongObjectMap<List<Variant>> records) throws IOException {
+		final byte[] headerBytes = IndexedVariantReader.readHeader(file);
+		final VcfHeader header;
+		try (VariantReader reader = open(projection.apply(new ByteArrayInputStream(headerBytes)), namespace)) {
+			header = reader.getHeader();
+		}
+		try (BlockCompressedInputStream stream = new BlockCompressedInputStream(file)) {
+			for (Chromosome chromosome : regions.getChromosomes()) {
+				final String contig = index.getContig(chromosome, namespace);
+				if (contig == null) continue;
+				final long[] intervals = regions.getIntervals(chromosome);
+				for (int i = 0; i < intervals.length; i += 2) {
+					final long start = intervals[i];
+					final long end = intervals[i + 1];
+					stream.seek(index.getOffset(contig, start));
+					// The shield keeps the stream open when the reader is closed
+					final InputStream input = new SequenceInputStream(new ByteArrayInputStream(headerBytes), new CloseShieldInputStream(stream));
+					try (VariantReader reader = open(projection.apply(input), namespace)) {
+						while (reader.hasNext()) {
+							final Variant variant = reader.next();
+							final Coordinate coordinate = variant.getCoordinate();
+							if (!coordinate.getChromosome().equals(chromosome) || coordinate.getPosition() > end) break;
+							if (coordinate.getPosition() >= start) add(records, variant);
+						}
+					}
+				}
+			}
+		}
+		return header;
+	}
+
+	private static VariantReader open(InputStream input, Chromosome.Namespace namespace) {
+		return namespace == null ? new VariantReader(input) : new VariantReader(input, namespace);
+	}
+
+	private static void add(LongObjectMap<List<Variant>> records, Variant variant) {
+		final long key = VariantKey.position(variant.getCoordinate());
+		List<Variant> variants = records.get(key);
+		if (variants == null) {
+			variants = new ArrayList<>(1);
+			records.put(key, variants);
+		}
+		variants.add(variant);
+	}
+
+	/**
+	 * @return number of positions with records
+	 */
+	public int size() {
+		return records.size();
+	}
+
+	@Override
+	public VcfHeader getHeader() {
+		return header;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return true;
+	}
+
+	@Override
+	public Variant next(Coordinate coordinate) {
+		final List<Variant> variants = records.get(VariantKey.position(coordinate));
+		return variants == null ? null : variants.get(0);
+	}
+
+	@Override
+	public Collection<Variant> nextCollected(Coordinate coordinate) {
+		final List<Variant> variants = records.get(VariantKey.position(coordinate));
+		return variants == null ? Collections.emptyList() : variants;
+	}
+
+	/**
+	 * Slices are shared, so they are not closed by annotators.
+	 */
+	@Override
+	public void close() {
+	}
+}
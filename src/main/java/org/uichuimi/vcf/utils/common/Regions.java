@@ -0,0 +1,121 @@
+package org.uichuimi.vcf.utils.common;
+
+import org.uichuimi.vcf.variant.Chromosome;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Genomic regions read from a BED file. Overlapping and adjacent regions are merged, so each
+ * chromosome has a sorted list of disjoint intervals. Positions are 1-based and inclusive, as in
+ * VCF: the BED line <em>1 99 200</em> is the interval [100, 200] of chromosome 1.
+ */
+public class Regions {
+
+	private final Map<Chromosome, long[]> intervals;
+
+	private Regions(Map<Chromosome, long[]> intervals) {
+		this.intervals = intervals;
+	}
+
+	/**
+	 * Reads a BED file. Header lines (#, track and browser) are skipped, and only the first three
+	 * columns are read.
+	 *
+	 * @param file
+	 * 		a BED file, may be gzipped
+	 * @param namespace
+	 * 		namespace of the contigs in file
+	 * @return the merged regions
+	 * @throws IOException
+	 * 		if file cannot be read, or has an invalid line
+	 */
+	public static Regions read(File file, Chromosome.Namespace namespace) throws IOException {
+		final Map<Chromosome, List<long[]>> regions = new LinkedHashMap<>();
+		try (BufferedReader reader = FileUtils.getBufferedReader(file)) {
+			String line;
+			int number = 0;
+			while ((line = reader.readLine()) != null) {
+				number++;
+				if (line.isBlank() || line.startsWith("#") || line.startsWith("track") || line.startsWith("browser"))
+					continue;
+				final String[] columns = line.split("\t", 4);
+				if (columns.length < 3) throw new IOException(String.format("%s:%d: expected chrom, start and end", file, number));
+				final Chromosome chromosome;
+				final long start;
+				final long end;
+				try {
+					chromosome = Chromosome.get(columns[0], namespace);
+					start = Long.parseLong(columns[1].trim()) + 1;
+					end = Long.parseLong(columns[2].trim());
+				} catch (RuntimeException e) {
+					throw new IOException(String.format("%s:%d: %s", file, number, e.getMessage()), e);
+				}
+				if (end >= start) regions.computeIfAbsent(chromosome, c -> new ArrayList<>()).add(new long[]{start, end});
+			}
+		}
+		final Map<Chromosome, long[]> intervals = new LinkedHashMap<>();
+		regions.forEach((chromosome, list) -> intervals.put(chromosome, merge(list)));
+		return new Regions(intervals);
+	}
+
+	/**
+	 * @return starts and ends, interleaved, of the sorted and merged intervals
+	 */
+	private static long[] merge(List<long[]> list) {
+		list.sort(Comparator.comparingLong(interval -> interval[0]));
+		final long[] merged = new long[2 * list.size()];
+		int n = 0;
+		for (long[] interval : list) {
+			if (n > 0 && interval[0] <= merged[n - 1] + 1) merged[n - 1] = Math.max(merged[n - 1], interval[1]);
+			else {
+				merged[n++] = interval[0];
+				merged[n++] = interval[1];
+			}
+		}
+		return Arrays.copyOf(merged, n);
+	}
+
+	/**
+	 * @return the chromosomes with at least one region, in the order of the file
+	 */
+	public Set<Chromosome> getChromosomes() {
+		return Collections.unmodifiableSet(intervals.keySet());
+	}
+
+	/**
+	 * @return the number of intervals after merging
+	 */
+	public int size() {
+		int size = 0;
+		for (long[] values : intervals.values()) size += values.length / 2;
+		return size;
+	}
+
+	/**
+	 * @return starts and ends, interleaved, of the intervals of chromosome, sorted and disjoint
+	 */
+	long[] getIntervals(Chromosome chromosome) {
+		final long[] values = intervals.get(chromosome);
+		return values == null ? new long[0] : values;
+	}
+
+	/**
+	 * @return true if position of chromosome is inside any region
+	 */
+	public boolean contains(Chromosome chromosome, long position) {
+		final long[] values = intervals.get(chromosome);
+		if (values == null) return false;
+		// Last interval starting at or before position
+		int low = 0;
+		int high = values.length / 2 - 1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			if (values[2 * mid] <= position) low = mid + 1;
+			else high = mid - 1;
+		}
+		return high >= 0 && position <= values[2 * high + 1];
+	}
+}
@@ -0,0 +1,85 @@
+package org.uichuimi.vcf.utils.common;
+
+import org.uichuimi.vcf.header.VcfHeader;
+import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.Coordinate;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Sequential access to a VCF file used as annotation resource. Variants must be requested in
+ * coordinate order.
+ */
+public interface ResourceReader extends AutoCloseable {
+
+	/**
+	 * Opens a VCF resource. If the file is BGZF compressed and has a tabix (.tbi) or CSI (.csi)
+	 * index next to it, the reader seeks to the requested positions. Otherwise, the file is read
+	 * sequentially in background.
+	 *
+	 * @param file
+	 * 		a VCF file
+	 * @param projection
+	 * 		fields of the records that are read
+	 * @return a reader for file
+	 * @throws IOException
+	 * 		if file cannot be read
+	 */
+	static ResourceReader open(File file, Projection projection) throws IOException {
+		return open(file, projection, null);
+	}
+
+	/**
+	 * Opens a VCF resource whose chromosome names are in namespace.
+	 *
+	 * @see #open(File, Projection)
+	 */
+	static ResourceReader open(File file, Projection projection, Chromosome.Namespace namespace) throws IOException {
+		final BgzfIndex index = BgzfIndex.open(file);
+		if (index != null) return new IndexedVariantReader(file, index, projection, namespace);
+		return ReadAheadVariantReader.open(FileUtils.getInputStream(file), projection, namespace, file.getName());
+	}
+
+	VcfHeader getHeader();
+
+	/**
+	 * @return true if there can be more variants to read
+	 */
+	boolean hasNext();
+
+	/**
+	 * Skips all the variants before coordinate, and returns the next variant only if it is at
+	 * coordinate.
+	 *
+	 * @param coordinate
+	 * 		target coordinate
+	 * @return the next variant at coordinate, or null if there is none
+	 */
+	Variant next(Coordinate coordinate);
+
+	/**
+	 * Skips all the variants before coordinate, and returns all the variants at coordinate.
+	 *
+	 * @param coordinate
+	 * 		target coordinate
+	 * @return a list with all the variants at coordinate, empty if there is none
+	 */
+	Collection<Variant> nextCollected(Coordinate coordinate);
+
+	/**
+	 * Looks at the next variant without consuming it. Readers that cannot tell it cheaply return
+	 * null.
+	 *
+	 * @return the coordinate of the next variant, or null if it is unknown or there are no more
+	 * variants
+	 */
+	default Coordinate peekCoordinate() {
+		return null;
+	}
+
+	@Override
+	void close() throws IOException;
+}
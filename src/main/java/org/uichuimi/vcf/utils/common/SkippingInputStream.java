@@ -0,0 +1,112 @@
+package org.uichuimi.vcf.utils.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drops the records of a VCF stream that are before a target position, so they are never decoded
+ * into Strings nor Variants. The target is the {@link VariantKey} of the last coordinate requested
+ * from the reader, which is updated by the consumer thread while this stream is read in background.
+ * Only CHROM and POS are read from each line.
+ * <p>
+ * A record is dropped if it is in the same contig as the target and before it, or if both contigs
+ * are known chromosomes and the record is in a previous one. This relies on the indexes of
+ * {@link ContigTable} sorting as coordinates, so if the chromosome list is not sorted, only records
+ * of the same contig are dropped. Records of unknown contigs are only compared within the contig,
+ * as their order is not known here, and are left to the reader, which compares the coordinates.
+ */
+class SkippingInputStream extends InputStream {
+
+	private final LineScanner scanner;
+	private final AtomicLong target;
+	/**
+	 * Bytes of the last contig name and its index, so the name is only decoded when contig changes.
+	 */
+	private byte[] contig = new byte[0];
+	private int contigIndex;
+	private int position;
+
+	/**
+	 * @param target
+	 * 		position key of the last requested coordinate, 0 if none
+	 */
+	SkippingInputStream(InputStream input, AtomicLong target) {
+		this.scanner = new LineScanner(input);
+		this.target = target;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (position >= scanner.length() && !nextLine()) return -1;
+		return scanner.line()[position++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0) return 0;
+		int read = 0;
+		while (read < length) {
+			if (position >= scanner.length() && !nextLine()) break;
+			final int n = Math.min(length - read, scanner.length() - position);
+			System.arraycopy(scanner.line(), position, bytes, offset + read, n);
+			position += n;
+			read += n;
+		}
+		return read == 0 ? -1 : read;
+	}
+
+	private boolean nextLine() throws IOException {
+		while (scanner.next()) {
+			position = 0;
+			if (!isSkipped()) return true;
+		}
+		return false;
+	}
+
+	private boolean isSkipped() {
+		final byte[] line = scanner.line();
+		if (line[0] == '#') return false;
+		final long target = this.target.get();
+		if (target == 0) return false;
+		final long key = getKey(line, scanner.length());
+		// Malformed lines are left to the reader
+		if (key < 0 || key >= target) return false;
+		return ContigTable.isComparable(VariantKey.contig(key), VariantKey.contig(target));
+	}
+
+	/**
+	 * @return the position key of the record in line, or -1 if CHROM or POS cannot be read
+	 */
+	private long getKey(byte[] line, int length) {
+		int tab = 0;
+		while (tab < length && line[tab] != '\t') tab++;
+		if (tab == 0 || tab == length) return -1;
+		if (!isContig(line, tab)) {
+			contig = Arrays.copyOf(line, tab);
+			contigIndex = ContigTable.indexOf(new String(line, 0, tab, StandardCharsets.US_ASCII));
+		}
+		long position = 0;
+		int i = tab + 1;
+		// POS can be the last field, followed by LF or CRLF
+		for (; i < length && line[i] != '\t' && line[i] != '\r' && line[i] != '\n'; i++) {
+			final int digit = line[i] - '0';
+			if (digit < 0 || digit > 9) return -1;
+			position = 10 * position + digit;
+		}
+		return i == tab + 1 ? -1 : VariantKey.position(contigIndex, position);
+	}
+
+	private boolean isContig(byte[] line, int length) {
+		if (length != contig.length) return false;
+		for (int i = 0; i < length; i++) if (line[i] != contig[i]) return false;
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		scanner.close();
+	}
+}
@@ -0,0 +1,61 @@
+package org.uichuimi.vcf.utils.common;
+
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Lookups in a column of values sorted in ascending order, like the positions of a mapped table.
+ * Since input variants are usually sorted, the next value is close after the previous one, so we
+ * gallop from the last result and only binary search the last interval. If the value is before the
+ * last one, the whole column before it is searched.
+ * <p>
+ * Each instance keeps its own cursor, so it must be used by a single thread.
+ */
+public class SortedColumn {
+
+	private final long size;
+	private final LongUnaryOperator values;
+	/**
+	 * Index of the last result, lookups gallop from here.
+	 */
+	private long cursor;
+
+	/**
+	 * @param size
+	 * 		number of values in the column
+	 * @param values
+	 * 		value at each index, in [0, size)
+	 */
+	public SortedColumn(long size, LongUnaryOperator values) {
+		this.size = size;
+		this.values = values;
+	}
+
+	/**
+	 * @return the first index with a value not lower than value, or size if there is none
+	 */
+	public long first(long value) {
+		final long index;
+		if (cursor < size && values.applyAsLong(cursor) <= value) {
+			long bound = 1;
+			while (cursor + bound < size && values.applyAsLong(cursor + bound) < value) bound <<= 1;
+			index = lowerBound(value, cursor + (bound >> 1), Math.min(cursor + bound, size));
+		} else index = lowerBound(value, 0, cursor);
+		cursor = index;
+		return index;
+	}
+
+	/**
+	 * @return the first index in [from, to) with a value not lower than value, or to if there is
+	 * none
+	 */
+	private long lowerBound(long value, long from, long to) {
+		long low = from;
+		long high = to;
+		while (low < high) {
+			final long mid = (low + high) >>> 1;
+			if (values.applyAsLong(mid) < value) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+}
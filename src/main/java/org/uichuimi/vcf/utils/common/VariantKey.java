@@ -0,0 +1,143 @@
+package org.uichuimi.vcf.utils.common;
+
+import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.Coordinate;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.util.List;
+
+/**
+ * Compact keys to compare and join variants without objects nor strings.
+ * <p>
+ * A position key packs the {@link ContigTable} index of the contig in the upper 32 bits and the
+ * position in the lower 32 bits. Keys of the same contig sort as their positions, and keys of known
+ * chromosomes sort as their coordinates if the chromosome list is sorted, as told by
+ * {@link ContigTable#isComparable(int, int)}. Position 0 is not valid, so 0 is never a key.
+ * <p>
+ * An allele key is a 64-bit hash of an allele, or of a reference and alternative pair. When the
+ * alleles are in memory, {@link #indexOf(long[], List, String)} confirms the match comparing the
+ * strings. Files that keep only the hashes (build-freqdb, build-dbsnp-index and build-vep-index)
+ * accept the risk of a collision: two alleles at the same position would need the same hash, with
+ * a probability around n²/2^65 for n alleles, below 10^-17 for sites with less than 10 alleles.
+ */
+public final class VariantKey {
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	/**
+	 * Separates reference and alternative in pair hashes, it cannot be part of an allele.
+	 */
+	private static final int SEPARATOR = 0xff;
+
+	private VariantKey() {
+	}
+
+	public static long position(Chromosome chromosome, long position) {
+		return position(ContigTable.indexOf(chromosome), position);
+	}
+
+	/**
+	 * @param contig
+	 * 		name of the contig in any namespace
+	 */
+	public static long position(String contig, long position) {
+		return position(ContigTable.indexOf(contig), position);
+	}
+
+	public static long position(Coordinate coordinate) {
+		return position(coordinate.getChromosome(), coordinate.getPosition());
+	}
+
+	/**
+	 * @param contig
+	 * 		index of the contig in {@link ContigTable}
+	 */
+	public static long position(int contig, long position) {
+		return ((long) contig << 32) | (position & 0xffffffffL);
+	}
+
+	/**
+	 * @return the contig index of a position key
+	 */
+	public static int contig(long key) {
+		return (int) (key >>> 32);
+	}
+
+	/**
+	 * @return true if both position keys are in the same contig, so they can be compared as longs
+	 */
+	public static boolean sameContig(long a, long b) {
+		return (a >>> 32) == (b >>> 32);
+	}
+
+	/**
+	 * @return the hash of a single allele
+	 */
+	public static long allele(String allele) {
+		return mix(hash(FNV_OFFSET, allele));
+	}
+
+	/**
+	 * @return the hash of the pair of reference and alternative alleles
+	 */
+	public static long allele(String reference, String alternative) {
+		final long h = (hash(FNV_OFFSET, reference) ^ SEPARATOR) * FNV_PRIME;
+		return mix(hash(h, alternative));
+	}
+
+	/**
+	 * Hashes the alternative alleles of variant.
+	 *
+	 * @param buffer
+	 * 		array to reuse, may be null
+	 * @return buffer, or a new array if it was too small, with the hash of each alternative allele
+	 */
+	public static long[] alternatives(Variant variant, long[] buffer) {
+		final List<String> alternatives = variant.getAlternatives();
+		if (buffer == null || buffer.length < alternatives.size()) buffer = new long[Math.max(4, alternatives.size())];
+		for (int i = 0; i < alternatives.size(); i++) buffer[i] = allele(alternatives.get(i));
+		return buffer;
+	}
+
+	/**
+	 * @return the index of key in the first size elements of keys, or -1
+	 */
+	public static int indexOf(long[] keys, int size, long key) {
+		for (int i = 0; i < size; i++) if (keys[i] == key) return i;
+		return -1;
+	}
+
+	/**
+	 * Finds allele comparing hashes, and confirms the match with the strings, so a collision
+	 * cannot match different alleles.
+	 *
+	 * @param keys
+	 * 		hashes of alleles, as returned by {@link #alternatives(Variant, long[])}
+	 * @param alleles
+	 * 		the alleles hashed in keys
+	 * @return the index of allele in alleles, or -1
+	 */
+	public static int indexOf(long[] keys, List<String> alleles, String allele) {
+		final long key = allele(allele);
+		for (int i = 0; i < alleles.size(); i++)
+			if (keys[i] == key && alleles.get(i).equals(allele)) return i;
+		return -1;
+	}
+
+	private static long hash(long h, String value) {
+		for (int i = 0; i < value.length(); i++) h = (h ^ value.charAt(i)) * FNV_PRIME;
+		return h;
+	}
+
+	/**
+	 * FNV spreads short inputs poorly in the upper bits, the murmur finalizer fixes it.
+	 */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -5,7 +5,8 @@ import org.apache.commons.io.LineIterator;
 import org.apache.commons.lang.ArrayUtils;
 import org.uichuimi.vcf.header.InfoHeaderLine;
 import org.uichuimi.vcf.header.VcfHeader;
-import org.uichuimi.vcf.utils.FileUtils;
+import org.uichuimi.vcf.utils.common.FileUtils;
+import org.uichuimi.vcf.utils.common.VariantKey;
 import org.uichuimi.vcf.utils.annotation.consumer.VariantConsumer;
 import org.uichuimi.vcf.utils.exception.VcfException;
 import org.uichuimi.vcf.variant.Coordinate;
@@ -30,14 +31,18 @@ public class DbNSPFPAnnotator implements VariantConsumer {
 	private final String tag;
 
 	private final LineIterator inputStream;
-	private String[] next;
+	/**
+	 * Next line of dbNSFP, it is only split when it matches a variant.
+	 */
+	private String next;
+	private String contig;
+	private long key;
 	private Map<String, Integer> index;
 	private int transcriptIndex;
 
 	private BiFunction<String, Integer, Object> transformer;
 	private Function<Variant, String> transcriptExtractor;
 	private Function<Variant, Integer> indexExtractor;
-	private Coordinate coordinate;
 
 	/**
 	 * -l list of fields to annotate
@@ -127,13 +132,14 @@ public class DbNSPFPAnnotator implements VariantConsumer {
 	@Override
 	public void accept(Variant variant) {
 		// Advance annotations till variant pos
-		String[] annotation = next(variant);
+		final long target = VariantKey.position(variant.getCoordinate());
+		String[] annotation = next(variant, target);
 		while (annotation != null) {
 			// Check ref and alt
 			if (variant.getReferences().get(0).equals(annotation[2]) && variant.getAlternatives().contains(annotation[3])) {
 				annotate(annotation, variant);
 			}
-			annotation = next(variant);
+			annotation = next(variant, target);
 		}
 
 	}
@@ -160,13 +166,16 @@ public class DbNSPFPAnnotator implements VariantConsumer {
 
 	}
 
-	private String[] next(Variant variant) {
+	private String[] next(Variant variant, long target) {
 		while (true) {
 			if (next != null) {
-				final int compare = coordinate.compareTo(variant.getCoordinate());
+				// Keys are comparable within a contig, coordinates are only needed when contig changes
+				final int compare = VariantKey.sameContig(key, target)
+						? Long.compare(key, target)
+						: new Coordinate(contig, key & 0xffffffffL).compareTo(variant.getCoordinate());
 				if (compare == 0) {
 					// Oh, we already have a match
-					String[] rtn = next;
+					String[] rtn = next.split("\t");
 					next = null;
 					return rtn;
 				} else if (compare > 0) {
@@ -179,11 +188,22 @@ public class DbNSPFPAnnotator implements VariantConsumer {
 				next = null;
 				return null;
 			}
-			next = inputStream.next().split("\t");
-			coordinate = new Coordinate(next[0], Long.parseLong(next[1]));
+			next = inputStream.next();
+			key = parseKey(next);
 		}
 	}
 
+	/**
+	 * Reads the position key from the first two columns of line, without splitting it. The contig
+	 * name is only copied when it changes.
+	 */
+	private long parseKey(String line) {
+		final int tab = line.indexOf('\t');
+		if (contig == null || tab != contig.length() || !line.startsWith(contig)) contig = line.substring(0, tab);
+		final int end = line.indexOf('\t', tab + 1);
+		return VariantKey.position(contig, Long.parseLong(line, tab + 1, end < 0 ? line.length() : end, 10));
+	}
+
 	@Override
 	public void close() {
 		try {
@@ -3,7 +3,7 @@ package org.uichuimi.vcf.utils.dbsnp;
 import org.uichuimi.vcf.header.SimpleHeaderLine;
 import org.uichuimi.vcf.io.VariantReader;
 import org.uichuimi.vcf.io.VariantWriter;
-import org.uichuimi.vcf.utils.FileUtils;
+import org.uichuimi.vcf.utils.common.FileUtils;
 import org.uichuimi.vcf.utils.common.GenomeProgress;
 import org.uichuimi.vcf.utils.common.GenomicProgressBar;
 import org.uichuimi.vcf.utils.exception.VcfException;
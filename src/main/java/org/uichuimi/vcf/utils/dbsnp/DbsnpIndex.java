@@ -0,0 +1,110 @@
+package org.uichuimi.vcf.utils.dbsnp;
+
+import org.uichuimi.vcf.utils.common.ContigTable;
+import org.uichuimi.vcf.utils.common.SortedColumn;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * rs identifiers of dbSNP converted by the build-dbsnp-index command. The file has a header
+ * (magic, version, fingerprint of the chromosome list, padding and number of records) followed by
+ * records of 3 longs: the packed position ({@link org.uichuimi.vcf.utils.common.VariantKey}), the
+ * hash of the reference and alternative alleles and the rs number. Records are sorted by position
+ * and allele. The file is memory mapped in segments, so it can be larger than 2GB.
+ * <p>
+ * Lookups are faster when positions are requested in order, but any order is valid. Each instance
+ * keeps its own cursor, so it must be used by a single thread.
+ */
+public class DbsnpIndex {
+
+	static final int MAGIC = 0x44425350; // DBSP
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 4 * Integer.BYTES + Long.BYTES;
+	private static final int FIELDS = 3;
+	private static final int RECORD_SIZE = FIELDS * Long.BYTES;
+	/**
+	 * Records per mapped segment, 1.5GB.
+	 */
+	private static final int SEGMENT_SHIFT = 26;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+	private final long size;
+	private final LongBuffer[] segments;
+	private final SortedColumn positions;
+
+	private DbsnpIndex(long size, LongBuffer[] segments) {
+		this.size = size;
+		this.segments = segments;
+		this.positions = new SortedColumn(size, i -> get(i, 0));
+	}
+
+	public static DbsnpIndex open(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final ByteBuffer header = readHeader(channel);
+			if (header == null || header.getInt() != MAGIC) throw new IOException(file + " is not a dbSNP index");
+			final int version = header.getInt();
+			if (version != VERSION) throw new IOException(file + " has version " + version + ", expected " + VERSION);
+			if (header.getInt() != ContigTable.fingerprint())
+				throw new IOException(file + " was built with a different chromosome list, build it again");
+			header.getInt();
+			final long size = header.getLong();
+			if (channel.size() < HEADER_SIZE + size * RECORD_SIZE) throw new IOException(file + " is truncated");
+			final LongBuffer[] segments = new LongBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+			for (int s = 0; s < segments.length; s++) {
+				final long first = (long) s << SEGMENT_SHIFT;
+				final long records = Math.min(size - first, 1L << SEGMENT_SHIFT);
+				segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * RECORD_SIZE, records * RECORD_SIZE).asLongBuffer();
+			}
+			return new DbsnpIndex(size, segments);
+		}
+	}
+
+	/**
+	 * @return true if file starts like a dbSNP index
+	 */
+	public static boolean isIndex(File file) {
+		if (!file.isFile()) return false;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final ByteBuffer header = readHeader(channel);
+			return header != null && header.getInt() == MAGIC;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		while (header.hasRemaining())
+			if (channel.read(header, header.position()) < 0) return null;
+		return header.flip();
+	}
+
+	/**
+	 * @param position
+	 * 		packed position of the variant
+	 * @param allele
+	 * 		hash of the reference and alternative alleles
+	 * @return the rs number of the allele, or 0 if it is not in dbSNP
+	 */
+	public long find(long position, long allele) {
+		for (long i = positions.first(position); i < size && get(i, 0) == position; i++)
+			if (get(i, 1) == allele) return get(i, 2);
+		return 0;
+	}
+
+	/**
+	 * @return number of records
+	 */
+	public long size() {
+		return size;
+	}
+
+	private long get(long record, int field) {
+		return segments[(int) (record >>> SEGMENT_SHIFT)].get((int) ((record & SEGMENT_MASK) * FIELDS) + field);
+	}
+}
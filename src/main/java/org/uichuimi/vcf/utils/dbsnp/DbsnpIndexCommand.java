@@ -0,0 +1,99 @@
+package org.uichuimi.vcf.utils.dbsnp;
+
+import org.uichuimi.vcf.utils.common.ContigTable;
+import org.uichuimi.vcf.utils.common.FileUtils;
+import org.uichuimi.vcf.utils.common.VariantKey;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+@Command(name = "build-dbsnp-index",
+		description = "Converts a dbSNP VCF into a binary index of rs identifiers, to be used with annotate --dbsnp")
+public class DbsnpIndexCommand implements Callable<Void> {
+
+	@Option(names = {"-i", "--input"},
+			description = "Dbsnp file from NCBI (ftp://ftp.ncbi.nih.gov/snp/latest_release/VCF/GCF_000001405.38.gz)",
+			required = true)
+	private File input;
+
+	@Option(names = {"-o", "--output"}, description = "Output index file", required = true)
+	private File output;
+
+	public DbsnpIndexCommand() {
+	}
+
+	public DbsnpIndexCommand(File input, File output) {
+		this.input = input;
+		this.output = output;
+	}
+
+	@Override
+	public Void call() throws Exception {
+		if (!input.isFile()) {
+			System.err.println("ERROR: cannot read " + input);
+			return null;
+		}
+		System.out.println(" - Indexing " + input);
+		long skipped = 0;
+		try (BufferedReader reader = FileUtils.getBufferedReader(input);
+		     DbsnpIndexWriter writer = new DbsnpIndexWriter(output)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith("#")) continue;
+				if (!add(writer, line)) skipped++;
+			}
+			System.out.printf("   %,d alleles%n", writer.size());
+		}
+		if (skipped > 0) System.out.printf("   %,d records skipped, in unknown contigs or without rs%n", skipped);
+		return null;
+	}
+
+	/**
+	 * Adds one record per alternative allele. Only the first 5 columns are read, and contig names
+	 * are resolved in any namespace, so the RefSeq names of dbSNP need no conversion.
+	 *
+	 * @return false if the record was skipped
+	 */
+	private static boolean add(DbsnpIndexWriter writer, String line) throws IOException {
+		final int chromEnd = line.indexOf('\t');
+		final int posEnd = line.indexOf('\t', chromEnd + 1);
+		final int idEnd = line.indexOf('\t', posEnd + 1);
+		final int refEnd = line.indexOf('\t', idEnd + 1);
+		int altEnd = line.indexOf('\t', refEnd + 1);
+		if (refEnd < 0) throw new IOException("Bad VCF line: " + line);
+		if (altEnd < 0) altEnd = line.length();
+		// Unknown contigs have no stable index
+		final int contig = ContigTable.indexOf(line.substring(0, chromEnd));
+		if (!ContigTable.isKnown(contig)) return false;
+		final long rs = getRs(line, posEnd + 1, idEnd);
+		if (rs <= 0) return false;
+		final long position = VariantKey.position(contig, Long.parseLong(line, chromEnd + 1, posEnd, 10));
+		final String reference = line.substring(idEnd + 1, refEnd);
+		int start = refEnd + 1;
+		while (start < altEnd) {
+			int end = line.indexOf(',', start);
+			if (end < 0 || end > altEnd) end = altEnd;
+			writer.add(position, VariantKey.allele(reference, line.substring(start, end)), rs);
+			start = end + 1;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of the first rs identifier in [from, to), or 0 if there is none
+	 */
+	private static long getRs(String line, int from, int to) {
+		if (to - from < 3 || line.charAt(from) != 'r' || line.charAt(from + 1) != 's') return 0;
+		long rs = 0;
+		for (int i = from + 2; i < to; i++) {
+			final char c = line.charAt(i);
+			if (c < '0' || c > '9') break;
+			rs = 10 * rs + c - '0';
+		}
+		return rs;
+	}
+}
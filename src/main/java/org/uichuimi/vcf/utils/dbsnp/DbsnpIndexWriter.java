@@ -0,0 +1,107 @@
+package org.uichuimi.vcf.utils.dbsnp;
+
+import org.uichuimi.vcf.utils.common.ColumnFileWriter;
+import org.uichuimi.vcf.utils.common.ContigTable;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes a {@link DbsnpIndex}. Records must be added contig by contig, in position order. Each
+ * contig is a column of a {@link ColumnFileWriter}, so contigs are concatenated in index order when
+ * the writer is closed, so the input does not need to follow the order of the chromosome list and
+ * memory usage does not depend on the size of the input.
+ */
+class DbsnpIndexWriter implements Closeable {
+
+	/**
+	 * One column per contig, by contig index.
+	 */
+	private final ColumnFileWriter contigs;
+	private DataOutputStream output;
+	private int contig = -1;
+	private long position = -1;
+	/**
+	 * Records at the current position, sorted by allele before they are written.
+	 */
+	private long[][] records = new long[8][];
+	private int pending;
+	private long size;
+
+	DbsnpIndexWriter(File file) {
+		this.contigs = new ColumnFileWriter(file);
+	}
+
+	/**
+	 * @param key
+	 * 		packed position of the variant
+	 * @param allele
+	 * 		hash of the reference and alternative alleles
+	 * @param rs
+	 * 		rs number
+	 * @throws IOException
+	 * 		if the contig was already written, the position is lower than the previous one, or the
+	 * 		writer fails
+	 */
+	void add(long key, long allele, long rs) throws IOException {
+		if (key != position) {
+			flush();
+			final int index = (int) (key >>> 32);
+			if (index != contig) openContig(index);
+			else if (key < position)
+				throw new IOException(String.format("position %d after %d, file is not sorted", key & 0xffffffffL, position & 0xffffffffL));
+			position = key;
+		}
+		if (pending == records.length) records = Arrays.copyOf(records, 2 * records.length);
+		records[pending++] = new long[]{key, allele, rs};
+	}
+
+	private void openContig(int index) throws IOException {
+		if (output != null) contigs.closeColumn(contig);
+		if (contigs.hasColumn(index)) throw new IOException("contig " + index + " is not contiguous");
+		output = contigs.createColumn(index);
+		contig = index;
+		position = -1;
+	}
+
+	/**
+	 * Writes the records of the current position sorted by allele. When an allele is repeated,
+	 * only the first rs is kept.
+	 */
+	private void flush() throws IOException {
+		Arrays.sort(records, 0, pending, (a, b) -> Long.compare(a[1], b[1]));
+		for (int i = 0; i < pending; i++) {
+			if (i > 0 && records[i][1] == records[i - 1][1]) continue;
+			for (long value : records[i]) output.writeLong(value);
+			size++;
+		}
+		Arrays.fill(records, 0, pending, null);
+		pending = 0;
+	}
+
+	/**
+	 * @return number of records written so far
+	 */
+	long size() {
+		return size + pending;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (output != null) flush();
+			contigs.write(out -> {
+				out.writeInt(DbsnpIndex.MAGIC);
+				out.writeInt(DbsnpIndex.VERSION);
+				out.writeInt(ContigTable.fingerprint());
+				out.writeInt(0);
+				out.writeLong(size);
+			});
+		} finally {
+			contigs.close();
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package org.uichuimi.vcf.utils.filter;
+
+import org.uichuimi.vcf.utils.annotation.Consequence;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Filters a consequence field by severity, comparing the {@link Consequence} ordinals, so
+ * CONS&lt;=missense_variant keeps the variants with missense or more severe consequences. Terms that
+ * are not a known consequence are treated as missing values, in single values and lists alike: they
+ * are skipped, and a variant without any known term passes only if nulls are accepted.
+ */
+public class ConsequenceFilter extends Filter {
+
+	private final String key;
+	private final VariantFilter.Operator operator;
+	private final Consequence value;
+	private final boolean matchAll;
+	private final boolean acceptNulls;
+
+	public ConsequenceFilter(String key, VariantFilter.Operator operator, Consequence value, boolean matchAll, boolean acceptNulls) {
+		this.key = key;
+		this.operator = operator;
+		this.value = value;
+		this.matchAll = matchAll;
+		this.acceptNulls = acceptNulls;
+	}
+
+	@Override
+	boolean filter(Variant variant) {
+		final Object object = variant.getInfo(key);
+		final List<?> terms = object instanceof List ? (List<?>) object : Collections.singletonList(object);
+		boolean found = false;
+		for (Object term : terms) {
+			final Consequence consequence = term == null ? null : Consequence.parse(term.toString());
+			if (consequence == null) continue;
+			found = true;
+			final boolean passes = passes(consequence);
+			if (matchAll && !passes) return false;
+			if (!matchAll && passes) return true;
+		}
+		return found ? matchAll : acceptNulls;
+	}
+
+	private boolean passes(Consequence consequence) {
+		return operator.apply(consequence.ordinal(), value.ordinal());
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s %s %s (severity), %s, %s", key, operator.getSymbol(), value,
+				matchAll ? "all" : "any", (acceptNulls ? "" : "not ") + "mandatory");
+	}
+}
@@ -0,0 +1,59 @@
+package org.uichuimi.vcf.utils.filter;
+
+import org.uichuimi.vcf.variant.Variant;
+
+import java.util.List;
+
+/**
+ * Filters a frequency source annotated with typed frequencies (GG_AF_afr, GG_AF_amr...) as if it
+ * was a single field with the values of all the populations, so GG_AF*&lt;0.01 keeps the variants
+ * with at least one gnomAD genomes frequency below 0.01. Values are compared as they are read,
+ * without parsing.
+ */
+public class FrequencyFilter extends Filter {
+
+	private final String key;
+	private final List<String> keys;
+	private final VariantFilter.Operator operator;
+	private final Double value;
+	private final boolean matchAll;
+	private final boolean acceptNulls;
+
+	/**
+	 * @param key
+	 * 		INFO key of the source
+	 * @param keys
+	 * 		INFO keys of the populations of the source
+	 */
+	public FrequencyFilter(String key, List<String> keys, VariantFilter.Operator operator, Double value, boolean matchAll, boolean acceptNulls) {
+		this.key = key;
+		this.keys = keys;
+		this.operator = operator;
+		this.value = value;
+		this.matchAll = matchAll;
+		this.acceptNulls = acceptNulls;
+	}
+
+	@Override
+	boolean filter(Variant variant) {
+		boolean found = false;
+		for (String population : keys) {
+			final List<Float> values = variant.getInfo(population);
+			if (values == null) continue;
+			for (Float frequency : values) {
+				if (frequency == null) continue;
+				found = true;
+				final boolean passes = operator.apply(frequency, value);
+				if (matchAll && !passes) return false;
+				if (!matchAll && passes) return true;
+			}
+		}
+		return found ? matchAll : acceptNulls;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s %s %s (%s), %s, %s", key, operator.getSymbol(), value,
+				String.join(",", keys), matchAll ? "all" : "any", (acceptNulls ? "" : "not ") + "mandatory");
+	}
+}
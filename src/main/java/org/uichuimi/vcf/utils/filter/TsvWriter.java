@@ -3,6 +3,7 @@ package org.uichuimi.vcf.utils.filter;
 import org.uichuimi.vcf.header.VcfHeader;
 import org.uichuimi.vcf.io.VariantOutput;
 import org.uichuimi.vcf.utils.annotation.AnnotationConstants;
+import org.uichuimi.vcf.utils.annotation.consumer.FrequencyFields;
 import org.uichuimi.vcf.variant.Info;
 import org.uichuimi.vcf.variant.Variant;
 import org.uichuimi.vcf.variant.VcfConstants;
@@ -35,6 +36,10 @@ public class TsvWriter implements VariantOutput {
 
 	private final String delimiter;
 	private List<String> columns;
+	/**
+	 * For each key in KEYS, the typed population keys if the input has them, or null.
+	 */
+	private final List<List<String>> typedKeys = new ArrayList<>();
 
 	public TsvWriter(OutputStream outputStream) {
 		this(outputStream, "\t");
@@ -49,6 +54,11 @@ public class TsvWriter implements VariantOutput {
 	public void setHeader(VcfHeader header) {
 		columns = new ArrayList<>(COLUMNS);
 		columns.addAll(header.getSamples());
+		typedKeys.clear();
+		for (String key : KEYS) {
+			final List<String> keys = FrequencyFields.getTypedKeys(key, FrequencyFields.POPULATIONS.get(key));
+			typedKeys.add(keys.stream().anyMatch(k -> header.hasComplexHeader("INFO", k)) ? keys : null);
+		}
 		output.println(String.join(delimiter, columns));
 	}
 
@@ -76,8 +86,9 @@ public class TsvWriter implements VariantOutput {
 
 	private String extractGmaf(Variant variant) {
 		Double gmaf = null;
-		for (String key : KEYS) {
-			final Double f = writeFrequencies(variant, key);
+		for (int i = 0; i < KEYS.size(); i++) {
+			final List<String> keys = typedKeys.get(i);
+			final Double f = keys == null ? writeFrequencies(variant, KEYS.get(i)) : getMaxFrequency(variant, keys);
 			if (f != null) {
 				if (gmaf == null) gmaf = f;
 				else gmaf = Double.max(gmaf, f);
@@ -101,6 +112,19 @@ public class TsvWriter implements VariantOutput {
 		return max;
 	}
 
+	/**
+	 * Typed frequencies are read as they are, without splitting nor parsing.
+	 */
+	private Double getMaxFrequency(Variant variant, List<String> keys) {
+		Double max = null;
+		for (String key : keys) {
+			final List<Float> values = variant.getInfo(key);
+			if (values == null || values.isEmpty()) continue;
+			final Float value = values.get(0);
+			if (value != null) max = Double.max(max == null ? 0 : max, value);
+		}
+		return max;
+	}
 
 	@Override
 	public void close() throws Exception {
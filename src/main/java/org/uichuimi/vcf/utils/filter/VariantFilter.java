@@ -6,6 +6,9 @@ import org.uichuimi.vcf.header.VcfHeader;
 import org.uichuimi.vcf.io.MultipleVariantReader;
 import org.uichuimi.vcf.io.VariantOutput;
 import org.uichuimi.vcf.io.VariantWriter;
+import org.uichuimi.vcf.utils.annotation.AnnotationConstants;
+import org.uichuimi.vcf.utils.annotation.Consequence;
+import org.uichuimi.vcf.utils.annotation.consumer.FrequencyFields;
 import org.uichuimi.vcf.utils.common.FileUtils;
 import org.uichuimi.vcf.utils.common.GenomicProgressBar;
 import org.uichuimi.vcf.variant.Info;
@@ -155,11 +158,13 @@ public class VariantFilter implements Callable<Void> {
 					"\t@|yellow -f|@ SYMBOL=LDLR (filter variants with SYMBOL = LDLR, if SYMBOL " +
 					"is an array, all values must be LDLR)%n" +
 					"\t@|yellow -f|@ EX_AF*<0.01 (filters variants with at least one ExAC" +
-					" frequency below 0.01)%n" +
+					" frequency below 0.01, also when annotated with --typed-frequencies)%n" +
 					"\t@|yellow -f|@ .DP>5 (filters variants where ALL samples have DP greater" +
 					" than 5)%n" +
 					"\t@|yellow -f|@ NA001.GQ>=10 (sample NA001 must have GQ greater or equal to" +
 					" 10)%n" +
+					"\t@|yellow -f|@ CONS*<=missense_variant (filters variants with at least one" +
+					" consequence as severe as missense_variant or more)%n" +
 					"\t@|yellow -f|@ DB (filters variants with DB flag)%n" +
 					"\t@|yellow -f|@ SYMBOL=LDLR (only variants with symbol name LDLR, variants" +
 					" without symbol are not included.)")
@@ -346,6 +351,23 @@ public class VariantFilter implements Callable<Void> {
 				return new QualityFilter(Double.parseDouble(value), op);
 			if (key.equals("FILTER"))
 				return new FilterFilter(value, op, matchAll);
+			final List<String> typedKeys = getTypedFrequencyKeys(header, key);
+			if (typedKeys != null) {
+				try {
+					return new FrequencyFilter(key, typedKeys, op, Double.parseDouble(value), matchAll, acceptNulls);
+				} catch (NumberFormatException e) {
+					log.printf("ERROR: %s is not a valid frequency: %s%n", value, pattern);
+					System.exit(1);
+				}
+			}
+			if (key.equals(AnnotationConstants.CONS) && op.isComparison()) {
+				final Consequence consequence = Consequence.parse(value);
+				if (consequence == null) {
+					log.printf("ERROR: %s is not a valid consequence: %s%n", value, pattern);
+					System.exit(1);
+				}
+				return new ConsequenceFilter(key, op, consequence, matchAll, acceptNulls);
+			}
 			if (!header.hasComplexHeader("INFO", key))
 				log.printf("WARNING: INFO %s not found (interpreting as String)%n", key);
 			headerLine = header.getInfoHeader(key);
@@ -365,6 +387,18 @@ public class VariantFilter implements Callable<Void> {
 		}
 	}
 
+	/**
+	 * @return the keys of the typed frequencies of key, if key is a frequency source annotated with
+	 * --typed-frequencies, null otherwise
+	 */
+	private static List<String> getTypedFrequencyKeys(VcfHeader header, String key) {
+		final List<String> populations = FrequencyFields.POPULATIONS.get(key);
+		if (populations == null || header.hasComplexHeader("INFO", key)) return null;
+		final List<String> keys = FrequencyFields.getTypedKeys(key, populations);
+		for (String typedKey : keys) if (header.hasComplexHeader("INFO", typedKey)) return keys;
+		return null;
+	}
+
 	private void createVariantFilters(VcfHeader header) {
 		if (patterns == null) return;
 		final List<Filter> filterList = new ArrayList<>();
@@ -415,6 +449,13 @@ public class VariantFilter implements Callable<Void> {
 			return symbol;
 		}
 
+		/**
+		 * @return true for the numeric comparisons (&lt;, &lt;=, &gt;, &gt;=)
+		 */
+		boolean isComparison() {
+			return this == GT || this == LT || this == GE || this == LE;
+		}
+
 		boolean apply(Object a, Object b) {
 			return operation.apply(a, b);
 		}
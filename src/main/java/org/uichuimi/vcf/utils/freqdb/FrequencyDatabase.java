@@ -0,0 +1,96 @@
+package org.uichuimi.vcf.utils.freqdb;
+
+import org.uichuimi.vcf.utils.annotation.consumer.FrequencyMatrix;
+import org.uichuimi.vcf.utils.common.VariantKey;
+import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Frequencies of one source (1000 genomes, gnomAD, ExAC...) converted by the build-freqdb command.
+ * The database is a directory with one file per chromosome, each one with the sorted positions, a
+ * hash of the alternative allele and a column of frequencies per population. Files are memory
+ * mapped, so there is no parsing nor decompression at annotation time.
+ * <p>
+ * Variants must be requested in coordinate order, as with VCF resources.
+ */
+public class FrequencyDatabase implements AutoCloseable {
+
+	private static final String EXTENSION = ".fdb";
+
+	private final File directory;
+	private final int populations;
+	private Chromosome chromosome;
+	private FrequencyTable table;
+
+	/**
+	 * @param directory
+	 * 		database directory of the source
+	 * @param populations
+	 * 		number of populations of the source
+	 */
+	public FrequencyDatabase(File directory, int populations) {
+		if (!directory.isDirectory()) throw new IllegalArgumentException(directory + " is not a directory");
+		this.directory = directory;
+		this.populations = populations;
+	}
+
+	/**
+	 * @param root
+	 * 		root directory of the database
+	 * @param key
+	 * 		INFO key of the source
+	 * @return the directory of the source in the database
+	 */
+	public static File getDirectory(File root, String key) {
+		return new File(root, key);
+	}
+
+	static File getFile(File directory, String chromosome) {
+		return new File(directory, chromosome + EXTENSION);
+	}
+
+	/**
+	 * Finds the frequencies of each alternative allele of variant. Alleles are matched by their
+	 * alternative sequence.
+	 *
+	 * @param variant
+	 * 		variant to annotate
+	 * @param alleleKeys
+	 * 		hashes of the alternative alleles of variant, as in {@link VariantKey#alternatives(Variant,
+	 * 		long[])}
+	 * @param fr
+	 * 		matrix reset to the alleles of variant and the populations of the source, where the
+	 * 		frequencies are written
+	 * @return false if none of the alleles is in the database
+	 */
+	public boolean getFrequencies(Variant variant, long[] alleleKeys, FrequencyMatrix fr) {
+		final Chromosome chrom = variant.getCoordinate().getChromosome();
+		if (!chrom.equals(chromosome)) {
+			chromosome = chrom;
+			table = open(chrom);
+		}
+		if (table == null) return false;
+		return table.getFrequencies(variant.getCoordinate().getPosition(), alleleKeys, variant.getAlternatives().size(), fr);
+	}
+
+	private FrequencyTable open(Chromosome chrom) {
+		final File file = getFile(directory, chrom.getName());
+		if (!file.exists()) return null;
+		try {
+			return FrequencyTable.open(file, populations);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		// Mapped buffers are released by the garbage collector
+		table = null;
+		chromosome = null;
+	}
+}
@@ -0,0 +1,143 @@
+package org.uichuimi.vcf.utils.freqdb;
+
+import org.uichuimi.vcf.io.VariantReader;
+import org.uichuimi.vcf.utils.annotation.consumer.*;
+import org.uichuimi.vcf.utils.common.FileUtils;
+import org.uichuimi.vcf.variant.Variant;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+@Command(name = "build-freqdb",
+		description = "Converts frequency resources into a binary database, to be used with annotate --freqdb")
+public class FrequencyDatabaseCommand implements Callable<Void> {
+
+	@Option(names = {"--1000G", "--1kG"},
+			description = "1000 genomes phase 3 VCF with population frequencies (1000GENOMES-phase_3.vcf.gz)")
+	private File kGenomes;
+
+	@Option(names = {"--gnomadGenomes", "--gnomad-genomes"},
+			description = "File with gnomAD genomes frequencies, or directory with gnomad.genomes.chr{}.vcf.gz files")
+	private File gnomadGenomes;
+
+	@Option(names = {"--gnomadExomes", "--gnomad-exomes"},
+			description = "File with gnomAD exomes frequencies, or directory with gnomad.exomes.chr{}.vcf.gz files")
+	private File gnomadExomes;
+
+	@Option(names = {"--exac", "--ExAC"},
+			description = "File with ExAC frequencies (ExAC.0.3.GRCh38.vcf.gz)")
+	private File exac;
+
+	@Option(names = {"-o", "--output"},
+			description = "Output directory. Each source is written into a subdirectory named as its INFO key.",
+			required = true)
+	private File output;
+
+	public FrequencyDatabaseCommand() {
+	}
+
+	public FrequencyDatabaseCommand(File output) {
+		this.output = output;
+	}
+
+	// Builder pattern
+	public FrequencyDatabaseCommand setkGenomes(File kGenomes) {
+		this.kGenomes = kGenomes;
+		return this;
+	}
+
+	public FrequencyDatabaseCommand setGnomadGenomes(File gnomadGenomes) {
+		this.gnomadGenomes = gnomadGenomes;
+		return this;
+	}
+
+	public FrequencyDatabaseCommand setGnomadExomes(File gnomadExomes) {
+		this.gnomadExomes = gnomadExomes;
+		return this;
+	}
+
+	public FrequencyDatabaseCommand setExac(File exac) {
+		this.exac = exac;
+		return this;
+	}
+
+	@Override
+	public Void call() throws Exception {
+		if (kGenomes == null && gnomadGenomes == null && gnomadExomes == null && exac == null) {
+			System.err.println("ERROR: at least one frequency source is required");
+			return null;
+		}
+		if (!output.exists() && !output.mkdirs()) {
+			System.err.println("ERROR: cannot create " + output);
+			return null;
+		}
+		if (kGenomes != null) build(new KGenomesAnnotator(kGenomes), kGenomes);
+		if (gnomadGenomes != null) build(new GnomadGenomeAnnotator(gnomadGenomes), gnomadGenomes);
+		if (gnomadExomes != null) build(new GnomadExomeAnnotator(gnomadExomes), gnomadExomes);
+		if (exac != null) build(new ExACAnnotator(exac), exac);
+		return null;
+	}
+
+	/**
+	 * Frequencies are extracted by the annotator of the source, so the database contains exactly
+	 * the values the annotator would write.
+	 */
+	private void build(FrequencyAnnotator annotator, File source) throws IOException {
+		final File directory = FrequencyDatabase.getDirectory(output, annotator.getKey());
+		if (!directory.exists() && !directory.mkdirs()) throw new IOException("Cannot create " + directory);
+		final int populations = annotator.getPopulations().size();
+		final Set<String> written = new HashSet<>();
+		FrequencyTableWriter writer = null;
+		String chromosome = null;
+		try {
+			for (File file : getFiles(source)) {
+				System.out.println(" - " + annotator.getKey() + " from " + file);
+				try (VariantReader reader = new VariantReader(annotator.getProjection().apply(FileUtils.getInputStream(file)))) {
+					while (reader.hasNext()) {
+						final Variant variant = reader.next();
+						final String chrom = variant.getCoordinate().getChromosome().getName();
+						if (!chrom.equals(chromosome)) {
+							if (writer != null) close(writer, chromosome);
+							writer = null;
+							if (!written.add(chrom))
+								throw new IOException(String.format("chromosome %s is not contiguous in %s", chrom, source));
+							chromosome = chrom;
+							writer = new FrequencyTableWriter(FrequencyDatabase.getFile(directory, chrom), populations);
+						}
+						final float[][] frequencies = annotator.getFrequencies(variant);
+						final List<String> alternatives = variant.getAlternatives();
+						for (int a = 0; a < alternatives.size(); a++)
+							if (hasValues(frequencies[a]))
+								writer.add(variant.getCoordinate().getPosition(), alternatives.get(a), frequencies[a]);
+					}
+				}
+			}
+			if (writer != null) close(writer, chromosome);
+		} finally {
+			annotator.close();
+		}
+	}
+
+	private static void close(FrequencyTableWriter writer, String chromosome) throws IOException {
+		final int size = writer.size();
+		writer.close();
+		System.out.printf("   %s: %,d alleles%n", chromosome, size);
+	}
+
+	private static boolean hasValues(float[] frequencies) {
+		for (float frequency : frequencies) if (!Float.isNaN(frequency)) return true;
+		return false;
+	}
+
+	private static List<File> getFiles(File source) throws IOException {
+		if (!source.isDirectory()) return List.of(source);
+		final File[] files = source.listFiles((dir, name) -> name.endsWith(".vcf") || name.endsWith(".vcf.gz"));
+		if (files == null) throw new IOException("Cannot list " + source);
+		Arrays.sort(files);
+		return Arrays.asList(files);
+	}
+}
@@ -0,0 +1,102 @@
+package org.uichuimi.vcf.utils.freqdb;
+
+import org.uichuimi.vcf.utils.annotation.consumer.FrequencyMatrix;
+import org.uichuimi.vcf.utils.common.SortedColumn;
+import org.uichuimi.vcf.utils.common.VariantKey;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Frequencies of one chromosome. The file has a header (magic, version, number of populations and
+ * number of alleles) followed by the columns: positions (int), allele hashes (long, as
+ * {@link VariantKey#allele(String)}) and one column
+ * of frequencies (float, NaN when missing) per population. Rows are sorted by position. Each
+ * column is mapped on its own, so chromosomes with more than 2GB of data can be mapped.
+ */
+class FrequencyTable {
+
+	static final int MAGIC = 0x46514442; // FQDB
+	/**
+	 * Version 2 hashes alleles with {@link VariantKey}.
+	 */
+	static final int VERSION = 2;
+	static final int HEADER_SIZE = 4 * Integer.BYTES;
+
+	private final int size;
+	private final IntBuffer positions;
+	private final LongBuffer alleles;
+	private final FloatBuffer[] frequencies;
+	private final SortedColumn column;
+
+	private FrequencyTable(int size, IntBuffer positions, LongBuffer alleles, FloatBuffer[] frequencies) {
+		this.size = size;
+		this.positions = positions;
+		this.alleles = alleles;
+		this.frequencies = frequencies;
+		this.column = new SortedColumn(size, i -> positions.get((int) i));
+	}
+
+	static FrequencyTable open(File file, int populations) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while (header.hasRemaining())
+				if (channel.read(header, header.position()) < 0) throw new IOException(file + " is truncated");
+			header.flip();
+			if (header.getInt() != MAGIC) throw new IOException(file + " is not a frequency database");
+			final int version = header.getInt();
+			if (version != VERSION) throw new IOException(file + " has version " + version + ", expected " + VERSION);
+			final int columns = header.getInt();
+			if (columns != populations)
+				throw new IOException(String.format("%s has %d populations, expected %d", file, columns, populations));
+			final int size = header.getInt();
+			long offset = HEADER_SIZE;
+			final IntBuffer positions = channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) Integer.BYTES * size).asIntBuffer();
+			offset += (long) Integer.BYTES * size;
+			final LongBuffer alleles = channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) Long.BYTES * size).asLongBuffer();
+			offset += (long) Long.BYTES * size;
+			final FloatBuffer[] frequencies = new FloatBuffer[populations];
+			for (int p = 0; p < populations; p++) {
+				frequencies[p] = channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) Float.BYTES * size).asFloatBuffer();
+				offset += (long) Float.BYTES * size;
+			}
+			return new FrequencyTable(size, positions, alleles, frequencies);
+		}
+	}
+
+	/**
+	 * Copies the frequencies of the alleles at position into fr, which is already reset to the
+	 * alleles and populations of the variant.
+	 *
+	 * @param alleleKeys
+	 * 		hashes of the alternative alleles of the variant, see {@link VariantKey#allele(String)}
+	 * @param alternatives
+	 * 		number of alternative alleles of the variant
+	 *
+	 * @return true if at least one allele was found
+	 */
+	boolean getFrequencies(long position, long[] alleleKeys, int alternatives, FrequencyMatrix fr) {
+		final int first = (int) column.first(position);
+		if (first >= size || positions.get(first) != position) return false;
+		boolean found = false;
+		for (int a = 0; a < alternatives; a++) {
+			final long hash = alleleKeys[a];
+			for (int i = first; i < size && positions.get(i) == position; i++) {
+				if (alleles.get(i) != hash) continue;
+				found = true;
+				for (int p = 0; p < frequencies.length; p++) {
+					final float value = frequencies[p].get(i);
+					if (!Float.isNaN(value)) fr.set(a, p, value);
+				}
+				break;
+			}
+		}
+		return found;
+	}
+}
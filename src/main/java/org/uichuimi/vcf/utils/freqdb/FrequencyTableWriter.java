@@ -0,0 +1,99 @@
+package org.uichuimi.vcf.utils.freqdb;
+
+import org.uichuimi.vcf.utils.common.ColumnFileWriter;
+import org.uichuimi.vcf.utils.common.VariantKey;
+
+import java.io.*;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes the file of one chromosome. Alleles must be added in position order. Columns are written
+ * with a {@link ColumnFileWriter}, so memory usage does not depend on the size of the chromosome.
+ */
+class FrequencyTableWriter implements Closeable {
+
+	private final File file;
+	private final int populations;
+	private final ColumnFileWriter columns;
+	private final DataOutputStream[] outputs;
+	/**
+	 * Alleles at the current position, by hash, so duplicated alleles are merged.
+	 */
+	private final Map<Long, float[]> alleles = new TreeMap<>();
+	private long position = -1;
+	private int size;
+
+	FrequencyTableWriter(File file, int populations) throws IOException {
+		this.file = file;
+		this.populations = populations;
+		// positions, alleles and one column per population
+		this.columns = new ColumnFileWriter(file);
+		this.outputs = new DataOutputStream[populations + 2];
+		try {
+			for (int i = 0; i < outputs.length; i++) outputs[i] = columns.createColumn(i);
+		} catch (IOException e) {
+			columns.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Adds an allele. If the allele was already added, values that are not missing in frequencies
+	 * replace the previous ones, as later records do when annotating from VCF.
+	 *
+	 * @param position
+	 * 		position of the variant, not lower than the previous one
+	 * @param allele
+	 * 		alternative allele
+	 * @param frequencies
+	 * 		one frequency per population, NaN when missing
+	 * @throws IOException
+	 * 		if position is lower than the previous one, or the writer fails
+	 */
+	void add(long position, String allele, float[] frequencies) throws IOException {
+		if (position < this.position)
+			throw new IOException(String.format("%s: position %d after %d, file is not sorted", file.getName(), position, this.position));
+		if (position > Integer.MAX_VALUE) throw new IOException("Position out of range: " + position);
+		if (position != this.position) {
+			flush();
+			this.position = position;
+		}
+		alleles.merge(VariantKey.allele(allele), frequencies.clone(), (previous, values) -> {
+			for (int p = 0; p < populations; p++) if (!Float.isNaN(values[p])) previous[p] = values[p];
+			return previous;
+		});
+	}
+
+	private void flush() throws IOException {
+		for (Map.Entry<Long, float[]> entry : alleles.entrySet()) {
+			outputs[0].writeInt((int) position);
+			outputs[1].writeLong(entry.getKey());
+			for (int p = 0; p < populations; p++) outputs[p + 2].writeFloat(entry.getValue()[p]);
+			size++;
+		}
+		alleles.clear();
+	}
+
+	/**
+	 * @return number of alleles written so far
+	 */
+	int size() {
+		return size + alleles.size();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+			columns.write(out -> {
+				out.writeInt(FrequencyTable.MAGIC);
+				out.writeInt(FrequencyTable.VERSION);
+				out.writeInt(populations);
+				out.writeInt(size);
+			});
+		} finally {
+			columns.close();
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package org.uichuimi.vcf.utils.annotation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.uichuimi.vcf.io.VariantReader;
+import org.uichuimi.vcf.utils.annotation.consumer.VariantConsumer;
+import org.uichuimi.vcf.utils.annotation.consumer.snpeff.SnpEffExtractor;
+import org.uichuimi.vcf.utils.annotation.gff.GeneMap;
+import org.uichuimi.vcf.utils.exception.VcfException;
+import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.uichuimi.vcf.utils.annotation.AnnotationConstants.*;
+
+class AnnotationMetricsTest {
+
+	@Test
+	void annotate() throws Exception {
+		final File metrics = File.createTempFile("metrics", ".json");
+		metrics.deleteOnExit();
+		new VariantAnnotator(List.of(file("/files/input.vcf")), null)
+				.setNamespace(Chromosome.Namespace.UCSC)
+				.setGenes(emptyGff())
+				.setSnpeff(true)
+				.setExac(file("/files/ExAC.vcf"))
+				.setMetrics(metrics)
+				.setOutputStream(new ByteArrayOutputStream())
+				.call();
+		final JsonNode report = new ObjectMapper().readTree(metrics);
+		Assertions.assertTrue(report.get("finished").asBoolean());
+		Assertions.assertEquals(5, report.get("records").asLong());
+		final JsonNode consumers = report.get("consumers");
+		Assertions.assertEquals(3, consumers.size());
+		// Every record has an ANN entry
+		assertCounters(consumers.get(0), "SnpEffExtractor", 5, 5);
+		// Only chr1:2406687 and chr3:193637313 are in ExAC
+		assertCounters(consumers.get(1), "ExACAnnotator", 5, 2);
+		Assertions.assertTrue(contains(consumers.get(1).get("keys"), "EX_AF"));
+		// The writer adds no INFO fields and does not change the identifiers
+		assertCounters(consumers.get(2), "VcfWriter", 5, 0);
+	}
+
+	@Test
+	void valuesSetInPlace() throws IOException, VcfException {
+		final File metrics = File.createTempFile("metrics", ".json");
+		metrics.deleteOnExit();
+		final AnnotationMetrics profiler = new AnnotationMetrics(metrics);
+		final VariantConsumer extractor = profiler.wrap(List.of(new SnpEffExtractor(new GeneMap(emptyGff())))).get(0);
+		try (VariantReader reader = new VariantReader(getClass().getResourceAsStream("/input/snpeff_ann.vcf"))) {
+			extractor.start(reader.getHeader());
+			for (Variant variant : reader) {
+				// SnpEffExtractor sets the value of each allele into the existing lists
+				for (String key : List.of(CONS, ENSG, ENST, BIO, FT, SYMBOL, HGVS, AMINO))
+					variant.setInfo(key, new ArrayList<>(Collections.nCopies(variant.getAlternatives().size(), null)));
+				extractor.accept(variant);
+			}
+		} finally {
+			extractor.close();
+		}
+		profiler.finish();
+		final JsonNode report = new ObjectMapper().readTree(metrics);
+		assertCounters(report.get("consumers").get(0), "SnpEffExtractor", 2, 2);
+	}
+
+	@Test
+	void periodicReport() throws Exception {
+		final File metrics = File.createTempFile("metrics", ".json");
+		Assertions.assertTrue(metrics.delete());
+		metrics.deleteOnExit();
+		final AnnotationMetrics profiler = new AnnotationMetrics(metrics);
+		profiler.records(3);
+		profiler.schedule(1);
+		Thread.sleep(1500);
+		Assertions.assertTrue(metrics.exists());
+		JsonNode report = new ObjectMapper().readTree(metrics);
+		Assertions.assertFalse(report.get("finished").asBoolean());
+		Assertions.assertEquals(3, report.get("records").asLong());
+		profiler.records(2);
+		profiler.finish();
+		report = new ObjectMapper().readTree(metrics);
+		Assertions.assertTrue(report.get("finished").asBoolean());
+		Assertions.assertEquals(5, report.get("records").asLong());
+	}
+
+	private static void assertCounters(JsonNode counters, String name, long records, long hits) {
+		Assertions.assertEquals(name, counters.get("name").asText());
+		Assertions.assertEquals(records, counters.get("records").asLong(), name);
+		Assertions.assertEquals(hits, counters.get("hits").asLong(), name);
+	}
+
+	private static boolean contains(JsonNode array, String value) {
+		for (JsonNode node : array) if (node.asText().equals(value)) return true;
+		return false;
+	}
+
+	private File file(String name) {
+		return new File(getClass().getResource(name).getFile());
+	}
+
+	private static File emptyGff() throws IOException {
+		final File gff = File.createTempFile("genes", ".gff3");
+		gff.deleteOnExit();
+		return gff;
+	}
+}
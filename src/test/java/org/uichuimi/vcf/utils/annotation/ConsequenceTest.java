@@ -0,0 +1,26 @@
+package org.uichuimi.vcf.utils.annotation;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ConsequenceTest {
+
+	@Test
+	void parse() {
+		for (Consequence consequence : Consequence.values())
+			Assertions.assertSame(consequence, Consequence.parse(new String(consequence.getTerm())));
+		Assertions.assertSame(Consequence.FIVE_PRIME_UTR_VARIANT, Consequence.parse("5_prime_UTR_variant"));
+		Assertions.assertNull(Consequence.parse("intergenic_region"));
+		Assertions.assertNull(Consequence.parse(""));
+		Assertions.assertNull(Consequence.parse(null));
+	}
+
+	@Test
+	void severity() {
+		Assertions.assertEquals(Consequence.MISSENSE_VARIANT.ordinal(), Consequence.severity("missense_variant"));
+		Assertions.assertTrue(Consequence.severity("stop_gained") < Consequence.severity("synonymous_variant"));
+		Assertions.assertEquals(-1, Consequence.severity("unknown_variant"));
+		Assertions.assertTrue(Consequence.STOP_GAINED.isAtLeast(Consequence.MISSENSE_VARIANT));
+		Assertions.assertFalse(Consequence.INTRON_VARIANT.isAtLeast(Consequence.MISSENSE_VARIANT));
+	}
+}
@@ -1,17 +1,23 @@
 package org.uichuimi.vcf.utils.annotation;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.uichuimi.vcf.utils.annotation.consumer.FrequencyFields;
+import org.uichuimi.vcf.utils.freqdb.FrequencyDatabaseCommand;
 import org.uichuimi.vcf.variant.Chromosome;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.charset.Charset;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 class VariantAnnotatorTest {
 
@@ -122,32 +128,274 @@ class VariantAnnotatorTest {
 
 	@Test
 	void debug() throws IOException {
-		final File input = new File(getClass().getResource("/files/input.vcf").getFile());
-		final File exac = new File(getClass().getResource("/files/ExAC.vcf").getFile());
-		final File dbsnp = new File(getClass().getResource("/files/dbSNP.vcf").getFile());
-		final File vep = new File(getClass().getResource("/files/vep.vcf").getFile());
-		final File genes = new File(getClass().getResource("/files/Homo_sapiens.GRCh38.95.gff3.gz").getFile());
-		final File gnomadGenomes = new File(getClass().getResource("/files/gnomad_genomes.vcf").getFile());
-		final File gnomadExomes = new File(getClass().getResource("/files/gnomad_exomes.vcf").getFile());
-		final String data = generateOutputData(input, exac, dbsnp, vep, genes, gnomadGenomes, gnomadExomes);
-		final String expected = IOUtils.toString(getClass().getResourceAsStream("/files/expected_output.vcf"), Charset.defaultCharset());
-		Assertions.assertEquals(expected, data);
-	}
-
-	private String generateOutputData(File input, File exac, File dbsnp, File vep, File genes, File gnomadGenomes, File gnomadExomes) {
-		try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-			final VariantAnnotator annotator = new VariantAnnotator(List.of(input), null)
+		Assertions.assertEquals(expected(), generateOutputData(1));
+	}
+
+	@Test
+	void threads() throws IOException {
+		Assertions.assertEquals(expected(), generateOutputData(4));
+	}
+
+	@Test
+	void shard() throws Exception {
+		final File output = File.createTempFile("sharded", ".vcf.gz");
+		output.deleteOnExit();
+		// Every shard opens its own readers, so single VCF resources are loaded as whole chromosomes
+		annotatorWithFrequencies(output)
+				.setRegions(wholeChromosomes())
+				.setThreads(4)
+				.setShard(true)
+				.setChunkSize(10_000_000)
+				.call();
+		final String data = IOUtils.toString(new GZIPInputStream(new FileInputStream(output)), Charset.defaultCharset());
+		// Command line contains the output file
+		Assertions.assertEquals(withoutCommandLine(expected()), withoutCommandLine(data));
+	}
+
+	@Test
+	void shardStreamedResources() throws Exception {
+		final File output = File.createTempFile("sharded", ".vcf.gz");
+		Assertions.assertTrue(output.delete());
+		// A single VCF without index would be read from the start by every shard
+		new VariantAnnotator(List.of(file("input.vcf")), output)
+				.setNamespace(Chromosome.Namespace.UCSC)
+				.setExac(file("ExAC.vcf"))
+				.setShard(true)
+				.call();
+		Assertions.assertFalse(output.exists());
+	}
+
+	@Test
+	void shardChunkedDirectories() throws Exception {
+		final File output = File.createTempFile("sharded", ".vcf.gz");
+		Assertions.assertTrue(output.delete());
+		final File vep = Files.createTempDirectory("vep").toFile();
+		vep.deleteOnExit();
+		// Per-chromosome files would be read from the start of the chromosome by every chunk
+		final VariantAnnotator annotator = new VariantAnnotator(List.of(file("input.vcf")), output)
+				.setNamespace(Chromosome.Namespace.UCSC)
+				.setGenes(file("Homo_sapiens.GRCh38.95.gff3.gz"))
+				.setVep(vep)
+				.setShard(true);
+		annotator.call();
+		Assertions.assertFalse(output.exists());
+		// but each whole chromosome is read once
+		output.deleteOnExit();
+		annotator.setChunkSize(0).call();
+		Assertions.assertTrue(output.exists());
+	}
+
+	@Test
+	void freqdb() throws Exception {
+		final File database = Files.createTempDirectory("freqdb").toFile();
+		try {
+			new FrequencyDatabaseCommand(database)
+					.setExac(file("ExAC.vcf"))
+					.setGnomadGenomes(file("gnomad_genomes.vcf"))
+					.setGnomadExomes(file("gnomad_exomes.vcf"))
+					.call();
+			final ByteArrayOutputStream os = new ByteArrayOutputStream();
+			annotator(null)
+					.setFreqdb(database)
+					.setOutputStream(os)
+					.call();
+			Assertions.assertEquals(withoutCommandLine(expected()), withoutCommandLine(os.toString()));
+		} finally {
+			FileUtils.deleteDirectory(database);
+		}
+	}
+
+	@Test
+	void indexed() throws Exception {
+		// Indexed resources are read by seeking: tabix, CSI and RefSeq contig names
+		final List<String> outputs = new ArrayList<>();
+		for (String directory : List.of("files", "indexed")) {
+			final String extension = directory.equals("files") ? "" : ".gz";
+			final ByteArrayOutputStream os = new ByteArrayOutputStream();
+			new VariantAnnotator(List.of(file("input.vcf")), null)
+					.setNamespace(Chromosome.Namespace.UCSC)
+					.setExac(resource(directory, "ExAC.vcf" + extension))
+					.setGnomadGenomes(resource(directory, "gnomad_genomes.vcf" + extension))
+					.setDbsnp(resource(directory, "dbSNP.vcf" + extension))
+					.setOutputStream(os)
+					.call();
+			outputs.add(withoutCommandLine(os.toString()));
+		}
+		Assertions.assertTrue(outputs.get(0).contains("EX_AF="));
+		Assertions.assertEquals(outputs.get(0), outputs.get(1));
+	}
+
+	@Test
+	void regions() throws Exception {
+		// Whole chromosomes, so the output must be the same as without regions
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		annotatorWithFrequencies(null)
+				.setRegions(wholeChromosomes())
+				.setOutputStream(os)
+				.call();
+		Assertions.assertEquals(withoutCommandLine(expected()), withoutCommandLine(os.toString()));
+	}
+
+	@Test
+	void typedFrequencies() throws Exception {
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		new VariantAnnotator(List.of(file("input.vcf")), null)
+				.setNamespace(Chromosome.Namespace.UCSC)
+				.setGnomadGenomes(file("gnomad_genomes.vcf"))
+				.setTypedFrequencies(true)
+				.setOutputStream(os)
+				.call();
+		final String data = os.toString();
+		Assertions.assertTrue(data.contains("##INFO=<ID=GG_AF_afr,Number=A,Type=Float"));
+		Assertions.assertFalse(data.contains("GG_AF="));
+		Assertions.assertTrue(data.contains("GG_AF_afr=0.288;"));
+	}
+
+	@Test
+	void typedFrequenciesSameAsString() throws Exception {
+		final Map<String, String> strings = new TreeMap<>();
+		final Map<String, String> typed = new TreeMap<>();
+		for (boolean typedFrequencies : List.of(false, true)) {
+			final ByteArrayOutputStream os = new ByteArrayOutputStream();
+			new VariantAnnotator(List.of(file("input.vcf")), null)
 					.setNamespace(Chromosome.Namespace.UCSC)
-					.setCompute(true)
-					.setSnpeff(true)
-					.setExac(exac)
-					.setGenes(genes)
-					.setGnomadExomes(gnomadExomes)
-					.setGnomadGenomes(gnomadGenomes)
-					.setVep(vep)
-					.setDbsnp(dbsnp)
-					.setOutputStream(os);
-			annotator.call();
+					.setGnomadGenomes(file("gnomad_genomes.vcf"))
+					.setGnomadExomes(file("gnomad_exomes.vcf"))
+					.setTypedFrequencies(typedFrequencies)
+					.setOutputStream(os)
+					.call();
+			collectFrequencies(os.toString(), typedFrequencies ? typed : strings);
+		}
+		Assertions.assertFalse(strings.isEmpty());
+		Assertions.assertEquals(strings.keySet(), typed.keySet());
+		// Both modes must write the same numbers
+		strings.forEach((key, value) -> Assertions.assertEquals(Float.parseFloat(value), Float.parseFloat(typed.get(key)), key));
+	}
+
+	@Test
+	void neo4jTypedFrequencies() throws Exception {
+		final File strings = Files.createTempDirectory("neo4j").toFile();
+		final File typed = Files.createTempDirectory("neo4j").toFile();
+		try {
+			final ByteArrayOutputStream os = new ByteArrayOutputStream();
+			for (File neo4j : List.of(strings, typed)) {
+				new VariantAnnotator(List.of(file("input.vcf")), null)
+						.setNamespace(Chromosome.Namespace.UCSC)
+						.setGnomadGenomes(file("gnomad_genomes.vcf"))
+						.setGnomadExomes(file("gnomad_exomes.vcf"))
+						.setTypedFrequencies(neo4j == typed)
+						.setNeo4j(neo4j)
+						.setOutputStream(neo4j == strings ? os : new ByteArrayOutputStream())
+						.call();
+			}
+			// The same variants, only gmaf is taken from the typed frequencies
+			final List<String[]> stringVariants = readTable(new File(strings, "Variants.tsv.gz"));
+			final List<String[]> typedVariants = readTable(new File(typed, "Variants.tsv.gz"));
+			Assertions.assertEquals(withoutLastColumn(stringVariants), withoutLastColumn(typedVariants));
+			// String fields have no allele counts, so only typed frequencies are written
+			Assertions.assertTrue(readTable(new File(strings, "Frequencies.tsv.gz")).isEmpty());
+			final Map<String, String> variantIds = new HashMap<>();
+			for (String[] row : readTable(new File(typed, "var2freq.tsv.gz"))) variantIds.put(row[1], row[0]);
+			final Map<String, Float> actual = new TreeMap<>();
+			for (String[] row : readTable(new File(typed, "Frequencies.tsv.gz")))
+				actual.put(withoutChromosome(variantIds.get(row[0])) + ":" + row[1] + ":" + row[2], Float.parseFloat(row[5]));
+			// with the numbers of the String fields
+			final Set<String> ids = stringVariants.stream().map(row -> withoutChromosome(row[0])).collect(Collectors.toSet());
+			final Map<String, Float> expected = new TreeMap<>();
+			collectNeo4jFrequencies(os.toString(), ids, expected);
+			Assertions.assertFalse(expected.isEmpty());
+			Assertions.assertEquals(expected, actual);
+		} finally {
+			FileUtils.deleteDirectory(strings);
+			FileUtils.deleteDirectory(typed);
+		}
+	}
+
+	/**
+	 * Collects the String frequencies of gnomAD, by position, reference, alternative, source and
+	 * population, as they are written in the neo4j tables.
+	 */
+	private static void collectNeo4jFrequencies(String vcf, Set<String> ids, Map<String, Float> frequencies) {
+		final Map<String, String> sources = Map.of("GG_AF", "gnomAD genomes", "GE_AF", "gnomAD exomes");
+		vcf.lines().filter(line -> !line.startsWith("#")).forEach(line -> {
+			final String[] columns = line.split("\t");
+			final String[] alternatives = columns[4].split(",");
+			for (String field : columns[7].split(";")) {
+				final int equals = field.indexOf('=');
+				if (equals < 0 || !sources.containsKey(field.substring(0, equals))) continue;
+				final String key = field.substring(0, equals);
+				final List<String> populations = FrequencyFields.POPULATIONS.get(key);
+				final String[] values = field.substring(equals + 1).split(",");
+				for (int a = 0; a < values.length; a++) {
+					final String id = columns[1] + ":" + columns[3] + ":" + alternatives[a];
+					if (values[a].equals(".") || !ids.contains(id)) continue;
+					final String[] byPopulation = values[a].split("\\|");
+					for (int p = 0; p < byPopulation.length; p++)
+						if (!byPopulation[p].equals("."))
+							frequencies.put(id + ":" + sources.get(key) + ":" + populations.get(p).toLowerCase(), Float.parseFloat(byPopulation[p]));
+				}
+			}
+		});
+	}
+
+	private static List<String[]> readTable(File file) throws IOException {
+		try (GZIPInputStream input = new GZIPInputStream(new FileInputStream(file))) {
+			return IOUtils.toString(input, Charset.defaultCharset()).lines()
+					.skip(1)
+					.map(line -> line.split("\t", -1))
+					.collect(Collectors.toList());
+		}
+	}
+
+	private static List<List<String>> withoutLastColumn(List<String[]> rows) {
+		return rows.stream().map(row -> List.of(row).subList(0, row.length - 1)).collect(Collectors.toList());
+	}
+
+	/**
+	 * @return pos:ref:alt from a neo4j variant id chrom:pos:ref:alt
+	 */
+	private static String withoutChromosome(String variantId) {
+		return variantId.substring(variantId.indexOf(':') + 1);
+	}
+
+	/**
+	 * Collects every frequency value by position, allele and typed key (GG_AF_afr), from String
+	 * fields (GG_AF=...) or typed fields (GG_AF_afr=...).
+	 */
+	private static void collectFrequencies(String vcf, Map<String, String> frequencies) {
+		vcf.lines().filter(line -> !line.startsWith("#")).forEach(line -> {
+			final String[] columns = line.split("\t");
+			final String position = columns[0] + ":" + columns[1];
+			for (String field : columns[7].split(";")) {
+				final int equals = field.indexOf('=');
+				if (equals < 0) continue;
+				final String key = field.substring(0, equals);
+				final String[] values = field.substring(equals + 1).split(",");
+				final List<String> populations = FrequencyFields.POPULATIONS.get(key);
+				for (int a = 0; a < values.length; a++) {
+					if (values[a].equals(".")) continue;
+					if (populations != null) {
+						final String[] byPopulation = values[a].split("\\|");
+						for (int p = 0; p < byPopulation.length; p++)
+							if (!byPopulation[p].equals("."))
+								frequencies.put(position + ":" + a + ":" + FrequencyFields.getTypedKey(key, populations.get(p)), byPopulation[p]);
+					} else if (key.matches("(KG|GG|GE|EX)_AF_.*"))
+						frequencies.put(position + ":" + a + ":" + key, values[a]);
+				}
+			}
+		});
+	}
+
+	private static String withoutCommandLine(String vcf) {
+		return vcf.lines().filter(line -> !line.startsWith("##CommandLine")).collect(Collectors.joining("\n"));
+	}
+
+	private String generateOutputData(int threads) {
+		try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+			annotatorWithFrequencies(null)
+					.setThreads(threads)
+					.setOutputStream(os)
+					.call();
 			return os.toString();
 		} catch (Exception e) {
 			Assertions.fail(e);
@@ -155,6 +403,52 @@ class VariantAnnotatorTest {
 		return "";
 	}
 
+	/**
+	 * Annotator of input.vcf with the genes, VEP and dbSNP fixtures, as in expected_output.vcf,
+	 * but without frequencies.
+	 */
+	private VariantAnnotator annotator(File output) {
+		return new VariantAnnotator(List.of(file("input.vcf")), output)
+				.setNamespace(Chromosome.Namespace.UCSC)
+				.setCompute(true)
+				.setSnpeff(true)
+				.setGenes(file("Homo_sapiens.GRCh38.95.gff3.gz"))
+				.setVep(file("vep.vcf"))
+				.setDbsnp(file("dbSNP.vcf"));
+	}
+
+	/**
+	 * Annotator with every fixture of expected_output.vcf.
+	 */
+	private VariantAnnotator annotatorWithFrequencies(File output) {
+		return annotator(output)
+				.setExac(file("ExAC.vcf"))
+				.setGnomadExomes(file("gnomad_exomes.vcf"))
+				.setGnomadGenomes(file("gnomad_genomes.vcf"));
+	}
+
+	private String expected() throws IOException {
+		return IOUtils.toString(getClass().getResourceAsStream("/files/expected_output.vcf"), Charset.defaultCharset());
+	}
+
+	private File file(String name) {
+		return resource("files", name);
+	}
+
+	private File resource(String directory, String name) {
+		return new File(getClass().getResource("/" + directory + "/" + name).getFile());
+	}
+
+	/**
+	 * @return a BED file with whole chromosomes 1, 3 and 10, in UCSC names
+	 */
+	private static File wholeChromosomes() throws IOException {
+		final File bed = File.createTempFile("regions", ".bed");
+		bed.deleteOnExit();
+		Files.writeString(bed.toPath(), "chr1\t0\t250000000\nchr3\t0\t200000000\nchr10\t0\t140000000\n");
+		return bed;
+	}
+
 	@Test
 	void sats() {
 		final List<String> sorted = Stream.of(vep, tugores, snp).flatMap(Collection::stream)
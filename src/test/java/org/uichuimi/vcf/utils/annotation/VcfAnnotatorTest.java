@@ -9,10 +9,13 @@ import org.uichuimi.vcf.variant.Chromosome;
 import org.uichuimi.vcf.variant.Variant;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class VcfAnnotatorTest {
 
@@ -36,4 +39,51 @@ public class VcfAnnotatorTest {
 		final String expected = IOUtils.toString(outputResource, Charset.defaultCharset());
 		Assertions.assertEquals(expected, outputStream.toString());
 	}
+
+	@Test
+	public void sources() throws IOException {
+		final List<ColumnSpec> first = List.of(new ColumnSpec("CONS", "CONS"), new ColumnSpec("AN", "AN"));
+		final List<ColumnSpec> second = List.of(new ColumnSpec("AF", "AF"), new ColumnSpec("DP", "DEPTH"));
+		final VcfAnnotator merged = new VcfAnnotator()
+				.addSource(file("vcf_annotator_ann.vcf"), first)
+				.addSource(file("vcf_annotator_ann2.vcf"), second);
+		Assertions.assertEquals(4, merged.getColumnSpecs().size());
+		// Both sources have records at 2, 3 and 5, the second one has two records at 3 and one at 4
+		final String output = annotate(merged);
+		final String expected = annotate(new VcfAnnotator(file("vcf_annotator_ann.vcf"), first),
+				new VcfAnnotator(file("vcf_annotator_ann2.vcf"), second));
+		Assertions.assertEquals(expected, output);
+		final List<String> records = output.lines().filter(line -> !line.startsWith("#")).collect(Collectors.toList());
+		Assertions.assertEquals(3, records.size());
+		assertInfo(records.get(0), "CONS=a", "AN=10", "AF=0.5", "DEPTH=7");
+		assertInfo(records.get(1), "CONS=a", "AN=10", "AF=0.2", "DEPTH=8");
+		assertInfo(records.get(2), "AN=10", "AF=0.4");
+		Assertions.assertTrue(output.contains("##INFO=<ID=DEPTH,Number=1,Type=Integer"));
+	}
+
+	private static void assertInfo(String record, String... fields) {
+		final List<String> info = List.of(record.split("\t")[7].split(";"));
+		Assertions.assertEquals(Set.of(fields), Set.copyOf(info), record);
+	}
+
+	private String annotate(VcfAnnotator... annotators) throws IOException {
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		try (VariantReader reader = new VariantReader(getClass().getResourceAsStream("/input/vcf_annotator_variants.vcf"))) {
+			final VcfWriter writer = new VcfWriter(outputStream, Chromosome.Namespace.GRCH);
+			for (VcfAnnotator annotator : annotators) annotator.start(reader.getHeader());
+			writer.start(reader.getHeader());
+			for (Variant variant : reader) {
+				for (VcfAnnotator annotator : annotators) annotator.accept(variant);
+				writer.accept(variant);
+			}
+			writer.close();
+		} finally {
+			for (VcfAnnotator annotator : annotators) annotator.close();
+		}
+		return outputStream.toString();
+	}
+
+	private File file(String name) {
+		return new File(getClass().getResource("/input/" + name).getFile());
+	}
 }
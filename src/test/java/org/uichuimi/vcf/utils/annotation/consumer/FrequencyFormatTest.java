@@ -0,0 +1,41 @@
+package org.uichuimi.vcf.utils.annotation.consumer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.text.DecimalFormat;
+import java.util.Random;
+
+class FrequencyFormatTest {
+
+	private final DecimalFormat decimal = new DecimalFormat("#.####");
+	private final FrequencyFormat format = new FrequencyFormat();
+
+	@Test
+	void sameAsDecimalFormat() {
+		final double[] values = {0, 1, 0.5, 0.0001, 0.00005, 0.00015, 0.00025, 0.12345, 0.12355, 0.99995,
+				0.999949999, 1e-9, 0.288, 0.1, 0.3, 12.34565, 9999.99995, 1e4, 1e5, 123456789.123456};
+		for (double value : values) assertFormat(value);
+		final Random random = new Random(1);
+		for (int i = 0; i < 200_000; i++) assertFormat(random.nextDouble());
+		// Frequencies are usually read as floats
+		for (int i = 0; i < 200_000; i++) assertFormat(random.nextFloat());
+		// Exact ties in ten-thousandths
+		for (int i = 0; i < 20_000; i++) assertFormat((2 * i + 1) / 20_000.0);
+	}
+
+	@Test
+	void round() {
+		final Random random = new Random(2);
+		for (int i = 0; i < 100_000; i++) {
+			final double value = random.nextFloat();
+			Assertions.assertEquals(Float.parseFloat(decimal.format(value)), format.round(value), () -> "round(" + value + ")");
+		}
+	}
+
+	private void assertFormat(double value) {
+		final StringBuilder builder = new StringBuilder();
+		format.append(builder, value);
+		Assertions.assertEquals(decimal.format(value), builder.toString(), () -> "format(" + value + ")");
+	}
+}
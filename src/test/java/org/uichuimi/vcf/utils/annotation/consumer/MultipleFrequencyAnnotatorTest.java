@@ -0,0 +1,118 @@
+package org.uichuimi.vcf.utils.annotation.consumer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.uichuimi.vcf.header.InfoHeaderLine;
+import org.uichuimi.vcf.header.VcfHeader;
+import org.uichuimi.vcf.io.VariantReader;
+import org.uichuimi.vcf.utils.exception.VcfException;
+import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.Variant;
+import org.uichuimi.vcf.variant.VcfConstants;
+import org.uichuimi.vcf.variant.VcfType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class MultipleFrequencyAnnotatorTest {
+
+	@Test
+	void sameAsSeparateAnnotators() throws IOException, VcfException {
+		// gnomAD exomes and ExAC have no records in chr10, 1000G has no records in chr1
+		final File kGenomes = withoutContig(file("kgnomes.vcf"), "1");
+		final List<VariantConsumer> separate = List.copyOf(create(kGenomes));
+		final String expected = annotate(separate);
+		final String merged = annotate(List.of(new MultipleFrequencyAnnotator(create(kGenomes))));
+		Assertions.assertEquals(expected, merged);
+		// All the sources have something to annotate
+		for (String key : List.of("KG_AF=", "GG_AF=", "GE_AF=", "EX_AF="))
+			Assertions.assertTrue(merged.contains(key), key);
+	}
+
+	@Test
+	void typed() throws IOException, VcfException {
+		final File kGenomes = file("kgnomes.vcf");
+		final List<FrequencyAnnotator> separate = create(kGenomes);
+		final List<FrequencyAnnotator> merged = create(kGenomes);
+		separate.forEach(annotator -> annotator.setTyped(true));
+		merged.forEach(annotator -> annotator.setTyped(true));
+		Assertions.assertEquals(annotate(List.copyOf(separate)), annotate(List.of(new MultipleFrequencyAnnotator(merged))));
+	}
+
+	@Test
+	void declared() throws IOException, VcfException {
+		final File kGenomes = file("kgnomes.vcf");
+		// 1000G header goes before the header of the consumer in the middle, the rest after it
+		final List<VariantConsumer> separate = new ArrayList<>(create(kGenomes));
+		separate.add(1, new HeaderConsumer());
+		final String expected = annotate(separate);
+		final List<FrequencyAnnotator> sources = create(kGenomes);
+		final MultipleFrequencyAnnotator merged = new MultipleFrequencyAnnotator(sources);
+		final String actual = annotate(List.of(merged.declare(sources.get(0)), new HeaderConsumer(), merged));
+		Assertions.assertEquals(expected, actual);
+		Assertions.assertTrue(actual.indexOf("ID=KG_AF,") < actual.indexOf("ID=MIDDLE,"));
+		Assertions.assertTrue(actual.indexOf("ID=MIDDLE,") < actual.indexOf("ID=GG_AF,"));
+		Assertions.assertEquals(1, actual.split("ID=KG_AF,", -1).length - 1);
+	}
+
+	private List<FrequencyAnnotator> create(File kGenomes) {
+		final List<FrequencyAnnotator> annotators = new ArrayList<>();
+		annotators.add(new KGenomesAnnotator(kGenomes));
+		annotators.add(new GnomadGenomeAnnotator(file("gnomad_genomes.vcf")));
+		annotators.add(new GnomadExomeAnnotator(file("gnomad_exomes.vcf")));
+		annotators.add(new ExACAnnotator(file("ExAC.vcf")));
+		return annotators;
+	}
+
+	private String annotate(List<VariantConsumer> consumers) throws IOException, VcfException {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (VariantReader reader = new VariantReader(getClass().getResourceAsStream("/files/input.vcf"))) {
+			final VcfWriter writer = new VcfWriter(output, Chromosome.Namespace.GRCH);
+			for (VariantConsumer consumer : consumers) consumer.start(reader.getHeader());
+			writer.start(reader.getHeader());
+			for (Variant variant : reader) {
+				for (VariantConsumer consumer : consumers) consumer.accept(variant);
+				writer.accept(variant);
+			}
+			writer.close();
+		} finally {
+			consumers.forEach(VariantConsumer::close);
+		}
+		return output.toString();
+	}
+
+	private File file(String name) {
+		return new File(getClass().getResource("/files/" + name).getFile());
+	}
+
+	private static class HeaderConsumer implements VariantConsumer {
+
+		@Override
+		public void start(VcfHeader header) {
+			header.addHeaderLine(new InfoHeaderLine("MIDDLE", VcfConstants.NUMBER_A, VcfType.STRING, "Any field"));
+		}
+
+		@Override
+		public void accept(Variant variant) {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private static File withoutContig(File file, String contig) throws IOException {
+		final File copy = File.createTempFile("frequencies", ".vcf");
+		copy.deleteOnExit();
+		final List<String> lines = Files.readAllLines(file.toPath()).stream()
+				.filter(line -> !line.startsWith(contig + "\t"))
+				.collect(Collectors.toList());
+		Files.write(copy.toPath(), lines);
+		return copy;
+	}
+}
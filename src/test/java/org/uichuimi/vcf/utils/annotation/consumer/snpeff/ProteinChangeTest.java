@@ -3,7 +3,10 @@ package org.uichuimi.vcf.utils.annotation.consumer.snpeff;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 class ProteinChangeTest {
 
@@ -56,4 +59,75 @@ class ProteinChangeTest {
 		int x = 7;
 	}
 
+	@Test
+	void vcfFormat() {
+		final Map<String, String> expected = new LinkedHashMap<>();
+		expected.put("Trp24Cys", "W/C");
+		expected.put("(Trp24Cys)", "W/C");
+		expected.put("Trp24*", "W/*");
+		expected.put("Cys188=", "C/C");
+		expected.put("0", "-");
+		expected.put("?", "?");
+		expected.put("Met1?", "M/X");
+		expected.put("(Gly56Ala^Ser^Cys)", "G/A");
+		expected.put("Trp24=/Cys", "W/W");
+		expected.put("Lys23_Val25del", "KXV/-");
+		expected.put("Val7=/del", "V/V");
+		expected.put("Ala3dup", "A/AA");
+		expected.put("His4_Gln5insAla", "HQ/HAQ");
+		expected.put("Arg78_Gly79ins3", "RG/RXXXG");
+		expected.put("Cys28_Lys29delinsTrp", "CK/W");
+		expected.put("[Ser44Arg;Trp46Arg]", "S/R");
+		expected.put("Ala2[10]", "A/AAAAAAAAAA");
+		expected.put("Arg97ProfsTer3", "R/PXX*");
+		expected.put("Arg97fs", "R/X");
+		expected.put("Gln151Thrfs*9", "Q/TXXXXXXXX*");
+		expected.put("Ile327Argfs*?", "I/R");
+		expected.forEach((change, vcf) -> {
+			final ProteinChange instance = ProteinChange.getInstance(change);
+			Assertions.assertNotNull(instance, change);
+			Assertions.assertEquals(vcf, instance.toVcfFormat(), change);
+		});
+	}
+
+	@Test
+	void predicted() {
+		Assertions.assertTrue(ProteinChange.getInstance("(Trp24Cys)").isPredicted());
+		Assertions.assertFalse(ProteinChange.getInstance("Trp24Cys").isPredicted());
+		Assertions.assertEquals(ProteinChange.Type.FRAMESHIFT, ProteinChange.getInstance("Gln151Thrfs*9").getType());
+		Assertions.assertEquals(9, ProteinChange.getInstance("Gln151Thrfs*9").getPosition());
+		Assertions.assertTrue(ProteinChange.getInstance("Trp24=/Cys").isMosaic());
+	}
+
+	@Test
+	void invalid() {
+		Assertions.assertNull(ProteinChange.getInstance("foo"));
+		Assertions.assertNull(ProteinChange.getInstance(""));
+		// Cached values are returned again
+		Assertions.assertNull(ProteinChange.getInstance("foo"));
+		Assertions.assertSame(ProteinChange.getInstance("Trp24Cys"), ProteinChange.getInstance("Trp24Cys"));
+	}
+
+	@Test
+	void shared() {
+		final ProteinChange change = ProteinChange.getInstance("(Gly56Ala^Ser^Cys)");
+		Assertions.assertThrows(UnsupportedOperationException.class, () -> change.getAlternative().clear());
+		Assertions.assertThrows(UnsupportedOperationException.class, () -> ProteinChange.getInstance("Cys28delinsTrpVal").getAlternative().clear());
+		Assertions.assertEquals("(Gly56Ala^Ser^Cys)", change.toString());
+	}
+
+	@Test
+	void concurrent() {
+		final List<String> changes = List.of("Trp24Cys", "Lys23_Val25del", "His4_Gln5insAla", "Gln151Thrfs*9", "foo");
+		final List<String> expected = List.of("W/C", "KXV/-", "HQ/HAQ", "Q/TXXXXXXXX*", "");
+		final long failed = IntStream.range(0, 20_000).parallel().filter(i -> {
+			final int c = i % changes.size();
+			// Values are parsed by several threads at the same time, only some of them are cached
+			final String value = i % 3 == 0 ? changes.get(c) + " " + i : changes.get(c);
+			final ProteinChange change = ProteinChange.getInstance(value);
+			return !expected.get(c).equals(change == null ? "" : change.toVcfFormat());
+		}).count();
+		Assertions.assertEquals(0, failed);
+	}
+
 }
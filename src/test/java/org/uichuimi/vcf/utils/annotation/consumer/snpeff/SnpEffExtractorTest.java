@@ -0,0 +1,63 @@
+package org.uichuimi.vcf.utils.annotation.consumer.snpeff;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.uichuimi.vcf.io.VariantReader;
+import org.uichuimi.vcf.utils.annotation.gff.GeneMap;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.uichuimi.vcf.utils.annotation.AnnotationConstants.*;
+
+class SnpEffExtractorTest {
+
+	@Test
+	void mostSevere() throws IOException {
+		final List<Variant> variants = extract();
+		final Variant variant = variants.get(0);
+		// The CT entry is a stop_gained of another allele, and does not match C
+		assertInfo(variant, CONS, "missense_variant", "upstream_gene_variant");
+		// At the same severity, the first entry is kept
+		assertInfo(variant, ENST, "ENST00000000002", "ENST00000000003");
+		assertInfo(variant, ENSG, "ENSG00000000001", "ENSG00000000002");
+		assertInfo(variant, SYMBOL, "GENE1", "GENE2");
+		assertInfo(variant, HGVS, "Lys4Gln", null);
+		Assertions.assertNull(variant.getInfo("ANN"));
+	}
+
+	@Test
+	void intergenicRegion() throws IOException {
+		final List<Variant> variants = extract();
+		// intergenic_region is ranked as intergenic_variant, so upstream_gene_variant wins in the
+		// first variant, and it is written as intergenic_variant in the second
+		assertInfo(variants.get(0), CONS, "missense_variant", "upstream_gene_variant");
+		assertInfo(variants.get(1), CONS, "intergenic_variant");
+		assertInfo(variants.get(1), FT, "intergenic_region");
+	}
+
+	private List<Variant> extract() throws IOException {
+		final File gff = File.createTempFile("genes", ".gff3");
+		gff.deleteOnExit();
+		final SnpEffExtractor extractor = new SnpEffExtractor(new GeneMap(gff));
+		final List<Variant> variants = new ArrayList<>();
+		try (VariantReader reader = new VariantReader(getClass().getResourceAsStream("/input/snpeff_ann.vcf"))) {
+			extractor.start(reader.getHeader());
+			for (Variant variant : reader) {
+				extractor.accept(variant);
+				variants.add(variant);
+			}
+		} finally {
+			extractor.close();
+		}
+		return variants;
+	}
+
+	private static void assertInfo(Variant variant, String key, String... expected) {
+		Assertions.assertEquals(Arrays.asList(expected), variant.getInfo(key), key);
+	}
+}
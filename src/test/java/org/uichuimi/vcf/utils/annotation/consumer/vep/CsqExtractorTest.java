@@ -0,0 +1,163 @@
+package org.uichuimi.vcf.utils.annotation.consumer.vep;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.uichuimi.vcf.io.VariantReader;
+import org.uichuimi.vcf.utils.annotation.consumer.VariantConsumer;
+import org.uichuimi.vcf.utils.annotation.gff.GeneMap;
+import org.uichuimi.vcf.utils.exception.VcfException;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.uichuimi.vcf.utils.annotation.AnnotationConstants.*;
+
+class CsqExtractorTest {
+
+	@Test
+	void format() throws IOException, VcfException {
+		final CsqExtractor extractor = new CsqExtractor();
+		try (VariantReader reader = new VariantReader(getClass().getResourceAsStream("/input/csq_input.vcf"))) {
+			extractor.start(reader.getHeader());
+			for (String key : List.of(CONS, SIFT, POLYPHEN, AMINO, ENST, ENSG, FT, BIO, SYMBOL))
+				Assertions.assertNotNull(reader.getHeader().getInfoHeader(key), key);
+		}
+		// Fields are taken by name, Consequence goes before Allele in the fixture
+		final Variant variant = extract("/input/csq_input.vcf").get(0);
+		assertInfo(variant, SYMBOL, "GENE1");
+		assertInfo(variant, ENSG, "ENSG00000000001");
+		assertInfo(variant, FT, "Transcript");
+		assertInfo(variant, BIO, "protein_coding");
+		Assertions.assertNull(variant.getInfo("CSQ"));
+	}
+
+	@Test
+	void noFormat() throws IOException {
+		final String vcf = "##fileformat=VCFv4.2\n"
+				+ "##INFO=<ID=CSQ,Number=.,Type=String,Description=\"Consequence annotations from Ensembl VEP\">\n"
+				+ "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n"
+				+ "1\t1000\t.\tC\tT\t.\t.\tCSQ=T|missense_variant\n";
+		final CsqExtractor extractor = new CsqExtractor();
+		try (VariantReader reader = new VariantReader(new ByteArrayInputStream(vcf.getBytes(StandardCharsets.US_ASCII)))) {
+			extractor.start(reader.getHeader());
+			Assertions.assertNull(reader.getHeader().getInfoHeader(CONS));
+			final Variant variant = reader.next();
+			extractor.accept(variant);
+			// Nothing is done without the order of the fields
+			Assertions.assertNull(variant.getInfo(CONS));
+			Assertions.assertNotNull(variant.getInfo("CSQ"));
+		}
+	}
+
+	@Test
+	void vepAlleles() throws IOException {
+		final List<Variant> variants = read("/input/csq_input.vcf");
+		// SNV
+		Assertions.assertArrayEquals(new String[]{"T"}, CsqExtractor.getVepAlleles(variants.get(0)));
+		// Multi-allelic insertion, without the first base
+		Assertions.assertArrayEquals(new String[]{"T", "TT"}, CsqExtractor.getVepAlleles(variants.get(1)));
+		// Deletions, the empty allele is -
+		Assertions.assertArrayEquals(new String[]{"-", "C"}, CsqExtractor.getVepAlleles(variants.get(2)));
+		// The first base is not shared by all the alleles, so none is trimmed
+		Assertions.assertArrayEquals(new String[]{"G", "AT"}, CsqExtractor.getVepAlleles(variants.get(5)));
+	}
+
+	@Test
+	void mostSevere() throws IOException, VcfException {
+		final List<Variant> variants = extract("/input/csq_input.vcf");
+		// stop_gained has less fields than the header, so it is skipped. Between the two
+		// missense_variant, the first one is kept, and only the first consequence is taken.
+		assertInfo(variants.get(0), CONS, "missense_variant");
+		assertInfo(variants.get(0), ENST, "ENST00000000002");
+		assertInfo(variants.get(0), AMINO, "R/W");
+		Assertions.assertEquals(List.of("rs1"), variants.get(0).getIdentifiers());
+		// Ensembl transcripts are preferred at the same severity, ATT is not a VEP allele
+		assertInfo(variants.get(1), CONS, "upstream_gene_variant", "frameshift_variant");
+		assertInfo(variants.get(1), ENST, "ENST00000000004", "ENST00000000005");
+		assertInfo(variants.get(2), CONS, "inframe_deletion", "intron_variant");
+		assertInfo(variants.get(3), CONS, "intergenic_variant", "intergenic_variant");
+		Assertions.assertNull(variants.get(3).getInfo(ENST));
+		// No entry for C
+		Assertions.assertNull(variants.get(4).getInfo(CONS));
+		Assertions.assertNull(variants.get(4).getInfo("CSQ"));
+		// T is not trimmed AT
+		assertInfo(variants.get(5), CONS, "missense_variant", "intron_variant");
+	}
+
+	@Test
+	void predictions() throws IOException, VcfException {
+		final Variant variant = extract("/input/csq_input.vcf").get(0);
+		// Lowest SIFT and highest PolyPhen among all the transcripts
+		assertInfo(variant, SIFT, "deleterious");
+		assertInfo(variant, POLYPHEN, "probably_damaging");
+		// Ensembl VCF files mark low confidence as _-_low_confidence
+		assertInfo(extract("/input/csq_allele_num.vcf").get(0), SIFT, null, "tolerated");
+	}
+
+	@Test
+	void alleleNumber() throws IOException, VcfException {
+		// The Allele field is ignored, and entries with an ALLELE_NUM out of range, not a number or
+		// less fields than the header are skipped
+		final Variant variant = extract("/input/csq_allele_num.vcf").get(0);
+		assertInfo(variant, CONS, "intron_variant", "missense_variant");
+		assertInfo(variant, ENST, "ENST00000000001", "ENST00000000002");
+	}
+
+	@Test
+	void sameAsVep() throws IOException, VcfException {
+		final File directory = Files.createTempDirectory("vep").toFile();
+		directory.deleteOnExit();
+		final File file = new File(directory, String.format(VepReader.FORMAT, "1"));
+		file.deleteOnExit();
+		try (OutputStream output = new GZIPOutputStream(new FileOutputStream(file))) {
+			Files.copy(new File(getClass().getResource("/input/csq_vep.vcf").getFile()).toPath(), output);
+		}
+		final File gff = File.createTempFile("genes", ".gff3");
+		gff.deleteOnExit();
+		final List<Variant> expected = annotate("/input/csq_input.vcf", new VepAnnotator(directory, new GeneMap(gff)));
+		final List<Variant> actual = extract("/input/csq_input.vcf");
+		Assertions.assertEquals(expected.size(), actual.size());
+		// Genes and transcripts are taken from the gff by VepAnnotator
+		for (int i = 0; i < expected.size(); i++) {
+			for (String key : List.of(CONS, SIFT, POLYPHEN, AMINO))
+				Assertions.assertEquals(expected.get(i).<Object>getInfo(key), actual.get(i).getInfo(key), key + " " + i);
+			Assertions.assertEquals(expected.get(i).getIdentifiers(), actual.get(i).getIdentifiers());
+		}
+	}
+
+	private List<Variant> extract(String resource) throws IOException, VcfException {
+		return annotate(resource, new CsqExtractor());
+	}
+
+	private List<Variant> annotate(String resource, VariantConsumer consumer) throws IOException, VcfException {
+		final List<Variant> variants = new ArrayList<>();
+		try (VariantReader reader = new VariantReader(getClass().getResourceAsStream(resource))) {
+			consumer.start(reader.getHeader());
+			for (Variant variant : reader) {
+				consumer.accept(variant);
+				variants.add(variant);
+			}
+		} finally {
+			consumer.close();
+		}
+		return variants;
+	}
+
+	private List<Variant> read(String resource) throws IOException {
+		final List<Variant> variants = new ArrayList<>();
+		try (VariantReader reader = new VariantReader(getClass().getResourceAsStream(resource))) {
+			for (Variant variant : reader) variants.add(variant);
+		}
+		return variants;
+	}
+
+	private static void assertInfo(Variant variant, String key, String... expected) {
+		Assertions.assertEquals(Arrays.asList(expected), variant.getInfo(key), key);
+	}
+}
@@ -0,0 +1,163 @@
+package org.uichuimi.vcf.utils.annotation.consumer.vep;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.uichuimi.vcf.io.VariantReader;
+import org.uichuimi.vcf.utils.annotation.consumer.VcfWriter;
+import org.uichuimi.vcf.utils.annotation.gff.GeneMap;
+import org.uichuimi.vcf.utils.common.VariantKey;
+import org.uichuimi.vcf.utils.exception.VcfException;
+import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+class VepStoreTest {
+
+	private static final Chromosome CHR1 = Chromosome.get("1", Chromosome.Namespace.GRCH);
+	private static final Chromosome CHR2 = Chromosome.get("2", Chromosome.Namespace.GRCH);
+
+	@Test
+	void roundTrip() throws IOException {
+		final File directory = Files.createTempDirectory("vep").toFile();
+		directory.deleteOnExit();
+		// Identifiers that are not rs numbers, or would not be written back the same, keep their text
+		final VepRecord first = new VepRecord(VepRecord.HAS_EFFECTS | VepRecord.HAS_SIFT | VepRecord.HAS_AMINO,
+				new String[]{"rs1", "COSV1", "rs012", "rs99999999999999999999", "rs"}, new long[]{VariantKey.allele("C"), VariantKey.allele("G")},
+				new String[]{"missense_variant", null}, new String[]{"ENST00000618828", null},
+				new String[]{"deleterious", null}, new String[]{null, null}, new String[]{"A/V", null});
+		// Same pool strings as the first record
+		final VepRecord second = new VepRecord(VepRecord.HAS_EFFECTS, new String[0], new long[]{VariantKey.allele("T")},
+				new String[]{"missense_variant"}, new String[]{"ENST00000618828"}, new String[1], new String[1], new String[1]);
+		final VepRecord intergenic = new VepRecord(VepRecord.HAS_EFFECTS | VepRecord.INTERGENIC, new String[]{"rs2"},
+				new long[]{VariantKey.allele("A")}, new String[1], new String[1], new String[1], new String[1], new String[1]);
+		final File file = VepStore.getFile(directory, CHR1.getName());
+		file.deleteOnExit();
+		try (VepStoreWriter writer = new VepStoreWriter(file)) {
+			writer.add(100, first);
+			writer.add(100, second);
+			writer.add(200, intergenic);
+			Assertions.assertEquals(3, writer.size());
+			Assertions.assertThrows(IOException.class, () -> writer.add(150, intergenic));
+		}
+		// Only the store is left
+		Assertions.assertArrayEquals(new String[]{file.getName()}, directory.list());
+		Assertions.assertTrue(VepStore.isStore(directory));
+		try (VepStore store = new VepStore(directory)) {
+			Assertions.assertEquals(List.of(), store.getRecords(CHR1, 50));
+			final List<VepRecord> records = store.getRecords(CHR1, 100);
+			Assertions.assertEquals(2, records.size());
+			assertRecord(first, records.get(0));
+			assertRecord(second, records.get(1));
+			Assertions.assertEquals(List.of(), store.getRecords(CHR1, 150));
+			assertRecord(intergenic, store.getRecords(CHR1, 200).get(0));
+			Assertions.assertEquals(List.of(), store.getRecords(CHR1, 300));
+			// Backwards
+			assertRecord(first, store.getRecords(CHR1, 100).get(0));
+			// Chromosome without file
+			Assertions.assertEquals(List.of(), store.getRecords(CHR2, 100));
+		}
+	}
+
+	@Test
+	void rsNumber() {
+		Assertions.assertEquals(3795269, VepStoreWriter.rsNumber("rs3795269"));
+		Assertions.assertEquals(Long.MAX_VALUE, VepStoreWriter.rsNumber("rs" + Long.MAX_VALUE));
+		for (String identifier : List.of("rs", "rs0", "rs012", "rs1a", "COSV1", "RS1", "rs99999999999999999999"))
+			Assertions.assertEquals(0, VepStoreWriter.rsNumber(identifier), identifier);
+	}
+
+	@Test
+	void sameAsVep() throws Exception, VcfException {
+		final File vep = vepDirectory();
+		final File store = Files.createTempDirectory("store").toFile();
+		final File output = new File(store, "vep");
+		new VepIndexCommand(vep, output).call();
+		Assertions.assertTrue(VepAnnotator.isStore(output));
+		Assertions.assertFalse(VepAnnotator.isStore(vep));
+		final GeneMap genes = new GeneMap(emptyFile(".gff3"));
+		final String expected = annotate(new VepAnnotator(vep, genes));
+		Assertions.assertEquals(expected, annotate(new VepAnnotator(output, genes)));
+		// There was something to annotate: consequences, an intergenic variant and identifiers
+		Assertions.assertTrue(expected.contains("CONS=intron_variant"), expected);
+		Assertions.assertTrue(expected.contains("CONS=intergenic_variant"), expected);
+		Assertions.assertTrue(expected.contains("rs3795269"), expected);
+		org.apache.commons.io.FileUtils.deleteDirectory(store);
+	}
+
+	@Test
+	void failedIndex() throws Exception {
+		final File vep = Files.createTempDirectory("vep").toFile();
+		vep.deleteOnExit();
+		// Chromosome 1 is fine, chromosome 2 is not sorted
+		final String header = "##fileformat=VCFv4.1\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n";
+		write(new File(vep, String.format(VepReader.FORMAT, "1")), header + "1\t100\trs1\tA\tC\t.\t.\t.\n");
+		write(new File(vep, String.format(VepReader.FORMAT, "2")), header + "2\t200\trs2\tA\tC\t.\t.\t.\n2\t100\trs3\tA\tC\t.\t.\t.\n");
+		final File parent = Files.createTempDirectory("store").toFile();
+		final File output = new File(parent, "vep");
+		Assertions.assertThrows(IOException.class, () -> new VepIndexCommand(vep, output).call());
+		// Neither the output, with the complete store of chromosome 1, nor temporary files are left
+		Assertions.assertArrayEquals(new String[0], parent.list());
+		Assertions.assertTrue(parent.delete());
+	}
+
+	private static void assertRecord(VepRecord expected, VepRecord actual) {
+		Assertions.assertEquals(expected.flags, actual.flags);
+		Assertions.assertArrayEquals(expected.identifiers, actual.identifiers);
+		Assertions.assertArrayEquals(expected.alleles, actual.alleles);
+		Assertions.assertArrayEquals(expected.consequences, actual.consequences);
+		Assertions.assertArrayEquals(expected.transcripts, actual.transcripts);
+		Assertions.assertArrayEquals(expected.sift, actual.sift);
+		Assertions.assertArrayEquals(expected.polyphen, actual.polyphen);
+		Assertions.assertArrayEquals(expected.aminos, actual.aminos);
+	}
+
+	private String annotate(VepAnnotator annotator) throws IOException, VcfException {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (VariantReader reader = new VariantReader(getClass().getResourceAsStream("/files/input.vcf"), Chromosome.Namespace.UCSC)) {
+			final VcfWriter writer = new VcfWriter(output, Chromosome.Namespace.GRCH);
+			annotator.start(reader.getHeader());
+			writer.start(reader.getHeader());
+			for (Variant variant : reader) {
+				annotator.accept(variant);
+				writer.accept(variant);
+			}
+			writer.close();
+		} finally {
+			annotator.close();
+		}
+		return output.toString();
+	}
+
+	/**
+	 * Splits the VEP fixture in one file per chromosome, as they are distributed by Ensembl.
+	 */
+	private File vepDirectory() throws IOException {
+		final File directory = Files.createTempDirectory("vep").toFile();
+		directory.deleteOnExit();
+		final List<String> lines = Files.readAllLines(new File(getClass().getResource("/files/vep.vcf").getFile()).toPath());
+		final String header = lines.stream().filter(line -> line.startsWith("#")).collect(Collectors.joining("\n", "", "\n"));
+		for (String chromosome : List.of("1", "10")) {
+			final String records = lines.stream().filter(line -> line.startsWith(chromosome + "\t")).collect(Collectors.joining("\n", "", "\n"));
+			write(new File(directory, String.format(VepReader.FORMAT, chromosome)), header + records);
+		}
+		return directory;
+	}
+
+	private static void write(File file, String content) throws IOException {
+		file.deleteOnExit();
+		try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file)))) {
+			writer.write(content);
+		}
+	}
+
+	private static File emptyFile(String suffix) throws IOException {
+		final File file = File.createTempFile("genes", suffix);
+		file.deleteOnExit();
+		return file;
+	}
+}
@@ -0,0 +1,66 @@
+package org.uichuimi.vcf.utils.common;
+
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+class BgzfIndexTest {
+
+	@Test
+	void tabix() throws IOException {
+		final File file = file("ExAC.vcf.gz");
+		final BgzfIndex index = BgzfIndex.open(file);
+		Assertions.assertNotNull(index);
+		Assertions.assertEquals("1", index.getContig("chr1"));
+		Assertions.assertEquals("3", index.getContig("3"));
+		Assertions.assertNull(index.getContig("10"));
+		// Before the first record and at the record
+		assertFirst(file, index.getOffset("1", 1), "1\t2406687");
+		assertFirst(file, index.getOffset("1", 2406687), "1\t2406687");
+		assertFirst(file, index.getOffset("3", 193637313), "3\t193637313");
+	}
+
+	@Test
+	void csi() throws IOException {
+		final File file = file("gnomad_genomes.vcf.gz");
+		final BgzfIndex index = BgzfIndex.open(file);
+		Assertions.assertNotNull(index);
+		Assertions.assertEquals("10", index.getContig("chr10"));
+		Assertions.assertNull(index.getContig("2"));
+		assertFirst(file, index.getOffset("1", 104160), "1\t104160");
+		// Every record is in its own block, so the offset skips the records of 104160
+		assertFirst(file, index.getOffset("1", 2406687), "1\t2406687");
+		assertFirst(file, index.getOffset("3", 1), "3\t193637313");
+		// After the last record of the contig, the offset points before it
+		assertFirst(file, index.getOffset("10", 7000000), "10\t6080046");
+	}
+
+	@Test
+	void refseqNames() throws IOException {
+		final BgzfIndex index = BgzfIndex.open(file("dbSNP.vcf.gz"));
+		Assertions.assertNotNull(index);
+		Assertions.assertEquals("NC_000001.11", index.getContig("NC_000001.11"));
+		// Names in other namespaces are resolved by IndexedVariantReader
+		Assertions.assertNull(index.getContig("1"));
+	}
+
+	@Test
+	void noIndex() throws IOException {
+		Assertions.assertNull(BgzfIndex.open(new File(getClass().getResource("/files/ExAC.vcf").getFile())));
+	}
+
+	private static void assertFirst(File file, long offset, String expected) throws IOException {
+		try (BlockCompressedInputStream stream = new BlockCompressedInputStream(file)) {
+			stream.seek(offset);
+			final String line = stream.readLine();
+			Assertions.assertTrue(line.startsWith(expected + "\t"), line);
+		}
+	}
+
+	private File file(String name) {
+		return new File(getClass().getResource("/indexed/" + name).getFile());
+	}
+}
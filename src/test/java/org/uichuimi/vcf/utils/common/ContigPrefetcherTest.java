@@ -0,0 +1,108 @@
+package org.uichuimi.vcf.utils.common;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.uichuimi.vcf.header.VcfHeader;
+import org.uichuimi.vcf.io.VariantReader;
+import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.Coordinate;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+class ContigPrefetcherTest {
+
+	private static final Chromosome CHR1 = Chromosome.get("1", Chromosome.Namespace.GRCH);
+	private static final Chromosome CHR2 = Chromosome.get("2", Chromosome.Namespace.GRCH);
+	private static final Chromosome CHR3 = Chromosome.get("3", Chromosome.Namespace.GRCH);
+	private static final Chromosome CHR4 = Chromosome.get("4", Chromosome.Namespace.GRCH);
+
+	private final List<Chromosome> requested = new ArrayList<>();
+	private File dir;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		dir = Files.createTempDirectory("prefetch").toFile();
+		dir.deleteOnExit();
+		// chromosome 3 has no file
+		for (String chrom : List.of("1", "2", "4")) {
+			final File file = new File(dir, chrom + ".vcf");
+			file.deleteOnExit();
+			Files.writeString(file.toPath(), "##fileformat=VCFv4.2\n"
+					+ "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n"
+					+ chrom + "\t100\trs" + chrom + "\tA\tC\t.\t.\t.\n");
+		}
+	}
+
+	@Test
+	void prefetchesFromFirstOpen() throws IOException {
+		try (ContigPrefetcher prefetcher = create()) {
+			prefetcher.setOrder(header("1", "2", "3", "4"));
+			try (ResourceReader reader = prefetcher.open(CHR1)) {
+				assertFirst(reader, CHR1);
+			}
+			Assertions.assertEquals(List.of(CHR1, CHR2), requested);
+			try (ResourceReader reader = prefetcher.open(CHR2)) {
+				assertFirst(reader, CHR2);
+			}
+			// chromosome 2 was not opened again
+			Assertions.assertEquals(List.of(CHR1, CHR2, CHR3), requested);
+			Assertions.assertNull(prefetcher.open(CHR3));
+		}
+	}
+
+	@Test
+	void contigsInAnyNamespace() throws IOException {
+		try (ContigPrefetcher prefetcher = create()) {
+			// UCSC names, with 4 before 2
+			prefetcher.setOrder(header("chr1", "chr4", "chr2", "chrUnknown"));
+			try (ResourceReader reader = prefetcher.open(CHR1)) {
+				assertFirst(reader, CHR1);
+			}
+			Assertions.assertEquals(List.of(CHR1, CHR4), requested);
+		}
+	}
+
+	@Test
+	void mispredicted() throws IOException {
+		try (ContigPrefetcher prefetcher = create()) {
+			prefetcher.setOrder(header("1", "2", "3", "4"));
+			prefetcher.open(CHR1).close();
+			// chromosome 2 is skipped, so its prefetched reader is discarded
+			try (ResourceReader reader = prefetcher.open(CHR4)) {
+				assertFirst(reader, CHR4);
+			}
+			Assertions.assertEquals(List.of(CHR1, CHR2, CHR4), requested);
+		}
+	}
+
+	private ContigPrefetcher create() {
+		return new ContigPrefetcher(chrom -> {
+			requested.add(chrom);
+			return new File(dir, chrom.getName() + ".vcf");
+		}, Projection.ALL);
+	}
+
+	private static void assertFirst(ResourceReader reader, Chromosome chrom) {
+		Assertions.assertNotNull(reader);
+		final Variant variant = reader.next(new Coordinate(chrom, 100));
+		Assertions.assertNotNull(variant);
+		Assertions.assertEquals("rs" + chrom.getName(), variant.getIdentifiers().get(0));
+	}
+
+	private static VcfHeader header(String... contigs) throws IOException {
+		final StringBuilder builder = new StringBuilder("##fileformat=VCFv4.2\n");
+		for (String contig : contigs) builder.append("##contig=<ID=").append(contig).append(">\n");
+		builder.append("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n");
+		try (VariantReader reader = new VariantReader(new ByteArrayInputStream(builder.toString().getBytes(StandardCharsets.US_ASCII)))) {
+			return reader.getHeader();
+		}
+	}
+}
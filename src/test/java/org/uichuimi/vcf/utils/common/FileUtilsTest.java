@@ -0,0 +1,80 @@
+package org.uichuimi.vcf.utils.common;
+
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+class FileUtilsTest {
+
+	@Test
+	void blockCompressed() throws Exception {
+		final byte[] data = randomText();
+		final File file = File.createTempFile("parallel", ".vcf.gz");
+		file.deleteOnExit();
+		try (OutputStream out = new BlockCompressedOutputStream(file)) {
+			out.write(data);
+		}
+		try (InputStream in = FileUtils.getInputStream(file)) {
+			Assertions.assertTrue(in instanceof ParallelBlockCompressedInputStream);
+			Assertions.assertArrayEquals(data, IOUtils.toByteArray(in));
+		}
+		// Single byte reads cross block boundaries
+		try (InputStream in = FileUtils.getInputStream(file)) {
+			for (int i = 0; i < 200_000; i++) Assertions.assertEquals(data[i] & 0xff, in.read());
+		}
+	}
+
+	@Test
+	void gzip() throws Exception {
+		final byte[] data = randomText();
+		final File file = File.createTempFile("plain", ".gz");
+		file.deleteOnExit();
+		try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+			out.write(data);
+		}
+		try (InputStream in = FileUtils.getInputStream(file)) {
+			Assertions.assertTrue(in instanceof GZIPInputStream);
+			Assertions.assertArrayEquals(data, IOUtils.toByteArray(in));
+		}
+	}
+
+	@Test
+	void parallelOutput() throws Exception {
+		final byte[] data = randomText();
+		final File file = File.createTempFile("parallel", ".vcf.gz");
+		file.deleteOnExit();
+		try (OutputStream out = FileUtils.getOutputStream(file, 1)) {
+			// Mix single bytes and arrays, so blocks are filled both ways
+			out.write(data, 0, 1000);
+			for (int i = 1000; i < 70_000; i++) out.write(data[i]);
+			out.write(data, 70_000, data.length - 70_000);
+		}
+		try (InputStream in = new BlockCompressedInputStream(file)) {
+			Assertions.assertArrayEquals(data, IOUtils.toByteArray(in));
+		}
+		try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+			Assertions.assertArrayEquals(data, IOUtils.toByteArray(in));
+		}
+		Assertions.assertEquals(BlockCompressedInputStream.FileTermination.HAS_TERMINATOR_BLOCK, BlockCompressedInputStream.checkTermination(file));
+	}
+
+	private static byte[] randomText() {
+		final Random random = new Random(42);
+		final StringBuilder builder = new StringBuilder();
+		while (builder.length() < 2_000_000)
+			builder.append("1\t").append(random.nextInt(1_000_000)).append("\t.\tA\tC\t.\tPASS\tAF=").append(random.nextFloat()).append("\n");
+		return builder.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,84 @@
+package org.uichuimi.vcf.utils.common;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.uichuimi.vcf.io.VariantReader;
+import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.Coordinate;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class IndexedVariantReaderTest {
+
+	@Test
+	void tabix() throws IOException {
+		assertSameAsStream("ExAC.vcf", null);
+	}
+
+	@Test
+	void csi() throws IOException {
+		assertSameAsStream("gnomad_genomes.vcf", null);
+	}
+
+	@Test
+	void namespace() throws IOException {
+		// Contigs are written as NC_000001.11, and requested as chr1
+		final List<List<String>> records = assertSameAsStream("dbSNP.vcf", Chromosome.Namespace.REFSEQ);
+		Assertions.assertFalse(records.get(0).isEmpty());
+	}
+
+	/**
+	 * Requests the coordinates of input.vcf to the plain file, to the indexed file and to the
+	 * indexed file seeking on every move. Between the first two coordinates, the reader skips
+	 * 2.3 Mb of chromosome 1, and then moves to chromosomes 3 and 10.
+	 *
+	 * @return the records found at each coordinate
+	 */
+	private List<List<String>> assertSameAsStream(String name, Chromosome.Namespace namespace) throws IOException {
+		final File plain = new File(getClass().getResource("/files/" + name).getFile());
+		final File indexed = new File(getClass().getResource("/indexed/" + name + ".gz").getFile());
+		final BgzfIndex index = BgzfIndex.open(indexed);
+		final Projection projection = new Projection(null, true, false);
+		final List<Coordinate> coordinates = coordinates();
+		final List<List<String>> expected;
+		try (ResourceReader reader = ReadAheadVariantReader.open(FileUtils.getInputStream(plain), projection, namespace, name)) {
+			expected = collect(reader, coordinates);
+		}
+		try (ResourceReader reader = new IndexedVariantReader(indexed, index, projection, namespace)) {
+			Assertions.assertEquals(expected, collect(reader, coordinates));
+		}
+		try (ResourceReader reader = new IndexedVariantReader(indexed, index, projection, namespace, 0)) {
+			Assertions.assertEquals(expected, collect(reader, coordinates));
+		}
+		return expected;
+	}
+
+	private List<Coordinate> coordinates() throws IOException {
+		final List<Coordinate> coordinates = new ArrayList<>();
+		try (VariantReader reader = new VariantReader(getClass().getResourceAsStream("/files/input.vcf"), Chromosome.Namespace.UCSC)) {
+			for (Variant variant : reader) coordinates.add(variant.getCoordinate());
+		}
+		return coordinates;
+	}
+
+	private static List<List<String>> collect(ResourceReader reader, List<Coordinate> coordinates) {
+		final List<List<String>> records = new ArrayList<>();
+		for (Coordinate coordinate : coordinates)
+			records.add(reader.nextCollected(coordinate).stream().map(IndexedVariantReaderTest::toString).collect(Collectors.toList()));
+		return records;
+	}
+
+	private static String toString(Variant variant) {
+		final StringBuilder builder = new StringBuilder()
+				.append(variant.getCoordinate().getPosition())
+				.append(variant.getIdentifiers())
+				.append(variant.getAlleles());
+		variant.getInfo().forEach((key, value) -> builder.append(key).append('=').append(value));
+		return builder.toString();
+	}
+}
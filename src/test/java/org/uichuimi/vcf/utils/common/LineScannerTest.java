@@ -0,0 +1,72 @@
+package org.uichuimi.vcf.utils.common;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+class LineScannerTest {
+
+	@Test
+	void lines() throws IOException {
+		Assertions.assertEquals(List.of("##fileformat=VCFv4.2\n", "#CHROM\tPOS\n", "1\t100\n", "\n", "1\t200"),
+				scan(new ByteArrayInputStream(bytes("##fileformat=VCFv4.2\n#CHROM\tPOS\n1\t100\n\n1\t200"))));
+		Assertions.assertEquals(List.of(), scan(new ByteArrayInputStream(new byte[0])));
+	}
+
+	@Test
+	void crlf() throws IOException {
+		// Line breaks are kept as they are
+		Assertions.assertEquals(List.of("#CHROM\tPOS\r\n", "1\t100\r\n", "1\t200\r\n"),
+				scan(new ByteArrayInputStream(bytes("#CHROM\tPOS\r\n1\t100\r\n1\t200\r\n"))));
+	}
+
+	@Test
+	void bufferEdges() throws IOException {
+		// Lines longer than the line array and the read buffer, and short lines, read a few bytes at a time
+		final List<String> expected = new ArrayList<>();
+		for (int length : new int[]{1, 4095, 4096, 4097, 10, 65535, 65536, 65537, 200_000, 3})
+			expected.add("1\t" + "A".repeat(length) + "\n");
+		final String text = String.join("", expected);
+		Assertions.assertEquals(expected, scan(new ByteArrayInputStream(bytes(text))));
+		for (int chunk : new int[]{1, 7, 4096, 65535})
+			Assertions.assertEquals(expected, scan(new ChunkedInputStream(bytes(text), chunk)), "chunk " + chunk);
+	}
+
+	private static List<String> scan(InputStream input) throws IOException {
+		final LineScanner scanner = new LineScanner(input);
+		final List<String> lines = new ArrayList<>();
+		while (scanner.next()) lines.add(new String(scanner.line(), 0, scanner.length(), StandardCharsets.US_ASCII));
+		// Once finished, it stays finished
+		Assertions.assertFalse(scanner.next());
+		scanner.close();
+		return lines;
+	}
+
+	private static byte[] bytes(String text) {
+		return text.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Returns at most chunk bytes per read, as network and decompressing streams do.
+	 */
+	static class ChunkedInputStream extends ByteArrayInputStream {
+
+		private final int chunk;
+
+		ChunkedInputStream(byte[] bytes, int chunk) {
+			super(bytes);
+			this.chunk = chunk;
+		}
+
+		@Override
+		public synchronized int read(byte[] bytes, int offset, int length) {
+			return super.read(bytes, offset, Math.min(length, chunk));
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package org.uichuimi.vcf.utils.common;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+class ProjectionTest {
+
+	private static final String VCF = "##fileformat=VCFv4.2\n"
+			+ "##INFO=<ID=AF_afr,Number=A,Type=Float,Description=\"AF\">\n"
+			+ "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tS1\tS2\n"
+			+ "1\t100\trs1\tA\tC,G\t50\tPASS\tAC=1;AF_afr=0.1,0.2;DB;AF_amr=0.3\tGT\t0/1\t1/1\n"
+			+ "1\t200\trs2\tT\tG\t.\t.\tAC=2\tGT\t0/0\t./.\n"
+			+ "1\t300\t.\tT\tG\t.\t.\tDB;AF_afr=0.5";
+
+	@Test
+	void info() throws IOException {
+		final String expected = "##fileformat=VCFv4.2\n"
+				+ "##INFO=<ID=AF_afr,Number=A,Type=Float,Description=\"AF\">\n"
+				+ "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n"
+				+ "1\t100\t.\tA\tC,G\t50\tPASS\tAF_afr=0.1,0.2;DB\n"
+				+ "1\t200\t.\tT\tG\t.\t.\t.\n"
+				+ "1\t300\t.\tT\tG\t.\t.\tDB;AF_afr=0.5\n";
+		Assertions.assertEquals(expected, project(new Projection(List.of("AF_afr", "DB"), false, false)));
+	}
+
+	@Test
+	void identifiers() throws IOException {
+		final String expected = "##fileformat=VCFv4.2\n"
+				+ "##INFO=<ID=AF_afr,Number=A,Type=Float,Description=\"AF\">\n"
+				+ "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tS1\tS2\n"
+				+ "1\t100\trs1\tA\tC,G\t50\tPASS\t.\tGT\t0/1\t1/1\n"
+				+ "1\t200\trs2\tT\tG\t.\t.\t.\tGT\t0/0\t./.\n"
+				+ "1\t300\t.\tT\tG\t.\t.\t.\n";
+		Assertions.assertEquals(expected, project(new Projection(List.of(), true, true)));
+	}
+
+	@Test
+	void all() throws IOException {
+		Assertions.assertEquals(VCF, project(Projection.ALL));
+	}
+
+	private static String project(Projection projection) throws IOException {
+		final ByteArrayInputStream input = new ByteArrayInputStream(VCF.getBytes(StandardCharsets.US_ASCII));
+		return IOUtils.toString(projection.apply(input), StandardCharsets.US_ASCII);
+	}
+}
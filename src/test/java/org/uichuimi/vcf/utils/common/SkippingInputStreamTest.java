@@ -0,0 +1,153 @@
+package org.uichuimi.vcf.utils.common;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+class SkippingInputStreamTest {
+
+	private static final String HEADER = "##fileformat=VCFv4.2\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n";
+
+	@Test
+	void noTarget() throws IOException {
+		final String vcf = HEADER + "1\t100\t.\tA\tC\t.\t.\t.\n2\t50\t.\tA\tC\t.\t.\t.\n";
+		Assertions.assertEquals(vcf, readAll(vcf, new AtomicLong()));
+	}
+
+	@Test
+	void sameContig() throws IOException {
+		final String vcf = HEADER
+				+ "1\t100\t.\tA\tC\t.\t.\t.\n"
+				+ "1\t200\t.\tA\tC\t.\t.\t.\n"
+				+ "1\t300\t.\tA\tC\t.\t.\t.\n";
+		// Header lines are never dropped, and the record at target is kept
+		Assertions.assertEquals(HEADER + "1\t200\t.\tA\tC\t.\t.\t.\n1\t300\t.\tA\tC\t.\t.\t.\n",
+				readAll(vcf, new AtomicLong(VariantKey.position("1", 200))));
+		// Any namespace
+		Assertions.assertEquals(HEADER + "1\t300\t.\tA\tC\t.\t.\t.\n",
+				readAll(vcf, new AtomicLong(VariantKey.position("chr1", 250))));
+	}
+
+	@Test
+	void previousChromosome() throws IOException {
+		final String vcf = HEADER
+				+ "1\t100\t.\tA\tC\t.\t.\t.\n"
+				+ "2\t100\t.\tA\tC\t.\t.\t.\n";
+		final AtomicLong target = new AtomicLong(VariantKey.position("2", 1));
+		final String expected = ContigTable.isComparable(ContigTable.indexOf("1"), ContigTable.indexOf("2"))
+				? HEADER + "2\t100\t.\tA\tC\t.\t.\t.\n"
+				// The chromosome list is not sorted, so only the coordinates can tell
+				: vcf;
+		Assertions.assertEquals(expected, readAll(vcf, target));
+	}
+
+	@Test
+	void unknownContigs() throws IOException {
+		final String vcf = HEADER
+				+ "chrUn_KI270302v1\t100\t.\tA\tC\t.\t.\t.\n"
+				+ "chrUn_KI270302v1\t200\t.\tA\tC\t.\t.\t.\n"
+				+ "chrUn_KI270303v1\t100\t.\tA\tC\t.\t.\t.\n"
+				+ "1\t100\t.\tA\tC\t.\t.\t.\n";
+		// Records of unknown contigs are only dropped within the same contig, and chromosome 1 is not
+		// compared with an unknown target
+		Assertions.assertEquals(HEADER
+						+ "chrUn_KI270302v1\t200\t.\tA\tC\t.\t.\t.\n"
+						+ "chrUn_KI270303v1\t100\t.\tA\tC\t.\t.\t.\n"
+						+ "1\t100\t.\tA\tC\t.\t.\t.\n",
+				readAll(vcf, new AtomicLong(VariantKey.position("chrUn_KI270302v1", 150))));
+		// Nor unknown contigs with a known target
+		Assertions.assertEquals(vcf, readAll(vcf, new AtomicLong(VariantKey.position("1", 50))));
+	}
+
+	@Test
+	void crlf() throws IOException {
+		final String vcf = HEADER.replace("\n", "\r\n")
+				+ "1\t100\t.\tA\tC\t.\t.\t.\r\n"
+				+ "1\t200\r\n"
+				+ "1\t300\t.\tA\tC\t.\t.\t.\r\n";
+		Assertions.assertEquals(HEADER.replace("\n", "\r\n") + "1\t300\t.\tA\tC\t.\t.\t.\r\n",
+				readAll(vcf, new AtomicLong(VariantKey.position("1", 300))));
+	}
+
+	@Test
+	void malformed() throws IOException {
+		final String vcf = HEADER + "1\tX100\t.\tA\tC\t.\t.\t.\n1\n\n";
+		// Left to the reader, which reports them
+		Assertions.assertEquals(vcf, readAll(vcf, new AtomicLong(VariantKey.position("1", 200))));
+	}
+
+	@Test
+	void movingTarget() throws IOException {
+		final String vcf = HEADER
+				+ "1\t100\t.\tA\tC\t.\t.\t.\n"
+				+ "1\t200\t.\tA\tC\t.\t.\t.\n"
+				+ "1\t300\t.\tA\tC\t.\t.\t.\n"
+				+ "1\t400\t.\tA\tC\t.\t.\t.\n"
+				+ "1\t500\t.\tA\tC\t.\t.\t.\n";
+		final AtomicLong target = new AtomicLong();
+		try (InputStream input = stream(vcf, target)) {
+			Assertions.assertEquals("##fileformat=VCFv4.2\n", readLine(input));
+			// The target is read at the start of every line
+			target.set(VariantKey.position("1", 300));
+			Assertions.assertEquals("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n", readLine(input));
+			Assertions.assertEquals("1\t300\t.\tA\tC\t.\t.\t.\n", readLine(input));
+			// A target behind the cursor drops nothing
+			target.set(VariantKey.position("1", 100));
+			Assertions.assertEquals("1\t400\t.\tA\tC\t.\t.\t.\n", readLine(input));
+			target.set(VariantKey.position("1", 1000));
+			Assertions.assertEquals("", readLine(input));
+		}
+	}
+
+	@Test
+	void bufferEdges() throws IOException {
+		final StringBuilder vcf = new StringBuilder(HEADER);
+		final StringBuilder expected = new StringBuilder(HEADER);
+		final String info = "A".repeat(5000);
+		for (int position = 1; position <= 100; position++) {
+			final String line = "1\t" + position + "\t.\tA\tC\t.\t.\t" + info + "\n";
+			vcf.append(line);
+			if (position >= 60) expected.append(line);
+		}
+		final AtomicLong target = new AtomicLong(VariantKey.position("1", 60));
+		final InputStream input = new SkippingInputStream(
+				new LineScannerTest.ChunkedInputStream(vcf.toString().getBytes(StandardCharsets.US_ASCII), 4093), target);
+		// Reads of odd sizes cross the lines
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[777];
+		int n;
+		while ((n = input.read(buffer, 0, buffer.length)) > 0) output.write(buffer, 0, n);
+		input.close();
+		Assertions.assertEquals(expected.toString(), output.toString(StandardCharsets.US_ASCII));
+	}
+
+	private static String readAll(String vcf, AtomicLong target) throws IOException {
+		try (InputStream input = stream(vcf, target)) {
+			return IOUtils.toString(input, StandardCharsets.US_ASCII);
+		}
+	}
+
+	private static InputStream stream(String vcf, AtomicLong target) {
+		return new SkippingInputStream(new ByteArrayInputStream(vcf.getBytes(StandardCharsets.US_ASCII)), target);
+	}
+
+	/**
+	 * Reads one line with single byte reads, so the stream does not go beyond it.
+	 */
+	private static String readLine(InputStream input) throws IOException {
+		final StringBuilder line = new StringBuilder();
+		int c;
+		while ((c = input.read()) >= 0) {
+			line.append((char) c);
+			if (c == '\n') break;
+		}
+		return line.toString();
+	}
+}
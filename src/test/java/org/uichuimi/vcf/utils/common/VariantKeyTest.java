@@ -0,0 +1,55 @@
+package org.uichuimi.vcf.utils.common;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class VariantKeyTest {
+
+	@Test
+	void alleles() {
+		Assertions.assertEquals(VariantKey.allele("ACGT"), VariantKey.allele(new String("ACGT")));
+		Assertions.assertNotEquals(VariantKey.allele("A"), VariantKey.allele("C"));
+		Assertions.assertNotEquals(VariantKey.allele("AC"), VariantKey.allele("CA"));
+		Assertions.assertNotEquals(VariantKey.allele("A"), VariantKey.allele("AA"));
+	}
+
+	@Test
+	void pairs() {
+		Assertions.assertEquals(VariantKey.allele("A", "T"), VariantKey.allele("A", "T"));
+		Assertions.assertNotEquals(VariantKey.allele("A", "T"), VariantKey.allele("T", "A"));
+		// The separator keeps the boundary between alleles
+		Assertions.assertNotEquals(VariantKey.allele("AT", "G"), VariantKey.allele("A", "TG"));
+		Assertions.assertNotEquals(VariantKey.allele("A", "T"), VariantKey.allele("AT"));
+	}
+
+	@Test
+	void indexOf() {
+		final long[] keys = {VariantKey.allele("C"), VariantKey.allele("G"), VariantKey.allele("T")};
+		Assertions.assertEquals(1, VariantKey.indexOf(keys, 3, VariantKey.allele("G")));
+		Assertions.assertEquals(-1, VariantKey.indexOf(keys, 2, VariantKey.allele("T")));
+		Assertions.assertEquals(-1, VariantKey.indexOf(keys, 3, VariantKey.allele("A")));
+	}
+
+	@Test
+	void indexOfAlleles() {
+		final List<String> alleles = List.of("C", "G", "TA");
+		final long[] keys = {VariantKey.allele("C"), VariantKey.allele("G"), VariantKey.allele("TA")};
+		Assertions.assertEquals(2, VariantKey.indexOf(keys, alleles, new String("TA")));
+		Assertions.assertEquals(-1, VariantKey.indexOf(keys, alleles, "A"));
+		// Same hash, different allele, as in a collision
+		final long[] collision = {VariantKey.allele("A"), VariantKey.allele("G"), VariantKey.allele("TA")};
+		Assertions.assertEquals(-1, VariantKey.indexOf(collision, List.of("C", "G", "TA"), "A"));
+	}
+
+	@Test
+	void positions() {
+		final long chr1 = VariantKey.position("chr1", 1000);
+		Assertions.assertEquals(chr1, VariantKey.position("1", 1000));
+		Assertions.assertTrue(VariantKey.sameContig(chr1, VariantKey.position("1", 5)));
+		Assertions.assertTrue(chr1 < VariantKey.position("1", 1001));
+		Assertions.assertTrue(chr1 < VariantKey.position("2", 1));
+		Assertions.assertFalse(VariantKey.sameContig(chr1, VariantKey.position("unknown_contig", 1000)));
+	}
+}
@@ -0,0 +1,217 @@
+package org.uichuimi.vcf.utils.dbsnp;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.uichuimi.vcf.io.VariantReader;
+import org.uichuimi.vcf.utils.annotation.consumer.dbsnp.DbsnpAnnotator;
+import org.uichuimi.vcf.utils.common.ContigTable;
+import org.uichuimi.vcf.utils.common.VariantKey;
+import org.uichuimi.vcf.variant.Chromosome;
+import org.uichuimi.vcf.variant.Variant;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+
+class DbsnpIndexTest {
+
+	@Test
+	void roundTrip() throws Exception {
+		final File index = build(file("dbSNP.vcf"));
+		final DbsnpIndex dbsnp = DbsnpIndex.open(index);
+		// Every allele of every record, the multi-allelic ones too
+		final Map<String, Long> expected = readAlleles(file("dbSNP.vcf"));
+		Assertions.assertEquals(expected.size(), dbsnp.size());
+		expected.forEach((allele, rs) -> {
+			final String[] fields = allele.split(":");
+			Assertions.assertEquals(rs, dbsnp.find(VariantKey.position(fields[0], Long.parseLong(fields[1])),
+					VariantKey.allele(fields[2], fields[3])), allele);
+		});
+		// Same position, different records
+		final long position = VariantKey.position("1", 104160);
+		Assertions.assertEquals(372078516L, dbsnp.find(position, VariantKey.allele("AACAC", "AAC")));
+		Assertions.assertEquals(1553125358L, dbsnp.find(position, VariantKey.allele("A", "ACAC")));
+		Assertions.assertEquals(0L, dbsnp.find(position, VariantKey.allele("A", "G")));
+		// Both alleles of a multi-allelic record
+		Assertions.assertEquals(3795269L, dbsnp.find(VariantKey.position("1", 2406687), VariantKey.allele("C", "A")));
+		Assertions.assertEquals(3795269L, dbsnp.find(VariantKey.position("1", 2406687), VariantKey.allele("C", "T")));
+		assertSorted(index);
+	}
+
+	@Test
+	void skipped() throws Exception {
+		final File vcf = File.createTempFile("dbsnp", ".vcf");
+		vcf.deleteOnExit();
+		// Chromosome 2 before chromosome 1, a contig that is not in the chromosome list and a record without rs
+		Files.writeString(vcf.toPath(), "##fileformat=VCFv4.2\n"
+				+ "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n"
+				+ "NC_000002.12\t500\trs5\tG\tA\t.\t.\t.\n"
+				+ "NC_000001.11\t100\trs1\tA\tC,G\t.\t.\t.\n"
+				+ "NC_000001.11\t100\trs2\tA\tC\t.\t.\t.\n"
+				+ "NC_000001.11\t200\t.\tC\tT\t.\t.\t.\n"
+				+ "NT_187361.1\t300\trs3\tT\tA\t.\t.\t.\n");
+		final ByteArrayOutputStream log = new ByteArrayOutputStream();
+		final PrintStream out = System.out;
+		final File index;
+		try {
+			System.setOut(new PrintStream(log));
+			index = build(vcf);
+		} finally {
+			System.setOut(out);
+		}
+		Assertions.assertTrue(log.toString().contains("2 records skipped"), log.toString());
+		final DbsnpIndex dbsnp = DbsnpIndex.open(index);
+		Assertions.assertEquals(3, dbsnp.size());
+		// Repeated alleles keep the first rs
+		Assertions.assertEquals(1L, dbsnp.find(VariantKey.position("1", 100), VariantKey.allele("A", "C")));
+		Assertions.assertEquals(1L, dbsnp.find(VariantKey.position("1", 100), VariantKey.allele("A", "G")));
+		Assertions.assertEquals(0L, dbsnp.find(VariantKey.position("1", 200), VariantKey.allele("C", "T")));
+		Assertions.assertEquals(5L, dbsnp.find(VariantKey.position("2", 500), VariantKey.allele("G", "A")));
+		Assertions.assertEquals(0L, dbsnp.find(VariantKey.position("NT_187361.1", 300), VariantKey.allele("T", "A")));
+		// Backwards lookups are valid too
+		Assertions.assertEquals(1L, dbsnp.find(VariantKey.position("1", 100), VariantKey.allele("A", "C")));
+		assertSorted(index);
+	}
+
+	@Test
+	void notContiguous() throws IOException {
+		final File file = File.createTempFile("dbsnp", ".idx");
+		file.deleteOnExit();
+		try (DbsnpIndexWriter writer = new DbsnpIndexWriter(file)) {
+			writer.add(VariantKey.position(0, 100), 1, 1);
+			writer.add(VariantKey.position(1, 100), 1, 2);
+			Assertions.assertThrows(IOException.class, () -> writer.add(VariantKey.position(0, 200), 1, 3));
+		}
+		try (DbsnpIndexWriter writer = new DbsnpIndexWriter(file)) {
+			writer.add(VariantKey.position(0, 100), 1, 1);
+			Assertions.assertThrows(IOException.class, () -> writer.add(VariantKey.position(0, 50), 1, 2));
+		}
+	}
+
+	/**
+	 * Lookups with gaps of every size around the gallop bounds, forwards and backwards, must find
+	 * the same as a sorted map.
+	 */
+	@Test
+	void gallop() throws IOException {
+		final File file = File.createTempFile("dbsnp", ".idx");
+		file.deleteOnExit();
+		final TreeMap<Long, List<long[]>> expected = new TreeMap<>();
+		final Random random = new Random(1);
+		try (DbsnpIndexWriter writer = new DbsnpIndexWriter(file)) {
+			for (int contig = 0; contig < 2; contig++) {
+				long position = 0;
+				for (int i = 0; i < 5000; i++) {
+					position += 1 + random.nextInt(3);
+					final long key = VariantKey.position(contig, position);
+					// Between 1 and 3 alleles per position
+					for (int a = 0; a <= i % 3; a++) {
+						final long[] record = {VariantKey.allele("A", "C" + a), 1_000_000L * contig + 10 * position + a};
+						expected.computeIfAbsent(key, k -> new ArrayList<>()).add(record);
+						writer.add(key, record[0], record[1]);
+					}
+				}
+			}
+		}
+		final DbsnpIndex index = DbsnpIndex.open(file);
+		// Records of the same position are in one block, its first and last alleles are found
+		final List<Long> keys = new ArrayList<>(expected.keySet());
+		for (int gap = 1; gap <= 4096; gap <<= 1) {
+			for (int delta = -1; delta <= 1; delta++) {
+				int i = 0;
+				while (i < keys.size()) {
+					assertFind(index, expected, keys.get(i));
+					// Positions between records are not found
+					assertFind(index, expected, keys.get(i) + 1);
+					i += Math.max(1, gap + delta);
+				}
+				// Last record, after the last record, and back to the first
+				assertFind(index, expected, keys.get(keys.size() - 1));
+				assertFind(index, expected, keys.get(keys.size() - 1) + 1);
+				assertFind(index, expected, VariantKey.position(5, 1));
+				assertFind(index, expected, keys.get(0));
+				assertFind(index, expected, VariantKey.position(0, 0));
+			}
+		}
+		for (int i = 0; i < 10_000; i++) assertFind(index, expected, keys.get(random.nextInt(keys.size())));
+	}
+
+	@Test
+	void sameAsVcf() throws Exception {
+		final List<List<String>> fromVcf = annotate(new DbsnpAnnotator(file("dbSNP.vcf")));
+		final List<List<String>> fromIndex = annotate(new DbsnpAnnotator(DbsnpIndex.open(build(file("dbSNP.vcf")))));
+		Assertions.assertEquals(fromVcf.size(), fromIndex.size());
+		// The index only annotates the same alleles: input has A>AACAC at 1:104160, dbSNP has
+		// AACAC>A, so the VCF takes rs372078516 and the index keeps the input identifier
+		Assertions.assertEquals(List.of("rs372078516"), fromVcf.get(0));
+		Assertions.assertEquals(List.of("rs201506079"), fromIndex.get(0));
+		Assertions.assertEquals(fromVcf.subList(1, fromVcf.size()), fromIndex.subList(1, fromIndex.size()));
+	}
+
+	private List<List<String>> annotate(DbsnpAnnotator annotator) throws Exception {
+		final List<List<String>> identifiers = new ArrayList<>();
+		try (VariantReader reader = new VariantReader(getClass().getResourceAsStream("/files/input.vcf"), Chromosome.Namespace.UCSC)) {
+			annotator.start(reader.getHeader());
+			for (Variant variant : reader) {
+				annotator.accept(variant);
+				identifiers.add(List.copyOf(variant.getIdentifiers()));
+			}
+		} finally {
+			annotator.close();
+		}
+		return identifiers;
+	}
+
+	private static void assertFind(DbsnpIndex index, TreeMap<Long, List<long[]>> expected, long position) {
+		final List<long[]> records = expected.getOrDefault(position, List.of());
+		for (long[] record : records) Assertions.assertEquals(record[1], index.find(position, record[0]));
+		Assertions.assertEquals(0L, index.find(position, VariantKey.allele("A", "T")));
+	}
+
+	/**
+	 * Records must be sorted by position and allele, with no repeated alleles.
+	 */
+	private static void assertSorted(File index) throws IOException {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(index)))) {
+			input.skipNBytes(DbsnpIndex.HEADER_SIZE - Long.BYTES);
+			final long size = input.readLong();
+			long position = Long.MIN_VALUE;
+			long allele = Long.MIN_VALUE;
+			for (long i = 0; i < size; i++) {
+				final long p = input.readLong();
+				final long a = input.readLong();
+				input.readLong();
+				Assertions.assertTrue(p > position || p == position && a > allele, "record " + i);
+				position = p;
+				allele = a;
+			}
+		}
+	}
+
+	/**
+	 * @return the rs of each allele of file in known contigs, as contig:position:reference:alternative
+	 */
+	private static Map<String, Long> readAlleles(File file) throws IOException {
+		final Map<String, Long> alleles = new LinkedHashMap<>();
+		for (String line : Files.readAllLines(file.toPath())) {
+			if (line.startsWith("#")) continue;
+			final String[] columns = line.split("\t");
+			if (!ContigTable.isKnown(ContigTable.indexOf(columns[0])) || !columns[2].startsWith("rs")) continue;
+			final long rs = Long.parseLong(columns[2].substring(2));
+			for (String alternative : columns[4].split(","))
+				alleles.putIfAbsent(String.join(":", columns[0], columns[1], columns[3], alternative), rs);
+		}
+		return alleles;
+	}
+
+	private static File build(File vcf) throws Exception {
+		final File index = File.createTempFile("dbsnp", ".idx");
+		index.deleteOnExit();
+		new DbsnpIndexCommand(vcf, index).call();
+		return index;
+	}
+
+	private File file(String name) {
+		return new File(getClass().getResource("/files/" + name).getFile());
+	}
+}
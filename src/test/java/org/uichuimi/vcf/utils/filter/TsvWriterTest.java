@@ -4,11 +4,16 @@ import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.uichuimi.vcf.io.VariantReader;
+import org.uichuimi.vcf.utils.annotation.VariantAnnotator;
+import org.uichuimi.vcf.variant.Chromosome;
 import org.uichuimi.vcf.variant.Variant;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.List;
 
 class TsvWriterTest {
 
@@ -40,4 +45,38 @@ class TsvWriterTest {
 		Assertions.assertEquals(expected, actual);
 	}
 
+	@Test
+	public void typedFrequencies() throws Exception {
+		final String strings = toTsv(annotate(false));
+		final String typed = toTsv(annotate(true));
+		// GMAF is the highest frequency of the first allele, the same from String or typed fields
+		Assertions.assertEquals(strings, typed);
+		Assertions.assertTrue(strings.contains("\t0.546\t"));
+	}
+
+	/**
+	 * Annotates /files/input.vcf with gnomAD genomes and exomes, as String or typed frequencies.
+	 */
+	private byte[] annotate(boolean typed) throws Exception {
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		new VariantAnnotator(List.of(new File(getClass().getResource("/files/input.vcf").getFile())), null)
+				.setNamespace(Chromosome.Namespace.UCSC)
+				.setGnomadGenomes(new File(getClass().getResource("/files/gnomad_genomes.vcf").getFile()))
+				.setGnomadExomes(new File(getClass().getResource("/files/gnomad_exomes.vcf").getFile()))
+				.setTypedFrequencies(typed)
+				.setOutputStream(outputStream)
+				.call();
+		return outputStream.toByteArray();
+	}
+
+	private static String toTsv(byte[] vcf) throws Exception {
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		try (VariantReader reader = new VariantReader(new ByteArrayInputStream(vcf));
+		     TsvWriter writer = new TsvWriter(outputStream)) {
+			writer.setHeader(reader.getHeader());
+			for (Variant variant : reader) writer.write(variant);
+		}
+		return outputStream.toString();
+	}
+
 }
\ No newline at end of file
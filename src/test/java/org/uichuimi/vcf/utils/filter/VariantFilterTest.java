@@ -4,11 +4,19 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.uichuimi.vcf.io.VariantReader;
 import org.uichuimi.vcf.utils.Main;
+import org.uichuimi.vcf.utils.annotation.VariantAnnotator;
+import org.uichuimi.vcf.variant.Chromosome;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 class VariantFilterTest {
 
@@ -34,4 +42,92 @@ class VariantFilterTest {
 		}
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void consequenceSeverity() throws IOException {
+		// Unknown terms are missing values, so the variant with stop_gained and an unknown term passes
+		Assertions.assertEquals(2, countConsequences("CONS<=missense_variant"));
+		// and the variant with only an unknown term passes as the one without CONS
+		Assertions.assertEquals(4, countConsequences("CONS?<=missense_variant"));
+		Assertions.assertEquals(2, countConsequences("CONS*<=missense_variant"));
+	}
+
+	@Test
+	public void typedFrequencies() throws Exception {
+		final File strings = annotate(false);
+		final File typed = annotate(true);
+		for (String filter : List.of("GG_AF*<0.2", "GG_AF<0.5", "GG_AF?<0.5", "GE_AF*>=0.5")) {
+			final Path output = Files.createTempFile("filter_output_", ".vcf");
+			Main.main(new String[]{"filter", "-i", typed.getAbsolutePath(), "-f", filter, "-o", output.toAbsolutePath().toString()});
+			final List<Long> actual;
+			try (VariantReader reader = new VariantReader(output.toFile())) {
+				actual = reader.variants().map(variant -> variant.getCoordinate().getPosition()).collect(Collectors.toList());
+			}
+			// Typed values must be filtered as the numbers of the String field
+			Assertions.assertEquals(expectedPositions(strings, filter), actual, filter);
+		}
+	}
+
+	/**
+	 * Annotates /files/input.vcf with gnomAD genomes and exomes, as String or typed frequencies.
+	 */
+	private File annotate(boolean typed) throws Exception {
+		final File output = File.createTempFile("frequencies", ".vcf");
+		output.deleteOnExit();
+		new VariantAnnotator(List.of(file("input.vcf")), output)
+				.setNamespace(Chromosome.Namespace.UCSC)
+				.setGnomadGenomes(file("gnomad_genomes.vcf"))
+				.setGnomadExomes(file("gnomad_exomes.vcf"))
+				.setTypedFrequencies(typed)
+				.call();
+		return output;
+	}
+
+	/**
+	 * Applies a filter such as GG_AF*&lt;0.2 to the String frequencies of vcf, parsing every value.
+	 *
+	 * @return the positions of the variants that pass the filter
+	 */
+	private static List<Long> expectedPositions(File vcf, String filter) throws IOException {
+		final Matcher matcher = Pattern.compile("(\\w+)(\\?)?(\\*)?(<|>=)(.+)").matcher(filter);
+		Assertions.assertTrue(matcher.matches());
+		final String key = matcher.group(1) + "=";
+		final boolean acceptNulls = matcher.group(2) != null;
+		final boolean matchAll = matcher.group(3) == null;
+		final boolean lower = matcher.group(4).equals("<");
+		final double threshold = Double.parseDouble(matcher.group(5));
+		final List<Long> positions = new ArrayList<>();
+		for (String line : Files.readAllLines(vcf.toPath())) {
+			if (line.startsWith("#")) continue;
+			final String[] fields = line.split("\t");
+			final List<Double> values = new ArrayList<>();
+			for (String info : fields[7].split(";")) {
+				if (!info.startsWith(key)) continue;
+				for (String allele : info.substring(key.length()).split(","))
+					for (String value : allele.split("\\|"))
+						if (!value.equals(".")) values.add(Double.parseDouble(value));
+			}
+			final boolean passes = values.isEmpty()
+					? acceptNulls
+					: matchAll
+					? values.stream().allMatch(v -> lower ? v < threshold : v >= threshold)
+					: values.stream().anyMatch(v -> lower ? v < threshold : v >= threshold);
+			if (passes) positions.add(Long.parseLong(fields[1]));
+		}
+		return positions;
+	}
+
+	private File file(String name) {
+		return new File(getClass().getResource("/files/" + name).getFile());
+	}
+
+	private long countConsequences(String filter) throws IOException {
+		final InputStream input = getClass().getResourceAsStream("/filter/consequence_input.vcf");
+		final Path output = Files.createTempFile("filter_output_", ".vcf");
+		System.setIn(input);
+		Main.main(new String[]{"filter", "-f", filter, "-o", output.toAbsolutePath().toString()});
+		try (VariantReader reader = new VariantReader(output.toFile())) {
+			return reader.variants().count();
+		}
+	}
+
+}